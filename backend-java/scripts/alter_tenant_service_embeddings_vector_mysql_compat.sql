@@ -0,0 +1,25 @@
+-- Compatible with MySQL versions that don't support ADD COLUMN IF NOT EXISTS.
+-- Adds the binary vector columns and makes the legacy JSON column optional.
+-- Existing rows keep working from the JSON column until they are backfilled
+-- (EMBEDDING_BACKFILL_ENABLED=true on one instance).
+SET @db := DATABASE();
+
+SET @sql := (
+  SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE tenant_service_embeddings ADD COLUMN embeddingVector MEDIUMBLOB NULL',
+    'SELECT 1')
+  FROM information_schema.columns
+  WHERE table_schema = @db AND table_name = 'tenant_service_embeddings' AND column_name = 'embeddingVector'
+);
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := (
+  SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE tenant_service_embeddings ADD COLUMN embeddingEncoding VARCHAR(16) NULL',
+    'SELECT 1')
+  FROM information_schema.columns
+  WHERE table_schema = @db AND table_name = 'tenant_service_embeddings' AND column_name = 'embeddingEncoding'
+);
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+ALTER TABLE tenant_service_embeddings MODIFY COLUMN embedding JSON NULL;
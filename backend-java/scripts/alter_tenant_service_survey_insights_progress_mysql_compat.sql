@@ -0,0 +1,21 @@
+-- Compatible with MySQL versions that don't support ADD COLUMN IF NOT EXISTS.
+-- Adds each column only if missing.
+SET @db := DATABASE();
+
+SET @sql := (
+  SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE tenant_service_survey_insights ADD COLUMN progress INT NULL',
+    'SELECT 1')
+  FROM information_schema.columns
+  WHERE table_schema = @db AND table_name = 'tenant_service_survey_insights' AND column_name = 'progress'
+);
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := (
+  SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE tenant_service_survey_insights ADD COLUMN stage VARCHAR(32) NULL',
+    'SELECT 1')
+  FROM information_schema.columns
+  WHERE table_schema = @db AND table_name = 'tenant_service_survey_insights' AND column_name = 'stage'
+);
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
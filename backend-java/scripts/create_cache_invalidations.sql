@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS cache_invalidations (
+  id BIGINT NOT NULL AUTO_INCREMENT,
+  region VARCHAR(64) NOT NULL,
+  scope VARCHAR(191) NULL,
+  createdAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (id),
+  KEY idx_cache_invalidations_created (createdAt)
+);
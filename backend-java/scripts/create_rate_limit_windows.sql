@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS rate_limit_windows (
+  bucketKey VARCHAR(191) NOT NULL,
+  windowStart BIGINT NOT NULL,
+  hits INT NOT NULL DEFAULT 0,
+  PRIMARY KEY (bucketKey, windowStart),
+  KEY idx_rate_limit_windows_start (windowStart)
+);
@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS runtime_response_cache (
+  cacheKey CHAR(64) NOT NULL,
+  tenantId VARCHAR(36) NOT NULL,
+  output MEDIUMTEXT NOT NULL,
+  tokensIn INT NOT NULL DEFAULT 0,
+  tokensOut INT NOT NULL DEFAULT 0,
+  expiresAt TIMESTAMP NOT NULL,
+  createdAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (cacheKey),
+  KEY idx_runtime_response_cache_tenant (tenantId),
+  KEY idx_runtime_response_cache_expires (expiresAt)
+);
@@ -0,0 +1,16 @@
+CREATE TABLE IF NOT EXISTS tenant_document_cache (
+  cacheKey CHAR(64) NOT NULL,
+  tenantId VARCHAR(36) NOT NULL,
+  kind VARCHAR(16) NOT NULL,
+  textContent MEDIUMTEXT NULL,
+  vectorData LONGBLOB NULL,
+  vectorCount INT NULL,
+  model VARCHAR(64) NULL,
+  sizeBytes BIGINT NOT NULL,
+  hits INT NOT NULL DEFAULT 0,
+  lastUsedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  createdAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (cacheKey),
+  KEY idx_tenant_document_cache_tenant (tenantId),
+  KEY idx_tenant_document_cache_last_used (lastUsedAt)
+);
@@ -6,7 +6,9 @@ CREATE TABLE IF NOT EXISTS tenant_service_embeddings (
   fileId VARCHAR(36) NULL,
   chunkIndex INT NOT NULL,
   chunkText TEXT NOT NULL,
-  embedding JSON NOT NULL,
+  embedding JSON NULL,
+  embeddingVector MEDIUMBLOB NULL,
+  embeddingEncoding VARCHAR(16) NULL,
   embeddingModel VARCHAR(64) NOT NULL,
   createdAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (id),
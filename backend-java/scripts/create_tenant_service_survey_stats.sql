@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS tenant_service_survey_stats (
+  surveyId varchar(36) NOT NULL,
+  questionId varchar(36) NOT NULL DEFAULT '',
+  metric varchar(16) NOT NULL,
+  bucket varchar(191) NOT NULL DEFAULT '',
+  tenantId varchar(36) NOT NULL,
+  count bigint NOT NULL DEFAULT 0,
+  sum double NULL,
+  minNumber double NULL,
+  maxNumber double NULL,
+  updatedAt timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (surveyId, questionId, metric, bucket),
+  KEY idx_survey_stats_tenant (tenantId)
+) ENGINE=InnoDB;
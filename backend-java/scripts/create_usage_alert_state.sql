@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS usage_alert_state (
+  tenantId VARCHAR(36) NOT NULL,
+  signature VARCHAR(255) NOT NULL,
+  lastSentAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (tenantId)
+);
@@ -0,0 +1,40 @@
+CREATE TABLE IF NOT EXISTS usage_daily (
+  tenantId VARCHAR(36) NOT NULL,
+  usageDate DATE NOT NULL,
+  tokens BIGINT NOT NULL DEFAULT 0,
+  costUsd DECIMAL(16,6) NOT NULL DEFAULT 0,
+  requests INT NOT NULL DEFAULT 0,
+  updatedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (tenantId, usageDate),
+  KEY idx_usage_daily_date (usageDate)
+);
+
+-- The per-tenant fallback and the seed scan usage_events by createdAt.
+SET @db := DATABASE();
+
+SET @sql := (
+  SELECT IF(COUNT(*) = 0,
+    'CREATE INDEX idx_usage_events_tenant_created ON usage_events (tenantId, createdAt)',
+    'SELECT 1')
+  FROM information_schema.statistics
+  WHERE table_schema = @db AND table_name = 'usage_events' AND index_name = 'idx_usage_events_tenant_created'
+);
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := (
+  SELECT IF(COUNT(*) = 0,
+    'CREATE INDEX idx_usage_events_created ON usage_events (createdAt)',
+    'SELECT 1')
+  FROM information_schema.statistics
+  WHERE table_schema = @db AND table_name = 'usage_events' AND index_name = 'idx_usage_events_created'
+);
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- One-off seed of the recent days from usage_events. usage_daily is only ever incremented after
+-- this, so run it before the first replica that writes deltas starts; INSERT IGNORE makes a
+-- re-run harmless.
+INSERT IGNORE INTO usage_daily (tenantId, usageDate, tokens, costUsd, requests)
+SELECT tenantId, DATE(createdAt), SUM(tokensIn + tokensOut), SUM(costUsd), COUNT(*)
+FROM usage_events
+WHERE createdAt >= CURDATE() - INTERVAL 7 DAY
+GROUP BY tenantId, DATE(createdAt);
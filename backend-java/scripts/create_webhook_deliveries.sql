@@ -0,0 +1,23 @@
+CREATE TABLE IF NOT EXISTS webhook_deliveries (
+  id VARCHAR(36) NOT NULL,
+  webhookId VARCHAR(36) NOT NULL,
+  tenantId VARCHAR(36) NULL,
+  eventType VARCHAR(128) NOT NULL,
+  payload MEDIUMTEXT NOT NULL,
+  status VARCHAR(16) NOT NULL DEFAULT 'pending',
+  attempts INT NOT NULL DEFAULT 0,
+  nextAttemptAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  claimToken VARCHAR(36) NULL,
+  lockedUntil TIMESTAMP(3) NULL,
+  lastStatusCode INT NULL,
+  lastError TEXT NULL,
+  latencyMs INT NULL,
+  createdAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  deliveredAt TIMESTAMP(3) NULL,
+  updatedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (id),
+  KEY idx_webhook_deliveries_due (status, nextAttemptAt),
+  KEY idx_webhook_deliveries_claim (claimToken),
+  KEY idx_webhook_deliveries_webhook (webhookId, createdAt),
+  KEY idx_webhook_deliveries_tenant (tenantId)
+);
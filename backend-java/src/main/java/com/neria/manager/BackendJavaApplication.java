@@ -8,6 +8,15 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @EnableScheduling
 public class BackendJavaApplication {
   public static void main(String[] args) {
+    // java.net.http reads its pool settings once, when the first HttpClient is created.
+    setDefault("jdk.httpclient.keepalive.timeout", "PROVIDER_HTTP_KEEPALIVE_SECONDS", "120");
+    setDefault("jdk.httpclient.connectionPoolSize", "PROVIDER_HTTP_POOL_SIZE", "0");
     SpringApplication.run(BackendJavaApplication.class, args);
   }
+
+  private static void setDefault(String property, String env, String fallback) {
+    if (System.getProperty(property) == null) {
+      System.setProperty(property, System.getenv().getOrDefault(env, fallback));
+    }
+  }
 }
@@ -2,14 +2,28 @@ package com.neria.manager.adapters;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.springframework.stereotype.Service;
 
+/**
+ * Routes invocations to the provider adapters. Adapters are stateless and share pooled HTTP clients
+ * through {@link ProviderHttpClients}, so one instance of each serves every request. Decrypted
+ * credentials are parsed per call and never held here; caching them is left to {@code ConfigCache}
+ * and its credential TTL.
+ */
 @Service
 public class AdaptersService {
   private final ObjectMapper objectMapper;
+  private final ProviderAdapter openAi;
+  private final ProviderAdapter azureOpenAi;
+  private final ProviderAdapter awsBedrock = new AwsBedrockAdapter();
+  private final ProviderAdapter googleVertex = new GoogleVertexAdapter();
+  private final ProviderAdapter mock = new MockAdapter();
 
-  public AdaptersService(ObjectMapper objectMapper) {
+  public AdaptersService(ObjectMapper objectMapper, ProviderHttpClients httpClients) {
     this.objectMapper = objectMapper;
+    this.openAi = new OpenAIAdapter(objectMapper, httpClients);
+    this.azureOpenAi = new AzureOpenAIAdapter(objectMapper, httpClients);
   }
 
   public ProviderInvocationResult invokeProvider(
@@ -20,14 +34,25 @@ public class AdaptersService {
     return adapter.invoke(credentials, model, payload);
   }
 
+  public ProviderInvocationResult invokeProviderStream(
+      String providerType,
+      String credentialsJson,
+      String model,
+      Map<String, Object> payload,
+      Consumer<String> onToken) {
+    String normalized = providerType == null ? "openai" : providerType.toLowerCase();
+    Map<String, Object> credentials = safeParse(credentialsJson);
+    ProviderAdapter adapter = resolveAdapter(normalized);
+    return adapter.invokeStream(credentials, model, payload, onToken);
+  }
+
   private ProviderAdapter resolveAdapter(String providerType) {
     return switch (providerType) {
-      case "azure", "azure_openai", "azure-openai" -> new AzureOpenAIAdapter(objectMapper);
-      case "aws", "bedrock", "aws-bedrock" -> new AwsBedrockAdapter();
-      case "google", "gcp", "vertex", "vertex-ai" -> new GoogleVertexAdapter();
-      case "mock" -> new MockAdapter();
-      case "openai" -> new OpenAIAdapter(objectMapper);
-      default -> new OpenAIAdapter(objectMapper);
+      case "azure", "azure_openai", "azure-openai" -> azureOpenAi;
+      case "aws", "bedrock", "aws-bedrock" -> awsBedrock;
+      case "google", "gcp", "vertex", "vertex-ai" -> googleVertex;
+      case "mock" -> mock;
+      default -> openAi;
     };
   }
 
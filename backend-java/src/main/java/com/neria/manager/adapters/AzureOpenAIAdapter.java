@@ -3,26 +3,92 @@ package com.neria.manager.adapters;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class AzureOpenAIAdapter implements ProviderAdapter {
-  private final HttpClient httpClient;
   private final ObjectMapper objectMapper;
+  private final ProviderHttpClients httpClients;
 
-  public AzureOpenAIAdapter(ObjectMapper objectMapper) {
+  public AzureOpenAIAdapter(ObjectMapper objectMapper, ProviderHttpClients httpClients) {
     this.objectMapper = objectMapper;
-    this.httpClient =
-        HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(20)).build();
+    this.httpClients = httpClients;
   }
 
   @Override
   public ProviderInvocationResult invoke(
       Map<String, Object> credentials, String model, Map<String, Object> payload) {
+    HttpRequest request = buildRequest(credentials, model, payload, false);
+
+    HttpResponse<String> response;
+    try {
+      response = httpClients.send(request, HttpResponse.BodyHandlers.ofString());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Azure OpenAI request failed", ex);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Azure OpenAI request failed", ex);
+    }
+
+    if (response.statusCode() < 200 || response.statusCode() >= 300) {
+      throw new IllegalStateException("Azure OpenAI error: " + response.statusCode() + " " + response.body());
+    }
+
+    Map<String, Object> parsed;
+    try {
+      parsed = objectMapper.readValue(response.body(), Map.class);
+    } catch (Exception ex) {
+      throw new IllegalStateException("Unable to parse Azure response", ex);
+    }
+
+    Map<String, Object> usage =
+        parsed.get("usage") instanceof Map ? (Map<String, Object>) parsed.get("usage") : Map.of();
+    int tokensIn = toInt(usage.get("prompt_tokens"));
+    int tokensOut = toInt(usage.get("completion_tokens"));
+
+    return new ProviderInvocationResult(parsed, tokensIn, tokensOut, 0d);
+  }
+
+  @Override
+  public ProviderInvocationResult invokeStream(
+      Map<String, Object> credentials,
+      String model,
+      Map<String, Object> payload,
+      Consumer<String> onToken) {
+    HttpRequest request = buildRequest(credentials, model, payload, true);
+
+    HttpResponse<Stream<String>> response;
+    try {
+      response = httpClients.send(request, HttpResponse.BodyHandlers.ofLines());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Azure OpenAI request failed", ex);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Azure OpenAI request failed", ex);
+    }
+
+    try (Stream<String> lines = response.body()) {
+      if (response.statusCode() < 200 || response.statusCode() >= 300) {
+        throw new IllegalStateException(
+            "Azure OpenAI error: "
+                + response.statusCode()
+                + " "
+                + lines.collect(Collectors.joining("\n")));
+      }
+      ChatCompletionStream stream = new ChatCompletionStream(objectMapper, onToken);
+      lines.forEach(stream::accept);
+      return stream.toResult();
+    }
+  }
+
+  private HttpRequest buildRequest(
+      Map<String, Object> credentials, String model, Map<String, Object> payload, boolean stream) {
     String endpoint = String.valueOf(credentials.getOrDefault("endpoint", ""));
     String apiKey = String.valueOf(credentials.getOrDefault("apiKey", ""));
     String deployment = String.valueOf(credentials.getOrDefault("deployment", model));
@@ -38,6 +104,10 @@ public class AzureOpenAIAdapter implements ProviderAdapter {
     if (payload != null) {
       body.putAll(payload);
     }
+    if (stream) {
+      body.put("stream", true);
+      body.put("stream_options", Map.of("include_usage", true));
+    }
 
     String json;
     try {
@@ -49,40 +119,14 @@ public class AzureOpenAIAdapter implements ProviderAdapter {
     String url =
         endpoint + "/openai/deployments/" + deployment + "/chat/completions?api-version=" + apiVersion;
 
-    HttpRequest request =
-        HttpRequest.newBuilder()
-            .uri(URI.create(url))
-            .timeout(Duration.ofSeconds(60))
-            .header("api-key", apiKey)
-            .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofString(json))
-            .build();
-
-    HttpResponse<String> response;
-    try {
-      response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-    } catch (IOException | InterruptedException ex) {
-      Thread.currentThread().interrupt();
-      throw new IllegalStateException("Azure OpenAI request failed", ex);
-    }
-
-    if (response.statusCode() < 200 || response.statusCode() >= 300) {
-      throw new IllegalStateException("Azure OpenAI error: " + response.statusCode() + " " + response.body());
-    }
-
-    Map<String, Object> parsed;
-    try {
-      parsed = objectMapper.readValue(response.body(), Map.class);
-    } catch (Exception ex) {
-      throw new IllegalStateException("Unable to parse Azure response", ex);
-    }
-
-    Map<String, Object> usage =
-        parsed.get("usage") instanceof Map ? (Map<String, Object>) parsed.get("usage") : Map.of();
-    int tokensIn = toInt(usage.get("prompt_tokens"));
-    int tokensOut = toInt(usage.get("completion_tokens"));
-
-    return new ProviderInvocationResult(parsed, tokensIn, tokensOut, 0d);
+    return HttpRequest.newBuilder()
+        .uri(URI.create(url))
+        .timeout(Duration.ofSeconds(60))
+        .header("api-key", apiKey)
+        .header("Content-Type", "application/json")
+        .header("Accept", stream ? "text/event-stream" : "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(json))
+        .build();
   }
 
   private int toInt(Object value) {
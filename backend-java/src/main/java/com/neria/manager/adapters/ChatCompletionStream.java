@@ -0,0 +1,109 @@
+package com.neria.manager.adapters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Accumulates an OpenAI-compatible chat completion SSE stream ({@code stream: true}).
+ *
+ * <p>Each {@code data:} line is parsed as it arrives, content deltas are forwarded to the token
+ * callback and the final usage chunk (sent when {@code stream_options.include_usage} is set) is
+ * kept so the result can be billed like a non-streaming call.
+ */
+class ChatCompletionStream {
+  private final ObjectMapper objectMapper;
+  private final Consumer<String> onToken;
+  private final StringBuilder content = new StringBuilder();
+  private String id;
+  private String model;
+  private String finishReason;
+  private Map<String, Object> usage = Map.of();
+  private boolean done;
+
+  ChatCompletionStream(ObjectMapper objectMapper, Consumer<String> onToken) {
+    this.objectMapper = objectMapper;
+    this.onToken = onToken;
+  }
+
+  void accept(String line) {
+    if (done || line == null || !line.startsWith("data:")) {
+      return;
+    }
+    String data = line.substring("data:".length()).trim();
+    if (data.isEmpty()) {
+      return;
+    }
+    if ("[DONE]".equals(data)) {
+      done = true;
+      return;
+    }
+    Map<String, Object> chunk;
+    try {
+      chunk = objectMapper.readValue(data, Map.class);
+    } catch (Exception ex) {
+      throw new IllegalStateException("Unable to parse stream chunk", ex);
+    }
+    if (id == null && chunk.get("id") != null) {
+      id = String.valueOf(chunk.get("id"));
+    }
+    if (model == null && chunk.get("model") != null) {
+      model = String.valueOf(chunk.get("model"));
+    }
+    if (chunk.get("usage") instanceof Map<?, ?> usageMap) {
+      usage = (Map<String, Object>) usageMap;
+    }
+    if (!(chunk.get("choices") instanceof List<?> choices) || choices.isEmpty()) {
+      return;
+    }
+    if (!(choices.get(0) instanceof Map<?, ?> choice)) {
+      return;
+    }
+    if (choice.get("finish_reason") != null) {
+      finishReason = String.valueOf(choice.get("finish_reason"));
+    }
+    if (choice.get("delta") instanceof Map<?, ?> delta && delta.get("content") != null) {
+      String token = String.valueOf(delta.get("content"));
+      if (!token.isEmpty()) {
+        content.append(token);
+        if (onToken != null) {
+          onToken.accept(token);
+        }
+      }
+    }
+  }
+
+  ProviderInvocationResult toResult() {
+    Map<String, Object> message = new HashMap<>();
+    message.put("role", "assistant");
+    message.put("content", content.toString());
+    Map<String, Object> choice = new HashMap<>();
+    choice.put("index", 0);
+    choice.put("message", message);
+    choice.put("finish_reason", finishReason);
+    Map<String, Object> output = new HashMap<>();
+    output.put("id", id);
+    output.put("object", "chat.completion");
+    output.put("model", model);
+    output.put("choices", List.of(choice));
+    output.put("usage", usage);
+    return new ProviderInvocationResult(
+        output, toInt(usage.get("prompt_tokens")), toInt(usage.get("completion_tokens")), 0d);
+  }
+
+  private int toInt(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).intValue();
+    }
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(String.valueOf(value));
+    } catch (NumberFormatException ex) {
+      return 0;
+    }
+  }
+}
@@ -3,60 +3,37 @@ package com.neria.manager.adapters;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class OpenAIAdapter implements ProviderAdapter {
-  private final HttpClient httpClient;
   private final ObjectMapper objectMapper;
+  private final ProviderHttpClients httpClients;
 
-  public OpenAIAdapter(ObjectMapper objectMapper) {
+  public OpenAIAdapter(ObjectMapper objectMapper, ProviderHttpClients httpClients) {
     this.objectMapper = objectMapper;
-    this.httpClient =
-        HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(20)).build();
+    this.httpClients = httpClients;
   }
 
   @Override
   public ProviderInvocationResult invoke(
       Map<String, Object> credentials, String model, Map<String, Object> payload) {
-    String apiKey = String.valueOf(credentials.getOrDefault("apiKey", ""));
-    String baseUrl = String.valueOf(credentials.getOrDefault("baseUrl", "https://api.openai.com"));
-    if (apiKey == null || apiKey.isBlank()) {
-      throw new IllegalArgumentException("Missing OpenAI apiKey");
-    }
-
-    Map<String, Object> body = new HashMap<>();
-    body.put("model", model);
-    if (payload != null) {
-      body.putAll(payload);
-    }
-
-    String json;
-    try {
-      json = objectMapper.writeValueAsString(body);
-    } catch (Exception ex) {
-      throw new IllegalArgumentException("Invalid payload JSON");
-    }
-
-    HttpRequest request =
-        HttpRequest.newBuilder()
-            .uri(URI.create(baseUrl + "/v1/chat/completions"))
-            .timeout(Duration.ofSeconds(60))
-            .header("Authorization", "Bearer " + apiKey)
-            .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofString(json))
-            .build();
+    HttpRequest request = buildRequest(credentials, model, payload, false);
 
     HttpResponse<String> response;
     try {
-      response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-    } catch (IOException | InterruptedException ex) {
+      response = httpClients.send(request, HttpResponse.BodyHandlers.ofString());
+    } catch (InterruptedException ex) {
       Thread.currentThread().interrupt();
       throw new IllegalStateException("OpenAI request failed", ex);
+    } catch (IOException ex) {
+      throw new IllegalStateException("OpenAI request failed", ex);
     }
 
     if (response.statusCode() < 200 || response.statusCode() >= 300) {
@@ -78,6 +55,70 @@ public class OpenAIAdapter implements ProviderAdapter {
     return new ProviderInvocationResult(parsed, tokensIn, tokensOut, 0d);
   }
 
+  @Override
+  public ProviderInvocationResult invokeStream(
+      Map<String, Object> credentials,
+      String model,
+      Map<String, Object> payload,
+      Consumer<String> onToken) {
+    HttpRequest request = buildRequest(credentials, model, payload, true);
+
+    HttpResponse<Stream<String>> response;
+    try {
+      response = httpClients.send(request, HttpResponse.BodyHandlers.ofLines());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("OpenAI request failed", ex);
+    } catch (IOException ex) {
+      throw new IllegalStateException("OpenAI request failed", ex);
+    }
+
+    try (Stream<String> lines = response.body()) {
+      if (response.statusCode() < 200 || response.statusCode() >= 300) {
+        throw new IllegalStateException(
+            "OpenAI error: " + response.statusCode() + " " + lines.collect(Collectors.joining("\n")));
+      }
+      ChatCompletionStream stream = new ChatCompletionStream(objectMapper, onToken);
+      lines.forEach(stream::accept);
+      return stream.toResult();
+    }
+  }
+
+  private HttpRequest buildRequest(
+      Map<String, Object> credentials, String model, Map<String, Object> payload, boolean stream) {
+    String apiKey = String.valueOf(credentials.getOrDefault("apiKey", ""));
+    String baseUrl = String.valueOf(credentials.getOrDefault("baseUrl", "https://api.openai.com"));
+    if (apiKey == null || apiKey.isBlank()) {
+      throw new IllegalArgumentException("Missing OpenAI apiKey");
+    }
+
+    Map<String, Object> body = new HashMap<>();
+    body.put("model", model);
+    if (payload != null) {
+      body.putAll(payload);
+    }
+    if (stream) {
+      body.put("stream", true);
+      body.put("stream_options", Map.of("include_usage", true));
+    }
+
+    String json;
+    try {
+      json = objectMapper.writeValueAsString(body);
+    } catch (Exception ex) {
+      throw new IllegalArgumentException("Invalid payload JSON");
+    }
+
+    return HttpRequest.newBuilder()
+        .uri(URI.create(baseUrl + "/v1/chat/completions"))
+        .timeout(Duration.ofSeconds(60))
+        .header("Authorization", "Bearer " + apiKey)
+        .header("Content-Type", "application/json")
+        .header("Accept", stream ? "text/event-stream" : "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(json))
+        .build();
+  }
+
   private int toInt(Object value) {
     if (value instanceof Number) {
       return ((Number) value).intValue();
@@ -1,7 +1,30 @@
 package com.neria.manager.adapters;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface ProviderAdapter {
   ProviderInvocationResult invoke(Map<String, Object> credentials, String model, Map<String, Object> payload);
+
+  /**
+   * Streams the completion, handing each content delta to {@code onToken} as it arrives. Adapters
+   * without native streaming fall back to a blocking call and emit the whole answer at once.
+   */
+  default ProviderInvocationResult invokeStream(
+      Map<String, Object> credentials,
+      String model,
+      Map<String, Object> payload,
+      Consumer<String> onToken) {
+    ProviderInvocationResult result = invoke(credentials, model, payload);
+    if (onToken != null && result.getOutput() instanceof Map<?, ?> output
+        && output.get("choices") instanceof List<?> choices
+        && !choices.isEmpty()
+        && choices.get(0) instanceof Map<?, ?> choice
+        && choice.get("message") instanceof Map<?, ?> message
+        && message.get("content") != null) {
+      onToken.accept(String.valueOf(message.get("content")));
+    }
+    return result;
+  }
 }
@@ -0,0 +1,115 @@
+package com.neria.manager.adapters;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Long-lived {@link HttpClient}s for LLM and embeddings providers, one per origin
+ * ({@code scheme://host:port}) so every request to the same endpoint shares the client's keep-alive
+ * pool and HTTP/2 connections. All clients run on one bounded executor instead of the JDK default
+ * cached pool.
+ *
+ * <p>Requests are timed per origin as {@code provider.http.requests} with the in-flight count as
+ * {@code provider.http.in_flight}; the shared executor is bound to the standard
+ * {@code executor.*} meters as {@code provider-http}.
+ */
+@Component
+public class ProviderHttpClients {
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(20);
+
+  private final MeterRegistry meterRegistry;
+  private final ExecutorService executor;
+  private final Map<String, Origin> origins = new ConcurrentHashMap<>();
+
+  public ProviderHttpClients(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    int threads =
+        Math.max(
+            2,
+            Integer.parseInt(
+                System.getenv().getOrDefault("PROVIDER_HTTP_EXECUTOR_THREADS", "16")));
+    AtomicInteger sequence = new AtomicInteger();
+    ExecutorService pool =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread = new Thread(runnable, "provider-http-" + sequence.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "provider-http");
+  }
+
+  /** Sends {@code request} on the shared client for its origin. */
+  public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+      throws IOException, InterruptedException {
+    Origin origin = origin(request.uri());
+    origin.inFlight.incrementAndGet();
+    long started = System.nanoTime();
+    try {
+      return origin.client.send(request, handler);
+    } finally {
+      origin.requests.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      origin.inFlight.decrementAndGet();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private Origin origin(URI uri) {
+    return origins.computeIfAbsent(originKey(uri), this::createOrigin);
+  }
+
+  private Origin createOrigin(String key) {
+    Origin origin =
+        new Origin(
+            HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(executor)
+                .build(),
+            Timer.builder("provider.http.requests").tag("origin", key).register(meterRegistry));
+    Gauge.builder("provider.http.in_flight", origin.inFlight, AtomicInteger::get)
+        .tag("origin", key)
+        .register(meterRegistry);
+    return origin;
+  }
+
+  private static String originKey(URI uri) {
+    String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "https";
+    String host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : "";
+    int port = uri.getPort() > 0 ? uri.getPort() : "http".equals(scheme) ? 80 : 443;
+    return scheme + "://" + host + ":" + port;
+  }
+
+  private static final class Origin {
+    private final HttpClient client;
+    private final Timer requests;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    Origin(HttpClient client, Timer requests) {
+      this.client = client;
+      this.requests = requests;
+    }
+  }
+}
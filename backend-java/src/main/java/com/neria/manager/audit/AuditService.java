@@ -2,6 +2,7 @@ package com.neria.manager.audit;
 
 import com.neria.manager.common.entities.AuditEvent;
 import com.neria.manager.common.repos.AuditEventRepository;
+import com.neria.manager.common.services.AsyncEventWriter;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -10,9 +11,11 @@ import org.springframework.stereotype.Service;
 @Service
 public class AuditService {
   private final AuditEventRepository auditRepository;
+  private final AsyncEventWriter eventWriter;
 
-  public AuditService(AuditEventRepository auditRepository) {
+  public AuditService(AuditEventRepository auditRepository, AsyncEventWriter eventWriter) {
     this.auditRepository = auditRepository;
+    this.eventWriter = eventWriter;
   }
 
   public AuditEvent record(AuditEvent event) {
@@ -25,7 +28,8 @@ public class AuditService {
     if (event.getMetadata() == null) {
       event.setMetadata("{}");
     }
-    return auditRepository.save(event);
+    eventWriter.write(event);
+    return event;
   }
 
   public List<AuditEvent> list(int limit, String tenantId) {
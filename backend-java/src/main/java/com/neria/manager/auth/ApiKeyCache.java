@@ -0,0 +1,205 @@
+package com.neria.manager.auth;
+
+import com.neria.manager.common.security.AuthContext;
+import com.neria.manager.common.services.CacheInvalidationBus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded LRU of resolved API keys so scrypt and the key lookups only run on a miss.
+ *
+ * <p>Entries are keyed by an HMAC-SHA256 of the raw key under a per-process random secret, so the
+ * plain key is never held in memory after the request. Successful validations only; invalid keys
+ * are never cached. Invalidations go through {@link CacheInvalidationBus}, so a revoked or rotated
+ * key stops working on every replica within one bus poll rather than after the TTL.
+ */
+@Component
+public class ApiKeyCache {
+  public static final String REGION = "api_keys";
+
+  private static final String KEY_SCOPE = "key:";
+  private static final String SERVICE_SCOPE = "service:";
+  private static final String TENANT_SCOPE = "tenant:";
+
+  private static class CacheEntry {
+    final AuthContext context;
+    final long expiresAt;
+
+    CacheEntry(AuthContext context, long expiresAt) {
+      this.context = context;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final CacheInvalidationBus invalidationBus;
+  private final SecretKeySpec digestKey;
+  private final long ttlSeconds;
+  private final int maxEntries;
+  private final Map<String, CacheEntry> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong generation = new AtomicLong();
+
+  public ApiKeyCache(MeterRegistry meterRegistry, CacheInvalidationBus invalidationBus) {
+    this.invalidationBus = invalidationBus;
+    byte[] secret = new byte[32];
+    new SecureRandom().nextBytes(secret);
+    this.digestKey = new SecretKeySpec(secret, "HmacSHA256");
+    this.ttlSeconds = Long.parseLong(System.getenv().getOrDefault("API_KEY_CACHE_TTL", "300"));
+    this.maxEntries =
+        Integer.parseInt(System.getenv().getOrDefault("API_KEY_CACHE_MAX_ENTRIES", "10000"));
+    this.entries =
+        new LinkedHashMap<>(256, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > maxEntries;
+          }
+        };
+
+    FunctionCounter.builder("auth.api_key_cache.requests", hits, AtomicLong::get)
+        .tag("result", "hit")
+        .register(meterRegistry);
+    FunctionCounter.builder("auth.api_key_cache.requests", misses, AtomicLong::get)
+        .tag("result", "miss")
+        .register(meterRegistry);
+    Gauge.builder("auth.api_key_cache.size", this, ApiKeyCache::size).register(meterRegistry);
+    invalidationBus.subscribe(this::evict);
+  }
+
+  public AuthContext get(String apiKey) {
+    if (ttlSeconds <= 0) {
+      misses.incrementAndGet();
+      return null;
+    }
+    String digest = digest(apiKey);
+    synchronized (entries) {
+      CacheEntry cached = entries.get(digest);
+      if (cached != null && cached.expiresAt > now()) {
+        hits.incrementAndGet();
+        return cached.context;
+      }
+      if (cached != null) {
+        entries.remove(digest);
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /** Token to pass back to {@link #put} so a lookup racing an invalidation is not cached. */
+  public long generation() {
+    return generation.get();
+  }
+
+  public void put(String apiKey, AuthContext context, long lookupGeneration) {
+    if (ttlSeconds <= 0 || context == null) {
+      return;
+    }
+    String digest = digest(apiKey);
+    synchronized (entries) {
+      if (generation.get() != lookupGeneration) {
+        return;
+      }
+      entries.put(digest, new CacheEntry(context, now() + ttlSeconds * 1000L));
+    }
+  }
+
+  public void invalidateApiKey(String apiKeyId) {
+    if (apiKeyId == null) {
+      return;
+    }
+    invalidationBus.publish(REGION, KEY_SCOPE + apiKeyId);
+  }
+
+  public void invalidateService(String tenantId, String serviceCode) {
+    if (tenantId == null || serviceCode == null) {
+      return;
+    }
+    invalidationBus.publish(REGION, SERVICE_SCOPE + tenantId + "|" + serviceCode);
+  }
+
+  public void invalidateTenant(String tenantId) {
+    if (tenantId == null) {
+      return;
+    }
+    invalidationBus.publish(REGION, TENANT_SCOPE + tenantId);
+  }
+
+  public void clear() {
+    invalidationBus.publish(REGION, null);
+  }
+
+  public Map<String, Object> stats() {
+    return Map.of("size", size(), "hits", hits.get(), "misses", misses.get());
+  }
+
+  private void evict(String region, String scope, long version) {
+    if (CacheInvalidationBus.ALL_REGIONS.equals(region)) {
+      // ConfigCache scopes tenant-wide invalidations by the bare tenant id.
+      invalidate(scope == null ? context -> true : tenantMatcher(scope));
+      return;
+    }
+    if (!REGION.equals(region)) {
+      return;
+    }
+    if (scope == null) {
+      invalidate(context -> true);
+    } else if (scope.startsWith(KEY_SCOPE)) {
+      String apiKeyId = scope.substring(KEY_SCOPE.length());
+      invalidate(context -> apiKeyId.equals(context.getApiKeyId()));
+    } else if (scope.startsWith(SERVICE_SCOPE)) {
+      String[] parts = scope.substring(SERVICE_SCOPE.length()).split("\\|", 2);
+      String serviceCode = parts.length > 1 ? parts[1] : "";
+      invalidate(
+          context ->
+              parts[0].equals(context.getTenantId())
+                  && serviceCode.equalsIgnoreCase(context.getServiceCode()));
+    } else if (scope.startsWith(TENANT_SCOPE)) {
+      invalidate(tenantMatcher(scope.substring(TENANT_SCOPE.length())));
+    }
+  }
+
+  private static Predicate<AuthContext> tenantMatcher(String tenantId) {
+    return context -> tenantId.equals(context.getTenantId());
+  }
+
+  private void invalidate(Predicate<AuthContext> matcher) {
+    synchronized (entries) {
+      generation.incrementAndGet();
+      entries.values().removeIf(entry -> matcher.test(entry.context));
+    }
+  }
+
+  private int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private String digest(String apiKey) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(digestKey);
+      byte[] out = mac.doFinal(apiKey.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().withoutPadding().encodeToString(out);
+    } catch (Exception ex) {
+      throw new IllegalStateException("Unable to digest api key", ex);
+    }
+  }
+
+  private long now() {
+    return Instant.now().toEpochMilli();
+  }
+}
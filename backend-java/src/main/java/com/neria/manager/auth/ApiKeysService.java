@@ -16,12 +16,17 @@ import org.springframework.stereotype.Service;
 public class ApiKeysService {
   private final ApiKeyRepository apiKeyRepository;
   private final ScryptHasher hasher;
+  private final ApiKeyCache apiKeyCache;
   private final String salt;
 
   public ApiKeysService(
-      ApiKeyRepository apiKeyRepository, ScryptHasher hasher, AppProperties properties) {
+      ApiKeyRepository apiKeyRepository,
+      ScryptHasher hasher,
+      ApiKeyCache apiKeyCache,
+      AppProperties properties) {
     this.apiKeyRepository = apiKeyRepository;
     this.hasher = hasher;
+    this.apiKeyCache = apiKeyCache;
     this.salt = Optional.ofNullable(properties.getSecurity().getApiKeySalt()).orElse("");
     if (this.salt.length() < 16) {
       throw new IllegalStateException("API_KEY_SALT must be at least 16 characters");
@@ -54,7 +59,9 @@ public class ApiKeysService {
       return null;
     }
     record.setStatus("revoked");
-    return apiKeyRepository.save(record);
+    ApiKey saved = apiKeyRepository.save(record);
+    apiKeyCache.invalidateApiKey(id);
+    return saved;
   }
 
   public ApiKeyCreateResult rotate(String id) {
@@ -66,6 +73,7 @@ public class ApiKeysService {
     record.setHashedKey(hasher.hash(plainKey, salt));
     record.setStatus("active");
     apiKeyRepository.save(record);
+    apiKeyCache.invalidateApiKey(id);
     return new ApiKeyCreateResult(record.getId(), record.getName(), record.getTenantId(), plainKey);
   }
 
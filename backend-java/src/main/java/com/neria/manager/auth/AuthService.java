@@ -15,16 +15,19 @@ public class AuthService {
   private final ApiKeysService apiKeysService;
   private final TenantServiceApiKeysService tenantServiceApiKeysService;
   private final AppProperties properties;
+  private final ApiKeyCache apiKeyCache;
 
   public AuthService(
       JwtService jwtService,
       ApiKeysService apiKeysService,
       TenantServiceApiKeysService tenantServiceApiKeysService,
-      AppProperties properties) {
+      AppProperties properties,
+      ApiKeyCache apiKeyCache) {
     this.jwtService = jwtService;
     this.apiKeysService = apiKeysService;
     this.tenantServiceApiKeysService = tenantServiceApiKeysService;
     this.properties = properties;
+    this.apiKeyCache = apiKeyCache;
   }
 
   public TokenResult issueToken(String clientId, String clientSecret) {
@@ -64,6 +67,17 @@ public class AuthService {
   }
 
   public AuthContext validateApiKey(String apiKey) {
+    AuthContext cached = apiKeyCache.get(apiKey);
+    if (cached != null) {
+      return cached;
+    }
+    long generation = apiKeyCache.generation();
+    AuthContext context = resolveApiKey(apiKey);
+    apiKeyCache.put(apiKey, context, generation);
+    return context;
+  }
+
+  private AuthContext resolveApiKey(String apiKey) {
     var serviceKey = tenantServiceApiKeysService.validate(apiKey);
     if (serviceKey != null) {
       return AuthContext.builder()
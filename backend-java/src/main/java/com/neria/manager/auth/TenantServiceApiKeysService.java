@@ -22,16 +22,19 @@ public class TenantServiceApiKeysService {
   private final TenantServiceApiKeyRepository repository;
   private final ScryptHasher hasher;
   private final EncryptionService encryptionService;
+  private final ApiKeyCache apiKeyCache;
   private final String salt;
 
   public TenantServiceApiKeysService(
       TenantServiceApiKeyRepository repository,
       ScryptHasher hasher,
       EncryptionService encryptionService,
+      ApiKeyCache apiKeyCache,
       AppProperties properties) {
     this.repository = repository;
     this.hasher = hasher;
     this.encryptionService = encryptionService;
+    this.apiKeyCache = apiKeyCache;
     this.salt =
         Optional.ofNullable(properties.getSecurity().getApiKeySalt()).orElse("");
     if (this.salt.length() < 16) {
@@ -124,6 +127,7 @@ public class TenantServiceApiKeysService {
       return;
     }
     repository.deleteByTenantIdAndServiceCode(tenantId, normalized);
+    apiKeyCache.invalidateService(tenantId, normalized);
   }
 
   private String generateKey() {
@@ -9,12 +9,14 @@ import com.neria.manager.jira.JiraIssuesService;
 import com.neria.manager.storage.StorageUploadService;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -351,39 +353,46 @@ public class ChatController {
     AuthContext auth = AuthUtils.requireAuth(request);
     String apiKeyId = auth.getApiKeyId();
 
+    Map<String, String> forwardHeaders = extractForwardHeaders(request);
+
     SseEmitter emitter = new SseEmitter(0L);
     streamExecutor.execute(
         () -> {
+          AtomicBoolean anyDelta = new AtomicBoolean(false);
           try {
             ChatService.AddMessageResult result =
-                chatService.addMessageForStreaming(tenantId, userId, apiKeyId, id, dto, extractForwardHeaders(request));
+                chatService.addMessageForStreaming(
+                    tenantId,
+                    userId,
+                    apiKeyId,
+                    id,
+                    dto,
+                    forwardHeaders,
+                    delta -> {
+                      anyDelta.set(true);
+                      sendDelta(emitter, delta, id);
+                    });
+            if (!result.streamed) {
+              String content =
+                  result.message != null && result.message.getContent() != null
+                      ? result.message.getContent()
+                      : "";
+              if ((content == null || content.isBlank()) && result.output instanceof Map<?, ?> map) {
+                Object handoff = map.get("handoff");
+                if (handoff instanceof Boolean && (Boolean) handoff) {
+                  content = "Tu mensaje ha sido enviado a un agente humano. Te responderán en breve.";
+                }
+              }
+              if (content != null && !content.isBlank()) {
+                sendDelta(emitter, content, result.conversationId);
+              }
+            }
             if (isEndpointDebugEnabled() && result.endpointDebug != null) {
               emitter.send(
                   SseEmitter.event()
                       .name("debug")
                       .data(Map.of("debug", Map.of("endpoints", result.endpointDebug))));
             }
-            String content =
-                result.message != null && result.message.getContent() != null
-                    ? result.message.getContent()
-                    : "";
-            if ((content == null || content.isBlank()) && result.output instanceof Map<?, ?> map) {
-              Object handoff = map.get("handoff");
-              if (handoff instanceof Boolean && (Boolean) handoff) {
-                content = "Tu mensaje ha sido enviado a un agente humano. Te responderán en breve.";
-              }
-            }
-            List<String> chunks = splitChunks(content);
-            for (String chunk : chunks) {
-              emitter.send(
-                  SseEmitter.event()
-                      .name("delta")
-                      .data(
-                          Map.of(
-                              "delta", chunk,
-                              "conversationId", result.conversationId)));
-              Thread.sleep(15);
-            }
             emitter.send(
                 SseEmitter.event()
                     .name("done")
@@ -392,17 +401,13 @@ public class ChatController {
           } catch (Exception ex) {
             log.error("Chat stream error for conversation {}: {}", id, ex.getMessage());
             try {
-              String fallback =
-                  isEndpointDebugEnabled() && ex.getMessage() != null
-                      ? "Error al generar respuesta: " + ex.getMessage()
-                      : "Lo siento, no he podido generar una respuesta en este momento.";
-              emitter.send(
-                  SseEmitter.event()
-                      .name("delta")
-                      .data(
-                          Map.of(
-                              "delta", fallback,
-                              "conversationId", id)));
+              if (!anyDelta.get()) {
+                String fallback =
+                    isEndpointDebugEnabled() && ex.getMessage() != null
+                        ? "Error al generar respuesta: " + ex.getMessage()
+                        : "Lo siento, no he podido generar una respuesta en este momento.";
+                sendDelta(emitter, fallback, id);
+              }
               emitter.send(
                   SseEmitter.event()
                       .name("done")
@@ -416,16 +421,16 @@ public class ChatController {
     return emitter;
   }
 
-  private List<String> splitChunks(String content) {
-    List<String> chunks = new ArrayList<>();
-    if (content == null || content.isBlank()) {
-      return chunks;
-    }
-    int size = 24;
-    for (int i = 0; i < content.length(); i += size) {
-      chunks.add(content.substring(i, Math.min(content.length(), i + size)));
+  private void sendDelta(SseEmitter emitter, String delta, String conversationId) {
+    try {
+      emitter.send(
+          SseEmitter.event()
+              .name("delta")
+              .data(Map.of("delta", delta, "conversationId", conversationId)));
+    } catch (IOException ex) {
+      // Client went away: abort the provider stream instead of generating tokens nobody reads.
+      throw new UncheckedIOException(ex);
     }
-    return chunks;
   }
 
   private Map<String, Object> buildUploadResponse(
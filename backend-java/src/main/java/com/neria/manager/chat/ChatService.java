@@ -28,6 +28,10 @@ import java.util.Locale;
 import java.util.UUID;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +45,8 @@ import org.springframework.web.server.ResponseStatusException;
 @Service
 public class ChatService {
   private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+  private static final Duration ENDPOINT_TIMEOUT = Duration.ofSeconds(15);
+  private static final int MAX_ENDPOINT_RECORDS = 5000;
   private final ChatConversationRepository conversationsRepository;
   private final ChatMessageRepository messagesRepository;
   private final ChatUserRepository usersRepository;
@@ -50,6 +56,9 @@ public class ChatService {
   private final DocumentProcessingService documentProcessingService;
   private final ObjectMapper objectMapper;
   private final HttpClient httpClient;
+  private final EndpointResponseCache endpointResponseCache;
+  private final long endpointBudgetMs;
+  private final int endpointPageConcurrency;
 
   public ChatService(
       ChatConversationRepository conversationsRepository,
@@ -59,7 +68,8 @@ public class ChatService {
       ChatAuthService chatAuthService,
       TenantServicesService tenantServicesService,
       DocumentProcessingService documentProcessingService,
-      ObjectMapper objectMapper) {
+      ObjectMapper objectMapper,
+      EndpointResponseCache endpointResponseCache) {
     this.conversationsRepository = conversationsRepository;
     this.messagesRepository = messagesRepository;
     this.usersRepository = usersRepository;
@@ -69,6 +79,14 @@ public class ChatService {
     this.documentProcessingService = documentProcessingService;
     this.objectMapper = objectMapper;
     this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    this.endpointResponseCache = endpointResponseCache;
+    this.endpointBudgetMs =
+        Long.parseLong(System.getenv().getOrDefault("CHAT_ENDPOINT_BUDGET_MS", "20000"));
+    this.endpointPageConcurrency =
+        Math.max(
+            1,
+            Integer.parseInt(
+                System.getenv().getOrDefault("CHAT_ENDPOINT_PAGE_CONCURRENCY", "6")));
   }
 
   public List<ChatConversation> listConversations(String tenantId, String userId, String serviceCode) {
@@ -181,7 +199,8 @@ public class ChatService {
       String apiKeyId,
       String conversationId,
       CreateMessageRequest dto,
-      Map<String, String> forwardHeaders) {
+      Map<String, String> forwardHeaders,
+      Consumer<String> onDelta) {
     ChatConversation conversation = getConversationForUser(tenantId, userId, conversationId);
     var access = tenantServicesService.requireServiceAccess(tenantId, conversation.getServiceCode(), userId);
 
@@ -399,7 +418,10 @@ public class ChatService {
     runtimeRequest.model = conversation.getModel();
     runtimeRequest.payload = Map.of("messages", payloadMessages);
     runtimeRequest.serviceCode = conversation.getServiceCode();
-    var runtimeResponse = runtimeService.execute(tenantId, runtimeRequest);
+    var runtimeResponse =
+        onDelta != null
+            ? runtimeService.executeStream(tenantId, apiKeyId, runtimeRequest, onDelta)
+            : runtimeService.execute(tenantId, apiKeyId, runtimeRequest);
 
     Object output = runtimeResponse.get("output");
     String assistantContent = extractAssistantContent(output);
@@ -410,6 +432,9 @@ public class ChatService {
         && conversation.getServiceCode() != null
         && conversation.getServiceCode().equalsIgnoreCase("chat-sql")) {
       assistantContent = assistantContent + "\n\n[[PRODUCT_RESULT]]";
+      if (onDelta != null) {
+        onDelta.accept("\n\n[[PRODUCT_RESULT]]");
+      }
     }
     int tokensIn = extractTokens(output, "prompt_tokens", "input_tokens");
     int tokensOut = extractTokens(output, "completion_tokens", "output_tokens");
@@ -437,6 +462,7 @@ public class ChatService {
     result.message = assistantMessage;
     result.output = output;
     result.endpointDebug = endpointContext.debug;
+    result.streamed = onDelta != null;
     return result;
   }
 
@@ -447,7 +473,8 @@ public class ChatService {
       String conversationId,
       CreateMessageRequest dto,
       Map<String, String> forwardHeaders) {
-    AddMessageResult result = addMessageInternal(tenantId, userId, apiKeyId, conversationId, dto, forwardHeaders);
+    AddMessageResult result =
+        addMessageInternal(tenantId, userId, apiKeyId, conversationId, dto, forwardHeaders, null);
     if (isEndpointDebugEnabled()) {
       return Map.of(
           "conversationId", result.conversationId,
@@ -461,14 +488,21 @@ public class ChatService {
         "output", result.output);
   }
 
+  /**
+   * Streams the assistant answer: provider deltas are passed to {@code onDelta} while the call is
+   * in flight. Replies that never reach the provider (handoff, out-of-scope refusals) are returned
+   * with {@code streamed = false} so the caller can send them in one piece.
+   */
   public AddMessageResult addMessageForStreaming(
       String tenantId,
       String userId,
       String apiKeyId,
       String conversationId,
       CreateMessageRequest dto,
-      Map<String, String> forwardHeaders) {
-    return addMessageInternal(tenantId, userId, apiKeyId, conversationId, dto, forwardHeaders);
+      Map<String, String> forwardHeaders,
+      Consumer<String> onDelta) {
+    return addMessageInternal(
+        tenantId, userId, apiKeyId, conversationId, dto, forwardHeaders, onDelta);
   }
 
   public List<ChatConversation> adminListConversations(String tenantId) {
@@ -665,6 +699,7 @@ public class ChatService {
     public ChatMessage message;
     public Object output;
     public List<Map<String, Object>> endpointDebug;
+    public boolean streamed;
   }
 
   public List<ChatConversation> adminListHandoffs(String tenantId) {
@@ -915,6 +950,10 @@ public class ChatService {
     boolean anyMatches = false;
     java.util.Set<Integer> availableYears = new java.util.TreeSet<>();
 
+    // Every endpoint, and the extra pages of each, is fetched concurrently under one time budget;
+    // results are then read in priority order so the prompt context stays deterministic.
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(endpointBudgetMs);
+    List<PlannedEndpoint> planned = new ArrayList<>();
     for (TenantServiceEndpointResponse endpoint : orderedEndpoints) {
       if (endpoint == null) {
         continue;
@@ -925,12 +964,12 @@ public class ChatService {
             endpoint.slug,
             endpoint.method,
             endpoint.path);
-        context.debug.add(Map.of(
+        planned.add(new PlannedEndpoint(endpoint, Map.of(
             "slug", endpoint.slug != null ? endpoint.slug : "n/a",
             "url", endpoint.path != null ? endpoint.path : "",
             "ok", false,
             "status", 0,
-            "error", "method_not_supported"));
+            "error", "method_not_supported")));
         continue;
       }
       String path = endpoint.path != null ? endpoint.path.trim() : "";
@@ -947,12 +986,12 @@ public class ChatService {
               "Endpoint skipped missing baseUrl slug={} path={}",
               endpoint.slug,
               path);
-          context.debug.add(Map.of(
+          planned.add(new PlannedEndpoint(endpoint, Map.of(
               "slug", endpoint.slug != null ? endpoint.slug : "n/a",
               "url", path,
               "ok", false,
               "status", 0,
-              "error", "missing_base_url"));
+              "error", "missing_base_url")));
           continue;
         }
         String base =
@@ -961,13 +1000,39 @@ public class ChatService {
         url = base + normalizedPath;
       }
       Map<String, String> mergedHeaders = mergeHeaders(endpoint.headers, forwardHeaders);
-      EndpointFetch fetch = fetchEndpoint(url, mergedHeaders);
+      String endpointUrl = url;
+      CompletableFuture<EndpointFetch> pending =
+          fetchEndpointAsync(endpointUrl, mergedHeaders, deadline)
+              .thenCompose(
+                  fetch ->
+                      fetch.ok
+                          ? loadMorePagesAsync(
+                              endpointUrl,
+                              mergedHeaders,
+                              fetch,
+                              endpoint.responsePath,
+                              year,
+                              keywords,
+                              deadline)
+                          : CompletableFuture.completedFuture(fetch));
+      planned.add(new PlannedEndpoint(endpoint, endpointUrl, pending));
+    }
+
+    for (PlannedEndpoint plan : planned) {
+      if (plan.skipped != null) {
+        context.debug.add(plan.skipped);
+        continue;
+      }
+      TenantServiceEndpointResponse endpoint = plan.endpoint;
+      String url = plan.url;
+      EndpointFetch fetch = plan.fetch.join();
       context.debug.add(Map.of(
           "slug", endpoint.slug != null ? endpoint.slug : "n/a",
           "url", url,
           "ok", fetch.ok,
           "status", fetch.status,
-          "error", fetch.error != null ? fetch.error : ""));
+          "error", fetch.error != null ? fetch.error : "",
+          "cached", fetch.cached));
       if (!fetch.ok) {
         log.info(
             "Endpoint fetch failed slug={} url={} responsePath={} status={} error={}",
@@ -981,12 +1046,12 @@ public class ChatService {
       anyData = true;
       Object data = fetch.data;
       log.info(
-          "Endpoint fetch ok slug={} url={} responsePath={} total={}",
+          "Endpoint fetch ok slug={} url={} responsePath={} total={} cached={}",
           endpoint.slug,
           url,
           endpoint.responsePath,
-          countItems(data, endpoint.responsePath));
-      data = maybeLoadMorePages(url, mergedHeaders, data, endpoint.responsePath, year, keywords);
+          countItems(data, endpoint.responsePath),
+          fetch.cached);
       if (year != null) {
         List<Object> items = extractItems(data, endpoint.responsePath);
         for (Object item : items) {
@@ -1068,36 +1133,69 @@ public class ChatService {
     return merged;
   }
 
-  private EndpointFetch fetchEndpoint(String url, Map<String, String> headers) {
-    EndpointFetch result = new EndpointFetch();
+  private CompletableFuture<EndpointFetch> fetchEndpointAsync(
+      String url, Map<String, String> headers, long deadline) {
+    String cacheKey = endpointResponseCache.key(url, headers);
+    Object cached = endpointResponseCache.get(cacheKey);
+    if (cached != null) {
+      EndpointFetch hit = new EndpointFetch();
+      hit.ok = true;
+      hit.data = cached;
+      hit.status = 200;
+      hit.cached = true;
+      return CompletableFuture.completedFuture(hit);
+    }
+    long remaining = deadline - System.nanoTime();
+    if (remaining <= 0) {
+      return CompletableFuture.completedFuture(EndpointFetch.failed("timeout"));
+    }
+    HttpRequest request;
     try {
       HttpRequest.Builder builder =
           HttpRequest.newBuilder()
               .uri(URI.create(url))
-              .timeout(Duration.ofSeconds(15))
+              .timeout(Duration.ofNanos(Math.min(remaining, ENDPOINT_TIMEOUT.toNanos())))
               .GET();
       if (headers != null) {
         headers.forEach(builder::header);
       }
-      HttpResponse<String> response =
-          httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
-      if (response.statusCode() < 200 || response.statusCode() >= 300) {
-        result.status = response.statusCode();
-        result.error = "HTTP " + response.statusCode();
-        return result;
-      }
-      String body = response.body();
-      if (body == null || body.isBlank()) {
-        return result;
-      }
-      Object parsed = objectMapper.readValue(body, Object.class);
-      result.ok = true;
-      result.data = parsed;
+      request = builder.build();
+    } catch (Exception ex) {
+      return CompletableFuture.completedFuture(EndpointFetch.failed(ex.getClass().getSimpleName()));
+    }
+    return httpClient
+        .sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        .thenApply(response -> parseEndpointResponse(response, cacheKey))
+        .exceptionally(
+            ex -> {
+              Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                  ? ex.getCause()
+                  : ex;
+              return EndpointFetch.failed(cause.getClass().getSimpleName());
+            })
+        .completeOnTimeout(EndpointFetch.failed("timeout"), remaining, TimeUnit.NANOSECONDS);
+  }
+
+  private EndpointFetch parseEndpointResponse(HttpResponse<String> response, String cacheKey) {
+    EndpointFetch result = new EndpointFetch();
+    if (response.statusCode() < 200 || response.statusCode() >= 300) {
       result.status = response.statusCode();
+      result.error = "HTTP " + response.statusCode();
+      return result;
+    }
+    String body = response.body();
+    if (body == null || body.isBlank()) {
+      return result;
+    }
+    try {
+      result.data = objectMapper.readValue(body, Object.class);
     } catch (Exception ex) {
       result.error = ex.getClass().getSimpleName();
       return result;
     }
+    result.ok = true;
+    result.status = response.statusCode();
+    endpointResponseCache.put(cacheKey, result.data);
     return result;
   }
 
@@ -1143,22 +1241,24 @@ public class ChatService {
     return score;
   }
 
-  private Object maybeLoadMorePages(
+  private CompletableFuture<EndpointFetch> loadMorePagesAsync(
       String baseUrl,
       Map<String, String> headers,
-      Object data,
+      EndpointFetch first,
       String responsePath,
       Integer year,
-      List<String> keywords) {
-    if (!(data instanceof Map<?, ?> map)) {
-      return data;
+      List<String> keywords,
+      long deadline) {
+    CompletableFuture<EndpointFetch> unchanged = CompletableFuture.completedFuture(first);
+    if (!(first.data instanceof Map<?, ?> map)) {
+      return unchanged;
     }
     Object listCandidate = extractByPath(map, responsePath);
     if (!(listCandidate instanceof List<?>)) {
       listCandidate = map.get("list");
     }
     if (!(listCandidate instanceof List<?> list)) {
-      return data;
+      return unchanged;
     }
     int total = toInt(map.get("totalRegisters"));
     int pageSize = toInt(map.get("pageSize"));
@@ -1170,52 +1270,97 @@ public class ChatService {
       pageNumber = 1;
     }
     if (total <= pageSize || pageSize <= 0) {
-      return data;
+      return unchanged;
     }
-
-    List<Object> aggregated = new ArrayList<>();
-    aggregated.addAll(list);
-
-    int maxRecords = 5000;
-    int targetTotal = total > 0 ? Math.min(total, maxRecords) : maxRecords;
     boolean needsSearch = (year != null) || (keywords != null && !keywords.isEmpty());
     if (!needsSearch) {
-      return data;
-    }
-
-    int maxPages =
-        total > 0
-            ? (int) Math.ceil((double) targetTotal / (double) pageSize)
-            : (int) Math.ceil((double) maxRecords / (double) pageSize);
-    int currentPage = pageNumber;
-    while (currentPage < maxPages && aggregated.size() < maxRecords) {
-      currentPage += 1;
-      String pagedUrl = withPageParams(baseUrl, currentPage, pageSize);
-      EndpointFetch next = fetchEndpoint(pagedUrl, headers);
-      if (!next.ok || !(next.data instanceof Map<?, ?> nextMap)) {
-        break;
-      }
-      Object listObj = extractByPath(nextMap, responsePath);
-      if (!(listObj instanceof List<?>)) {
-        listObj = nextMap.get("list");
-      }
-      if (!(listObj instanceof List<?> nextList) || nextList.isEmpty()) {
-        break;
-      }
-      aggregated.addAll(nextList);
-      if (aggregated.size() >= maxRecords) {
-        aggregated = aggregated.subList(0, maxRecords);
-        break;
-      }
+      return unchanged;
+    }
+
+    int targetTotal = Math.min(total, MAX_ENDPOINT_RECORDS);
+    int maxPages = (int) Math.ceil((double) targetTotal / (double) pageSize);
+    int size = pageSize;
+    int firstPage = pageNumber;
+    return fetchPagesAsync(baseUrl, headers, responsePath, firstPage + 1, maxPages, size, deadline)
+        .thenApply(
+            rest -> {
+              List<Object> aggregated = new ArrayList<>(list);
+              aggregated.addAll(rest);
+              if (aggregated.size() > MAX_ENDPOINT_RECORDS) {
+                aggregated = aggregated.subList(0, MAX_ENDPOINT_RECORDS);
+              }
+              Map<String, Object> copy = new HashMap<>();
+              map.forEach((key, value) -> copy.put(String.valueOf(key), value));
+              copy.put("list", aggregated);
+              copy.put("totalRegisters", aggregated.size());
+              copy.put("pageNumber", firstPage);
+              copy.put("pageSize", size);
+              EndpointFetch merged = new EndpointFetch();
+              merged.ok = true;
+              merged.status = first.status;
+              merged.cached = first.cached;
+              merged.data = copy;
+              return merged;
+            });
+  }
+
+  /**
+   * Fetches pages {@code fromPage..toPage} in waves of {@code endpointPageConcurrency} and returns
+   * their items in page order, stopping at the first failed or empty page as paging one by one
+   * would.
+   */
+  private CompletableFuture<List<Object>> fetchPagesAsync(
+      String baseUrl,
+      Map<String, String> headers,
+      String responsePath,
+      int fromPage,
+      int toPage,
+      int pageSize,
+      long deadline) {
+    if (fromPage > toPage) {
+      return CompletableFuture.completedFuture(new ArrayList<>());
+    }
+    int waveEnd = Math.min(toPage, fromPage + endpointPageConcurrency - 1);
+    List<CompletableFuture<EndpointFetch>> wave = new ArrayList<>();
+    for (int page = fromPage; page <= waveEnd; page++) {
+      wave.add(fetchEndpointAsync(withPageParams(baseUrl, page, pageSize), headers, deadline));
+    }
+    return CompletableFuture.allOf(wave.toArray(new CompletableFuture[0]))
+        .thenCompose(
+            ignored -> {
+              List<Object> items = new ArrayList<>();
+              for (CompletableFuture<EndpointFetch> future : wave) {
+                List<?> pageItems = pageItems(future.join(), responsePath);
+                if (pageItems == null) {
+                  return CompletableFuture.completedFuture(items);
+                }
+                items.addAll(pageItems);
+              }
+              if (waveEnd >= toPage || System.nanoTime() >= deadline) {
+                return CompletableFuture.completedFuture(items);
+              }
+              return fetchPagesAsync(
+                      baseUrl, headers, responsePath, waveEnd + 1, toPage, pageSize, deadline)
+                  .thenApply(
+                      rest -> {
+                        items.addAll(rest);
+                        return items;
+                      });
+            });
+  }
+
+  private List<?> pageItems(EndpointFetch fetch, String responsePath) {
+    if (!fetch.ok || !(fetch.data instanceof Map<?, ?> map)) {
+      return null;
     }
-
-    Map<String, Object> copy = new HashMap<>();
-    map.forEach((key, value) -> copy.put(String.valueOf(key), value));
-    copy.put("list", aggregated);
-    copy.put("totalRegisters", aggregated.size());
-    copy.put("pageNumber", pageNumber);
-    copy.put("pageSize", pageSize);
-    return copy;
+    Object listObj = extractByPath(map, responsePath);
+    if (!(listObj instanceof List<?>)) {
+      listObj = map.get("list");
+    }
+    if (!(listObj instanceof List<?> items) || items.isEmpty()) {
+      return null;
+    }
+    return items;
   }
 
   private boolean hasMatch(List<Object> items, Integer year, List<String> keywords) {
@@ -1496,6 +1641,35 @@ public class ChatService {
     Object data = null;
     int status = 0;
     String error = null;
+    boolean cached = false;
+
+    static EndpointFetch failed(String error) {
+      EndpointFetch fetch = new EndpointFetch();
+      fetch.error = error;
+      return fetch;
+    }
+  }
+
+  private static class PlannedEndpoint {
+    final TenantServiceEndpointResponse endpoint;
+    final String url;
+    final CompletableFuture<EndpointFetch> fetch;
+    final Map<String, Object> skipped;
+
+    private PlannedEndpoint(TenantServiceEndpointResponse endpoint, Map<String, Object> skipped) {
+      this.endpoint = endpoint;
+      this.url = null;
+      this.fetch = null;
+      this.skipped = skipped;
+    }
+
+    private PlannedEndpoint(
+        TenantServiceEndpointResponse endpoint, String url, CompletableFuture<EndpointFetch> fetch) {
+      this.endpoint = endpoint;
+      this.url = url;
+      this.fetch = fetch;
+      this.skipped = null;
+    }
   }
 
   private static class ScoredEndpoint {
@@ -0,0 +1,117 @@
+package com.neria.manager.chat;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Component;
+
+/**
+ * Short-lived cache of parsed tenant endpoint responses, so follow-up questions in a conversation
+ * reuse the data fetched a moment ago instead of calling the tenant API again.
+ *
+ * <p>Entries are keyed by a SHA-256 of the URL and the headers sent with it (which may carry the
+ * end user's token), so two users never share a response their own credentials would not return.
+ * Only successful responses are cached.
+ */
+@Component
+public class EndpointResponseCache {
+  private static class CacheEntry {
+    final Object data;
+    final long expiresAt;
+
+    CacheEntry(Object data, long expiresAt) {
+      this.data = data;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final long ttlMillis;
+  private final int maxEntries;
+  private final Map<String, CacheEntry> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public EndpointResponseCache(MeterRegistry meterRegistry) {
+    this.ttlMillis =
+        Long.parseLong(System.getenv().getOrDefault("CHAT_ENDPOINT_CACHE_TTL_SECONDS", "60"))
+            * 1000L;
+    this.maxEntries =
+        Integer.parseInt(System.getenv().getOrDefault("CHAT_ENDPOINT_CACHE_MAX_ENTRIES", "256"));
+    this.entries =
+        new LinkedHashMap<>(64, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > maxEntries;
+          }
+        };
+    FunctionCounter.builder("chat.endpoint_cache.requests", hits, AtomicLong::get)
+        .tag("result", "hit")
+        .register(meterRegistry);
+    FunctionCounter.builder("chat.endpoint_cache.requests", misses, AtomicLong::get)
+        .tag("result", "miss")
+        .register(meterRegistry);
+    Gauge.builder("chat.endpoint_cache.size", this, EndpointResponseCache::size)
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return ttlMillis > 0 && maxEntries > 0;
+  }
+
+  public String key(String url, Map<String, String> headers) {
+    StringBuilder sb = new StringBuilder(url);
+    if (headers != null) {
+      new TreeMap<>(headers)
+          .forEach((name, value) -> sb.append('\n').append(name).append(": ").append(value));
+    }
+    try {
+      return HexFormat.of()
+          .formatHex(
+              MessageDigest.getInstance("SHA-256")
+                  .digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    } catch (Exception ex) {
+      throw new IllegalStateException("SHA-256 unavailable", ex);
+    }
+  }
+
+  /** Returns the cached parsed body, or {@code null}. Callers must not mutate it. */
+  public Object get(String key) {
+    if (!isEnabled()) {
+      return null;
+    }
+    synchronized (entries) {
+      CacheEntry entry = entries.get(key);
+      if (entry == null || entry.expiresAt < System.currentTimeMillis()) {
+        if (entry != null) {
+          entries.remove(key);
+        }
+        misses.incrementAndGet();
+        return null;
+      }
+      hits.incrementAndGet();
+      return entry.data;
+    }
+  }
+
+  public void put(String key, Object data) {
+    if (!isEnabled() || data == null) {
+      return;
+    }
+    synchronized (entries) {
+      entries.put(key, new CacheEntry(data, System.currentTimeMillis() + ttlMillis));
+    }
+  }
+
+  private double size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+}
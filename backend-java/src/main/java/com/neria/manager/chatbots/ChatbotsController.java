@@ -3,10 +3,13 @@ package com.neria.manager.chatbots;
 import com.neria.manager.common.security.AuthContext;
 import com.neria.manager.common.security.AuthUtils;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/chatbots")
@@ -39,4 +42,18 @@ public class ChatbotsController {
       HttpServletRequest request, @RequestBody ChatbotsService.ChatbotSqlRequest dto) {
     return chatbotsService.sql(resolveTenantId(request), dto);
   }
+
+  /** Streams the query result as NDJSON ({@code application/x-ndjson}), one row per line. */
+  @PostMapping("/sql/stream")
+  public void sqlStream(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      @RequestBody ChatbotsService.ChatbotSqlRequest dto)
+      throws IOException {
+    StreamingResponseBody body = chatbotsService.sqlStream(resolveTenantId(request), dto);
+    response.setContentType("application/x-ndjson;charset=UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    body.writeTo(response.getOutputStream());
+    response.getOutputStream().flush();
+  }
 }
@@ -1,32 +1,58 @@
 package com.neria.manager.chatbots;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neria.manager.common.entities.DbConnection;
+import com.neria.manager.dbconnections.DbConnectionPools;
 import com.neria.manager.dbconnections.DbConnectionsService;
+import com.neria.manager.dbconnections.DbSchemaCatalog;
 import com.neria.manager.ocr.OcrDocumentsService;
 import com.neria.manager.runtime.ExecuteRequest;
 import com.neria.manager.runtime.RuntimeService;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.ResultSetMetaData;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import javax.sql.DataSource;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Service
 public class ChatbotsService {
   private final RuntimeService runtimeService;
   private final OcrDocumentsService ocrDocumentsService;
   private final DbConnectionsService dbConnectionsService;
+  private final DbConnectionPools dbConnectionPools;
+  private final DbSchemaCatalog schemaCatalog;
+  private final ObjectMapper objectMapper;
+  private final int sqlMaxRows;
+  private final int sqlFetchSize;
+  private final int sqlTimeoutSeconds;
 
   public ChatbotsService(
       RuntimeService runtimeService,
       OcrDocumentsService ocrDocumentsService,
-      DbConnectionsService dbConnectionsService) {
+      DbConnectionsService dbConnectionsService,
+      DbConnectionPools dbConnectionPools,
+      DbSchemaCatalog schemaCatalog,
+      ObjectMapper objectMapper) {
     this.runtimeService = runtimeService;
     this.ocrDocumentsService = ocrDocumentsService;
     this.dbConnectionsService = dbConnectionsService;
+    this.dbConnectionPools = dbConnectionPools;
+    this.schemaCatalog = schemaCatalog;
+    this.objectMapper = objectMapper;
+    this.sqlMaxRows =
+        Integer.parseInt(System.getenv().getOrDefault("CHATBOT_SQL_MAX_ROWS", "1000"));
+    this.sqlFetchSize =
+        Integer.parseInt(System.getenv().getOrDefault("CHATBOT_SQL_FETCH_SIZE", "200"));
+    this.sqlTimeoutSeconds =
+        Integer.parseInt(System.getenv().getOrDefault("CHATBOT_SQL_TIMEOUT_SECONDS", "30"));
   }
 
   public Object generic(String tenantId, ChatbotGenericRequest dto) {
@@ -63,26 +89,100 @@ public class ChatbotsService {
     return runtimeService.execute(tenantId, request);
   }
 
+  /** Runs the question's query and returns up to {@code maxRows} rows in one JSON body. */
   public Object sql(String tenantId, ChatbotSqlRequest dto) {
-    var connection = dbConnectionsService.getById(tenantId, dto.connectionId);
+    SqlPlan plan = planSql(tenantId, dto);
+    List<Map<String, Object>> rows = new ArrayList<>();
+    QueryResult result =
+        executeQuery(
+            plan,
+            new ResultSink() {
+              @Override
+              public void columns(List<String> columns) {}
+
+              @Override
+              public void row(Map<String, Object> row) {
+                rows.add(row);
+              }
+            });
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("requestId", dto.requestId);
+    body.put("sql", plan.sql());
+    body.put("rows", rows);
+    body.put("rowCount", result.rowCount());
+    body.put("truncated", result.truncated());
+    body.put("elapsedMs", result.elapsedMs());
+    return body;
+  }
+
+  /**
+   * Same as {@link #sql} but streams the result as NDJSON: a {@code meta} line with the SQL and
+   * column names, one {@code row} line per row as it is fetched, then an {@code end} line with the
+   * totals (or an {@code error} line if the query fails midway). SQL generation and validation run
+   * before the first byte, so their errors still map to an HTTP status.
+   */
+  public StreamingResponseBody sqlStream(String tenantId, ChatbotSqlRequest dto) {
+    SqlPlan plan = planSql(tenantId, dto);
+    return out -> {
+      try {
+        QueryResult result =
+            executeQuery(
+                plan,
+                new ResultSink() {
+                  @Override
+                  public void columns(List<String> columns) throws IOException {
+                    Map<String, Object> meta = new LinkedHashMap<>();
+                    meta.put("type", "meta");
+                    meta.put("requestId", dto.requestId);
+                    meta.put("sql", plan.sql());
+                    meta.put("columns", columns);
+                    writeLine(out, meta);
+                  }
+
+                  @Override
+                  public void row(Map<String, Object> row) throws IOException {
+                    writeLine(out, Map.of("type", "row", "data", row));
+                  }
+                });
+        Map<String, Object> end = new LinkedHashMap<>();
+        end.put("type", "end");
+        end.put("rowCount", result.rowCount());
+        end.put("truncated", result.truncated());
+        end.put("elapsedMs", result.elapsedMs());
+        writeLine(out, end);
+      } catch (IllegalStateException ex) {
+        writeLine(out, Map.of("type", "error", "message", String.valueOf(ex.getMessage())));
+      }
+      out.flush();
+    };
+  }
+
+  private SqlPlan planSql(String tenantId, ChatbotSqlRequest dto) {
+    DbConnection connection = dbConnectionsService.getById(tenantId, dto.connectionId);
     if (!connection.isEnabled()) {
       throw new IllegalStateException("DB connection disabled");
     }
 
     Map<String, Object> config = dbConnectionsService.getDecryptedConfig(connection);
-    String schema = fetchSchemaSummary(dbConnectionsService.getAllowedTables(connection), config);
-
-    List<Map<String, String>> prompt =
-        List.of(
-            Map.of(
-                "role",
-                "system",
-                "content",
-                "Eres un asistente que genera una unica consulta SQL de solo lectura (MySQL). Devuelve solo SQL sin explicaciones."),
-            Map.of("role", "user", "content", "Esquema:\n" + schema + "\n\nPregunta: " + dto.question));
+    DataSource dataSource = dbConnectionPools.dataSource(connection, config);
+    int maxRows =
+        dto.maxRows != null && dto.maxRows > 0 ? Math.min(dto.maxRows, sqlMaxRows) : sqlMaxRows;
 
     String sql = dto.sql;
     if (sql == null || sql.isBlank()) {
+      String schema = schemaCatalog.describe(schemaCatalog.schema(connection), dto.question);
+      List<Map<String, String>> prompt =
+          List.of(
+              Map.of(
+                  "role",
+                  "system",
+                  "content",
+                  "Eres un asistente que genera una unica consulta SQL de solo lectura (MySQL). Devuelve solo SQL sin explicaciones."),
+              Map.of(
+                  "role",
+                  "user",
+                  "content",
+                  "Esquema:\n" + schema + "\n\nPregunta: " + dto.question));
       ExecuteRequest request = new ExecuteRequest();
       request.providerId = dto.providerId;
       request.model = dto.model;
@@ -97,8 +197,7 @@ public class ChatbotsService {
     }
 
     validateReadOnly(sql, connection.isReadOnly());
-    List<Map<String, Object>> rows = executeQuery(config, sql);
-    return Map.of("requestId", dto.requestId, "sql", sql, "rows", rows);
+    return new SqlPlan(connection.getId(), dataSource, sql, maxRows);
   }
 
   private String extractSql(Object response) {
@@ -156,82 +255,65 @@ public class ChatbotsService {
     }
   }
 
-  private List<Map<String, Object>> executeQuery(Map<String, Object> config, String sql) {
-    String host = String.valueOf(config.getOrDefault("host", ""));
-    int port = Integer.parseInt(String.valueOf(config.getOrDefault("port", "3306")));
-    String user = String.valueOf(config.getOrDefault("user", ""));
-    String password = String.valueOf(config.getOrDefault("password", ""));
-    String database = String.valueOf(config.getOrDefault("database", ""));
-    String jdbc = "jdbc:mysql://" + host + ":" + port + "/" + database;
-
-    try (Connection connection = DriverManager.getConnection(jdbc, user, password);
-        Statement statement = connection.createStatement()) {
-      ResultSet rs = statement.executeQuery(sql);
-      List<Map<String, Object>> rows = new ArrayList<>();
-      int columnCount = rs.getMetaData().getColumnCount();
-      while (rs.next()) {
-        java.util.Map<String, Object> row = new java.util.HashMap<>();
+  /**
+   * Runs {@code plan} on the connection's pool, handing rows to {@code sink} as they arrive. Rows
+   * are fetched {@code CHATBOT_SQL_FETCH_SIZE} at a time, capped at the plan's row limit and
+   * bounded by {@code CHATBOT_SQL_TIMEOUT_SECONDS}.
+   */
+  private QueryResult executeQuery(SqlPlan plan, ResultSink sink) {
+    long started = System.nanoTime();
+    long rowCount = 0;
+    boolean truncated = false;
+    try (Connection connection = plan.dataSource().getConnection();
+        PreparedStatement statement = connection.prepareStatement(plan.sql())) {
+      statement.setFetchSize(sqlFetchSize);
+      // One extra row tells a capped result apart from one that fits exactly.
+      statement.setMaxRows(plan.maxRows() + 1);
+      statement.setQueryTimeout(sqlTimeoutSeconds);
+      try (ResultSet rs = statement.executeQuery()) {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
         for (int i = 1; i <= columnCount; i++) {
-          row.put(rs.getMetaData().getColumnLabel(i), rs.getObject(i));
+          columns.add(metaData.getColumnLabel(i));
+        }
+        sink.columns(columns);
+        while (rs.next()) {
+          if (rowCount >= plan.maxRows()) {
+            truncated = true;
+            break;
+          }
+          Map<String, Object> row = new LinkedHashMap<>();
+          for (int i = 1; i <= columnCount; i++) {
+            row.put(columns.get(i - 1), rs.getObject(i));
+          }
+          sink.row(row);
+          rowCount++;
         }
-        rows.add(row);
       }
-      return rows;
     } catch (Exception ex) {
       throw new IllegalStateException("SQL execution failed: " + ex.getMessage(), ex);
+    } finally {
+      dbConnectionPools.recordQuery(plan.connectionId(), System.nanoTime() - started, rowCount);
     }
+    return new QueryResult(rowCount, truncated, (System.nanoTime() - started) / 1_000_000L);
   }
 
-  private String fetchSchemaSummary(List<String> allowedTables, Map<String, Object> config) {
-    String host = String.valueOf(config.getOrDefault("host", ""));
-    int port = Integer.parseInt(String.valueOf(config.getOrDefault("port", "3306")));
-    String user = String.valueOf(config.getOrDefault("user", ""));
-    String password = String.valueOf(config.getOrDefault("password", ""));
-    String database = String.valueOf(config.getOrDefault("database", ""));
-    if (database == null || database.isBlank()) {
-      return "Database not specified";
-    }
-    String jdbc = "jdbc:mysql://" + host + ":" + port + "/" + database;
-    StringBuilder sql = new StringBuilder();
-    sql.append(
-        "SELECT TABLE_NAME as tableName, COLUMN_NAME as columnName, DATA_TYPE as dataType " +
-        "FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ?");
-    if (allowedTables != null && !allowedTables.isEmpty()) {
-      sql.append(" AND TABLE_NAME IN (");
-      sql.append(String.join(",", java.util.Collections.nCopies(allowedTables.size(), "?")));
-      sql.append(")");
-    }
-    sql.append(" ORDER BY TABLE_NAME, ORDINAL_POSITION LIMIT 300");
+  private void writeLine(OutputStream out, Object value) throws IOException {
+    out.write(objectMapper.writeValueAsBytes(value));
+    out.write('\n');
+  }
 
-    try (Connection connection = DriverManager.getConnection(jdbc, user, password);
-        PreparedStatement statement = connection.prepareStatement(sql.toString())) {
-      int index = 1;
-      statement.setString(index++, database);
-      if (allowedTables != null) {
-        for (String table : allowedTables) {
-          statement.setString(index++, table);
-        }
-      }
-      ResultSet rs = statement.executeQuery();
-      java.util.Map<String, List<String>> grouped = new java.util.HashMap<>();
-      while (rs.next()) {
-        String table = rs.getString("tableName");
-        grouped.computeIfAbsent(table, ignored -> new ArrayList<>())
-            .add(rs.getString("columnName") + ":" + rs.getString("dataType"));
-      }
-      StringBuilder output = new StringBuilder();
-      grouped.forEach((table, cols) -> {
-        if (!output.isEmpty()) {
-          output.append("\n");
-        }
-        output.append(table).append("(").append(String.join(", ", cols)).append(")");
-      });
-      return output.toString();
-    } catch (Exception ex) {
-      throw new IllegalStateException("Schema fetch failed: " + ex.getMessage(), ex);
-    }
+  private interface ResultSink {
+    void columns(List<String> columns) throws IOException;
+
+    void row(Map<String, Object> row) throws IOException;
   }
 
+  private record SqlPlan(String connectionId, DataSource dataSource, String sql, int maxRows) {}
+
+  private record QueryResult(long rowCount, boolean truncated, long elapsedMs) {}
+
   public static class ChatbotGenericRequest {
     public String providerId;
     public String model;
@@ -254,5 +336,6 @@ public class ChatbotsService {
     public String connectionId;
     public String question;
     public String sql;
+    public Integer maxRows;
   }
 }
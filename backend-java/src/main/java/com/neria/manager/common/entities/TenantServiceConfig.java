@@ -86,6 +86,9 @@ public class TenantServiceConfig {
   @Column(name = "jiraAutoLabelWithServiceName")
   private Boolean jiraAutoLabelWithServiceName;
 
+  @Column(name = "responseCacheEnabled")
+  private Boolean responseCacheEnabled;
+
   @Column(name = "createdAt")
   private LocalDateTime createdAt;
 
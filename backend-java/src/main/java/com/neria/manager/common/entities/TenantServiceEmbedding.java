@@ -35,9 +35,17 @@ public class TenantServiceEmbedding {
   @Column(name = "chunkText", columnDefinition = "text", nullable = false)
   private String chunkText;
 
-  @Column(name = "embedding", columnDefinition = "json", nullable = false)
+  /** Legacy JSON array; only set on rows written before {@link #embeddingVector} existed. */
+  @Column(name = "embedding", columnDefinition = "json")
   private String embedding;
 
+  @Column(name = "embeddingVector", columnDefinition = "mediumblob")
+  private byte[] embeddingVector;
+
+  /** {@code f32le} or {@code i8}, see {@code EmbeddingCodec}. */
+  @Column(name = "embeddingEncoding", length = 16)
+  private String embeddingEncoding;
+
   @Column(name = "embeddingModel", length = 64, nullable = false)
   private String embeddingModel;
 
@@ -38,6 +38,12 @@ public class TenantServiceSurveyInsight {
   @Column(columnDefinition = "text")
   private String errorMessage;
 
+  @Column(name = "progress")
+  private Integer progress;
+
+  @Column(length = 32)
+  private String stage;
+
   @Column(name = "createdAt")
   private LocalDateTime createdAt;
 }
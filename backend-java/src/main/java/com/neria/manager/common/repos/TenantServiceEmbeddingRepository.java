@@ -3,12 +3,23 @@ package com.neria.manager.common.repos;
 import com.neria.manager.common.entities.TenantServiceEmbedding;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface TenantServiceEmbeddingRepository
     extends JpaRepository<TenantServiceEmbedding, String> {
   List<TenantServiceEmbedding> findByTenantIdAndConversationIdOrderByChunkIndexAsc(
       String tenantId, String conversationId);
 
+  /** id, fileId, conversationId, embeddingVector, embeddingEncoding and the legacy JSON. */
+  @Query(
+      "select e.id, e.fileId, e.conversationId, e.embeddingVector, e.embeddingEncoding, "
+          + "case when e.embeddingVector is null then e.embedding else null end "
+          + "from TenantServiceEmbedding e "
+          + "where e.tenantId = :tenantId and e.serviceCode = :serviceCode")
+  List<Object[]> findVectorsByTenantIdAndServiceCode(
+      @Param("tenantId") String tenantId, @Param("serviceCode") String serviceCode);
+
   List<TenantServiceEmbedding> findByTenantIdAndFileIdOrderByChunkIndexAsc(
       String tenantId, String fileId);
 
@@ -1,6 +1,7 @@
 package com.neria.manager.common.repos;
 
 import com.neria.manager.common.entities.TenantServiceFile;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -13,4 +14,7 @@ public interface TenantServiceFileRepository extends JpaRepository<TenantService
       String tenantId, String serviceCode);
 
   Optional<TenantServiceFile> findByIdAndTenantId(String id, String tenantId);
+
+  List<TenantServiceFile> findTop100ByStatusAndUpdatedAtBeforeOrderByUpdatedAtAsc(
+      String status, LocalDateTime before);
 }
@@ -1,6 +1,7 @@
 package com.neria.manager.common.repos;
 
 import com.neria.manager.common.entities.TenantServiceSurveyAnswer;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 
@@ -10,6 +11,8 @@ public interface TenantServiceSurveyAnswerRepository
 
   List<TenantServiceSurveyAnswer> findBySurveyId(String surveyId);
 
+  List<TenantServiceSurveyAnswer> findByResponseIdIn(Collection<String> responseIds);
+
   long countByResponseId(String responseId);
 
   void deleteBySurveyId(String surveyId);
@@ -1,9 +1,12 @@
 package com.neria.manager.common.repos;
 
 import com.neria.manager.common.entities.TenantServiceSurveyQuestion;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface TenantServiceSurveyQuestionRepository
     extends JpaRepository<TenantServiceSurveyQuestion, String> {
@@ -14,5 +17,10 @@ public interface TenantServiceSurveyQuestionRepository
 
   long countBySurveyId(String surveyId);
 
+  @Query(
+      "select q.surveyId, count(q) from TenantServiceSurveyQuestion q "
+          + "where q.surveyId in :surveyIds group by q.surveyId")
+  List<Object[]> countBySurveyIds(@Param("surveyIds") Collection<String> surveyIds);
+
   void deleteBySurveyId(String surveyId);
 }
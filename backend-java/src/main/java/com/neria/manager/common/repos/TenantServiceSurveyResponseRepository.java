@@ -1,14 +1,38 @@
 package com.neria.manager.common.repos;
 
 import com.neria.manager.common.entities.TenantServiceSurveyResponse;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface TenantServiceSurveyResponseRepository
     extends JpaRepository<TenantServiceSurveyResponse, String> {
   List<TenantServiceSurveyResponse> findBySurveyIdOrderBySubmittedAtDesc(String surveyId);
 
+  // Keyset pages in (submittedAt desc, id desc) order; responses without submittedAt come last.
+  List<TenantServiceSurveyResponse> findBySurveyIdAndSubmittedAtIsNotNullOrderBySubmittedAtDescIdDesc(
+      String surveyId, Pageable pageable);
+
+  @Query(
+      "select r from TenantServiceSurveyResponse r where r.surveyId = :surveyId "
+          + "and (r.submittedAt < :submittedAt or (r.submittedAt = :submittedAt and r.id < :id)) "
+          + "order by r.submittedAt desc, r.id desc")
+  List<TenantServiceSurveyResponse> findSubmittedPageAfter(
+      @Param("surveyId") String surveyId,
+      @Param("submittedAt") LocalDateTime submittedAt,
+      @Param("id") String id,
+      Pageable pageable);
+
+  List<TenantServiceSurveyResponse> findBySurveyIdAndSubmittedAtIsNullOrderByIdDesc(
+      String surveyId, Pageable pageable);
+
+  List<TenantServiceSurveyResponse> findBySurveyIdAndSubmittedAtIsNullAndIdLessThanOrderByIdDesc(
+      String surveyId, String id, Pageable pageable);
+
   Optional<TenantServiceSurveyResponse> findByIdAndSurveyId(String id, String surveyId);
 
   long countBySurveyId(String surveyId);
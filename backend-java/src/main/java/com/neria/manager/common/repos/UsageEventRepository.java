@@ -1,10 +1,23 @@
 package com.neria.manager.common.repos;
 
 import com.neria.manager.common.entities.UsageEvent;
+import java.time.LocalDateTime;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface UsageEventRepository extends JpaRepository<UsageEvent, String> {
   List<UsageEvent> findTop200ByOrderByCreatedAtDesc();
   List<UsageEvent> findTop200ByTenantIdOrderByCreatedAtDesc(String tenantId);
+
+  @Query(
+      "select u.tenantId, sum(u.tokensIn + u.tokensOut), sum(u.costUsd) from UsageEvent u "
+          + "where u.createdAt >= :start and u.createdAt < :end "
+          + "and (:tenantId is null or u.tenantId = :tenantId) "
+          + "group by u.tenantId")
+  List<Object[]> sumByTenantBetween(
+      @Param("tenantId") String tenantId,
+      @Param("start") LocalDateTime start,
+      @Param("end") LocalDateTime end);
 }
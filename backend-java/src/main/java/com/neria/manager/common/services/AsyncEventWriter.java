@@ -0,0 +1,438 @@
+package com.neria.manager.common.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neria.manager.common.entities.AuditEvent;
+import com.neria.manager.common.entities.TenantRequestLog;
+import com.neria.manager.common.entities.UsageEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes usage, audit and tenant request log rows off the request thread.
+ *
+ * <p>Rows go into a bounded queue drained by a single background thread that groups them per
+ * table and inserts them with JDBC batch statements. When the queue is full the configured policy
+ * applies ({@code block}, {@code drop} or {@code spill} to a local NDJSON file). Batches that fail
+ * to insert are spilled as well, and the spill file is replayed on the next startup. A replayed
+ * row that still fails is spilled again with its attempt count, and after
+ * {@code EVENT_WRITER_SPILL_MAX_ATTEMPTS} it is moved to a {@code .quarantine} file next to the
+ * spill file instead of being retried forever. The queue is drained on shutdown.
+ */
+@Service
+public class AsyncEventWriter {
+  private static final Logger log = LoggerFactory.getLogger(AsyncEventWriter.class);
+
+  private static final String INSERT_USAGE =
+      "INSERT INTO usage_events (id, tenantId, providerId, model, serviceCode, tokensIn, tokensOut,"
+          + " costUsd, createdAt) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String INSERT_AUDIT =
+      "INSERT INTO audit_events (id, tenantId, action, status, metadata, createdAt)"
+          + " VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String INSERT_REQUEST_LOG =
+      "INSERT INTO tenant_request_logs (id, tenantId, userId, userEmail, role, method, path, type,"
+          + " serviceCode, queryString, ipAddress, userAgent, statusCode, payloadJson, createdAt)"
+          + " VALUES (?, ?, ?, COALESCE(?, (SELECT t.billingEmail FROM tenants t WHERE t.id = ?)),"
+          + " ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  enum FullPolicy {
+    BLOCK,
+    DROP,
+    SPILL
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectMapper objectMapper;
+  private final BlockingQueue<Object> queue;
+  private final FullPolicy fullPolicy;
+  private final int batchSize;
+  private final long flushIntervalMs;
+  private final Path spillFile;
+  private final Path quarantineFile;
+  private final int spillMaxAttempts;
+  private final Thread worker;
+  private final Object spillLock = new Object();
+  private final DistributionSummary batchSizes;
+  private final Timer flushLatency;
+  private final Counter dropped;
+  private final Counter spilled;
+  private final Counter failed;
+  private volatile boolean running = true;
+
+  public AsyncEventWriter(
+      JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.objectMapper = objectMapper;
+    int capacity =
+        Integer.parseInt(System.getenv().getOrDefault("EVENT_WRITER_QUEUE_CAPACITY", "10000"));
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    this.fullPolicy =
+        FullPolicy.valueOf(
+            System.getenv()
+                .getOrDefault("EVENT_WRITER_FULL_POLICY", "block")
+                .trim()
+                .toUpperCase(Locale.ROOT));
+    this.batchSize =
+        Math.max(1, Integer.parseInt(System.getenv().getOrDefault("EVENT_WRITER_BATCH_SIZE", "500")));
+    this.flushIntervalMs =
+        Long.parseLong(System.getenv().getOrDefault("EVENT_WRITER_FLUSH_MS", "200"));
+    this.spillFile =
+        Path.of(System.getenv().getOrDefault("EVENT_WRITER_SPILL_FILE", "event-writer-spill.ndjson"));
+    this.quarantineFile = spillFile.resolveSibling(spillFile.getFileName() + ".quarantine");
+    String maxAttempts = System.getenv().getOrDefault("EVENT_WRITER_SPILL_MAX_ATTEMPTS", "5");
+    this.spillMaxAttempts = Math.max(1, Integer.parseInt(maxAttempts));
+
+    Gauge.builder("event_writer.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+    this.batchSizes =
+        DistributionSummary.builder("event_writer.batch.size").register(meterRegistry);
+    this.flushLatency = Timer.builder("event_writer.flush.latency").register(meterRegistry);
+    this.dropped = Counter.builder("event_writer.dropped").register(meterRegistry);
+    this.spilled = Counter.builder("event_writer.spilled").register(meterRegistry);
+    this.failed = Counter.builder("event_writer.failed").register(meterRegistry);
+
+    this.worker = new Thread(this::drainLoop, "event-writer");
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  public void write(UsageEvent event) {
+    submit(event);
+  }
+
+  public void write(AuditEvent event) {
+    submit(event);
+  }
+
+  public void write(TenantRequestLog event) {
+    submit(event);
+  }
+
+  private void submit(Object event) {
+    if (queue.offer(event)) {
+      return;
+    }
+    switch (fullPolicy) {
+      case BLOCK -> {
+        try {
+          queue.put(event);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          spill(List.of(event));
+        }
+      }
+      case DROP -> dropped.increment();
+      case SPILL -> spill(List.of(event));
+    }
+  }
+
+  private void drainLoop() {
+    List<Object> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        Object first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        flush(batch);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        running = false;
+      } catch (Exception ex) {
+        log.error("Event writer loop error: {}", ex.getMessage(), ex);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void flush(List<Object> batch) {
+    long startedAt = System.nanoTime();
+    List<UsageEvent> usage = new ArrayList<>();
+    List<AuditEvent> audit = new ArrayList<>();
+    List<TenantRequestLog> requestLogs = new ArrayList<>();
+    for (Object item : batch) {
+      if (item instanceof UsageEvent event) {
+        usage.add(event);
+      } else if (item instanceof AuditEvent event) {
+        audit.add(event);
+      } else if (item instanceof TenantRequestLog event) {
+        requestLogs.add(event);
+      }
+    }
+    insertOrSpill("usage", usage);
+    insertOrSpill("audit", audit);
+    insertOrSpill("request_log", requestLogs);
+    batchSizes.record(batch.size());
+    flushLatency.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+  }
+
+  private void insertUsage(List<UsageEvent> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(
+        INSERT_USAGE,
+        rows,
+        rows.size(),
+        (ps, row) -> {
+          ps.setString(1, row.getId());
+          ps.setString(2, row.getTenantId());
+          ps.setString(3, row.getProviderId());
+          ps.setString(4, row.getModel());
+          ps.setString(5, row.getServiceCode());
+          ps.setInt(6, row.getTokensIn());
+          ps.setInt(7, row.getTokensOut());
+          ps.setBigDecimal(8, row.getCostUsd());
+          ps.setTimestamp(9, Timestamp.valueOf(row.getCreatedAt()));
+        });
+  }
+
+  private void insertAudit(List<AuditEvent> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(
+        INSERT_AUDIT,
+        rows,
+        rows.size(),
+        (ps, row) -> {
+          ps.setString(1, row.getId());
+          ps.setString(2, row.getTenantId());
+          ps.setString(3, row.getAction());
+          ps.setString(4, row.getStatus());
+          ps.setString(5, row.getMetadata());
+          ps.setTimestamp(6, Timestamp.valueOf(row.getCreatedAt()));
+        });
+  }
+
+  private void insertRequestLogs(List<TenantRequestLog> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(
+        INSERT_REQUEST_LOG,
+        rows,
+        rows.size(),
+        (ps, row) -> {
+          ps.setString(1, row.getId());
+          ps.setString(2, row.getTenantId());
+          ps.setString(3, row.getUserId());
+          ps.setString(4, row.getUserEmail());
+          ps.setString(5, row.getTenantId());
+          ps.setString(6, row.getRole());
+          ps.setString(7, row.getMethod());
+          ps.setString(8, row.getPath());
+          ps.setString(9, row.getType());
+          ps.setString(10, row.getServiceCode());
+          ps.setString(11, row.getQueryString());
+          ps.setString(12, row.getIpAddress());
+          ps.setString(13, row.getUserAgent());
+          if (row.getStatusCode() != null) {
+            ps.setInt(14, row.getStatusCode());
+          } else {
+            ps.setNull(14, Types.INTEGER);
+          }
+          ps.setString(15, row.getPayloadJson());
+          ps.setTimestamp(16, Timestamp.valueOf(row.getCreatedAt()));
+        });
+  }
+
+  private void insert(String type, List<?> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    switch (type) {
+      case "usage" -> insertUsage(rows.stream().map(UsageEvent.class::cast).toList());
+      case "audit" -> insertAudit(rows.stream().map(AuditEvent.class::cast).toList());
+      default -> insertRequestLogs(rows.stream().map(TenantRequestLog.class::cast).toList());
+    }
+  }
+
+  private void insertOrSpill(String type, List<?> rows) {
+    try {
+      insert(type, rows);
+    } catch (DataAccessException ex) {
+      failed.increment(rows.size());
+      log.warn(
+          "Event writer insert of {} failed ({} rows), spilling: {}",
+          type,
+          rows.size(),
+          ex.getMessage());
+      spill(rows);
+    }
+  }
+
+  private void spill(List<?> rows) {
+    spill(rows, 0);
+  }
+
+  private void spill(List<?> rows, int attempts) {
+    append(spillFile, rows, attempts);
+    spilled.increment(rows.size());
+  }
+
+  private void append(Path file, List<?> rows, int attempts) {
+    synchronized (spillLock) {
+      try (BufferedWriter writer =
+          Files.newBufferedWriter(
+              file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+        for (Object row : rows) {
+          writer.write(
+              objectMapper.writeValueAsString(
+                  Map.of("type", typeOf(row), "attempts", attempts, "data", row)));
+          writer.newLine();
+        }
+      } catch (IOException ex) {
+        dropped.increment(rows.size());
+        log.error(
+            "Event writer spill to {} failed, {} rows lost: {}", file, rows.size(), ex.getMessage());
+      }
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void replaySpill() {
+    Path replaying = spillFile.resolveSibling(spillFile.getFileName() + ".replaying");
+    List<String> lines;
+    synchronized (spillLock) {
+      if (!Files.exists(spillFile)) {
+        return;
+      }
+      try {
+        Files.move(spillFile, replaying, StandardCopyOption.REPLACE_EXISTING);
+        lines = Files.readAllLines(replaying, StandardCharsets.UTF_8);
+      } catch (IOException ex) {
+        log.warn("Event writer spill replay skipped: {}", ex.getMessage());
+        return;
+      }
+    }
+    // Replayed synchronously, by type, so each row's outcome (and attempt count) is known.
+    Map<String, List<Object>> byType = new LinkedHashMap<>();
+    Map<Object, Integer> attempts = new IdentityHashMap<>();
+    for (String line : lines) {
+      if (line.isBlank()) {
+        continue;
+      }
+      try {
+        JsonNode node = objectMapper.readTree(line);
+        JsonNode data = node.get("data");
+        String type = node.path("type").asText();
+        Object row =
+            switch (type) {
+              case "usage" -> objectMapper.treeToValue(data, UsageEvent.class);
+              case "audit" -> objectMapper.treeToValue(data, AuditEvent.class);
+              case "request_log" -> objectMapper.treeToValue(data, TenantRequestLog.class);
+              default -> null;
+            };
+        if (row != null) {
+          byType.computeIfAbsent(type, key -> new ArrayList<>()).add(row);
+          attempts.put(row, node.path("attempts").asInt(0));
+        }
+      } catch (IOException ex) {
+        log.warn("Event writer skipped unreadable spill line: {}", ex.getMessage());
+      }
+    }
+    int replayed = 0;
+    int respilled = 0;
+    int quarantined = 0;
+    for (Map.Entry<String, List<Object>> entry : byType.entrySet()) {
+      List<Object> rows = entry.getValue();
+      for (int from = 0; from < rows.size(); from += batchSize) {
+        List<Object> chunk = rows.subList(from, Math.min(rows.size(), from + batchSize));
+        try {
+          insert(entry.getKey(), chunk);
+          replayed += chunk.size();
+          continue;
+        } catch (DataAccessException ex) {
+          log.warn("Event writer spill batch failed, retrying row by row: {}", ex.getMessage());
+        }
+        // One bad row fails the whole batch; isolate it so the rest still lands.
+        for (Object row : chunk) {
+          try {
+            insert(entry.getKey(), List.of(row));
+            replayed++;
+          } catch (DataAccessException ex) {
+            int failures = attempts.get(row) + 1;
+            if (failures >= spillMaxAttempts) {
+              append(quarantineFile, List.of(row), failures);
+              quarantined++;
+            } else {
+              spill(List.of(row), failures);
+              respilled++;
+            }
+          }
+        }
+      }
+    }
+    try {
+      Files.deleteIfExists(replaying);
+    } catch (IOException ex) {
+      log.warn("Event writer could not delete {}: {}", replaying, ex.getMessage());
+    }
+    log.info("Event writer replayed {} spilled rows ({} spilled again)", replayed, respilled);
+    if (quarantined > 0) {
+      log.error(
+          "Event writer moved {} rows that failed {} times to {}",
+          quarantined,
+          spillMaxAttempts,
+          quarantineFile);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    try {
+      worker.join(TimeUnit.SECONDS.toMillis(30));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    if (!queue.isEmpty()) {
+      List<Object> remaining = new ArrayList<>();
+      queue.drainTo(remaining);
+      log.warn("Event writer shutdown timed out, spilling {} rows", remaining.size());
+      spill(remaining);
+    }
+  }
+
+  private String typeOf(Object row) {
+    if (row instanceof UsageEvent) {
+      return "usage";
+    }
+    if (row instanceof AuditEvent) {
+      return "audit";
+    }
+    return "request_log";
+  }
+}
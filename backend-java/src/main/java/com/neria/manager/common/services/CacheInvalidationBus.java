@@ -0,0 +1,210 @@
+package com.neria.manager.common.services;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Broadcasts cache invalidations to every replica through the {@code cache_invalidations} table.
+ *
+ * <p>{@link #publish(String, String)} appends a row and notifies local listeners once the
+ * surrounding transaction (if any) commits; each node polls the table every
+ * {@code CACHE_BUS_POLL_MS} on its own thread, so blocking scheduled jobs cannot delay it, and
+ * replays rows it has not seen. The row id is
+ * the version: caches stamp entries with {@link #version()} when they load them, and a replayed
+ * row only evicts entries older than itself. Rows that commit out of id order are caught by
+ * re-reading the last {@code CACHE_BUS_REPLAY_SECONDS} and are applied unconditionally.
+ */
+@Component
+public class CacheInvalidationBus {
+  private static final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+  /** Region name that matches every region. */
+  public static final String ALL_REGIONS = "*";
+
+  public interface Listener {
+    /**
+     * Evicts entries of {@code region} belonging to {@code scope} (a tenant id or key prefix;
+     * {@code null} for the whole region) that were loaded before {@code version}.
+     */
+    void onInvalidation(String region, String scope, long version);
+  }
+
+  private static final int APPLIED_IDS = 10_000;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private final AtomicLong version = new AtomicLong(-1L);
+  private final Map<Long, Boolean> applied =
+      new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+          return size() > APPLIED_IDS;
+        }
+      };
+  private final int replaySeconds;
+  private final long retentionSeconds;
+  private final ScheduledExecutorService poller;
+  private volatile boolean failing;
+
+  public CacheInvalidationBus(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.replaySeconds =
+        Integer.parseInt(System.getenv().getOrDefault("CACHE_BUS_REPLAY_SECONDS", "5"));
+    this.retentionSeconds =
+        Long.parseLong(System.getenv().getOrDefault("CACHE_BUS_RETENTION_SECONDS", "3600"));
+    long pollMillis = Long.parseLong(System.getenv().getOrDefault("CACHE_BUS_POLL_MS", "1000"));
+    this.poller =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "cache-bus-poll");
+              thread.setDaemon(true);
+              return thread;
+            });
+    poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    poller.shutdownNow();
+  }
+
+  public void subscribe(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /** Highest invalidation this node has replayed; stamp cache entries with it before loading. */
+  public long version() {
+    return version.get();
+  }
+
+  /**
+   * Invalidates {@code region}/{@code scope} on this node now and on the others within one poll.
+   * When called inside a transaction the row commits with it and the local eviction waits for the
+   * commit, so a concurrent read cannot cache the old value again after it.
+   */
+  public void publish(String region, String scope) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              notifyListeners(region, scope, Long.MAX_VALUE);
+            }
+          });
+    } else {
+      notifyListeners(region, scope, Long.MAX_VALUE);
+    }
+    broadcast(region, scope);
+  }
+
+  /**
+   * Invalidates {@code region}/{@code scope} on the other nodes only, for callers that have
+   * already brought their own copy up to date.
+   */
+  public void broadcast(String region, String scope) {
+    try {
+      KeyHolder keyHolder = new GeneratedKeyHolder();
+      jdbcTemplate.update(
+          connection -> {
+            PreparedStatement statement =
+                connection.prepareStatement(
+                    "INSERT INTO cache_invalidations (region, scope) VALUES (?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, region);
+            statement.setString(2, scope);
+            return statement;
+          },
+          keyHolder);
+      Number id = keyHolder.getKey();
+      if (id != null) {
+        synchronized (applied) {
+          applied.put(id.longValue(), Boolean.TRUE);
+        }
+      }
+    } catch (DataAccessException ex) {
+      log.warn("Cache invalidation not broadcast ({} {}): {}", region, scope, ex.getMessage());
+    }
+  }
+
+  void poll() {
+    try {
+      long cursor = version.get();
+      if (cursor < 0) {
+        Long max =
+            jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM cache_invalidations", Long.class);
+        version.set(max != null ? max : 0L);
+        failing = false;
+        return;
+      }
+      List<Map<String, Object>> rows =
+          jdbcTemplate.queryForList(
+              "SELECT id, region, scope FROM cache_invalidations"
+                  + " WHERE id > ? OR createdAt > NOW(3) - INTERVAL ? SECOND ORDER BY id",
+              cursor,
+              replaySeconds);
+      long highest = cursor;
+      for (Map<String, Object> row : rows) {
+        long id = ((Number) row.get("id")).longValue();
+        synchronized (applied) {
+          if (applied.put(id, Boolean.TRUE) != null) {
+            continue;
+          }
+        }
+        notifyListeners(
+            String.valueOf(row.get("region")),
+            (String) row.get("scope"),
+            id > cursor ? id : Long.MAX_VALUE);
+        highest = Math.max(highest, id);
+      }
+      version.set(highest);
+      failing = false;
+    } catch (RuntimeException ex) {
+      // Anything escaping here would cancel the periodic task for good.
+      if (!failing) {
+        log.warn("Cache invalidation poll failed: {}", ex.getMessage());
+      }
+      failing = true;
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${CACHE_BUS_PRUNE_MS:600000}")
+  public void prune() {
+    try {
+      jdbcTemplate.update(
+          "DELETE FROM cache_invalidations WHERE createdAt < NOW(3) - INTERVAL ? SECOND",
+          retentionSeconds);
+    } catch (DataAccessException ex) {
+      log.warn("Cache invalidation prune failed: {}", ex.getMessage());
+    }
+  }
+
+  private void notifyListeners(String region, String scope, long version) {
+    for (Listener listener : listeners) {
+      try {
+        listener.onInvalidation(region, scope, version);
+      } catch (RuntimeException ex) {
+        log.warn("Cache invalidation listener failed: {}", ex.getMessage());
+      }
+    }
+  }
+}
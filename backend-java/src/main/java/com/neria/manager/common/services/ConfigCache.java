@@ -0,0 +1,208 @@
+package com.neria.manager.common.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.Entity;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-through cache for configuration read on every runtime call: tenants, service configs,
+ * providers, policies and pricing, plus decrypted provider credentials and webhook targets.
+ *
+ * <p>Keys start with the tenant id ({@code tenantId|...}) so the admin write paths can drop
+ * everything cached for a tenant in a region. Entries also expire after
+ * {@code CONFIG_CACHE_TTL_SECONDS} as a backstop for writes made elsewhere; decrypted
+ * credentials use the shorter {@code CREDENTIALS_CACHE_TTL_SECONDS}. Misses are cached too, so a
+ * missing row is not queried again on every call. JPA entities are copied when cached and again
+ * for every caller, so no request shares (or can change) another's instance. Hits and misses are
+ * reported per region as {@code config_cache.requests}.
+ *
+ * <p>Invalidations go through {@link CacheInvalidationBus} so they reach every replica; entries
+ * carry the bus version they were loaded at.
+ */
+@Component
+public class ConfigCache {
+  public static final String TENANTS = "tenants";
+  public static final String SERVICE_CONFIGS = "service_configs";
+  public static final String PROVIDERS = "providers";
+  public static final String POLICIES = "policies";
+  public static final String PRICING = "pricing";
+  public static final String CREDENTIALS = "credentials";
+  public static final String WEBHOOKS = "webhooks";
+
+  private static class CacheEntry {
+    final Optional<Object> value;
+    final long expiresAt;
+    final long version;
+
+    CacheEntry(Optional<Object> value, long expiresAt, long version) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+      this.version = version;
+    }
+  }
+
+  private final class Region {
+    final long ttlMillis;
+    final Map<String, CacheEntry> entries;
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    long generation;
+
+    Region(String name, long ttlSeconds) {
+      this.ttlMillis = ttlSeconds * 1000L;
+      this.entries =
+          new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+              return size() > maxEntries;
+            }
+          };
+      FunctionCounter.builder("config_cache.requests", hits, AtomicLong::get)
+          .tag("region", name)
+          .tag("result", "hit")
+          .register(meterRegistry);
+      FunctionCounter.builder("config_cache.requests", misses, AtomicLong::get)
+          .tag("region", name)
+          .tag("result", "miss")
+          .register(meterRegistry);
+      Gauge.builder("config_cache.size", this, Region::size)
+          .tag("region", name)
+          .register(meterRegistry);
+    }
+
+    double size() {
+      synchronized (entries) {
+        return entries.size();
+      }
+    }
+  }
+
+  private final MeterRegistry meterRegistry;
+  private final CacheInvalidationBus invalidationBus;
+  private final int maxEntries;
+  private final long ttlSeconds;
+  private final long credentialsTtlSeconds;
+  private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+  public ConfigCache(MeterRegistry meterRegistry, CacheInvalidationBus invalidationBus) {
+    this.meterRegistry = meterRegistry;
+    this.invalidationBus = invalidationBus;
+    this.maxEntries =
+        Integer.parseInt(System.getenv().getOrDefault("CONFIG_CACHE_MAX_ENTRIES", "5000"));
+    this.ttlSeconds =
+        Long.parseLong(System.getenv().getOrDefault("CONFIG_CACHE_TTL_SECONDS", "60"));
+    this.credentialsTtlSeconds =
+        Long.parseLong(System.getenv().getOrDefault("CREDENTIALS_CACHE_TTL_SECONDS", "60"));
+    invalidationBus.subscribe(this::evict);
+  }
+
+  public static String key(String tenantId, Object... parts) {
+    StringBuilder sb = new StringBuilder(String.valueOf(tenantId));
+    for (Object part : parts) {
+      sb.append('|').append(part);
+    }
+    return sb.toString();
+  }
+
+  /** Returns the cached value for {@code key}, loading (and caching) it on a miss. */
+  @SuppressWarnings("unchecked")
+  public <T> T get(String region, String key, Supplier<T> loader) {
+    Region cache = region(region);
+    if (cache.ttlMillis <= 0) {
+      return loader.get();
+    }
+    long now = System.currentTimeMillis();
+    long generation;
+    long version = invalidationBus.version();
+    synchronized (cache.entries) {
+      CacheEntry entry = cache.entries.get(key);
+      if (entry != null && entry.expiresAt > now) {
+        cache.hits.incrementAndGet();
+        return (T) detach(entry.value.orElse(null));
+      }
+      generation = cache.generation;
+    }
+    cache.misses.incrementAndGet();
+    T value = loader.get();
+    synchronized (cache.entries) {
+      // Skip the write if an invalidation ran while loading; the value may predate it.
+      if (cache.generation == generation) {
+        cache.entries.put(
+            key,
+            new CacheEntry(Optional.ofNullable(detach(value)), now + cache.ttlMillis, version));
+      }
+    }
+    return value;
+  }
+
+  /** Drops every entry of {@code region} whose key belongs to {@code tenantId}, on all nodes. */
+  public void invalidateTenant(String region, String tenantId) {
+    invalidationBus.publish(region, tenantId);
+  }
+
+  public void invalidateTenant(String tenantId) {
+    invalidationBus.publish(CacheInvalidationBus.ALL_REGIONS, tenantId);
+  }
+
+  public void invalidateRegion(String region) {
+    invalidationBus.publish(region, null);
+  }
+
+  public void clear() {
+    invalidationBus.publish(CacheInvalidationBus.ALL_REGIONS, null);
+  }
+
+  private void evict(String region, String scope, long version) {
+    if (CacheInvalidationBus.ALL_REGIONS.equals(region)) {
+      regions.values().forEach(cache -> evictRegion(cache, scope, version));
+      return;
+    }
+    Region cache = regions.get(region);
+    if (cache != null) {
+      evictRegion(cache, scope, version);
+    }
+  }
+
+  private void evictRegion(Region cache, String scope, long version) {
+    String prefix = scope + "|";
+    synchronized (cache.entries) {
+      cache.generation++;
+      cache.entries
+          .entrySet()
+          .removeIf(
+              entry ->
+                  entry.getValue().version < version
+                      && (scope == null
+                          || entry.getKey().equals(scope)
+                          || entry.getKey().startsWith(prefix)));
+    }
+  }
+
+  /**
+   * Copies a JPA entity property by property; the cached entities are flat rows. Other values
+   * (strings, records, immutable lists) are returned as they are.
+   */
+  private static Object detach(Object value) {
+    if (value == null || !value.getClass().isAnnotationPresent(Entity.class)) {
+      return value;
+    }
+    Object copy = BeanUtils.instantiateClass(value.getClass());
+    BeanUtils.copyProperties(value, copy);
+    return copy;
+  }
+
+  private Region region(String name) {
+    return regions.computeIfAbsent(
+        name,
+        key -> new Region(key, CREDENTIALS.equals(key) ? credentialsTtlSeconds : ttlSeconds));
+  }
+}
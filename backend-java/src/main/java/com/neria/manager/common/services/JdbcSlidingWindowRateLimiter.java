@@ -0,0 +1,92 @@
+package com.neria.manager.common.services;
+
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Sliding-window counter shared by all replicas through the {@code rate_limit_windows} table.
+ *
+ * <p>Each key keeps one row per minute. The request count is estimated as this minute's hits plus
+ * the previous minute's hits weighted by how much of it still overlaps the last 60 seconds, which
+ * removes the burst at fixed window edges. A request increments the counter first and gives the
+ * hit back when it is over the limit, so concurrent replicas can only under-admit, never over-admit.
+ */
+final class JdbcSlidingWindowRateLimiter implements RateLimiter {
+  private static final long WINDOW_MS = 60_000L;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  JdbcSlidingWindowRateLimiter(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public Decision tryAcquire(String key, int perMinute, int burst) {
+    int capacity = Math.max(1, perMinute) + Math.max(0, burst);
+    long now = System.currentTimeMillis();
+    long window = now / WINDOW_MS;
+    jdbcTemplate.update(
+        "INSERT INTO rate_limit_windows (bucketKey, windowStart, hits) VALUES (?, ?, 1)"
+            + " ON DUPLICATE KEY UPDATE hits = hits + 1",
+        key,
+        window);
+    List<Map<String, Object>> rows =
+        jdbcTemplate.queryForList(
+            "SELECT windowStart, hits FROM rate_limit_windows"
+                + " WHERE bucketKey = ? AND windowStart IN (?, ?)",
+            key,
+            window,
+            window - 1);
+    long current = 0L;
+    long previous = 0L;
+    for (Map<String, Object> row : rows) {
+      long start = ((Number) row.get("windowStart")).longValue();
+      long hits = ((Number) row.get("hits")).longValue();
+      if (start == window) {
+        current = hits;
+      } else {
+        previous = hits;
+      }
+    }
+    double elapsed = (now % WINDOW_MS) / (double) WINDOW_MS;
+    double estimate = previous * (1d - elapsed) + current;
+    long resetSeconds = Math.max(1L, (WINDOW_MS - now % WINDOW_MS + 999L) / 1000L);
+    if (estimate > capacity) {
+      jdbcTemplate.update(
+          "UPDATE rate_limit_windows SET hits = hits - 1"
+              + " WHERE bucketKey = ? AND windowStart = ? AND hits > 0",
+          key,
+          window);
+      return new Decision(false, capacity, 0, resetSeconds);
+    }
+    int remaining = (int) Math.max(0L, (long) Math.floor(capacity - estimate));
+    return new Decision(true, capacity, remaining, resetSeconds);
+  }
+
+  @Override
+  public void release(String key) {
+    long window = System.currentTimeMillis() / WINDOW_MS;
+    int updated =
+        jdbcTemplate.update(
+            "UPDATE rate_limit_windows SET hits = hits - 1"
+                + " WHERE bucketKey = ? AND windowStart = ? AND hits > 0",
+            key,
+            window);
+    if (updated == 0) {
+      // The minute rolled over since the hit was counted.
+      jdbcTemplate.update(
+          "UPDATE rate_limit_windows SET hits = hits - 1"
+              + " WHERE bucketKey = ? AND windowStart = ? AND hits > 0",
+          key,
+          window - 1);
+    }
+  }
+
+  @Override
+  public void evictIdle() {
+    jdbcTemplate.update(
+        "DELETE FROM rate_limit_windows WHERE windowStart < ?",
+        System.currentTimeMillis() / WINDOW_MS - 1);
+  }
+}
@@ -10,33 +10,47 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.stereotype.Service;
 
+/**
+ * Global and per-tenant kill switches, cached per node for {@code KILL_SWITCH_CACHE_TTL} seconds.
+ * Flips are broadcast through {@link CacheInvalidationBus}, so other replicas pick them up within
+ * one bus poll rather than one TTL.
+ */
 @Service
 public class KillSwitchService {
+  /** Bus region for kill switch flips; the scope is the tenant id, or null for the global one. */
+  public static final String REGION = "kill_switch";
+
   private static class CacheEntry {
     final boolean value;
     final long timestamp;
+    final long version;
 
-    CacheEntry(boolean value, long timestamp) {
+    CacheEntry(boolean value, long timestamp, long version) {
       this.value = value;
       this.timestamp = timestamp;
+      this.version = version;
     }
   }
 
   private final TenantRepository tenantRepository;
   private final SystemSettingRepository settingsRepository;
   private final ObjectMapper objectMapper;
+  private final CacheInvalidationBus invalidationBus;
   private final long ttlSeconds;
   private final ConcurrentHashMap<String, CacheEntry> tenantCache = new ConcurrentHashMap<>();
-  private CacheEntry globalCache;
+  private volatile CacheEntry globalCache;
 
   public KillSwitchService(
       TenantRepository tenantRepository,
       SystemSettingRepository settingsRepository,
-      ObjectMapper objectMapper) {
+      ObjectMapper objectMapper,
+      CacheInvalidationBus invalidationBus) {
     this.tenantRepository = tenantRepository;
     this.settingsRepository = settingsRepository;
     this.objectMapper = objectMapper;
+    this.invalidationBus = invalidationBus;
     this.ttlSeconds = Long.parseLong(System.getenv().getOrDefault("KILL_SWITCH_CACHE_TTL", "30"));
+    invalidationBus.subscribe(this::evict);
   }
 
   public boolean getTenantKillSwitch(String tenantId) {
@@ -44,23 +58,26 @@ public class KillSwitchService {
     if (cached != null && !isExpired(cached)) {
       return cached.value;
     }
+    long version = invalidationBus.version();
     boolean enabled =
         tenantRepository
             .findById(tenantId)
             .map(Tenant::isKillSwitch)
             .orElse(false);
-    tenantCache.put(tenantId, new CacheEntry(enabled, now()));
+    tenantCache.put(tenantId, new CacheEntry(enabled, now(), version));
     return enabled;
   }
 
   public void setTenantKillSwitch(String tenantId, boolean enabled) {
-    tenantCache.put(tenantId, new CacheEntry(enabled, now()));
+    invalidationBus.publish(REGION, tenantId);
+    tenantCache.put(tenantId, new CacheEntry(enabled, now(), invalidationBus.version()));
   }
 
   public boolean getGlobalKillSwitch() {
     if (globalCache != null && !isExpired(globalCache)) {
       return globalCache.value;
     }
+    long version = invalidationBus.version();
     boolean fallback = "true".equalsIgnoreCase(System.getenv().getOrDefault("KILL_SWITCH_DEFAULT", "false"));
     boolean enabled = fallback;
     SystemSetting setting = settingsRepository.findById("global_kill_switch").orElse(null);
@@ -75,7 +92,7 @@ public class KillSwitchService {
         // keep fallback
       }
     }
-    globalCache = new CacheEntry(enabled, now());
+    globalCache = new CacheEntry(enabled, now(), version);
     return enabled;
   }
 
@@ -88,7 +105,26 @@ public class KillSwitchService {
       setting.setValue("{\"enabled\":false}");
     }
     settingsRepository.save(setting);
-    globalCache = new CacheEntry(enabled, now());
+    invalidationBus.publish(REGION, null);
+    globalCache = new CacheEntry(enabled, now(), invalidationBus.version());
+  }
+
+  private void evict(String region, String scope, long version) {
+    boolean all = CacheInvalidationBus.ALL_REGIONS.equals(region);
+    if (!all && !REGION.equals(region) && !ConfigCache.TENANTS.equals(region)) {
+      return;
+    }
+    if (scope == null) {
+      tenantCache.clear();
+      CacheEntry global = globalCache;
+      if (!ConfigCache.TENANTS.equals(region) && global != null && global.version < version) {
+        globalCache = null;
+      }
+      return;
+    }
+    // Tenant rows carry the tenant switch, so tenant updates invalidate it as well.
+    tenantCache.computeIfPresent(
+        scope, (key, entry) -> entry.version < version ? null : entry);
   }
 
   private boolean isExpired(CacheEntry entry) {
@@ -0,0 +1,79 @@
+package com.neria.manager.common.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process token buckets. Each key refills at {@code perMinute / 60} tokens per second up to
+ * {@code perMinute + burst}, so there is no window edge where twice the limit gets through.
+ * Updates take one of a fixed set of lock stripes rather than a lock per key or a global one.
+ * Only correct for a single replica; see {@link JdbcSlidingWindowRateLimiter}.
+ */
+final class LocalTokenBucketRateLimiter implements RateLimiter {
+  private static final int STRIPES = 64;
+  private static final long IDLE_EVICT_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  private static final class Bucket {
+    double tokens;
+    long refilledAt;
+
+    Bucket(double tokens, long refilledAt) {
+      this.tokens = tokens;
+      this.refilledAt = refilledAt;
+    }
+  }
+
+  private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+  private final Object[] stripes = new Object[STRIPES];
+
+  LocalTokenBucketRateLimiter() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Object();
+    }
+  }
+
+  @Override
+  public Decision tryAcquire(String key, int perMinute, int burst) {
+    int limit = Math.max(1, perMinute);
+    int capacity = limit + Math.max(0, burst);
+    double perNano = limit / (double) TimeUnit.MINUTES.toNanos(1);
+    long now = System.nanoTime();
+    synchronized (stripes[(key.hashCode() & 0x7fffffff) % STRIPES]) {
+      Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(capacity, now));
+      bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) * perNano);
+      bucket.refilledAt = now;
+      boolean allowed = bucket.tokens >= 1d;
+      if (allowed) {
+        bucket.tokens -= 1d;
+      }
+      long resetSeconds =
+          allowed
+              ? secondsUntil(capacity - bucket.tokens, perNano)
+              : secondsUntil(1d - bucket.tokens, perNano);
+      return new Decision(allowed, capacity, (int) Math.floor(bucket.tokens), resetSeconds);
+    }
+  }
+
+  @Override
+  public void release(String key) {
+    synchronized (stripes[(key.hashCode() & 0x7fffffff) % STRIPES]) {
+      Bucket bucket = buckets.get(key);
+      if (bucket != null) {
+        bucket.tokens += 1d;
+      }
+    }
+  }
+
+  @Override
+  public void evictIdle() {
+    long cutoff = System.nanoTime() - IDLE_EVICT_NANOS;
+    buckets.entrySet().removeIf(entry -> entry.getValue().refilledAt < cutoff);
+  }
+
+  private static long secondsUntil(double tokens, double perNano) {
+    if (tokens <= 0d) {
+      return 0L;
+    }
+    return Math.max(1L, (long) Math.ceil(tokens / perNano / TimeUnit.SECONDS.toNanos(1)));
+  }
+}
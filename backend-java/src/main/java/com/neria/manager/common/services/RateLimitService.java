@@ -1,42 +1,184 @@
 package com.neria.manager.common.services;
 
-import java.time.Instant;
-import java.util.concurrent.ConcurrentHashMap;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neria.manager.common.entities.Policy;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.server.ResponseStatusException;
 
+/**
+ * Per-minute request limits for runtime calls.
+ *
+ * <p>{@code RATE_LIMIT_BACKEND=jdbc} counts in MySQL so the limit holds across replicas; the
+ * default {@code local} keeps token buckets in this JVM. If the shared store is unreachable the
+ * local buckets are used rather than failing requests. Every checked request gets
+ * {@code X-RateLimit-*} headers and a rejected one also gets {@code Retry-After}.
+ *
+ * <p>Limits come from the policy: {@code maxRequestsPerMinute} per tenant across all of its
+ * services, plus the optional policy metadata
+ * {@code {"rateLimit": {"burst": n, "perServicePerMinute": n, "perApiKeyPerMinute": n}}}. A request
+ * must pass every limit that applies; when one rejects it, the others are refunded.
+ */
 @Service
 public class RateLimitService {
-  private static class Bucket {
-    int count;
-    long windowStart;
+  private static final Logger log = LoggerFactory.getLogger(RateLimitService.class);
 
-    Bucket(int count, long windowStart) {
-      this.count = count;
-      this.windowStart = windowStart;
+  public record Limit(String key, int perMinute, int burst) {}
+
+  private final ObjectMapper objectMapper;
+  private final RateLimiter local = new LocalTokenBucketRateLimiter();
+  private final RateLimiter shared;
+
+  public RateLimitService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+    String backend =
+        System.getenv().getOrDefault("RATE_LIMIT_BACKEND", "local").toLowerCase(Locale.ROOT);
+    this.shared = "jdbc".equals(backend) ? new JdbcSlidingWindowRateLimiter(jdbcTemplate) : null;
+  }
+
+  /** Limits that apply to a runtime call under {@code policy}. */
+  public List<Limit> limitsFor(
+      Policy policy, String tenantId, String serviceCode, String apiKeyId) {
+    List<Limit> limits = new ArrayList<>();
+    JsonNode settings = readSettings(policy);
+    int burst = settings.path("burst").asInt(0);
+    if (policy.getMaxRequestsPerMinute() > 0) {
+      limits.add(new Limit("tenant:" + tenantId, policy.getMaxRequestsPerMinute(), burst));
+    }
+    int perService = settings.path("perServicePerMinute").asInt(0);
+    if (serviceCode != null && !serviceCode.isBlank() && perService > 0) {
+      limits.add(
+          new Limit("tenant:" + tenantId + ":service:" + serviceCode.trim(), perService, burst));
     }
+    int perApiKey = settings.path("perApiKeyPerMinute").asInt(0);
+    if (apiKeyId != null && !apiKeyId.isBlank() && perApiKey > 0) {
+      limits.add(new Limit("apikey:" + apiKeyId, perApiKey, burst));
+    }
+    return limits;
   }
 
-  private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+  /** Checks every limit; headers describe the most restrictive one. */
+  public void consume(List<Limit> limits) {
+    RateLimiter.Decision tightest = null;
+    List<Grant> granted = new ArrayList<>(limits.size());
+    for (Limit limit : limits) {
+      Grant grant = acquire(limit);
+      RateLimiter.Decision decision = grant.decision();
+      if (!decision.allowed()) {
+        granted.forEach(RateLimitService::refund);
+        throw new RateLimitExceededException(headers(decision));
+      }
+      granted.add(grant);
+      if (tightest == null || decision.remaining() < tightest.remaining()) {
+        tightest = decision;
+      }
+    }
+    if (tightest != null) {
+      applyToCurrentResponse(headers(tightest));
+    }
+  }
 
-  public void consume(String key, int maxRequestsPerMinute) {
-    int limit = Math.max(1, maxRequestsPerMinute);
-    long now = Instant.now().toEpochMilli();
-    long windowMs = 60_000L;
+  @Scheduled(fixedDelayString = "${RATE_LIMIT_EVICT_MS:60000}")
+  public void evictIdle() {
+    local.evictIdle();
+    if (shared != null) {
+      try {
+        shared.evictIdle();
+      } catch (DataAccessException ex) {
+        log.warn("Rate limit window cleanup failed: {}", ex.getMessage());
+      }
+    }
+  }
+
+  /** A decision together with the backend that made it, so a refund goes to the same place. */
+  private record Grant(Limit limit, RateLimiter limiter, RateLimiter.Decision decision) {}
+
+  private Grant acquire(Limit limit) {
+    if (shared != null) {
+      try {
+        return new Grant(
+            limit, shared, shared.tryAcquire(limit.key(), limit.perMinute(), limit.burst()));
+      } catch (DataAccessException ex) {
+        log.warn("Shared rate limiter unavailable, using local buckets: {}", ex.getMessage());
+      }
+    }
+    return new Grant(
+        limit, local, local.tryAcquire(limit.key(), limit.perMinute(), limit.burst()));
+  }
 
-    Bucket bucket = buckets.compute(
-        key,
-        (k, existing) -> {
-          if (existing == null || now - existing.windowStart >= windowMs) {
-            return new Bucket(1, now);
-          }
-          existing.count += 1;
-          return existing;
-        });
+  private static void refund(Grant grant) {
+    try {
+      grant.limiter().release(grant.limit().key());
+    } catch (DataAccessException ex) {
+      log.warn("Rate limit refund failed for {}: {}", grant.limit().key(), ex.getMessage());
+    }
+  }
+
+  private JsonNode readSettings(Policy policy) {
+    String metadata = policy.getMetadata();
+    if (metadata == null || metadata.isBlank()) {
+      return objectMapper.missingNode();
+    }
+    try {
+      return objectMapper.readTree(metadata).path("rateLimit");
+    } catch (Exception ex) {
+      return objectMapper.missingNode();
+    }
+  }
+
+  private static HttpHeaders headers(RateLimiter.Decision decision) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("X-RateLimit-Limit", String.valueOf(decision.limit()));
+    headers.set("X-RateLimit-Remaining", String.valueOf(decision.remaining()));
+    headers.set("X-RateLimit-Reset", String.valueOf(decision.resetSeconds()));
+    if (!decision.allowed()) {
+      headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(decision.resetSeconds()));
+    }
+    return headers;
+  }
+
+  private static void applyToCurrentResponse(HttpHeaders headers) {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (!(attributes instanceof ServletRequestAttributes servlet)) {
+      return;
+    }
+    HttpServletResponse response = servlet.getResponse();
+    if (response == null || response.isCommitted()) {
+      return;
+    }
+    headers.forEach((name, values) -> response.setHeader(name, values.get(0)));
+  }
+
+  /** 429 that carries the rate limit headers through Spring's exception resolution. */
+  public static class RateLimitExceededException extends ResponseStatusException {
+    private final HttpHeaders headers;
+
+    RateLimitExceededException(HttpHeaders headers) {
+      this("Rate limit exceeded", headers);
+    }
+
+    public RateLimitExceededException(String reason, HttpHeaders headers) {
+      super(HttpStatus.TOO_MANY_REQUESTS, reason);
+      this.headers = headers;
+    }
 
-    if (bucket.count > limit) {
-      throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Rate limit exceeded");
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
     }
   }
 }
@@ -0,0 +1,17 @@
+package com.neria.manager.common.services;
+
+/**
+ * Backend for {@link RateLimitService}. Implementations allow {@code perMinute} requests per
+ * minute per key on average, plus up to {@code burst} extra requests when the key has been idle.
+ */
+public interface RateLimiter {
+  record Decision(boolean allowed, int limit, int remaining, long resetSeconds) {}
+
+  Decision tryAcquire(String key, int perMinute, int burst);
+
+  /** Gives back a request admitted by {@link #tryAcquire} that was not used. */
+  void release(String key);
+
+  /** Drops state for keys that have not been used recently. */
+  void evictIdle();
+}
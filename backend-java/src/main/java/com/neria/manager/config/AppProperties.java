@@ -62,5 +62,11 @@ public class AppProperties {
   @Setter
   public static class EmailAutomation {
     private long pollIntervalMs = 60000;
+    private int workers = 8;
+    private long accountTimeoutSeconds = 120;
+    private boolean idleEnabled = true;
+    private long idleResyncSeconds = 600;
+    private long backoffBaseSeconds = 30;
+    private long backoffMaxSeconds = 1800;
   }
 }
@@ -0,0 +1,186 @@
+package com.neria.manager.dbconnections;
+
+import com.neria.manager.common.entities.DbConnection;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Small Hikari pools for tenant databases, one per {@link DbConnection}, so the SQL chatbot reuses
+ * connections instead of opening a TCP/TLS session and authenticating on every question.
+ *
+ * <p>Pools are created on first use and rebuilt when the connection's config or read-only flag
+ * changes; {@link DbConnectionsService} also evicts them on update. Pools unused for
+ * {@code DB_POOL_IDLE_EVICT_SECONDS} are closed. Hikari publishes its {@code hikaricp.*} meters per
+ * pool ({@code pool=tenantdb-<id>}) and queries are timed as {@code dbconnection.query}.
+ */
+@Component
+public class DbConnectionPools {
+  private static final Logger log = LoggerFactory.getLogger(DbConnectionPools.class);
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+  private final int maxPoolSize;
+  private final long connectionTimeoutMs;
+  private final long idleEvictMillis;
+
+  public DbConnectionPools(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.maxPoolSize =
+        Math.max(1, Integer.parseInt(System.getenv().getOrDefault("DB_POOL_MAX_SIZE", "4")));
+    this.connectionTimeoutMs =
+        Long.parseLong(System.getenv().getOrDefault("DB_POOL_CONNECTION_TIMEOUT_MS", "10000"));
+    this.idleEvictMillis =
+        Long.parseLong(System.getenv().getOrDefault("DB_POOL_IDLE_EVICT_SECONDS", "600")) * 1000L;
+  }
+
+  /** Returns the pool for {@code connection}, creating or rebuilding it as needed. */
+  public HikariDataSource dataSource(DbConnection connection, Map<String, Object> config) {
+    String fingerprint = fingerprint(connection);
+    Pool pool =
+        pools.compute(
+            connection.getId(),
+            (id, existing) -> {
+              if (existing != null && existing.fingerprint.equals(fingerprint)) {
+                return existing;
+              }
+              if (existing != null) {
+                existing.close();
+              }
+              return createPool(connection, config, fingerprint);
+            });
+    pool.lastUsed = System.currentTimeMillis();
+    return pool.dataSource;
+  }
+
+  /** Records one query against the connection's pool. */
+  public void recordQuery(String connectionId, long nanos, long rows) {
+    Pool pool = pools.get(connectionId);
+    if (pool != null) {
+      pool.queries.record(nanos, TimeUnit.NANOSECONDS);
+      pool.rows.record(rows);
+      pool.lastUsed = System.currentTimeMillis();
+    }
+  }
+
+  /** Closes the pool for {@code connectionId}; the next query opens a new one. */
+  public void evict(String connectionId) {
+    Pool pool = pools.remove(connectionId);
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  /** Pool usage and query timings for {@code connectionId}, or an inactive marker. */
+  public Map<String, Object> stats(String connectionId) {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    Pool pool = pools.get(connectionId);
+    stats.put("connectionId", connectionId);
+    stats.put("active", pool != null);
+    if (pool == null) {
+      return stats;
+    }
+    HikariPoolMXBean bean = pool.dataSource.getHikariPoolMXBean();
+    if (bean != null) {
+      stats.put("activeConnections", bean.getActiveConnections());
+      stats.put("idleConnections", bean.getIdleConnections());
+      stats.put("totalConnections", bean.getTotalConnections());
+      stats.put("threadsAwaitingConnection", bean.getThreadsAwaitingConnection());
+    }
+    stats.put("maxPoolSize", pool.dataSource.getMaximumPoolSize());
+    stats.put("queries", pool.queries.count());
+    stats.put("queryMeanMs", pool.queries.mean(TimeUnit.MILLISECONDS));
+    stats.put("queryMaxMs", pool.queries.max(TimeUnit.MILLISECONDS));
+    stats.put("rowsMean", pool.rows.mean());
+    stats.put("createdAt", pool.createdAt);
+    stats.put("lastUsedAt", pool.lastUsed);
+    return stats;
+  }
+
+  @Scheduled(fixedDelayString = "${DB_POOL_EVICT_MS:60000}")
+  public void evictIdle() {
+    long cutoff = System.currentTimeMillis() - idleEvictMillis;
+    pools.forEach(
+        (id, pool) -> {
+          if (pool.lastUsed < cutoff && pools.remove(id, pool)) {
+            pool.close();
+          }
+        });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pools.values().forEach(Pool::close);
+    pools.clear();
+  }
+
+  private Pool createPool(DbConnection connection, Map<String, Object> config, String fingerprint) {
+    String host = String.valueOf(config.getOrDefault("host", ""));
+    int port = Integer.parseInt(String.valueOf(config.getOrDefault("port", "3306")));
+    String database = String.valueOf(config.getOrDefault("database", ""));
+    HikariConfig hikari = new HikariConfig();
+    hikari.setPoolName("tenantdb-" + connection.getId());
+    hikari.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database);
+    hikari.setUsername(String.valueOf(config.getOrDefault("user", "")));
+    hikari.setPassword(String.valueOf(config.getOrDefault("password", "")));
+    hikari.setMaximumPoolSize(maxPoolSize);
+    hikari.setMinimumIdle(0);
+    hikari.setIdleTimeout(Math.max(10_000L, idleEvictMillis / 2));
+    hikari.setConnectionTimeout(connectionTimeoutMs);
+    hikari.setReadOnly(connection.isReadOnly());
+    // Lets setFetchSize stream rows through a server-side cursor instead of buffering them all.
+    hikari.addDataSourceProperty("useCursorFetch", "true");
+    hikari.addDataSourceProperty("cachePrepStmts", "true");
+    hikari.setMetricRegistry(meterRegistry);
+    // Do not fail the request path here; the first getConnection reports the real error.
+    hikari.setInitializationFailTimeout(-1);
+    Pool pool =
+        new Pool(
+            new HikariDataSource(hikari),
+            fingerprint,
+            Timer.builder("dbconnection.query")
+                .tag("connection", connection.getId())
+                .register(meterRegistry),
+            DistributionSummary.builder("dbconnection.rows")
+                .tag("connection", connection.getId())
+                .register(meterRegistry));
+    log.info("Opened DB pool for connection {}", connection.getId());
+    return pool;
+  }
+
+  private static String fingerprint(DbConnection connection) {
+    return connection.getEncryptedConfig() + "|" + connection.isReadOnly();
+  }
+
+  private static final class Pool {
+    final HikariDataSource dataSource;
+    final String fingerprint;
+    final Timer queries;
+    final DistributionSummary rows;
+    final long createdAt = System.currentTimeMillis();
+    volatile long lastUsed = createdAt;
+
+    Pool(HikariDataSource dataSource, String fingerprint, Timer queries, DistributionSummary rows) {
+      this.dataSource = dataSource;
+      this.fingerprint = fingerprint;
+      this.queries = queries;
+      this.rows = rows;
+    }
+
+    void close() {
+      dataSource.close();
+    }
+  }
+}
@@ -15,9 +15,11 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/db-connections")
 public class DbConnectionsController {
   private final DbConnectionsService service;
+  private final DbSchemaCatalog schemaCatalog;
 
-  public DbConnectionsController(DbConnectionsService service) {
+  public DbConnectionsController(DbConnectionsService service, DbSchemaCatalog schemaCatalog) {
     this.service = service;
+    this.schemaCatalog = schemaCatalog;
   }
 
   @GetMapping
@@ -44,4 +46,25 @@ public class DbConnectionsController {
     String tenantId = AuthUtils.resolveTenantId(auth, request);
     return service.update(tenantId, id, dto);
   }
+
+  @GetMapping("/{id}/stats")
+  public Object stats(HttpServletRequest request, @PathVariable String id) {
+    AuthContext auth = AuthUtils.requireAuth(request);
+    String tenantId = AuthUtils.resolveTenantId(auth, request);
+    return service.stats(tenantId, id);
+  }
+
+  @GetMapping("/{id}/schema")
+  public Object schema(HttpServletRequest request, @PathVariable String id) {
+    AuthContext auth = AuthUtils.requireAuth(request);
+    String tenantId = AuthUtils.resolveTenantId(auth, request);
+    return schemaCatalog.schema(service.getById(tenantId, id));
+  }
+
+  @PostMapping("/{id}/schema/refresh")
+  public Object refreshSchema(HttpServletRequest request, @PathVariable String id) {
+    AuthContext auth = AuthUtils.requireAuth(request);
+    String tenantId = AuthUtils.resolveTenantId(auth, request);
+    return schemaCatalog.summary(schemaCatalog.refresh(service.getById(tenantId, id)));
+  }
 }
@@ -17,14 +17,17 @@ import org.springframework.web.server.ResponseStatusException;
 public class DbConnectionsService {
   private final DbConnectionRepository repository;
   private final EncryptionService encryptionService;
+  private final DbConnectionPools pools;
   private final ObjectMapper objectMapper;
 
   public DbConnectionsService(
       DbConnectionRepository repository,
       EncryptionService encryptionService,
+      DbConnectionPools pools,
       ObjectMapper objectMapper) {
     this.repository = repository;
     this.encryptionService = encryptionService;
+    this.pools = pools;
     this.objectMapper = objectMapper;
   }
 
@@ -77,7 +80,13 @@ public class DbConnectionsService {
       connection.setEnabled(dto.enabled);
     }
     connection.setUpdatedAt(LocalDateTime.now());
-    return repository.save(connection);
+    DbConnection saved = repository.save(connection);
+    pools.evict(saved.getId());
+    return saved;
+  }
+
+  public Map<String, Object> stats(String tenantId, String id) {
+    return pools.stats(getById(tenantId, id).getId());
   }
 
   public DbConnection getById(String tenantId, String id) {
@@ -0,0 +1,561 @@
+package com.neria.manager.dbconnections;
+
+import com.neria.manager.common.entities.DbConnection;
+import com.neria.manager.common.repos.DbConnectionRepository;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Introspected schema of each {@link DbConnection}: tables, columns and types, primary and foreign
+ * keys, and row-count estimates, read from {@code information_schema} once instead of on every SQL
+ * chatbot question.
+ *
+ * <p>Entries are keyed by connection and rebuilt when its config or allowed tables change. Every
+ * {@code CHATBOT_SCHEMA_CHECK_MS} the entries in use are revalidated against a checksum of their
+ * columns and table creation times, and reloaded only if it moved. Past
+ * {@code CHATBOT_SCHEMA_TTL_SECONDS} an entry is still served while a background reload refreshes
+ * row estimates. {@link #refresh} reloads on demand. Revalidation and background reloads run on
+ * their own thread, never on the shared scheduler. The names of unselected tables listed in the
+ * prompt are capped at {@code CHATBOT_SCHEMA_MAX_OTHER_TABLES}.
+ */
+@Component
+public class DbSchemaCatalog {
+  private static final Logger log = LoggerFactory.getLogger(DbSchemaCatalog.class);
+  private static final int MIN_TOKEN_LENGTH = 3;
+
+  public record Column(String name, String type, boolean nullable, String comment) {}
+
+  public record ForeignKey(String column, String referencedTable, String referencedColumn) {}
+
+  public record Table(
+      String name,
+      String comment,
+      Long rowEstimate,
+      List<Column> columns,
+      List<String> primaryKey,
+      List<ForeignKey> foreignKeys) {}
+
+  public record Schema(
+      String database, Map<String, Table> tables, String checksum, long loadedAt) {}
+
+  private static final class Entry {
+    final String fingerprint;
+    final Schema schema;
+    volatile long checkedAt;
+    volatile long lastUsed;
+    volatile boolean refreshing;
+
+    Entry(String fingerprint, Schema schema) {
+      this.fingerprint = fingerprint;
+      this.schema = schema;
+      this.checkedAt = schema.loadedAt();
+      this.lastUsed = schema.loadedAt();
+    }
+  }
+
+  private final DbConnectionRepository repository;
+  private final DbConnectionsService dbConnectionsService;
+  private final DbConnectionPools pools;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<String, Object> locks = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService refresher;
+  private final long ttlMillis;
+  private final long idleMillis;
+  private final int maxPromptTables;
+  private final int maxOtherTables;
+
+  public DbSchemaCatalog(
+      DbConnectionRepository repository,
+      DbConnectionsService dbConnectionsService,
+      DbConnectionPools pools) {
+    this.repository = repository;
+    this.dbConnectionsService = dbConnectionsService;
+    this.pools = pools;
+    this.ttlMillis =
+        Long.parseLong(System.getenv().getOrDefault("CHATBOT_SCHEMA_TTL_SECONDS", "3600"))
+            * 1000L;
+    this.idleMillis =
+        Long.parseLong(System.getenv().getOrDefault("CHATBOT_SCHEMA_IDLE_SECONDS", "3600"))
+            * 1000L;
+    this.maxPromptTables =
+        Integer.parseInt(System.getenv().getOrDefault("CHATBOT_SCHEMA_MAX_TABLES", "8"));
+    this.maxOtherTables =
+        Integer.parseInt(System.getenv().getOrDefault("CHATBOT_SCHEMA_MAX_OTHER_TABLES", "50"));
+    this.refresher =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "db-schema-refresh");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long checkMillis =
+        Long.parseLong(System.getenv().getOrDefault("CHATBOT_SCHEMA_CHECK_MS", "300000"));
+    refresher.scheduleWithFixedDelay(
+        this::revalidate, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /** Cached schema of {@code connection}, loading it on first use or after a config change. */
+  public Schema schema(DbConnection connection) {
+    String fingerprint = fingerprint(connection);
+    Entry entry = entries.get(connection.getId());
+    if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+      entry = load(connection, fingerprint, entry);
+    } else if (System.currentTimeMillis() - entry.schema.loadedAt() > ttlMillis) {
+      refreshAsync(connection.getId(), entry);
+    }
+    entry.lastUsed = System.currentTimeMillis();
+    return entry.schema;
+  }
+
+  /** Reloads the schema of {@code connection} now. */
+  public Schema refresh(DbConnection connection) {
+    return load(connection, fingerprint(connection), null).schema;
+  }
+
+  /**
+   * Schema text for the prompt: full detail for the tables that best match {@code question} (plus
+   * the tables they reference), and only the names of the others.
+   */
+  public String describe(Schema schema, String question) {
+    if (schema.tables().isEmpty()) {
+      return schema.database() == null || schema.database().isBlank()
+          ? "Database not specified"
+          : "No tables";
+    }
+    List<Table> selected = selectTables(schema, question);
+    StringBuilder output = new StringBuilder();
+    for (Table table : selected) {
+      if (!output.isEmpty()) {
+        output.append('\n');
+      }
+      appendTable(output, table);
+    }
+    List<String> others = new ArrayList<>();
+    for (String name : schema.tables().keySet()) {
+      if (selected.stream().noneMatch(table -> table.name().equals(name))) {
+        others.add(name);
+      }
+    }
+    if (!others.isEmpty()) {
+      int listed = Math.min(others.size(), Math.max(0, maxOtherTables));
+      output.append("\nOtras tablas: ").append(String.join(", ", others.subList(0, listed)));
+      if (listed < others.size()) {
+        output.append(listed > 0 ? " y " : "").append(others.size() - listed).append(" mas");
+      }
+    }
+    return output.toString();
+  }
+
+  /** Summary of the cached entry for the admin API; {@code loaded=false} if none. */
+  public Map<String, Object> summary(String connectionId) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    Entry entry = entries.get(connectionId);
+    summary.put("connectionId", connectionId);
+    summary.put("loaded", entry != null);
+    if (entry != null) {
+      summary.putAll(summary(entry.schema));
+      summary.put("checkedAt", entry.checkedAt);
+      summary.put("lastUsedAt", entry.lastUsed);
+    }
+    return summary;
+  }
+
+  public Map<String, Object> summary(Schema schema) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("database", schema.database());
+    summary.put("tables", schema.tables().size());
+    summary.put(
+        "columns",
+        schema.tables().values().stream().mapToInt(table -> table.columns().size()).sum());
+    summary.put("checksum", schema.checksum());
+    summary.put("loadedAt", schema.loadedAt());
+    return summary;
+  }
+
+  /** Runs on the refresher thread; an exception escaping it would stop the periodic check. */
+  void revalidate() {
+    long now = System.currentTimeMillis();
+    entries.forEach(
+        (id, entry) -> {
+          if (now - entry.lastUsed > idleMillis) {
+            entries.remove(id, entry);
+            return;
+          }
+          try {
+            DbConnection connection = repository.findById(id).orElse(null);
+            if (connection == null || !connection.isEnabled()) {
+              entries.remove(id, entry);
+              return;
+            }
+            DataSource dataSource = dataSource(connection);
+            String checksum =
+                checksum(dataSource, entry.schema.database(), allowedTables(connection));
+            if (checksum.equals(entry.schema.checksum())) {
+              entry.checkedAt = now;
+            } else {
+              load(connection, fingerprint(connection), entry);
+            }
+          } catch (RuntimeException | SQLException ex) {
+            log.warn("Schema revalidation failed for {}: {}", id, ex.getMessage());
+          }
+        });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    refresher.shutdownNow();
+  }
+
+  private void refreshAsync(String connectionId, Entry entry) {
+    if (entry.refreshing) {
+      return;
+    }
+    entry.refreshing = true;
+    refresher.execute(
+        () -> {
+          try {
+            repository
+                .findById(connectionId)
+                .ifPresent(connection -> load(connection, fingerprint(connection), entry));
+          } catch (RuntimeException ex) {
+            log.warn("Schema refresh failed for {}: {}", connectionId, ex.getMessage());
+          } finally {
+            entry.refreshing = false;
+          }
+        });
+  }
+
+  /** Loads under a per-connection lock; skips the load if another caller replaced {@code seen}. */
+  private Entry load(DbConnection connection, String fingerprint, Entry seen) {
+    Object lock = locks.computeIfAbsent(connection.getId(), key -> new Object());
+    synchronized (lock) {
+      Entry current = entries.get(connection.getId());
+      if (current != null && current != seen && current.fingerprint.equals(fingerprint)) {
+        return current;
+      }
+      Map<String, Object> config = dbConnectionsService.getDecryptedConfig(connection);
+      String database = String.valueOf(config.getOrDefault("database", ""));
+      Schema schema;
+      try {
+        schema =
+            database.isBlank()
+                ? new Schema(database, Map.of(), "", System.currentTimeMillis())
+                : introspect(
+                    pools.dataSource(connection, config), database, allowedTables(connection));
+      } catch (SQLException ex) {
+        throw new IllegalStateException("Schema fetch failed: " + ex.getMessage(), ex);
+      }
+      Entry entry = new Entry(fingerprint, schema);
+      entries.put(connection.getId(), entry);
+      return entry;
+    }
+  }
+
+  private Schema introspect(DataSource dataSource, String database, List<String> allowedTables)
+      throws SQLException {
+    Map<String, String> comments = new LinkedHashMap<>();
+    Map<String, Long> rowEstimates = new LinkedHashMap<>();
+    Map<String, List<Column>> columns = new LinkedHashMap<>();
+    Map<String, List<String>> primaryKeys = new LinkedHashMap<>();
+    Map<String, List<ForeignKey>> foreignKeys = new LinkedHashMap<>();
+    String checksum;
+    try (Connection connection = dataSource.getConnection()) {
+      query(
+          connection,
+          "SELECT TABLE_NAME, TABLE_COMMENT, TABLE_ROWS FROM information_schema.TABLES"
+              + " WHERE TABLE_SCHEMA = ?",
+          database,
+          allowedTables,
+          " ORDER BY TABLE_NAME",
+          rs -> {
+            String table = rs.getString("TABLE_NAME");
+            comments.put(table, rs.getString("TABLE_COMMENT"));
+            long rows = rs.getLong("TABLE_ROWS");
+            rowEstimates.put(table, rs.wasNull() ? null : rows);
+          });
+      query(
+          connection,
+          "SELECT TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, COLUMN_COMMENT"
+              + " FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ?",
+          database,
+          allowedTables,
+          " ORDER BY TABLE_NAME, ORDINAL_POSITION",
+          rs ->
+              columns
+                  .computeIfAbsent(rs.getString("TABLE_NAME"), key -> new ArrayList<>())
+                  .add(
+                      new Column(
+                          rs.getString("COLUMN_NAME"),
+                          rs.getString("COLUMN_TYPE"),
+                          "YES".equalsIgnoreCase(rs.getString("IS_NULLABLE")),
+                          rs.getString("COLUMN_COMMENT"))));
+      query(
+          connection,
+          "SELECT TABLE_NAME, COLUMN_NAME, CONSTRAINT_NAME, REFERENCED_TABLE_NAME,"
+              + " REFERENCED_COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE"
+              + " WHERE TABLE_SCHEMA = ?"
+              + " AND (CONSTRAINT_NAME = 'PRIMARY' OR REFERENCED_TABLE_NAME IS NOT NULL)",
+          database,
+          allowedTables,
+          " ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION",
+          rs -> {
+            String table = rs.getString("TABLE_NAME");
+            if ("PRIMARY".equals(rs.getString("CONSTRAINT_NAME"))) {
+              primaryKeys
+                  .computeIfAbsent(table, key -> new ArrayList<>())
+                  .add(rs.getString("COLUMN_NAME"));
+            } else {
+              foreignKeys
+                  .computeIfAbsent(table, key -> new ArrayList<>())
+                  .add(
+                      new ForeignKey(
+                          rs.getString("COLUMN_NAME"),
+                          rs.getString("REFERENCED_TABLE_NAME"),
+                          rs.getString("REFERENCED_COLUMN_NAME")));
+            }
+          });
+      checksum = checksum(connection, database, allowedTables);
+    }
+    Map<String, Table> tables = new LinkedHashMap<>();
+    for (String name : comments.keySet()) {
+      tables.put(
+          name,
+          new Table(
+              name,
+              comments.get(name),
+              rowEstimates.get(name),
+              List.copyOf(columns.getOrDefault(name, List.of())),
+              List.copyOf(primaryKeys.getOrDefault(name, List.of())),
+              List.copyOf(foreignKeys.getOrDefault(name, List.of()))));
+    }
+    return new Schema(
+        database, Collections.unmodifiableMap(tables), checksum, System.currentTimeMillis());
+  }
+
+  private String checksum(DataSource dataSource, String database, List<String> allowedTables)
+      throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      return checksum(connection, database, allowedTables);
+    }
+  }
+
+  /**
+   * Cheap change detector: a sum of per-column CRCs plus the table count and latest creation time.
+   * UPDATE_TIME is left out because it moves on every data write.
+   */
+  private String checksum(Connection connection, String database, List<String> allowedTables)
+      throws SQLException {
+    StringBuilder checksum = new StringBuilder();
+    query(
+        connection,
+        "SELECT COUNT(*) AS columnCount, COALESCE(SUM(CRC32(CONCAT_WS('|', TABLE_NAME,"
+            + " COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, COLUMN_KEY))), 0) AS crc"
+            + " FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ?",
+        database,
+        allowedTables,
+        "",
+        rs -> checksum.append(rs.getLong("columnCount")).append(':').append(rs.getLong("crc")));
+    query(
+        connection,
+        "SELECT COUNT(*) AS tableCount, MAX(CREATE_TIME) AS created"
+            + " FROM information_schema.TABLES WHERE TABLE_SCHEMA = ?",
+        database,
+        allowedTables,
+        "",
+        rs ->
+            checksum
+                .append(':')
+                .append(rs.getLong("tableCount"))
+                .append(':')
+                .append(rs.getString("created")));
+    return checksum.toString();
+  }
+
+  private interface RowHandler {
+    void handle(ResultSet rs) throws SQLException;
+  }
+
+  private static void query(
+      Connection connection,
+      String sql,
+      String database,
+      List<String> allowedTables,
+      String suffix,
+      RowHandler handler)
+      throws SQLException {
+    StringBuilder statementSql = new StringBuilder(sql);
+    if (!allowedTables.isEmpty()) {
+      statementSql
+          .append(" AND TABLE_NAME IN (")
+          .append(String.join(",", Collections.nCopies(allowedTables.size(), "?")))
+          .append(")");
+    }
+    statementSql.append(suffix);
+    try (PreparedStatement statement = connection.prepareStatement(statementSql.toString())) {
+      int index = 1;
+      statement.setString(index++, database);
+      for (String table : allowedTables) {
+        statement.setString(index++, table);
+      }
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          handler.handle(rs);
+        }
+      }
+    }
+  }
+
+  /**
+   * Scores tables by how many question terms appear in their name (x3), column names and
+   * comments, keeps the best {@code CHATBOT_SCHEMA_MAX_TABLES}, then adds tables they reference.
+   * Small schemas are sent whole.
+   */
+  private List<Table> selectTables(Schema schema, String question) {
+    Collection<Table> all = schema.tables().values();
+    if (all.size() <= maxPromptTables) {
+      return new ArrayList<>(all);
+    }
+    Set<String> terms = terms(question);
+    Map<Table, Integer> scores = new LinkedHashMap<>();
+    for (Table table : all) {
+      int score = 3 * overlap(terms, table.name()) + overlap(terms, table.comment());
+      for (Column column : table.columns()) {
+        score += overlap(terms, column.name()) + overlap(terms, column.comment());
+      }
+      if (score > 0) {
+        scores.put(table, score);
+      }
+    }
+    List<Table> ranked = new ArrayList<>(scores.keySet());
+    ranked.sort(
+        Comparator.comparing((Table table) -> scores.get(table))
+            .reversed()
+            .thenComparing(Table::name));
+    Set<Table> selected =
+        new LinkedHashSet<>(ranked.subList(0, Math.min(maxPromptTables, ranked.size())));
+    for (Table table : List.copyOf(selected)) {
+      for (ForeignKey foreignKey : table.foreignKeys()) {
+        Table referenced = schema.tables().get(foreignKey.referencedTable());
+        if (referenced != null && selected.size() < maxPromptTables * 2) {
+          selected.add(referenced);
+        }
+      }
+    }
+    if (selected.isEmpty()) {
+      // Nothing matched: fall back to the largest tables, the likeliest subjects of a question.
+      List<Table> largest = new ArrayList<>(all);
+      largest.sort(
+          Comparator.comparing(
+                  (Table table) -> table.rowEstimate() != null ? table.rowEstimate() : 0L)
+              .reversed());
+      return largest.subList(0, maxPromptTables);
+    }
+    return new ArrayList<>(selected);
+  }
+
+  private static void appendTable(StringBuilder output, Table table) {
+    output.append(table.name()).append('(');
+    for (int i = 0; i < table.columns().size(); i++) {
+      Column column = table.columns().get(i);
+      if (i > 0) {
+        output.append(", ");
+      }
+      output.append(column.name()).append(':').append(column.type());
+      if (table.primaryKey().contains(column.name())) {
+        output.append(" PK");
+      }
+    }
+    output.append(')');
+    for (ForeignKey foreignKey : table.foreignKeys()) {
+      output
+          .append(" FK ")
+          .append(foreignKey.column())
+          .append("->")
+          .append(foreignKey.referencedTable())
+          .append('.')
+          .append(foreignKey.referencedColumn());
+    }
+    if (table.rowEstimate() != null) {
+      output.append(" ~").append(table.rowEstimate()).append(" filas");
+    }
+    if (table.comment() != null && !table.comment().isBlank()) {
+      output.append(" -- ").append(table.comment());
+    }
+  }
+
+  private static Set<String> terms(String text) {
+    Set<String> terms = new HashSet<>();
+    if (text == null) {
+      return terms;
+    }
+    for (String token : normalize(text).split("[^a-z0-9]+")) {
+      if (token.length() >= MIN_TOKEN_LENGTH) {
+        terms.add(stem(token));
+      }
+    }
+    return terms;
+  }
+
+  private static int overlap(Set<String> terms, String text) {
+    if (text == null || text.isBlank() || terms.isEmpty()) {
+      return 0;
+    }
+    int matches = 0;
+    for (String term : terms(text.replaceAll("([a-z])([A-Z])", "$1 $2"))) {
+      if (terms.contains(term)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  private static String normalize(String text) {
+    return Normalizer.normalize(text, Normalizer.Form.NFD)
+        .replaceAll("\\p{M}", "")
+        .toLowerCase(Locale.ROOT);
+  }
+
+  /** Crude plural folding so "clientes" matches "cliente" and "orders" matches "order". */
+  private static String stem(String token) {
+    if (token.length() > 3 && token.endsWith("s")) {
+      return token.substring(0, token.length() - 1);
+    }
+    return token;
+  }
+
+  private DataSource dataSource(DbConnection connection) {
+    return pools.dataSource(connection, dbConnectionsService.getDecryptedConfig(connection));
+  }
+
+  private List<String> allowedTables(DbConnection connection) {
+    List<String> allowed = dbConnectionsService.getAllowedTables(connection);
+    return allowed != null ? allowed : List.of();
+  }
+
+  private static String fingerprint(DbConnection connection) {
+    return connection.getEncryptedConfig() + "|" + connection.getAllowedTables();
+  }
+}
@@ -0,0 +1,257 @@
+package com.neria.manager.documents;
+
+import com.neria.manager.common.services.EncryptionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Content-addressed cache of extracted document text and chunk embeddings, per tenant.
+ *
+ * <p>Text is keyed by the SHA-256 of the file bytes plus the extraction settings; embeddings by
+ * the SHA-256 of the extracted text plus provider, model and chunking. Text is stored encrypted
+ * like {@code ocr_documents}. Rows unused for {@code DOCUMENT_CACHE_TTL_DAYS} are dropped and the
+ * least recently used rows are evicted once the table exceeds {@code DOCUMENT_CACHE_MAX_MB}.
+ */
+@Component
+public class DocumentCache {
+  private static final Logger log = LoggerFactory.getLogger(DocumentCache.class);
+  private static final String KIND_TEXT = "text";
+  private static final String KIND_EMBEDDINGS = "embeddings";
+
+  public record CachedVectors(String model, List<float[]> vectors) {}
+
+  private final JdbcTemplate jdbcTemplate;
+  private final EncryptionService encryptionService;
+  private final boolean enabled;
+  private final long maxBytes;
+  private final int ttlDays;
+  private final Counter textHits;
+  private final Counter textMisses;
+  private final Counter embeddingHits;
+  private final Counter embeddingMisses;
+
+  public DocumentCache(
+      JdbcTemplate jdbcTemplate, EncryptionService encryptionService, MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.encryptionService = encryptionService;
+    this.enabled =
+        Boolean.parseBoolean(System.getenv().getOrDefault("DOCUMENT_CACHE_ENABLED", "true"));
+    long maxMb = Long.parseLong(System.getenv().getOrDefault("DOCUMENT_CACHE_MAX_MB", "512"));
+    this.maxBytes = maxMb * 1024L * 1024L;
+    this.ttlDays = Integer.parseInt(System.getenv().getOrDefault("DOCUMENT_CACHE_TTL_DAYS", "30"));
+    this.textHits = counter(meterRegistry, KIND_TEXT, "hit");
+    this.textMisses = counter(meterRegistry, KIND_TEXT, "miss");
+    this.embeddingHits = counter(meterRegistry, KIND_EMBEDDINGS, "hit");
+    this.embeddingMisses = counter(meterRegistry, KIND_EMBEDDINGS, "miss");
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public static String sha256(byte[] data) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    } catch (Exception ex) {
+      throw new IllegalStateException("SHA-256 unavailable", ex);
+    }
+  }
+
+  public static String sha256(String value) {
+    return sha256(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public String textKey(String tenantId, String contentSha, String settings) {
+    return sha256(tenantId + "|" + KIND_TEXT + "|" + contentSha + "|" + settings);
+  }
+
+  public String embeddingsKey(String tenantId, String textSha, String providerId, String settings) {
+    return sha256(
+        tenantId + "|" + KIND_EMBEDDINGS + "|" + textSha + "|" + providerId + "|" + settings);
+  }
+
+  public String getText(String key) {
+    if (!enabled) {
+      return null;
+    }
+    try {
+      List<String> rows =
+          jdbcTemplate.query(
+              "SELECT textContent FROM tenant_document_cache WHERE cacheKey = ? AND kind = ?",
+              (rs, rowNum) -> rs.getString("textContent"),
+              key,
+              KIND_TEXT);
+      if (rows.isEmpty() || rows.get(0) == null) {
+        textMisses.increment();
+        return null;
+      }
+      String text = encryptionService.decrypt(rows.get(0));
+      markUsed(key);
+      textHits.increment();
+      return text;
+    } catch (Exception ex) {
+      log.warn("Document cache text lookup failed: {}", ex.getMessage());
+      textMisses.increment();
+      return null;
+    }
+  }
+
+  public void putText(String key, String tenantId, String text) {
+    if (!enabled || text == null || text.isBlank()) {
+      return;
+    }
+    String encrypted = encryptionService.encrypt(text);
+    upsert(key, tenantId, KIND_TEXT, encrypted, null, null, null, encrypted.length());
+  }
+
+  public CachedVectors getVectors(String key) {
+    if (!enabled) {
+      return null;
+    }
+    try {
+      List<CachedVectors> rows =
+          jdbcTemplate.query(
+              "SELECT vectorData, vectorCount, model FROM tenant_document_cache"
+                  + " WHERE cacheKey = ? AND kind = ?",
+              (rs, rowNum) ->
+                  decodeVectors(
+                      rs.getBytes("vectorData"), rs.getInt("vectorCount"), rs.getString("model")),
+              key,
+              KIND_EMBEDDINGS);
+      if (rows.isEmpty() || rows.get(0) == null) {
+        embeddingMisses.increment();
+        return null;
+      }
+      markUsed(key);
+      embeddingHits.increment();
+      return rows.get(0);
+    } catch (Exception ex) {
+      log.warn("Document cache embeddings lookup failed: {}", ex.getMessage());
+      embeddingMisses.increment();
+      return null;
+    }
+  }
+
+  public void putVectors(String key, String tenantId, String model, List<float[]> vectors) {
+    if (!enabled || vectors == null || vectors.isEmpty()) {
+      return;
+    }
+    int dims = vectors.get(0).length;
+    float[] packed = new float[vectors.size() * dims];
+    for (int i = 0; i < vectors.size(); i++) {
+      if (vectors.get(i).length != dims) {
+        return;
+      }
+      System.arraycopy(vectors.get(i), 0, packed, i * dims, dims);
+    }
+    byte[] data = EmbeddingCodec.encodeFloat32(packed);
+    upsert(key, tenantId, KIND_EMBEDDINGS, null, data, vectors.size(), model, data.length);
+  }
+
+  @Scheduled(fixedDelayString = "${DOCUMENT_CACHE_EVICT_MS:600000}")
+  public void evict() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      jdbcTemplate.update(
+          "DELETE FROM tenant_document_cache WHERE lastUsedAt < ?",
+          Timestamp.valueOf(LocalDateTime.now().minusDays(ttlDays)));
+      Long total =
+          jdbcTemplate.queryForObject(
+              "SELECT COALESCE(SUM(sizeBytes), 0) FROM tenant_document_cache", Long.class);
+      long excess = (total != null ? total : 0L) - maxBytes;
+      while (excess > 0) {
+        List<Object[]> oldest =
+            jdbcTemplate.query(
+                "SELECT cacheKey, sizeBytes FROM tenant_document_cache"
+                    + " ORDER BY lastUsedAt ASC LIMIT 200",
+                (rs, rowNum) -> new Object[] {rs.getString("cacheKey"), rs.getLong("sizeBytes")});
+        if (oldest.isEmpty()) {
+          break;
+        }
+        List<Object[]> keys = new ArrayList<>();
+        for (Object[] row : oldest) {
+          if (excess <= 0) {
+            break;
+          }
+          keys.add(new Object[] {row[0]});
+          excess -= (Long) row[1];
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM tenant_document_cache WHERE cacheKey = ?", keys);
+      }
+    } catch (DataAccessException ex) {
+      log.warn("Document cache eviction failed: {}", ex.getMessage());
+    }
+  }
+
+  private void upsert(
+      String key,
+      String tenantId,
+      String kind,
+      String textContent,
+      byte[] vectorData,
+      Integer vectorCount,
+      String model,
+      long sizeBytes) {
+    try {
+      jdbcTemplate.update(
+          "INSERT INTO tenant_document_cache"
+              + " (cacheKey, tenantId, kind, textContent, vectorData, vectorCount, model,"
+              + " sizeBytes)"
+              + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+              + " ON DUPLICATE KEY UPDATE lastUsedAt = CURRENT_TIMESTAMP",
+          key,
+          tenantId,
+          kind,
+          textContent,
+          vectorData,
+          vectorCount,
+          model,
+          sizeBytes);
+    } catch (DataAccessException ex) {
+      log.warn("Document cache write failed: {}", ex.getMessage());
+    }
+  }
+
+  private void markUsed(String key) {
+    jdbcTemplate.update(
+        "UPDATE tenant_document_cache SET hits = hits + 1, lastUsedAt = CURRENT_TIMESTAMP"
+            + " WHERE cacheKey = ?",
+        key);
+  }
+
+  private CachedVectors decodeVectors(byte[] data, int count, String model) {
+    if (data == null || count <= 0 || data.length % (count * Float.BYTES) != 0) {
+      return null;
+    }
+    int dims = data.length / (count * Float.BYTES);
+    float[] packed = EmbeddingCodec.decode(data, EmbeddingCodec.FLOAT32);
+    List<float[]> vectors = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      vectors.add(Arrays.copyOfRange(packed, i * dims, (i + 1) * dims));
+    }
+    return new CachedVectors(model, vectors);
+  }
+
+  private static Counter counter(MeterRegistry meterRegistry, String kind, String result) {
+    return Counter.builder("documents.cache.requests")
+        .tag("kind", kind)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+}
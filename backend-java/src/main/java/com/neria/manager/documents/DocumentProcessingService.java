@@ -16,6 +16,8 @@ import com.neria.manager.runtime.ExecuteRequest;
 import com.neria.manager.runtime.RuntimeService;
 import com.neria.manager.storage.StorageUploadService;
 import com.neria.manager.tenantservices.TenantServicesService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.net.URI;
@@ -23,6 +25,7 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -30,15 +33,18 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import net.sourceforge.tess4j.Tesseract;
-import net.sourceforge.tess4j.TesseractException;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import javax.imageio.ImageIO;
 
 @Service
@@ -50,43 +56,118 @@ public class DocumentProcessingService {
   private static final int OCR_DPI = 200;
   private static final int EMBEDDING_CHUNK_CHARS = 1200;
   private static final int MAX_EMBEDDING_CHUNKS = 40;
+  private static final int MAX_EMBEDDING_HITS = 3;
+  private static final double MIN_EMBEDDING_SCORE = 0.15;
+  private static final String EMBEDDING_MODEL = "text-embedding-3-small";
 
   private final TenantServiceFileRepository fileRepository;
   private final TenantServiceConfigRepository configRepository;
   private final TenantServiceEmbeddingRepository embeddingRepository;
+  private final EmbeddingIndex embeddingIndex;
   private final TenantServicesService tenantServicesService;
   private final OcrDocumentsService ocrDocumentsService;
   private final RuntimeService runtimeService;
   private final PricingService pricingService;
   private final EmbeddingsService embeddingsService;
   private final StorageUploadService storageUploadService;
+  private final TesseractPool tesseractPool;
+  private final PdfTextExtractor pdfTextExtractor;
+  private final DocumentCache documentCache;
   private final ObjectMapper objectMapper;
-  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final PipelineStage<IngestionJob> downloadStage;
+  private final PipelineStage<IngestionJob> extractStage;
+  private final PipelineStage<IngestionJob> chunkStage;
+  private final PipelineStage<IngestionJob> embedStage;
+  private final PipelineStage<IngestionJob> persistStage;
+  private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+  private final long recoveryStaleMinutes;
   private final HttpClient httpClient =
       HttpClient.newBuilder().connectTimeout(java.time.Duration.ofSeconds(12)).build();
-  private final ThreadLocal<Tesseract> tesseractProvider = ThreadLocal.withInitial(this::buildTesseract);
 
   public DocumentProcessingService(
       TenantServiceFileRepository fileRepository,
       TenantServiceConfigRepository configRepository,
       TenantServiceEmbeddingRepository embeddingRepository,
+      EmbeddingIndex embeddingIndex,
       TenantServicesService tenantServicesService,
       OcrDocumentsService ocrDocumentsService,
       RuntimeService runtimeService,
       PricingService pricingService,
       EmbeddingsService embeddingsService,
       StorageUploadService storageUploadService,
-      ObjectMapper objectMapper) {
+      TesseractPool tesseractPool,
+      PdfTextExtractor pdfTextExtractor,
+      DocumentCache documentCache,
+      ObjectMapper objectMapper,
+      JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry) {
     this.fileRepository = fileRepository;
     this.configRepository = configRepository;
     this.embeddingRepository = embeddingRepository;
+    this.embeddingIndex = embeddingIndex;
     this.tenantServicesService = tenantServicesService;
     this.ocrDocumentsService = ocrDocumentsService;
     this.runtimeService = runtimeService;
     this.pricingService = pricingService;
     this.embeddingsService = embeddingsService;
     this.storageUploadService = storageUploadService;
+    this.tesseractPool = tesseractPool;
+    this.pdfTextExtractor = pdfTextExtractor;
+    this.documentCache = documentCache;
     this.objectMapper = objectMapper;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.recoveryStaleMinutes = envInt("DOCUMENT_RECOVERY_STALE_MINUTES", 10);
+
+    int capacity = envInt("DOCUMENT_PIPELINE_QUEUE_CAPACITY", 100);
+    this.persistStage =
+        new PipelineStage<>(
+            "persist",
+            envInt("DOCUMENT_PIPELINE_PERSIST_WORKERS", 2),
+            capacity,
+            1,
+            0L,
+            jobs -> forEachJob(jobs, this::persist),
+            meterRegistry);
+    this.embedStage =
+        new PipelineStage<>(
+            "embed",
+            envInt("DOCUMENT_PIPELINE_EMBED_WORKERS", 2),
+            capacity,
+            envInt("DOCUMENT_PIPELINE_EMBED_BATCH_FILES", 8),
+            envInt("DOCUMENT_PIPELINE_EMBED_LINGER_MS", 50),
+            this::embedBatch,
+            meterRegistry);
+    this.chunkStage =
+        new PipelineStage<>(
+            "chunk",
+            envInt("DOCUMENT_PIPELINE_CHUNK_WORKERS", 1),
+            capacity,
+            1,
+            0L,
+            jobs -> forEachJob(jobs, this::chunk),
+            meterRegistry);
+    this.extractStage =
+        new PipelineStage<>(
+            "extract",
+            envInt("DOCUMENT_PIPELINE_EXTRACT_WORKERS", 2),
+            capacity,
+            1,
+            0L,
+            jobs -> forEachJob(jobs, this::extract),
+            meterRegistry);
+    this.downloadStage =
+        new PipelineStage<>(
+            "download",
+            envInt("DOCUMENT_PIPELINE_DOWNLOAD_WORKERS", 4),
+            capacity,
+            1,
+            0L,
+            jobs -> forEachJob(jobs, this::download),
+            meterRegistry);
   }
 
   public TenantServiceFile registerUpload(
@@ -143,7 +224,7 @@ public class DocumentProcessingService {
     TenantServiceFile saved = fileRepository.save(file);
 
     if (docEnabled && (ocrEnabled || semanticEnabled)) {
-      executor.execute(() -> processAsync(saved.getId()));
+      submit(saved.getId());
     }
 
     return saved;
@@ -251,77 +332,286 @@ public class DocumentProcessingService {
     return String.join("\n\n", blocks);
   }
 
-  private void processAsync(String fileId) {
-    TenantServiceFile file = fileRepository.findById(fileId).orElse(null);
+  /** A file moving through the ingestion stages. */
+  private static final class IngestionJob {
+    final String fileId;
+    TenantServiceFile file;
+    TenantServiceConfig config;
+    boolean ocrEnabled;
+    boolean semanticEnabled;
+    byte[] data;
+    Exception downloadError;
+    String extracted;
+    List<String> chunks = List.of();
+    EmbeddingsService.EmbeddingResult embeddings;
+    Exception embeddingError;
+    String embeddingsCacheKey;
+    final Map<String, String> cacheStatus = new LinkedHashMap<>();
+
+    IngestionJob(String fileId) {
+      this.fileId = fileId;
+    }
+
+    String embeddingGroup() {
+      String providerId = config != null ? config.getProviderId() : null;
+      return file.getTenantId() + "|" + (providerId != null ? providerId : "");
+    }
+  }
+
+  private void submit(String fileId) {
+    if (!inFlight.add(fileId)) {
+      return;
+    }
+    if (!downloadStage.offer(new IngestionJob(fileId))) {
+      inFlight.remove(fileId);
+      log.warn("Ingestion queue full, file {} will be picked up by recovery", fileId);
+    }
+  }
+
+  /** Resumes files left in {@code processing} by a restart or a crashed replica. */
+  @EventListener(ApplicationReadyEvent.class)
+  @Scheduled(
+      fixedDelayString = "${DOCUMENT_RECOVERY_INTERVAL_MS:60000}",
+      initialDelayString = "${DOCUMENT_RECOVERY_INTERVAL_MS:60000}")
+  public void recoverStalled() {
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime cutoff = now.minusMinutes(recoveryStaleMinutes);
+    List<TenantServiceFile> stalled;
+    try {
+      stalled =
+          fileRepository.findTop100ByStatusAndUpdatedAtBeforeOrderByUpdatedAtAsc(
+              "processing", cutoff);
+    } catch (Exception ex) {
+      log.warn("Ingestion recovery skipped: {}", ex.getMessage());
+      return;
+    }
+    for (TenantServiceFile file : stalled) {
+      if (inFlight.contains(file.getId())) {
+        continue;
+      }
+      // Claim the file so only one replica resumes it.
+      int claimed =
+          jdbcTemplate.update(
+              "UPDATE tenant_service_files SET updatedAt = ?"
+                  + " WHERE id = ? AND status = 'processing' AND updatedAt < ?",
+              Timestamp.valueOf(now),
+              file.getId(),
+              Timestamp.valueOf(cutoff));
+      if (claimed == 1) {
+        log.info("Resuming ingestion of file {}", file.getId());
+        submit(file.getId());
+      }
+    }
+  }
+
+  @PreDestroy
+  public void shutdownPipeline() {
+    downloadStage.shutdown();
+    extractStage.shutdown();
+    chunkStage.shutdown();
+    embedStage.shutdown();
+    persistStage.shutdown();
+  }
+
+  private void download(IngestionJob job) {
+    TenantServiceFile file = fileRepository.findById(job.fileId).orElse(null);
     if (file == null) {
+      inFlight.remove(job.fileId);
       return;
     }
-    TenantServiceConfig config =
+    job.file = file;
+    job.config =
         configRepository
             .findByTenantIdAndServiceCode(file.getTenantId(), file.getServiceCode())
             .orElse(null);
-    boolean ocrEnabled = tenantServicesService.resolveOcrEnabled(
-        file.getTenantId(), file.getServiceCode());
-    boolean semanticEnabled = tenantServicesService.resolveSemanticSearchEnabled(
-        file.getTenantId(), file.getServiceCode());
-
-    String extracted = null;
-    if (ocrEnabled) {
-      file.setOcrStatus("processing");
-      fileRepository.save(file);
-      try {
-        extracted = extractText(file);
-        if (extracted == null || extracted.isBlank()) {
-          file.setOcrStatus("failed");
-          file.setErrorMessage("OCR sin contenido útil");
-        } else {
-          OcrDocument doc = createOcrDocument(file, extracted);
+    job.ocrEnabled =
+        tenantServicesService.resolveOcrEnabled(file.getTenantId(), file.getServiceCode());
+    job.semanticEnabled =
+        tenantServicesService.resolveSemanticSearchEnabled(
+            file.getTenantId(), file.getServiceCode());
+
+    // A resumed file whose OCR already finished reuses the stored text.
+    if ("done".equalsIgnoreCase(file.getOcrStatus()) && file.getOcrDocumentId() != null) {
+      job.extracted = getOcrContent(file.getTenantId(), file.getOcrDocumentId());
+    }
+    if (job.extracted == null && (job.ocrEnabled || job.semanticEnabled)) {
+      if (job.ocrEnabled) {
+        file.setOcrStatus("processing");
+        touch(file);
+      }
+      if (file.getStorageUrl() != null && !file.getStorageUrl().isBlank()) {
+        try {
+          job.data = downloadFile(file);
+        } catch (Exception ex) {
+          job.downloadError = ex;
+        }
+      }
+    }
+    forward(extractStage, job);
+  }
+
+  private void extract(IngestionJob job) {
+    TenantServiceFile file = job.file;
+    Exception error = job.downloadError;
+    if (job.extracted == null && error == null && job.data != null) {
+      String textKey =
+          documentCache.textKey(
+              file.getTenantId(), DocumentCache.sha256(job.data), extractionSettings());
+      job.extracted = documentCache.getText(textKey);
+      if (job.extracted != null) {
+        job.cacheStatus.put("text", "hit");
+      } else {
+        try {
+          job.extracted = extractText(file, job.data);
+          documentCache.putText(textKey, file.getTenantId(), job.extracted);
+          job.cacheStatus.put("text", "miss");
+        } catch (Exception ex) {
+          error = ex;
+        }
+      }
+    }
+    job.data = null;
+
+    if (job.ocrEnabled && !"done".equalsIgnoreCase(file.getOcrStatus())) {
+      if (error != null) {
+        file.setOcrStatus("failed");
+        file.setErrorMessage("OCR failed: " + error.getMessage());
+        log.warn("OCR failed for file {}", file.getId(), error);
+      } else if (job.extracted == null || job.extracted.isBlank()) {
+        file.setOcrStatus("failed");
+        file.setErrorMessage("OCR sin contenido útil");
+      } else {
+        try {
+          OcrDocument doc = createOcrDocument(file, job.extracted);
           file.setOcrDocumentId(doc.getId());
           file.setOcrStatus("done");
+        } catch (Exception ex) {
+          file.setOcrStatus("failed");
+          file.setErrorMessage("OCR failed: " + ex.getMessage());
+          log.warn("OCR failed for file {}", file.getId(), ex);
+        }
+      }
+    }
+
+    if (!job.semanticEnabled) {
+      forward(persistStage, job);
+      return;
+    }
+    file.setSemanticStatus("processing");
+    if ("pending".equalsIgnoreCase(file.getEmbeddingStatus())) {
+      file.setEmbeddingStatus("processing");
+    }
+    if (job.extracted == null || job.extracted.isBlank()) {
+      file.setSemanticStatus("failed");
+      file.setErrorMessage(
+          error != null
+              ? "Semantic failed: " + error.getMessage()
+              : "Semantic processing sin OCR");
+      forward(persistStage, job);
+      return;
+    }
+    touch(file);
+    forward(chunkStage, job);
+  }
+
+  private void chunk(IngestionJob job) {
+    job.chunks = chunkForEmbeddings(job.extracted);
+    if (job.chunks.isEmpty()) {
+      job.file.setEmbeddingStatus("skipped");
+      forward(persistStage, job);
+      return;
+    }
+    String providerId = job.config != null ? job.config.getProviderId() : null;
+    job.embeddingsCacheKey =
+        documentCache.embeddingsKey(
+            job.file.getTenantId(),
+            DocumentCache.sha256(job.extracted),
+            providerId != null ? providerId : "",
+            EMBEDDING_MODEL + ";chunk=" + EMBEDDING_CHUNK_CHARS + ";max=" + MAX_EMBEDDING_CHUNKS);
+    DocumentCache.CachedVectors cached = documentCache.getVectors(job.embeddingsCacheKey);
+    if (cached != null && cached.vectors().size() == job.chunks.size()) {
+      job.embeddings =
+          new EmbeddingsService.EmbeddingResult(cached.model(), cached.vectors(), false);
+      job.cacheStatus.put("embeddings", "hit");
+      forward(persistStage, job);
+      return;
+    }
+    job.cacheStatus.put("embeddings", "miss");
+    forward(embedStage, job);
+  }
+
+  /** Embeds the chunks of several files with one request per tenant and provider. */
+  private void embedBatch(List<IngestionJob> jobs) {
+    Map<String, List<IngestionJob>> groups = new LinkedHashMap<>();
+    for (IngestionJob job : jobs) {
+      groups.computeIfAbsent(job.embeddingGroup(), key -> new ArrayList<>()).add(job);
+    }
+    for (List<IngestionJob> group : groups.values()) {
+      IngestionJob first = group.get(0);
+      List<String> inputs = new ArrayList<>();
+      group.forEach(job -> inputs.addAll(job.chunks));
+      try {
+        String providerId = first.config != null ? first.config.getProviderId() : null;
+        EmbeddingsService.EmbeddingResult result =
+            embeddingsService.embed(first.file.getTenantId(), providerId, EMBEDDING_MODEL, inputs);
+        List<float[]> vectors =
+            result != null && result.vectors != null ? result.vectors : List.of();
+        int offset = 0;
+        for (IngestionJob job : group) {
+          int from = Math.min(offset, vectors.size());
+          int to = Math.min(offset + job.chunks.size(), vectors.size());
+          job.embeddings =
+              new EmbeddingsService.EmbeddingResult(
+                  result != null ? result.model : null,
+                  new ArrayList<>(vectors.subList(from, to)),
+                  result != null && result.fallback,
+                  result != null ? result.fallbackReason : null);
+          offset += job.chunks.size();
+          // Local fallback vectors are cheap and would pin a degraded result, so skip those.
+          if (!job.embeddings.fallback && job.embeddings.vectors.size() == job.chunks.size()) {
+            documentCache.putVectors(
+                job.embeddingsCacheKey,
+                job.file.getTenantId(),
+                job.embeddings.model,
+                job.embeddings.vectors);
+          }
         }
       } catch (Exception ex) {
-        file.setOcrStatus("failed");
-        file.setErrorMessage("OCR failed: " + ex.getMessage());
-        log.warn("OCR failed for file {}", file.getId(), ex);
+        log.warn("Embeddings failed for {} files", group.size(), ex);
+        group.forEach(job -> job.embeddingError = ex);
       }
+      group.forEach(job -> forward(persistStage, job));
     }
+  }
 
-    if (semanticEnabled) {
-      file.setSemanticStatus("processing");
-      if ("pending".equalsIgnoreCase(file.getEmbeddingStatus())) {
-        file.setEmbeddingStatus("processing");
+  private void persist(IngestionJob job) {
+    TenantServiceFile file = job.file;
+    if (job.embeddingError != null) {
+      file.setEmbeddingStatus("failed");
+      appendError(file, "Embeddings failed: " + job.embeddingError.getMessage());
+    } else if (job.embeddings != null) {
+      try {
+        storeEmbeddings(file, job.chunks, job.embeddings);
+      } catch (Exception ex) {
+        file.setEmbeddingStatus("failed");
+        appendError(file, "Embeddings failed: " + ex.getMessage());
+        log.warn("Embeddings failed for file {}", file.getId(), ex);
       }
-      fileRepository.save(file);
+    }
+
+    if (job.semanticEnabled && !"failed".equalsIgnoreCase(file.getSemanticStatus())) {
       try {
-        if (extracted == null || extracted.isBlank()) {
-          extracted = extractText(file);
+        String summary = buildSemanticSummary(file, job.config, job.extracted);
+        if (summary == null || summary.isBlank()) {
+          summary = buildFallbackSummary(job.extracted);
         }
-        if (extracted == null || extracted.isBlank()) {
-          file.setSemanticStatus("failed");
-          file.setErrorMessage("Semantic processing sin OCR");
-        } else {
-          try {
-            storeEmbeddings(file, config, extracted);
-          } catch (Exception ex) {
-            file.setEmbeddingStatus("failed");
-            file.setErrorMessage(
-                (file.getErrorMessage() != null ? file.getErrorMessage() + " | " : "")
-                    + "Embeddings failed: "
-                    + ex.getMessage());
-            log.warn("Embeddings failed for file {}", file.getId(), ex);
-          }
-          String summary = buildSemanticSummary(file, config, extracted);
-          if (summary == null || summary.isBlank()) {
-            summary = buildFallbackSummary(extracted);
-          }
-          String outputType =
-              config != null && config.getDocumentOutputType() != null
-                  ? config.getDocumentOutputType()
-                  : "markdown";
-          applySummaryOutput(file, outputType, summary);
-          if (!"failed".equalsIgnoreCase(file.getSemanticStatus())) {
-            file.setSemanticStatus("done");
-          }
+        String outputType =
+            job.config != null && job.config.getDocumentOutputType() != null
+                ? job.config.getDocumentOutputType()
+                : "markdown";
+        applySummaryOutput(file, outputType, summary);
+        if (!"failed".equalsIgnoreCase(file.getSemanticStatus())) {
+          file.setSemanticStatus("done");
         }
       } catch (Exception ex) {
         file.setSemanticStatus("failed");
@@ -330,6 +620,13 @@ public class DocumentProcessingService {
       }
     }
 
+    if (!job.cacheStatus.isEmpty()) {
+      putMetadata(file, "cache", job.cacheStatus);
+    }
+    if (job.embeddings != null && job.embeddings.fallback) {
+      putMetadata(file, "embeddingsFallback", job.embeddings.fallbackReason);
+    }
+
     if ("processing".equals(file.getStatus())) {
       if ("failed".equalsIgnoreCase(file.getOcrStatus())
           || "failed".equalsIgnoreCase(file.getSemanticStatus())) {
@@ -337,12 +634,80 @@ public class DocumentProcessingService {
       } else if ("done".equalsIgnoreCase(file.getOcrStatus())
           || "done".equalsIgnoreCase(file.getSemanticStatus())) {
         file.setStatus("ready");
+      } else {
+        // Nothing left to run (capabilities turned off meanwhile); do not leave it for recovery.
+        file.setStatus("ready");
       }
     }
+    touch(file);
+    inFlight.remove(job.fileId);
+  }
+
+  private void forEachJob(List<IngestionJob> jobs, Consumer<IngestionJob> step) {
+    for (IngestionJob job : jobs) {
+      try {
+        step.accept(job);
+      } catch (Exception ex) {
+        log.warn("Ingestion failed for file {}", job.fileId, ex);
+        inFlight.remove(job.fileId);
+        if (job.file != null) {
+          job.file.setStatus("failed");
+          appendError(job.file, "Processing failed: " + ex.getMessage());
+          try {
+            touch(job.file);
+          } catch (Exception ignored) {
+            // Recovery will retry the file while it is still in processing.
+          }
+        }
+      }
+    }
+  }
+
+  private void forward(PipelineStage<IngestionJob> stage, IngestionJob job) {
+    try {
+      stage.put(job);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      inFlight.remove(job.fileId);
+    }
+  }
+
+  private void touch(TenantServiceFile file) {
     file.setUpdatedAt(LocalDateTime.now());
     fileRepository.save(file);
   }
 
+  private void appendError(TenantServiceFile file, String message) {
+    file.setErrorMessage(
+        (file.getErrorMessage() != null ? file.getErrorMessage() + " | " : "") + message);
+  }
+
+  /** Everything that changes extracted text for the same bytes; part of the text cache key. */
+  private String extractionSettings() {
+    return "lang="
+        + tesseractPool.language()
+        + ";dpi="
+        + OCR_DPI
+        + ";pages="
+        + MAX_PDF_PAGES
+        + ";chars="
+        + MAX_OCR_CHARS
+        + ";textLayer="
+        + pdfTextExtractor.minTextChars();
+  }
+
+  private static int envInt(String name, int defaultValue) {
+    String value = System.getenv(name);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException ex) {
+      return defaultValue;
+    }
+  }
+
   private OcrDocument createOcrDocument(TenantServiceFile file, String content) {
     OcrDocumentsService.CreateOcrDocumentRequest dto =
         new OcrDocumentsService.CreateOcrDocumentRequest();
@@ -358,11 +723,7 @@ public class DocumentProcessingService {
     return ocrDocumentsService.create(file.getTenantId(), dto);
   }
 
-  private String extractText(TenantServiceFile file) throws Exception {
-    if (file.getStorageUrl() == null || file.getStorageUrl().isBlank()) {
-      return null;
-    }
-    byte[] data = downloadFile(file);
+  private String extractText(TenantServiceFile file, byte[] data) throws Exception {
     String contentType =
         file.getContentType() != null && !file.getContentType().isBlank()
             ? file.getContentType()
@@ -377,7 +738,15 @@ public class DocumentProcessingService {
     }
 
     if (isPdf(contentType, file.getOriginalName())) {
-      return truncate(ocrPdf(data), MAX_OCR_CHARS);
+      PdfTextExtractor.Result result =
+          pdfTextExtractor.extract(data, MAX_PDF_PAGES, OCR_DPI, MAX_OCR_CHARS);
+      putMetadata(file, "pdfExtraction", result.toMetadata());
+      log.info(
+          "PDF {} extracted in {} ms ({} pages)",
+          file.getId(),
+          result.millis(),
+          result.pages().size());
+      return truncate(result.text(), MAX_OCR_CHARS);
     }
 
     if (isImage(contentType, file.getOriginalName())) {
@@ -528,48 +897,10 @@ public class DocumentProcessingService {
       if (image == null) {
         throw new IllegalStateException("Invalid image data");
       }
-      return normalizeOcr(runTesseract(image));
+      return normalizeOcr(tesseractPool.doOcr(image));
     }
   }
 
-  private String ocrPdf(byte[] data) throws Exception {
-    try (PDDocument document = PDDocument.load(data)) {
-      PDFRenderer renderer = new PDFRenderer(document);
-      int total = Math.min(document.getNumberOfPages(), MAX_PDF_PAGES);
-      StringBuilder sb = new StringBuilder();
-      for (int i = 0; i < total; i++) {
-        BufferedImage image = renderer.renderImageWithDPI(i, OCR_DPI);
-        String pageText = normalizeOcr(runTesseract(image));
-        if (pageText != null && !pageText.isBlank()) {
-          sb.append(pageText).append("\n");
-        }
-        if (sb.length() > MAX_OCR_CHARS) {
-          break;
-        }
-      }
-      return sb.toString();
-    }
-  }
-
-  private String runTesseract(BufferedImage image) throws TesseractException {
-    Tesseract tesseract = tesseractProvider.get();
-    return tesseract.doOCR(image);
-  }
-
-  private Tesseract buildTesseract() {
-    Tesseract tesseract = new Tesseract();
-    String datapath = System.getenv("TESSDATA_PREFIX");
-    if (datapath != null && !datapath.isBlank()) {
-      tesseract.setDatapath(datapath);
-    }
-    String lang = System.getenv("TESSERACT_LANG");
-    if (lang == null || lang.isBlank()) {
-      lang = "eng";
-    }
-    tesseract.setLanguage(lang);
-    return tesseract;
-  }
-
   private String normalizeOcr(String text) {
     if (text == null) {
       return null;
@@ -729,29 +1060,18 @@ public class DocumentProcessingService {
     return "Documento: " + title + "\n" + trimmed;
   }
 
-  private void storeEmbeddings(TenantServiceFile file, TenantServiceConfig config, String content) {
-    if (content == null || content.isBlank()) {
-      file.setEmbeddingStatus("skipped");
-      return;
-    }
-    String providerId = config != null ? config.getProviderId() : null;
-    List<String> chunks = chunkForEmbeddings(content);
-    if (chunks.isEmpty()) {
-      file.setEmbeddingStatus("skipped");
-      return;
-    }
-    String embeddingModel = "text-embedding-3-small";
-    EmbeddingsService.EmbeddingResult result =
-        embeddingsService.embed(file.getTenantId(), providerId, embeddingModel, chunks);
-
-    if (result == null || result.vectors == null || result.vectors.isEmpty()) {
+  private void storeEmbeddings(
+      TenantServiceFile file, List<String> chunks, EmbeddingsService.EmbeddingResult result) {
+    if (result.vectors == null || result.vectors.isEmpty()) {
       file.setEmbeddingStatus("failed");
       return;
     }
-
-    embeddingRepository.deleteByTenantIdAndFileId(file.getTenantId(), file.getId());
-
+    String model = result.model != null ? result.model : EMBEDDING_MODEL;
+    String encoding = EmbeddingCodec.configuredEncoding();
     int total = Math.min(chunks.size(), result.vectors.size());
+    List<TenantServiceEmbedding> rows = new ArrayList<>(total);
+    List<EmbeddingIndex.Entry> indexed = new ArrayList<>(total);
+    LocalDateTime now = LocalDateTime.now();
     for (int i = 0; i < total; i++) {
       TenantServiceEmbedding embedding = new TenantServiceEmbedding();
       embedding.setId(UUID.randomUUID().toString());
@@ -761,17 +1081,55 @@ public class DocumentProcessingService {
       embedding.setFileId(file.getId());
       embedding.setChunkIndex(i);
       embedding.setChunkText(chunks.get(i));
-      embedding.setEmbeddingModel(result.model != null ? result.model : embeddingModel);
-      embedding.setEmbedding(toEmbeddingJson(result.vectors.get(i)));
-      embedding.setCreatedAt(LocalDateTime.now());
-      embeddingRepository.save(embedding);
-    }
+      embedding.setEmbeddingModel(model);
+      embedding.setEmbeddingVector(EmbeddingCodec.encode(result.vectors.get(i), encoding));
+      embedding.setEmbeddingEncoding(encoding);
+      embedding.setCreatedAt(now);
+      rows.add(embedding);
+      indexed.add(
+          new EmbeddingIndex.Entry(
+              embedding.getId(),
+              embedding.getConversationId(),
+              EmbeddingCodec.decode(embedding.getEmbeddingVector(), encoding)));
+    }
+
+    // Replace the rows atomically and only touch the in-memory index once they are committed, so a
+    // failed insert never leaves the file without embeddings or the index pointing at deleted ids.
+    transactionTemplate.executeWithoutResult(status -> replaceEmbeddingRows(file, rows));
+    embeddingIndex.replaceFile(file.getTenantId(), file.getServiceCode(), file.getId(), indexed);
 
     file.setEmbeddingStatus("done");
-    file.setEmbeddingModel(result.model != null ? result.model : embeddingModel);
+    file.setEmbeddingModel(model);
     file.setEmbeddingCount(total);
   }
 
+  private void replaceEmbeddingRows(TenantServiceFile file, List<TenantServiceEmbedding> rows) {
+    jdbcTemplate.update(
+        "DELETE FROM tenant_service_embeddings WHERE tenantId = ? AND fileId = ?",
+        file.getTenantId(),
+        file.getId());
+    jdbcTemplate.batchUpdate(
+        "INSERT INTO tenant_service_embeddings (id, tenantId, serviceCode, conversationId,"
+            + " fileId, chunkIndex, chunkText, embeddingVector, embeddingEncoding, embeddingModel,"
+            + " createdAt)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+        rows,
+        rows.size(),
+        (ps, row) -> {
+          ps.setString(1, row.getId());
+          ps.setString(2, row.getTenantId());
+          ps.setString(3, row.getServiceCode());
+          ps.setString(4, row.getConversationId());
+          ps.setString(5, row.getFileId());
+          ps.setInt(6, row.getChunkIndex());
+          ps.setString(7, row.getChunkText());
+          ps.setBytes(8, row.getEmbeddingVector());
+          ps.setString(9, row.getEmbeddingEncoding());
+          ps.setString(10, row.getEmbeddingModel());
+          ps.setTimestamp(11, Timestamp.valueOf(row.getCreatedAt()));
+        });
+  }
+
   private List<String> chunkForEmbeddings(String content) {
     String trimmed = content.trim();
     if (trimmed.isEmpty()) {
@@ -796,47 +1154,47 @@ public class DocumentProcessingService {
     if (userMessage == null || userMessage.isBlank()) {
       return null;
     }
-    List<TenantServiceEmbedding> embeddings =
-        embeddingRepository.findByTenantIdAndConversationIdOrderByChunkIndexAsc(
-            tenantId, conversationId);
-    if (embeddings.isEmpty()) {
+    if (files == null || files.stream().noneMatch(f -> "done".equals(f.getEmbeddingStatus()))) {
       return null;
     }
     TenantServiceConfig config =
         configRepository.findByTenantIdAndServiceCode(tenantId, serviceCode).orElse(null);
     String providerId = config != null ? config.getProviderId() : null;
     EmbeddingsService.EmbeddingResult queryResult =
-        embeddingsService.embed(tenantId, providerId, "text-embedding-3-small", List.of(userMessage));
+        embeddingsService.embed(tenantId, providerId, EMBEDDING_MODEL, List.of(userMessage));
     if (queryResult == null || queryResult.vectors == null || queryResult.vectors.isEmpty()) {
       return null;
     }
     float[] queryVector = queryResult.vectors.get(0);
 
+    List<EmbeddingIndex.Hit> hits =
+        embeddingIndex.search(
+            tenantId,
+            serviceCode,
+            conversationId,
+            queryVector,
+            MAX_EMBEDDING_HITS,
+            MIN_EMBEDDING_SCORE);
+    if (hits.isEmpty()) {
+      return null;
+    }
+
     Map<String, TenantServiceFile> fileMap =
         files.stream().collect(java.util.stream.Collectors.toMap(TenantServiceFile::getId, f -> f, (a, b) -> a));
-
-    List<ScoredChunk> scored = new ArrayList<>();
-    for (TenantServiceEmbedding embedding : embeddings) {
-      float[] vector = parseEmbedding(embedding.getEmbedding());
-      if (vector.length == 0 || vector.length != queryVector.length) {
-        continue;
-      }
-      double score = cosine(queryVector, vector);
-      scored.add(new ScoredChunk(embedding, score));
-    }
-    scored.sort((a, b) -> Double.compare(b.score, a.score));
+    List<String> hitIds = hits.stream().map(EmbeddingIndex.Hit::embeddingId).toList();
+    Map<String, TenantServiceEmbedding> chunks =
+        embeddingRepository.findAllById(hitIds).stream()
+            .collect(java.util.stream.Collectors.toMap(TenantServiceEmbedding::getId, e -> e));
 
     List<String> blocks = new ArrayList<>();
-    for (ScoredChunk chunk : scored) {
-      if (blocks.size() >= 3) {
-        break;
-      }
-      if (chunk.score < 0.15) {
+    for (EmbeddingIndex.Hit hit : hits) {
+      TenantServiceEmbedding chunk = chunks.get(hit.embeddingId());
+      if (chunk == null) {
         continue;
       }
-      TenantServiceFile file = fileMap.get(chunk.embedding.getFileId());
+      TenantServiceFile file = fileMap.get(hit.fileId());
       String title = file != null && file.getOriginalName() != null ? file.getOriginalName() : "Documento";
-      String text = chunk.embedding.getChunkText();
+      String text = chunk.getChunkText();
       if (text.length() > MAX_CONTEXT_CHARS) {
         text = text.substring(0, MAX_CONTEXT_CHARS);
       }
@@ -846,45 +1204,6 @@ public class DocumentProcessingService {
     return blocks.isEmpty() ? null : String.join("\n\n", blocks);
   }
 
-  private float[] parseEmbedding(String json) {
-    if (json == null || json.isBlank()) {
-      return new float[0];
-    }
-    try {
-      return objectMapper.readValue(json, float[].class);
-    } catch (Exception ex) {
-      return new float[0];
-    }
-  }
-
-  private double cosine(float[] a, float[] b) {
-    if (a.length == 0 || b.length == 0 || a.length != b.length) {
-      return 0d;
-    }
-    double dot = 0d;
-    double normA = 0d;
-    double normB = 0d;
-    for (int i = 0; i < a.length; i++) {
-      dot += a[i] * b[i];
-      normA += a[i] * a[i];
-      normB += b[i] * b[i];
-    }
-    if (normA == 0d || normB == 0d) {
-      return 0d;
-    }
-    return dot / (Math.sqrt(normA) * Math.sqrt(normB));
-  }
-
-  private static class ScoredChunk {
-    private final TenantServiceEmbedding embedding;
-    private final double score;
-
-    private ScoredChunk(TenantServiceEmbedding embedding, double score) {
-      this.embedding = embedding;
-      this.score = score;
-    }
-  }
-
   private List<String> extractTokens(String message) {
     if (message == null || message.isBlank()) {
       return List.of();
@@ -913,6 +1232,25 @@ public class DocumentProcessingService {
     return false;
   }
 
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> readMetadata(TenantServiceFile file) {
+    Map<String, Object> metadata = new LinkedHashMap<>();
+    if (file.getMetadata() != null && !file.getMetadata().isBlank()) {
+      try {
+        metadata.putAll(objectMapper.readValue(file.getMetadata(), Map.class));
+      } catch (Exception ignored) {
+        // Unreadable metadata is replaced rather than blocking ingestion.
+      }
+    }
+    return metadata;
+  }
+
+  private void putMetadata(TenantServiceFile file, String key, Object value) {
+    Map<String, Object> metadata = readMetadata(file);
+    metadata.put(key, value);
+    file.setMetadata(toJson(metadata));
+  }
+
   private String toJson(Object payload) {
     try {
       return objectMapper.writeValueAsString(payload);
@@ -921,17 +1259,6 @@ public class DocumentProcessingService {
     }
   }
 
-  private String toEmbeddingJson(float[] vector) {
-    if (vector == null) {
-      return "[]";
-    }
-    try {
-      return objectMapper.writeValueAsString(vector);
-    } catch (Exception ex) {
-      return "[]";
-    }
-  }
-
   public Map<String, Object> toResponse(TenantServiceFile file) {
     if (file == null) {
       return null;
@@ -960,6 +1287,10 @@ public class DocumentProcessingService {
     response.put("resultFileUrl", file.getResultFileUrl());
     response.put("resultFileKey", file.getResultFileKey());
     response.put("errorMessage", file.getErrorMessage());
+    Map<String, Object> metadata = readMetadata(file);
+    response.put("pdfExtraction", metadata.get("pdfExtraction"));
+    response.put("cache", metadata.get("cache"));
+    response.put("embeddingsFallback", metadata.get("embeddingsFallback"));
     response.put("createdAt", file.getCreatedAt());
     response.put("updatedAt", file.getUpdatedAt());
     return response;
@@ -0,0 +1,92 @@
+package com.neria.manager.documents;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * Binary encodings for the {@code embeddingVector} column.
+ *
+ * <ul>
+ *   <li>{@code f32le}: the raw vector as little-endian float32 values.
+ *   <li>{@code i8}: a little-endian float32 scale followed by one signed byte per dimension, where
+ *       {@code value = byte * scale}. About a quarter of the size of {@code f32le}.
+ * </ul>
+ */
+public final class EmbeddingCodec {
+  public static final String FLOAT32 = "f32le";
+  public static final String INT8 = "i8";
+
+  private EmbeddingCodec() {}
+
+  /** Encoding for new rows: {@code EMBEDDING_STORAGE_ENCODING}, {@code f32le} or {@code i8}. */
+  public static String configuredEncoding() {
+    String value =
+        System.getenv()
+            .getOrDefault("EMBEDDING_STORAGE_ENCODING", FLOAT32)
+            .trim()
+            .toLowerCase(Locale.ROOT);
+    return INT8.equals(value) || "int8".equals(value) ? INT8 : FLOAT32;
+  }
+
+  public static byte[] encode(float[] vector, String encoding) {
+    return INT8.equals(encoding) ? encodeInt8(vector) : encodeFloat32(vector);
+  }
+
+  public static byte[] encodeFloat32(float[] vector) {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.asFloatBuffer().put(vector);
+    return buffer.array();
+  }
+
+  public static byte[] encodeInt8(float[] vector) {
+    float maxAbs = 0f;
+    for (float value : vector) {
+      maxAbs = Math.max(maxAbs, Math.abs(value));
+    }
+    float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+    ByteBuffer buffer =
+        ByteBuffer.allocate(Float.BYTES + vector.length).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putFloat(scale);
+    for (float value : vector) {
+      buffer.put((byte) Math.max(-127, Math.min(127, Math.round(value / scale))));
+    }
+    return buffer.array();
+  }
+
+  /** Number of dimensions held by an encoded vector, or {@code 0} when it is unusable. */
+  public static int dimensions(byte[] data, String encoding) {
+    if (data == null) {
+      return 0;
+    }
+    if (INT8.equals(encoding)) {
+      return data.length > Float.BYTES ? data.length - Float.BYTES : 0;
+    }
+    return data.length % Float.BYTES == 0 ? data.length / Float.BYTES : 0;
+  }
+
+  public static float[] decode(byte[] data, String encoding) {
+    float[] vector = new float[dimensions(data, encoding)];
+    decodeInto(data, encoding, vector, 0);
+    return vector;
+  }
+
+  /** Decodes straight into {@code target} starting at {@code offset}; returns the dimensions. */
+  public static int decodeInto(byte[] data, String encoding, float[] target, int offset) {
+    int dims = dimensions(data, encoding);
+    if (dims == 0) {
+      return 0;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    if (INT8.equals(encoding)) {
+      float scale = buffer.getFloat();
+      for (int i = 0; i < dims; i++) {
+        target[offset + i] = buffer.get() * scale;
+      }
+    } else {
+      buffer.asFloatBuffer().get(target, offset, dims);
+    }
+    return dims;
+  }
+}
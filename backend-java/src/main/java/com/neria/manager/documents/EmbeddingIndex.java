@@ -0,0 +1,437 @@
+package com.neria.manager.documents;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neria.manager.common.repos.TenantServiceEmbeddingRepository;
+import com.neria.manager.common.services.CacheInvalidationBus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory vector index per tenant and service.
+ *
+ * <p>Each index is an immutable snapshot holding every vector in one contiguous, pre-normalised
+ * {@code float[]}, so a query is a plain dot product per row. Indexes are loaded lazily from
+ * {@code tenant_service_embeddings}, replaced per file when new embeddings are stored, and evicted
+ * least-recently-used once the total vector memory exceeds {@code EMBEDDING_INDEX_MAX_MB}.
+ * Changes are broadcast on {@link CacheInvalidationBus}; other replicas drop the affected indexes
+ * and reload them on the next search.
+ */
+@Component
+public class EmbeddingIndex {
+  private static final Logger log = LoggerFactory.getLogger(EmbeddingIndex.class);
+
+  public static final String REGION = "embedding_index";
+
+  private record ServiceKey(String tenantId, String serviceCode) {}
+
+  public record Hit(String embeddingId, String fileId, double score) {}
+
+  /** One vector to add to the index; {@code vector} does not need to be normalised. */
+  public record Entry(String embeddingId, String conversationId, float[] vector) {}
+
+  private static final class Snapshot {
+    final int dims;
+    final int size;
+    final float[] vectors;
+    final String[] embeddingIds;
+    final String[] fileIds;
+    final String[] conversationIds;
+
+    Snapshot(
+        int dims,
+        int size,
+        float[] vectors,
+        String[] embeddingIds,
+        String[] fileIds,
+        String[] conversationIds) {
+      this.dims = dims;
+      this.size = size;
+      this.vectors = vectors;
+      this.embeddingIds = embeddingIds;
+      this.fileIds = fileIds;
+      this.conversationIds = conversationIds;
+    }
+
+    long bytes() {
+      return (long) vectors.length * Float.BYTES;
+    }
+  }
+
+  /** Accumulates rows for a new snapshot, dropping vectors whose dimension does not match. */
+  private static final class SnapshotBuilder {
+    private final int dims;
+    private float[] vectors;
+    private final List<String> embeddingIds = new ArrayList<>();
+    private final List<String> fileIds = new ArrayList<>();
+    private final List<String> conversationIds = new ArrayList<>();
+
+    SnapshotBuilder(int dims, int expected) {
+      this.dims = dims;
+      this.vectors = new float[Math.max(1, expected) * dims];
+    }
+
+    boolean add(
+        String embeddingId,
+        String fileId,
+        String conversationId,
+        float[] vector,
+        int offset,
+        boolean normalise) {
+      int base = reserve();
+      System.arraycopy(vector, offset, vectors, base, dims);
+      if (normalise && !normaliseSlot(base)) {
+        return false;
+      }
+      commit(embeddingId, fileId, conversationId);
+      return true;
+    }
+
+    /** Decodes a stored binary vector straight into the packed array. */
+    boolean addEncoded(
+        String embeddingId, String fileId, String conversationId, byte[] data, String encoding) {
+      if (EmbeddingCodec.dimensions(data, encoding) != dims) {
+        return false;
+      }
+      int base = reserve();
+      EmbeddingCodec.decodeInto(data, encoding, vectors, base);
+      if (!normaliseSlot(base)) {
+        return false;
+      }
+      commit(embeddingId, fileId, conversationId);
+      return true;
+    }
+
+    private int reserve() {
+      int size = embeddingIds.size();
+      if ((size + 1) * dims > vectors.length) {
+        vectors = Arrays.copyOf(vectors, Math.max(vectors.length * 2, (size + 1) * dims));
+      }
+      return size * dims;
+    }
+
+    private boolean normaliseSlot(int base) {
+      double norm = 0d;
+      for (int i = 0; i < dims; i++) {
+        norm += vectors[base + i] * vectors[base + i];
+      }
+      if (norm == 0d) {
+        return false;
+      }
+      float inv = (float) (1d / Math.sqrt(norm));
+      for (int i = 0; i < dims; i++) {
+        vectors[base + i] *= inv;
+      }
+      return true;
+    }
+
+    private void commit(String embeddingId, String fileId, String conversationId) {
+      embeddingIds.add(embeddingId);
+      fileIds.add(fileId);
+      conversationIds.add(conversationId);
+    }
+
+    Snapshot build() {
+      int size = embeddingIds.size();
+      return new Snapshot(
+          dims,
+          size,
+          Arrays.copyOf(vectors, size * dims),
+          embeddingIds.toArray(new String[0]),
+          fileIds.toArray(new String[0]),
+          conversationIds.toArray(new String[0]));
+    }
+  }
+
+  private final TenantServiceEmbeddingRepository embeddingRepository;
+  private final ObjectMapper objectMapper;
+  private final CacheInvalidationBus invalidationBus;
+  private final long maxBytes;
+  private final Map<ServiceKey, Snapshot> indexes = new LinkedHashMap<>(64, 0.75f, true);
+  private final AtomicLong generation = new AtomicLong();
+  private final Timer searchTimer;
+  private long totalBytes = 0L;
+
+  public EmbeddingIndex(
+      TenantServiceEmbeddingRepository embeddingRepository,
+      ObjectMapper objectMapper,
+      CacheInvalidationBus invalidationBus,
+      MeterRegistry meterRegistry) {
+    this.embeddingRepository = embeddingRepository;
+    this.objectMapper = objectMapper;
+    this.invalidationBus = invalidationBus;
+    long maxMb = Long.parseLong(System.getenv().getOrDefault("EMBEDDING_INDEX_MAX_MB", "256"));
+    this.maxBytes = maxMb * 1024L * 1024L;
+    this.searchTimer =
+        Timer.builder("documents.embedding_index.search")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+    Gauge.builder("documents.embedding_index.bytes", this, EmbeddingIndex::bytes)
+        .register(meterRegistry);
+    Gauge.builder("documents.embedding_index.services", this, EmbeddingIndex::serviceCount)
+        .register(meterRegistry);
+    invalidationBus.subscribe(this::evict);
+  }
+
+  /**
+   * Returns the best {@code k} chunks of a conversation scoring at least {@code minScore}, best
+   * first. Returns nothing when the query dimension does not match the indexed vectors.
+   */
+  public List<Hit> search(
+      String tenantId,
+      String serviceCode,
+      String conversationId,
+      float[] query,
+      int k,
+      double minScore) {
+    long startedAt = System.nanoTime();
+    try {
+      Snapshot snapshot = getOrLoad(new ServiceKey(tenantId, serviceCode));
+      if (snapshot.size == 0 || query == null || query.length != snapshot.dims || k <= 0) {
+        return List.of();
+      }
+      float[] normalised = normalise(query);
+      if (normalised == null) {
+        return List.of();
+      }
+
+      int dims = snapshot.dims;
+      float[] vectors = snapshot.vectors;
+      PriorityQueue<Hit> heap =
+          new PriorityQueue<>(k + 1, (a, b) -> Double.compare(a.score(), b.score()));
+      for (int row = 0; row < snapshot.size; row++) {
+        if (!Objects.equals(conversationId, snapshot.conversationIds[row])) {
+          continue;
+        }
+        int base = row * dims;
+        double dot = 0d;
+        for (int i = 0; i < dims; i++) {
+          dot += normalised[i] * vectors[base + i];
+        }
+        if (dot < minScore) {
+          continue;
+        }
+        if (heap.size() < k) {
+          heap.add(new Hit(snapshot.embeddingIds[row], snapshot.fileIds[row], dot));
+        } else if (dot > heap.peek().score()) {
+          heap.poll();
+          heap.add(new Hit(snapshot.embeddingIds[row], snapshot.fileIds[row], dot));
+        }
+      }
+
+      Hit[] ordered = new Hit[heap.size()];
+      for (int i = ordered.length - 1; i >= 0; i--) {
+        ordered[i] = heap.poll();
+      }
+      return List.of(ordered);
+    } finally {
+      searchTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Replaces the vectors of one file in a loaded index. Indexes that are not in memory are only
+   * marked stale, so the next search loads the stored rows instead. Other replicas drop the index.
+   */
+  public void replaceFile(String tenantId, String serviceCode, String fileId, List<Entry> entries) {
+    ServiceKey key = new ServiceKey(tenantId, serviceCode);
+    invalidationBus.broadcast(REGION, tenantId + "|" + serviceCode);
+    synchronized (indexes) {
+      generation.incrementAndGet();
+      Snapshot current = indexes.get(key);
+      if (current == null) {
+        return;
+      }
+      int dims = current.dims;
+      if (current.size == 0 && !entries.isEmpty() && entries.get(0).vector() != null) {
+        dims = entries.get(0).vector().length;
+      }
+      SnapshotBuilder builder = new SnapshotBuilder(dims, current.size + entries.size());
+      for (int row = 0; row < current.size; row++) {
+        if (!Objects.equals(fileId, current.fileIds[row])) {
+          builder.add(
+              current.embeddingIds[row],
+              current.fileIds[row],
+              current.conversationIds[row],
+              current.vectors,
+              row * current.dims,
+              false);
+        }
+      }
+      for (Entry entry : entries) {
+        float[] vector = entry.vector();
+        if (vector == null || vector.length != dims) {
+          continue;
+        }
+        builder.add(entry.embeddingId(), fileId, entry.conversationId(), vector, 0, true);
+      }
+      store(key, builder.build());
+    }
+  }
+
+  public void invalidateTenant(String tenantId) {
+    if (tenantId == null) {
+      return;
+    }
+    invalidationBus.publish(REGION, tenantId);
+  }
+
+  /** Scope is {@code tenantId|serviceCode}, a bare tenant id, or {@code null} for everything. */
+  private void evict(String region, String scope, long version) {
+    if (!REGION.equals(region) && !CacheInvalidationBus.ALL_REGIONS.equals(region)) {
+      return;
+    }
+    int separator = scope != null ? scope.indexOf('|') : -1;
+    String tenantId = separator >= 0 ? scope.substring(0, separator) : scope;
+    String serviceCode = separator >= 0 ? scope.substring(separator + 1) : null;
+    synchronized (indexes) {
+      generation.incrementAndGet();
+      Iterator<Map.Entry<ServiceKey, Snapshot>> it = indexes.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<ServiceKey, Snapshot> entry = it.next();
+        ServiceKey key = entry.getKey();
+        if ((tenantId == null || tenantId.equals(key.tenantId()))
+            && (serviceCode == null || serviceCode.equals(key.serviceCode()))) {
+          totalBytes -= entry.getValue().bytes();
+          it.remove();
+        }
+      }
+    }
+  }
+
+  private Snapshot getOrLoad(ServiceKey key) {
+    long loadGeneration;
+    synchronized (indexes) {
+      Snapshot cached = indexes.get(key);
+      if (cached != null) {
+        return cached;
+      }
+      loadGeneration = generation.get();
+    }
+
+    Snapshot loaded = load(key);
+    synchronized (indexes) {
+      Snapshot cached = indexes.get(key);
+      if (cached != null) {
+        return cached;
+      }
+      // A file was re-embedded while loading; serve this result but do not keep it.
+      if (generation.get() == loadGeneration) {
+        store(key, loaded);
+      }
+    }
+    return loaded;
+  }
+
+  private Snapshot load(ServiceKey key) {
+    List<Object[]> rows =
+        embeddingRepository.findVectorsByTenantIdAndServiceCode(key.tenantId(), key.serviceCode());
+    SnapshotBuilder builder = null;
+    int skipped = 0;
+    for (Object[] row : rows) {
+      String embeddingId = (String) row[0];
+      String fileId = (String) row[1];
+      String conversationId = (String) row[2];
+      byte[] data = (byte[]) row[3];
+      String encoding = (String) row[4];
+      boolean added;
+      if (data != null) {
+        if (builder == null) {
+          builder = new SnapshotBuilder(EmbeddingCodec.dimensions(data, encoding), rows.size());
+        }
+        added = builder.addEncoded(embeddingId, fileId, conversationId, data, encoding);
+      } else {
+        // Rows written before the binary column existed still carry the JSON text.
+        float[] vector = parseEmbedding((String) row[5]);
+        if (builder == null && vector.length > 0) {
+          builder = new SnapshotBuilder(vector.length, rows.size());
+        }
+        added =
+            builder != null
+                && vector.length == builder.dims
+                && builder.add(embeddingId, fileId, conversationId, vector, 0, true);
+      }
+      if (!added) {
+        skipped++;
+      }
+    }
+    if (skipped > 0) {
+      log.warn(
+          "Embedding index {}/{} skipped {} unusable vectors",
+          key.tenantId(),
+          key.serviceCode(),
+          skipped);
+    }
+    return builder != null ? builder.build() : new SnapshotBuilder(0, 0).build();
+  }
+
+  /** Caller must hold the {@code indexes} lock. */
+  private void store(ServiceKey key, Snapshot snapshot) {
+    Snapshot previous = indexes.put(key, snapshot);
+    if (previous != null) {
+      totalBytes -= previous.bytes();
+    }
+    totalBytes += snapshot.bytes();
+    Iterator<Map.Entry<ServiceKey, Snapshot>> it = indexes.entrySet().iterator();
+    while (totalBytes > maxBytes && indexes.size() > 1 && it.hasNext()) {
+      Map.Entry<ServiceKey, Snapshot> eldest = it.next();
+      if (eldest.getKey().equals(key)) {
+        continue;
+      }
+      totalBytes -= eldest.getValue().bytes();
+      it.remove();
+    }
+  }
+
+  private float[] parseEmbedding(String json) {
+    if (json == null || json.isBlank()) {
+      return new float[0];
+    }
+    try {
+      return objectMapper.readValue(json, float[].class);
+    } catch (Exception ex) {
+      return new float[0];
+    }
+  }
+
+  private float[] normalise(float[] vector) {
+    double norm = 0d;
+    for (float value : vector) {
+      norm += value * value;
+    }
+    if (norm == 0d) {
+      return null;
+    }
+    float inv = (float) (1d / Math.sqrt(norm));
+    float[] result = new float[vector.length];
+    for (int i = 0; i < vector.length; i++) {
+      result[i] = vector[i] * inv;
+    }
+    return result;
+  }
+
+  private double bytes() {
+    synchronized (indexes) {
+      return totalBytes;
+    }
+  }
+
+  private double serviceCount() {
+    synchronized (indexes) {
+      return indexes.size();
+    }
+  }
+}
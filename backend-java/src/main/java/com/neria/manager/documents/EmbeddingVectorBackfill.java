@@ -0,0 +1,114 @@
+package com.neria.manager.documents;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts embeddings stored as JSON text into the binary {@code embeddingVector} column.
+ *
+ * <p>Disabled unless {@code EMBEDDING_BACKFILL_ENABLED=true}; enable it on one instance after
+ * running {@code alter_tenant_service_embeddings_vector_mysql_compat.sql}. Reads keep falling back
+ * to the JSON column until a row is converted, so the backfill can run while serving traffic.
+ */
+@Component
+public class EmbeddingVectorBackfill {
+  private static final Logger log = LoggerFactory.getLogger(EmbeddingVectorBackfill.class);
+
+  private record Converted(String id, byte[] vector) {}
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectMapper objectMapper;
+  private final boolean enabled;
+  private final int batchSize;
+
+  public EmbeddingVectorBackfill(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.objectMapper = objectMapper;
+    this.enabled =
+        Boolean.parseBoolean(System.getenv().getOrDefault("EMBEDDING_BACKFILL_ENABLED", "false"));
+    this.batchSize =
+        Math.max(
+            1, Integer.parseInt(System.getenv().getOrDefault("EMBEDDING_BACKFILL_BATCH", "500")));
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    Thread worker = new Thread(this::run, "embedding-backfill");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  private void run() {
+    String encoding = EmbeddingCodec.configuredEncoding();
+    String lastId = "";
+    int converted = 0;
+    int skipped = 0;
+    try {
+      while (true) {
+        List<Object[]> rows =
+            jdbcTemplate.query(
+                "SELECT id, embedding FROM tenant_service_embeddings"
+                    + " WHERE embeddingVector IS NULL AND embedding IS NOT NULL AND id > ?"
+                    + " ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new Object[] {rs.getString("id"), rs.getString("embedding")},
+                lastId,
+                batchSize);
+        if (rows.isEmpty()) {
+          break;
+        }
+        lastId = (String) rows.get(rows.size() - 1)[0];
+
+        List<Converted> batch = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+          float[] vector = parse((String) row[1]);
+          if (vector.length == 0) {
+            skipped++;
+            continue;
+          }
+          batch.add(new Converted((String) row[0], EmbeddingCodec.encode(vector, encoding)));
+        }
+        if (!batch.isEmpty()) {
+          jdbcTemplate.batchUpdate(
+              "UPDATE tenant_service_embeddings SET embeddingVector = ?, embeddingEncoding = ?,"
+                  + " embedding = NULL WHERE id = ? AND embeddingVector IS NULL",
+              batch,
+              batch.size(),
+              (ps, item) -> {
+                ps.setBytes(1, item.vector());
+                ps.setString(2, encoding);
+                ps.setString(3, item.id());
+              });
+          converted += batch.size();
+        }
+      }
+      log.info("Embedding backfill finished: {} converted, {} unreadable", converted, skipped);
+    } catch (DataAccessException ex) {
+      log.warn(
+          "Embedding backfill stopped after {} rows, rerun to resume: {}",
+          converted,
+          ex.getMessage());
+    }
+  }
+
+  private float[] parse(String json) {
+    if (json == null || json.isBlank()) {
+      return new float[0];
+    }
+    try {
+      return objectMapper.readValue(json, float[].class);
+    } catch (Exception ex) {
+      return new float[0];
+    }
+  }
+}
@@ -2,38 +2,93 @@ package com.neria.manager.documents;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neria.manager.adapters.ProviderHttpClients;
 import com.neria.manager.common.entities.Provider;
 import com.neria.manager.providers.ProvidersService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+/**
+ * Computes embeddings through the tenant's provider, or with a local hash embedding when no
+ * provider can be used.
+ *
+ * <p>Provider calls are split into sub-batches of at most {@code EMBEDDINGS_BATCH_MAX_ITEMS}
+ * inputs and {@code EMBEDDINGS_BATCH_MAX_TOKENS} estimated tokens, sent on up to
+ * {@code EMBEDDINGS_CONCURRENCY} threads, and retried with jittered exponential backoff on 429
+ * and 5xx (honouring {@code Retry-After}). Every fallback to local vectors is counted in
+ * {@code documents.embeddings.fallback} and reported on the result.
+ */
 @Service
 public class EmbeddingsService {
   private static final Logger log = LoggerFactory.getLogger(EmbeddingsService.class);
   private static final int LOCAL_DIM = 128;
+  private static final long BACKOFF_BASE_MS = 500L;
+  private static final long BACKOFF_MAX_MS = 20_000L;
+  private static final long RETRY_AFTER_MAX_MS = 60_000L;
 
   private final ProvidersService providersService;
   private final ObjectMapper objectMapper;
-  private final HttpClient httpClient =
-      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(20)).build();
+  private final ProviderHttpClients httpClients;
+  private final MeterRegistry meterRegistry;
+  private final ExecutorService batchExecutor;
+  private final int maxBatchItems;
+  private final int maxBatchTokens;
+  private final int maxRetries;
+  private final Counter retries;
 
-  public EmbeddingsService(ProvidersService providersService, ObjectMapper objectMapper) {
+  public EmbeddingsService(
+      ProvidersService providersService,
+      ObjectMapper objectMapper,
+      ProviderHttpClients httpClients,
+      MeterRegistry meterRegistry) {
     this.providersService = providersService;
     this.objectMapper = objectMapper;
+    this.httpClients = httpClients;
+    this.meterRegistry = meterRegistry;
+    this.maxBatchItems = Math.max(1, envInt("EMBEDDINGS_BATCH_MAX_ITEMS", 256));
+    this.maxBatchTokens = Math.max(1, envInt("EMBEDDINGS_BATCH_MAX_TOKENS", 100_000));
+    this.maxRetries = Math.max(0, envInt("EMBEDDINGS_MAX_RETRIES", 4));
+    int concurrency = Math.max(1, envInt("EMBEDDINGS_CONCURRENCY", 4));
+    AtomicInteger sequence = new AtomicInteger();
+    this.batchExecutor =
+        Executors.newFixedThreadPool(
+            concurrency,
+            runnable -> {
+              Thread thread = new Thread(runnable, "embeddings-" + sequence.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.retries = Counter.builder("documents.embeddings.retries").register(meterRegistry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    batchExecutor.shutdownNow();
   }
 
   public EmbeddingResult embed(
@@ -42,11 +97,11 @@ public class EmbeddingsService {
       return new EmbeddingResult(model, List.of(), true);
     }
     if (providerId == null || providerId.isBlank()) {
-      return new EmbeddingResult("local-hash", embedLocal(inputs), true);
+      return fallback(inputs, "no_provider");
     }
     Provider provider = providersService.getByTenantAndId(tenantId, providerId);
     if (provider == null || !provider.isEnabled()) {
-      return new EmbeddingResult("local-hash", embedLocal(inputs), true);
+      return fallback(inputs, "provider_unavailable");
     }
 
     String providerType = provider.getType() != null ? provider.getType().toLowerCase(Locale.ROOT) : "";
@@ -57,12 +112,20 @@ public class EmbeddingsService {
         return embedOpenAI(credentials, model, inputs);
       } catch (Exception ex) {
         log.warn("Embeddings provider failed, using local fallback", ex);
-        return new EmbeddingResult("local-hash", embedLocal(inputs), true);
+        return fallback(inputs, "provider_error");
       }
     }
 
     log.warn("Embeddings provider type {} not supported, using local fallback", providerType);
-    return new EmbeddingResult("local-hash", embedLocal(inputs), true);
+    return fallback(inputs, "unsupported_provider");
+  }
+
+  private EmbeddingResult fallback(List<String> inputs, String reason) {
+    Counter.builder("documents.embeddings.fallback")
+        .tag("reason", reason)
+        .register(meterRegistry)
+        .increment(inputs.size());
+    return new EmbeddingResult("local-hash", embedLocal(inputs), true, reason);
   }
 
   private EmbeddingResult embedOpenAI(
@@ -73,50 +136,171 @@ public class EmbeddingsService {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing OpenAI apiKey for embeddings");
     }
     String embeddingModel = model != null && !model.isBlank() ? model : "text-embedding-3-small";
+    URI uri = URI.create(baseUrl + "/v1/embeddings");
+
+    float[][] vectors = new float[inputs.size()][];
+    List<int[]> batches = planBatches(inputs);
+    if (batches.size() == 1) {
+      embedBatch(uri, apiKey, embeddingModel, inputs, 0, inputs.size(), vectors);
+    } else {
+      List<Future<?>> pending = new ArrayList<>();
+      for (int[] batch : batches) {
+        pending.add(
+            batchExecutor.submit(
+                () -> {
+                  embedBatch(uri, apiKey, embeddingModel, inputs, batch[0], batch[1], vectors);
+                  return null;
+                }));
+      }
+      try {
+        for (Future<?> future : pending) {
+          future.get();
+        }
+      } catch (ExecutionException ex) {
+        pending.forEach(future -> future.cancel(true));
+        throw ex.getCause() instanceof Exception cause ? cause : ex;
+      } catch (InterruptedException ex) {
+        pending.forEach(future -> future.cancel(true));
+        Thread.currentThread().interrupt();
+        throw ex;
+      }
+    }
+    return new EmbeddingResult(embeddingModel, Arrays.asList(vectors), false);
+  }
 
-    Map<String, Object> body = Map.of("model", embeddingModel, "input", inputs);
+  /** Splits inputs into {@code [from, to)} ranges within the item and estimated token limits. */
+  private List<int[]> planBatches(List<String> inputs) {
+    List<int[]> batches = new ArrayList<>();
+    int from = 0;
+    int tokens = 0;
+    for (int i = 0; i < inputs.size(); i++) {
+      int estimate = estimateTokens(inputs.get(i));
+      if (i > from && (i - from >= maxBatchItems || tokens + estimate > maxBatchTokens)) {
+        batches.add(new int[] {from, i});
+        from = i;
+        tokens = 0;
+      }
+      tokens += estimate;
+    }
+    batches.add(new int[] {from, inputs.size()});
+    return batches;
+  }
+
+  private int estimateTokens(String input) {
+    return input == null ? 1 : Math.max(1, input.length() / 4);
+  }
+
+  /** Embeds {@code inputs[from, to)} and writes each vector to its original position. */
+  private void embedBatch(
+      URI uri,
+      String apiKey,
+      String embeddingModel,
+      List<String> inputs,
+      int from,
+      int to,
+      float[][] vectors)
+      throws Exception {
+    Map<String, Object> body = Map.of("model", embeddingModel, "input", inputs.subList(from, to));
     String json = objectMapper.writeValueAsString(body);
 
     HttpRequest request =
         HttpRequest.newBuilder()
-            .uri(URI.create(baseUrl + "/v1/embeddings"))
+            .uri(uri)
             .timeout(Duration.ofSeconds(60))
             .header("Authorization", "Bearer " + apiKey)
             .header("Content-Type", "application/json")
             .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
             .build();
 
-    HttpResponse<String> response =
-        httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-    if (response.statusCode() < 200 || response.statusCode() >= 300) {
-      throw new IllegalStateException("Embeddings error: " + response.statusCode() + " " + response.body());
-    }
-
+    HttpResponse<String> response = sendWithRetry(request);
     Map<String, Object> parsed =
         objectMapper.readValue(response.body(), new TypeReference<Map<String, Object>>() {});
     Object dataObj = parsed.get("data");
     if (!(dataObj instanceof List<?> dataList)) {
       throw new IllegalStateException("Embeddings response missing data");
     }
+    if (dataList.size() != to - from) {
+      throw new IllegalStateException(
+          "Embeddings response returned " + dataList.size() + " vectors for " + (to - from));
+    }
 
-    List<EmbeddingItem> items = new ArrayList<>();
+    // Every position must be filled exactly once; a gap would reach the index as a null vector.
+    boolean[] seen = new boolean[to - from];
+    int position = 0;
     for (Object itemObj : dataList) {
       if (!(itemObj instanceof Map<?, ?> item)) {
-        continue;
+        throw new IllegalStateException("Embeddings response item is not an object");
       }
       Object indexObj = item.get("index");
-      int index = indexObj instanceof Number ? ((Number) indexObj).intValue() : items.size();
-      Object embeddingObj = item.get("embedding");
-      float[] vector = parseVector(embeddingObj);
-      items.add(new EmbeddingItem(index, vector));
+      int index = indexObj instanceof Number ? ((Number) indexObj).intValue() : position;
+      if (index < 0 || index >= to - from) {
+        throw new IllegalStateException("Embeddings response index out of range: " + index);
+      }
+      if (seen[index]) {
+        throw new IllegalStateException("Embeddings response repeats index " + index);
+      }
+      seen[index] = true;
+      float[] vector = parseVector(item.get("embedding"));
+      if (vector.length == 0) {
+        throw new IllegalStateException("Embeddings response item " + index + " has no vector");
+      }
+      vectors[from + index] = vector;
+      position++;
     }
+  }
 
-    items.sort(Comparator.comparingInt(a -> a.index));
-    List<float[]> vectors = new ArrayList<>();
-    for (EmbeddingItem item : items) {
-      vectors.add(item.vector);
+  private HttpResponse<String> sendWithRetry(HttpRequest request) throws Exception {
+    for (int attempt = 0; ; attempt++) {
+      HttpResponse<String> response;
+      try {
+        response =
+            httpClients.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+      } catch (IOException ex) {
+        if (attempt >= maxRetries) {
+          throw ex;
+        }
+        retries.increment();
+        Thread.sleep(backoffMillis(attempt, null));
+        continue;
+      }
+      int status = response.statusCode();
+      if (status >= 200 && status < 300) {
+        return response;
+      }
+      boolean retryable = status == 429 || status >= 500;
+      if (!retryable || attempt >= maxRetries) {
+        throw new IllegalStateException("Embeddings error: " + status + " " + response.body());
+      }
+      retries.increment();
+      String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+      long delay = backoffMillis(attempt, retryAfter);
+      log.debug("Embeddings request got {}, retrying in {} ms", status, delay);
+      Thread.sleep(delay);
     }
-    return new EmbeddingResult(embeddingModel, vectors, false);
+  }
+
+  /** {@code Retry-After} when the provider sends one, otherwise full-jitter exponential backoff. */
+  private long backoffMillis(int attempt, String retryAfter) {
+    if (retryAfter != null && !retryAfter.isBlank()) {
+      String value = retryAfter.trim();
+      try {
+        return Math.min(RETRY_AFTER_MAX_MS, Math.max(0L, Long.parseLong(value) * 1000L));
+      } catch (NumberFormatException ex) {
+        try {
+          ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+          long millis = at.toInstant().toEpochMilli() - System.currentTimeMillis();
+          return Math.min(RETRY_AFTER_MAX_MS, Math.max(0L, millis));
+        } catch (Exception ignored) {
+          // fall through to computed backoff
+        }
+      }
+    }
+    long ceiling = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt, 16));
+    return ThreadLocalRandom.current().nextLong(BACKOFF_BASE_MS / 2, ceiling + 1);
+  }
+
+  private static int envInt(String name, int fallback) {
+    return Integer.parseInt(System.getenv().getOrDefault(name, String.valueOf(fallback)));
   }
 
   private List<float[]> embedLocal(List<String> inputs) {
@@ -190,25 +374,23 @@ public class EmbeddingsService {
     }
   }
 
-  private static class EmbeddingItem {
-    private final int index;
-    private final float[] vector;
-
-    private EmbeddingItem(int index, float[] vector) {
-      this.index = index;
-      this.vector = vector;
-    }
-  }
-
   public static class EmbeddingResult {
     public final String model;
     public final List<float[]> vectors;
     public final boolean fallback;
+    /** Why local vectors were used ({@code provider_error}, ...), or {@code null}. */
+    public final String fallbackReason;
 
     public EmbeddingResult(String model, List<float[]> vectors, boolean fallback) {
+      this(model, vectors, fallback, null);
+    }
+
+    public EmbeddingResult(
+        String model, List<float[]> vectors, boolean fallback, String fallbackReason) {
       this.model = model;
       this.vectors = vectors;
       this.fallback = fallback;
+      this.fallbackReason = fallbackReason;
     }
   }
 }
@@ -0,0 +1,175 @@
+package com.neria.manager.documents;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Extracts text from a PDF page by page. Pages with a usable text layer are read with
+ * {@link PDFTextStripper}; only pages without one are rendered and sent to Tesseract, in parallel
+ * across the {@link TesseractPool}.
+ */
+@Component
+public class PdfTextExtractor {
+  private static final Logger log = LoggerFactory.getLogger(PdfTextExtractor.class);
+
+  /** Page read via {@code text}, {@code ocr}, {@code empty}, {@code skipped} or {@code failed}. */
+  public record PageStat(int page, String method, int chars, long millis) {}
+
+  public record Result(String text, List<PageStat> pages, long millis) {
+    public Map<String, Object> toMetadata() {
+      int textPages = 0;
+      int ocrPages = 0;
+      List<Map<String, Object>> details = new ArrayList<>();
+      for (PageStat stat : pages) {
+        if ("text".equals(stat.method())) {
+          textPages++;
+        } else if ("ocr".equals(stat.method())) {
+          ocrPages++;
+        }
+        Map<String, Object> detail = new LinkedHashMap<>();
+        detail.put("page", stat.page());
+        detail.put("method", stat.method());
+        detail.put("chars", stat.chars());
+        detail.put("ms", stat.millis());
+        details.add(detail);
+      }
+      Map<String, Object> summary = new LinkedHashMap<>();
+      summary.put("pages", pages.size());
+      summary.put("textPages", textPages);
+      summary.put("ocrPages", ocrPages);
+      summary.put("ms", millis);
+      summary.put("pageStats", details);
+      return summary;
+    }
+  }
+
+  private record OcrPage(String text, PageStat stat) {}
+
+  private final TesseractPool tesseractPool;
+  private final ExecutorService ocrExecutor;
+  private final int minTextChars;
+  private final Timer textPageTimer;
+  private final Timer ocrPageTimer;
+
+  public PdfTextExtractor(TesseractPool tesseractPool, MeterRegistry meterRegistry) {
+    this.tesseractPool = tesseractPool;
+    this.ocrExecutor = Executors.newFixedThreadPool(tesseractPool.size());
+    this.minTextChars =
+        Integer.parseInt(System.getenv().getOrDefault("PDF_TEXT_LAYER_MIN_CHARS", "40"));
+    this.textPageTimer =
+        Timer.builder("documents.pdf.page").tag("method", "text").register(meterRegistry);
+    this.ocrPageTimer =
+        Timer.builder("documents.pdf.page").tag("method", "ocr").register(meterRegistry);
+  }
+
+  public int minTextChars() {
+    return minTextChars;
+  }
+
+  /**
+   * Reads pages in order until {@code maxChars} is reached. At most {@code maxOcrPages} pages are
+   * rasterised; text-layer pages do not count towards that limit.
+   */
+  public Result extract(byte[] data, int maxOcrPages, int dpi, int maxChars) throws Exception {
+    long startedAt = System.nanoTime();
+    List<PageStat> stats = new ArrayList<>();
+    Map<Integer, String> texts = new LinkedHashMap<>();
+    Map<Integer, Future<OcrPage>> pendingOcr = new LinkedHashMap<>();
+
+    try (PDDocument document = PDDocument.load(data)) {
+      PDFTextStripper stripper = new PDFTextStripper();
+      PDFRenderer renderer = new PDFRenderer(document);
+      int pageCount = document.getNumberOfPages();
+      int chars = 0;
+      for (int page = 1; page <= pageCount && chars < maxChars; page++) {
+        long pageStart = System.nanoTime();
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        String text = normalize(stripper.getText(document));
+        if (text.length() >= minTextChars) {
+          long millis = elapsedMillis(pageStart);
+          textPageTimer.record(millis, TimeUnit.MILLISECONDS);
+          stats.add(new PageStat(page, "text", text.length(), millis));
+          texts.put(page, text);
+          chars += text.length();
+          continue;
+        }
+        if (pendingOcr.size() >= maxOcrPages) {
+          stats.add(new PageStat(page, "skipped", 0, 0L));
+          continue;
+        }
+        // PDDocument is not thread safe, so pages are rendered here and only OCR runs in parallel.
+        BufferedImage image = renderer.renderImageWithDPI(page - 1, dpi);
+        long renderMillis = elapsedMillis(pageStart);
+        int pageNumber = page;
+        pendingOcr.put(
+            page,
+            ocrExecutor.submit(
+                () -> {
+                  long ocrStart = System.nanoTime();
+                  String ocr = normalize(tesseractPool.doOcr(image));
+                  long millis = renderMillis + elapsedMillis(ocrStart);
+                  ocrPageTimer.record(millis, TimeUnit.MILLISECONDS);
+                  String method = ocr.isEmpty() ? "empty" : "ocr";
+                  return new OcrPage(ocr, new PageStat(pageNumber, method, ocr.length(), millis));
+                }));
+        // Keep the page slot so the text stays in page order.
+        texts.put(page, null);
+      }
+    }
+
+    for (Map.Entry<Integer, Future<OcrPage>> entry : pendingOcr.entrySet()) {
+      int page = entry.getKey();
+      try {
+        OcrPage result = entry.getValue().get();
+        stats.add(result.stat());
+        texts.put(page, result.text());
+      } catch (ExecutionException ex) {
+        log.warn("OCR failed for PDF page {}: {}", page, ex.getCause().getMessage());
+        stats.add(new PageStat(page, "failed", 0, 0L));
+      }
+    }
+    stats.sort((a, b) -> Integer.compare(a.page(), b.page()));
+
+    StringBuilder sb = new StringBuilder();
+    for (String text : texts.values()) {
+      if (text != null && !text.isBlank()) {
+        sb.append(text).append("\n");
+      }
+    }
+    return new Result(sb.toString(), stats, elapsedMillis(startedAt));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    ocrExecutor.shutdownNow();
+  }
+
+  private String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    return text.replaceAll("\\s+", " ").trim();
+  }
+
+  private long elapsedMillis(long startedAt) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+  }
+}
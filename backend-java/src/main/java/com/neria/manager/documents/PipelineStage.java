@@ -0,0 +1,100 @@
+package com.neria.manager.documents;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One stage of the ingestion pipeline: a bounded queue drained by a fixed number of worker
+ * threads. Workers hand the handler up to {@code maxBatch} items at a time so a stage can batch
+ * work across files; a full queue blocks the previous stage, which keeps memory bounded.
+ */
+class PipelineStage<T> {
+  private static final Logger log = LoggerFactory.getLogger(PipelineStage.class);
+
+  private final String name;
+  private final BlockingQueue<T> queue;
+  private final int maxBatch;
+  private final long lingerMs;
+  private final Consumer<List<T>> handler;
+  private final List<Thread> workers = new ArrayList<>();
+  private volatile boolean running = true;
+
+  PipelineStage(
+      String name,
+      int workers,
+      int capacity,
+      int maxBatch,
+      long lingerMs,
+      Consumer<List<T>> handler,
+      MeterRegistry meterRegistry) {
+    this.name = name;
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    this.maxBatch = Math.max(1, maxBatch);
+    this.lingerMs = Math.max(0L, lingerMs);
+    this.handler = handler;
+    Gauge.builder("documents.pipeline.queue.depth", queue, BlockingQueue::size)
+        .tag("stage", name)
+        .register(meterRegistry);
+    for (int i = 0; i < Math.max(1, workers); i++) {
+      Thread worker = new Thread(this::drainLoop, "ingest-" + name + "-" + i);
+      worker.setDaemon(true);
+      worker.start();
+      this.workers.add(worker);
+    }
+  }
+
+  /** Enqueues without waiting; returns {@code false} when the stage is full. */
+  boolean offer(T item) {
+    return queue.offer(item);
+  }
+
+  /** Enqueues, waiting for room so a slow stage pushes back on the ones before it. */
+  void put(T item) throws InterruptedException {
+    queue.put(item);
+  }
+
+  void shutdown() {
+    running = false;
+    workers.forEach(Thread::interrupt);
+  }
+
+  private void drainLoop() {
+    List<T> batch = new ArrayList<>(maxBatch);
+    while (running) {
+      try {
+        T first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        if (maxBatch > 1) {
+          long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+          while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            T next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+              break;
+            }
+            batch.add(next);
+          }
+        }
+        handler.accept(batch);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception ex) {
+        log.error("Ingestion stage {} failed: {}", name, ex.getMessage(), ex);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+}
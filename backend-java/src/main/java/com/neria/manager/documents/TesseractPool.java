@@ -0,0 +1,74 @@
+package com.neria.manager.documents;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded pool of {@link Tesseract} instances. A Tesseract instance is not thread safe and holds
+ * native state, so at most {@code TESSERACT_POOL_SIZE} OCR calls run at once and callers wait for
+ * a free instance instead of creating one per thread.
+ */
+@Component
+public class TesseractPool {
+  private final int size;
+  private final String language;
+  private final BlockingQueue<Tesseract> idle;
+  private final AtomicInteger created = new AtomicInteger();
+
+  public TesseractPool() {
+    int defaultSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    this.size =
+        Math.max(
+            1,
+            Integer.parseInt(
+                System.getenv()
+                    .getOrDefault("TESSERACT_POOL_SIZE", String.valueOf(defaultSize))));
+    this.idle = new ArrayBlockingQueue<>(size);
+    String lang = System.getenv("TESSERACT_LANG");
+    this.language = lang == null || lang.isBlank() ? "eng" : lang;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String language() {
+    return language;
+  }
+
+  public String doOcr(BufferedImage image) throws TesseractException, InterruptedException {
+    Tesseract tesseract = borrow();
+    try {
+      return tesseract.doOCR(image);
+    } finally {
+      idle.offer(tesseract);
+    }
+  }
+
+  private Tesseract borrow() throws InterruptedException {
+    Tesseract tesseract = idle.poll();
+    if (tesseract != null) {
+      return tesseract;
+    }
+    if (created.incrementAndGet() <= size) {
+      return build();
+    }
+    created.decrementAndGet();
+    return idle.take();
+  }
+
+  private Tesseract build() {
+    Tesseract tesseract = new Tesseract();
+    String datapath = System.getenv("TESSDATA_PREFIX");
+    if (datapath != null && !datapath.isBlank()) {
+      tesseract.setDatapath(datapath);
+    }
+    tesseract.setLanguage(language);
+    return tesseract;
+  }
+}
@@ -1,18 +1,198 @@
 package com.neria.manager.emailautomation;
 
+import com.neria.manager.common.entities.TenantServiceEmailAccount;
+import com.neria.manager.config.AppProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+/**
+ * Syncs the enabled email automation accounts in parallel on {@code app.emailAutomation.workers}
+ * threads, so one slow mailbox or LLM classification no longer holds up the rest.
+ *
+ * <p>Every tick queues the accounts that are due; a mailbox pushed by IMAP IDLE is synced when
+ * {@link ImapMailboxes} reports new mail and otherwise only every {@code idleResyncSeconds}. A sync
+ * running past {@code accountTimeoutSeconds} has its connection dropped. Failing accounts back off
+ * exponentially from {@code backoffBaseSeconds} up to {@code backoffMaxSeconds}. Syncs are timed
+ * as {@code email_automation.sync} per outcome.
+ */
 @Component
 public class EmailAutomationScheduler {
+  private static final Logger log = LoggerFactory.getLogger(EmailAutomationScheduler.class);
+
   private final TenantServiceEmailService emailService;
+  private final ImapMailboxes mailboxes;
+  private final ExecutorService workers;
+  private final ScheduledExecutorService watchdog;
+  private final Map<String, AccountState> accounts = new ConcurrentHashMap<>();
+  private final long accountTimeoutSeconds;
+  private final long idleResyncMillis;
+  private final long backoffBaseMillis;
+  private final long backoffMaxMillis;
+  private final Timer synced;
+  private final Timer failed;
 
-  public EmailAutomationScheduler(TenantServiceEmailService emailService) {
+  public EmailAutomationScheduler(
+      TenantServiceEmailService emailService,
+      ImapMailboxes mailboxes,
+      AppProperties properties,
+      MeterRegistry meterRegistry) {
     this.emailService = emailService;
+    this.mailboxes = mailboxes;
+    AppProperties.EmailAutomation config = properties.getEmailAutomation();
+    this.accountTimeoutSeconds = config.getAccountTimeoutSeconds();
+    this.idleResyncMillis = TimeUnit.SECONDS.toMillis(config.getIdleResyncSeconds());
+    this.backoffBaseMillis = TimeUnit.SECONDS.toMillis(config.getBackoffBaseSeconds());
+    this.backoffMaxMillis = TimeUnit.SECONDS.toMillis(config.getBackoffMaxSeconds());
+    AtomicInteger sequence = new AtomicInteger();
+    this.workers =
+        Executors.newFixedThreadPool(
+            Math.max(1, config.getWorkers()),
+            runnable -> {
+              Thread thread = new Thread(runnable, "email-poll-" + sequence.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.watchdog =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "email-poll-watchdog");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.synced =
+        Timer.builder("email_automation.sync").tag("outcome", "success").register(meterRegistry);
+    this.failed =
+        Timer.builder("email_automation.sync").tag("outcome", "failure").register(meterRegistry);
+    mailboxes.onNewMail(this::onNewMail);
   }
 
   @Scheduled(fixedDelayString = "${app.emailAutomation.pollIntervalMs:60000}")
   public void pollEmailAccounts() {
-    emailService.pollAllEnabledAccounts();
+    List<TenantServiceEmailAccount> enabled = emailService.pollableAccounts();
+    Set<String> ids =
+        enabled.stream().map(TenantServiceEmailAccount::getId).collect(Collectors.toSet());
+    for (String id : accounts.keySet()) {
+      if (!ids.contains(id) && accounts.remove(id) != null) {
+        mailboxes.close(id);
+      }
+    }
+    long now = System.currentTimeMillis();
+    for (TenantServiceEmailAccount account : enabled) {
+      AccountState state = accounts.computeIfAbsent(account.getId(), id -> new AccountState());
+      state.account = account;
+      if (now < state.retryAt) {
+        continue;
+      }
+      if (mailboxes.idling(account.getId()) && now - state.syncedAt < idleResyncMillis) {
+        continue;
+      }
+      submit(state);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+    watchdog.shutdownNow();
+  }
+
+  /** IDLE push; an account in backoff waits for the tick after {@code retryAt} like any other. */
+  private void onNewMail(String accountId) {
+    AccountState state = accounts.get(accountId);
+    if (state != null && System.currentTimeMillis() >= state.retryAt) {
+      submit(state);
+    }
+  }
+
+  /** Queues a sync; a request made while one is queued or running triggers one more run. */
+  private void submit(AccountState state) {
+    state.requested.set(true);
+    if (state.scheduled.compareAndSet(false, true)) {
+      workers.execute(() -> drain(state));
+    }
+  }
+
+  private void drain(AccountState state) {
+    try {
+      while (state.requested.getAndSet(false)) {
+        if (!sync(state)) {
+          state.requested.set(false);
+          break;
+        }
+      }
+    } finally {
+      state.scheduled.set(false);
+    }
+    if (state.requested.get() && state.scheduled.compareAndSet(false, true)) {
+      workers.execute(() -> drain(state));
+    }
+  }
+
+  private boolean sync(AccountState state) {
+    TenantServiceEmailAccount account = state.account;
+    Thread runner = Thread.currentThread();
+    ScheduledFuture<?> guard =
+        watchdog.schedule(
+            () -> {
+              log.warn("Email account {} sync timed out", account.getId());
+              mailboxes.abort(account.getId());
+              runner.interrupt();
+            },
+            accountTimeoutSeconds,
+            TimeUnit.SECONDS);
+    long started = System.nanoTime();
+    try {
+      emailService.syncAccount(account);
+      synced.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      state.failures = 0;
+      state.retryAt = 0L;
+      state.syncedAt = System.currentTimeMillis();
+      return true;
+    } catch (Exception ex) {
+      failed.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      state.failures++;
+      long delay =
+          Math.min(
+              backoffMaxMillis, backoffBaseMillis << Math.min(20, state.failures - 1));
+      state.retryAt = System.currentTimeMillis() + delay;
+      log.warn(
+          "Email polling failed account={} tenant={} failures={} retryInSeconds={} error={}",
+          account.getId(),
+          account.getTenantId(),
+          state.failures,
+          delay / 1000,
+          ex.getMessage());
+      return false;
+    } finally {
+      guard.cancel(false);
+      // A timeout may interrupt just after the sync returned; do not leak it to the next task.
+      Thread.interrupted();
+    }
+  }
+
+  private static final class AccountState {
+    final AtomicBoolean scheduled = new AtomicBoolean();
+    final AtomicBoolean requested = new AtomicBoolean();
+    volatile TenantServiceEmailAccount account;
+    volatile long retryAt;
+    volatile long syncedAt;
+    volatile int failures;
   }
 }
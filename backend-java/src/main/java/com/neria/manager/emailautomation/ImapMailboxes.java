@@ -0,0 +1,268 @@
+package com.neria.manager.emailautomation;
+
+import com.neria.manager.common.entities.TenantServiceEmailAccount;
+import com.neria.manager.config.AppProperties;
+import com.sun.mail.imap.IMAPStore;
+import com.sun.mail.imap.IdleManager;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.event.MessageCountAdapter;
+import jakarta.mail.event.MessageCountEvent;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Open IMAP folders of the email automation accounts, kept between syncs so a poll does not pay
+ * for a TCP/TLS handshake and LOGIN every time.
+ *
+ * <p>A folder is reopened when the account's connection settings change and closed on any
+ * failure. When the server supports IDLE (and {@code app.emailAutomation.idleEnabled} is set) the
+ * folder is watched by a shared {@link IdleManager} between syncs, and new mail is reported to the
+ * {@link #onNewMail} listener as soon as the server announces it.
+ */
+@Component
+public class ImapMailboxes {
+  private static final Logger log = LoggerFactory.getLogger(ImapMailboxes.class);
+  private static final String DEFAULT_FOLDER = "INBOX";
+  private static final String TIMEOUT_MILLIS = "10000";
+
+  interface FolderTask {
+    void run(Folder folder) throws Exception;
+  }
+
+  private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+  private final ExecutorService idleExecutor;
+  private final IdleManager idleManager;
+  private volatile Consumer<String> newMailListener = accountId -> {};
+
+  public ImapMailboxes(AppProperties properties) {
+    AtomicInteger sequence = new AtomicInteger();
+    this.idleExecutor =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "imap-idle-" + sequence.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    IdleManager manager = null;
+    if (properties.getEmailAutomation().isIdleEnabled()) {
+      try {
+        manager = new IdleManager(Session.getInstance(new Properties()), idleExecutor);
+      } catch (IOException ex) {
+        log.warn("IMAP IDLE unavailable, falling back to polling: {}", ex.getMessage());
+      }
+    }
+    this.idleManager = manager;
+  }
+
+  /** Registers the callback run with the account id when a watched folder receives mail. */
+  void onNewMail(Consumer<String> listener) {
+    this.newMailListener = listener;
+  }
+
+  /**
+   * Runs {@code task} on the account's open folder, connecting first if needed, then hands the
+   * folder back to IDLE. Returns {@code false} without running the task while another sync holds
+   * the mailbox. A failure closes the connection so the next call starts from scratch.
+   */
+  boolean withFolder(TenantServiceEmailAccount account, String password, FolderTask task)
+      throws Exception {
+    Mailbox mailbox = mailboxes.computeIfAbsent(account.getId(), Mailbox::new);
+    if (!mailbox.lock.tryLock()) {
+      return false;
+    }
+    try {
+      Folder folder = mailbox.folder(account, password);
+      task.run(folder);
+      mailbox.watch(folder);
+      return true;
+    } catch (Exception ex) {
+      mailbox.disconnect();
+      throw ex;
+    } finally {
+      mailbox.lock.unlock();
+    }
+  }
+
+  /** Whether new mail for the account is being pushed by IDLE rather than found by polling. */
+  boolean idling(String accountId) {
+    Mailbox mailbox = mailboxes.get(accountId);
+    return mailbox != null && mailbox.idle;
+  }
+
+  /** Drops the account's connection; an in-flight sync fails and the next one reconnects. */
+  void abort(String accountId) {
+    Mailbox mailbox = mailboxes.get(accountId);
+    if (mailbox != null) {
+      mailbox.abort();
+    }
+  }
+
+  /** Closes and forgets the account's connection (account deleted or disabled). */
+  void close(String accountId) {
+    Mailbox mailbox = mailboxes.remove(accountId);
+    if (mailbox != null) {
+      mailbox.disconnect();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (idleManager != null) {
+      idleManager.stop();
+    }
+    mailboxes.values().forEach(Mailbox::disconnect);
+    mailboxes.clear();
+    idleExecutor.shutdownNow();
+  }
+
+  private static String fingerprint(TenantServiceEmailAccount account) {
+    return account.getHost()
+        + "|"
+        + account.getPort()
+        + "|"
+        + account.getUsername()
+        + "|"
+        + account.getEncryptedPassword()
+        + "|"
+        + account.getFolder()
+        + "|"
+        + account.isUseSsl()
+        + "|"
+        + account.isUseStartTls();
+  }
+
+  private final class Mailbox {
+    final String accountId;
+    final ReentrantLock lock = new ReentrantLock();
+    private String fingerprint;
+    private volatile Store store;
+    private Folder folder;
+    volatile boolean idle;
+
+    Mailbox(String accountId) {
+      this.accountId = accountId;
+    }
+
+    synchronized Folder folder(TenantServiceEmailAccount account, String password)
+        throws MessagingException {
+      String current = fingerprint(account);
+      if (folder != null && folder.isOpen() && current.equals(fingerprint)) {
+        return folder;
+      }
+      disconnect();
+      connect(account, password);
+      fingerprint = current;
+      return folder;
+    }
+
+    private void connect(TenantServiceEmailAccount account, String password)
+        throws MessagingException {
+      String protocol = account.isUseSsl() ? "imaps" : "imap";
+      String prefix = "mail." + protocol + ".";
+      Properties props = new Properties();
+      props.put("mail.store.protocol", protocol);
+      props.put(prefix + "connectiontimeout", TIMEOUT_MILLIS);
+      props.put(prefix + "timeout", TIMEOUT_MILLIS);
+      if (account.isUseSsl()) {
+        props.put(prefix + "ssl.enable", "true");
+      }
+      if (account.isUseStartTls()) {
+        props.put(prefix + "starttls.enable", "true");
+      }
+      if (idleManager != null) {
+        // IdleManager watches connections through NIO selectors.
+        props.put(prefix + "usesocketchannels", "true");
+      }
+      Store opened = Session.getInstance(props).getStore(protocol);
+      try {
+        if (account.getPort() != null) {
+          opened.connect(account.getHost(), account.getPort(), account.getUsername(), password);
+        } else {
+          opened.connect(account.getHost(), account.getUsername(), password);
+        }
+        Folder inbox =
+            opened.getFolder(
+                account.getFolder() != null && !account.getFolder().isBlank()
+                    ? account.getFolder()
+                    : DEFAULT_FOLDER);
+        inbox.open(Folder.READ_ONLY);
+        if (!(inbox instanceof UIDFolder)) {
+          throw new MessagingException("Folder does not support UID");
+        }
+        boolean supportsIdle =
+            idleManager != null
+                && opened instanceof IMAPStore imapStore
+                && imapStore.hasCapability("IDLE");
+        if (supportsIdle) {
+          inbox.addMessageCountListener(
+              new MessageCountAdapter() {
+                @Override
+                public void messagesAdded(MessageCountEvent event) {
+                  newMailListener.accept(accountId);
+                }
+              });
+        }
+        store = opened;
+        folder = inbox;
+        idle = supportsIdle;
+      } catch (MessagingException | RuntimeException ex) {
+        closeQuietly(opened);
+        throw ex;
+      }
+    }
+
+    /** Watches the folder until the next notification or the next use by a sync. */
+    synchronized void watch(Folder watched) {
+      if (!idle || watched != folder) {
+        return;
+      }
+      try {
+        idleManager.watch(watched);
+      } catch (MessagingException ex) {
+        idle = false;
+        log.debug("IMAP IDLE not available for account {}: {}", accountId, ex.getMessage());
+      }
+    }
+
+    /** Closes the socket without waiting for the sync that holds the mailbox. */
+    void abort() {
+      Store current = store;
+      if (current != null) {
+        closeQuietly(current);
+      }
+    }
+
+    synchronized void disconnect() {
+      idle = false;
+      fingerprint = null;
+      folder = null;
+      if (store != null) {
+        closeQuietly(store);
+        store = null;
+      }
+    }
+
+    private void closeQuietly(Store target) {
+      try {
+        target.close();
+      } catch (MessagingException | RuntimeException ex) {
+        log.debug("IMAP close failed for account {}: {}", accountId, ex.getMessage());
+      }
+    }
+  }
+}
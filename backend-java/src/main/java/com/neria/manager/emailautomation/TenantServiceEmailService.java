@@ -14,12 +14,11 @@ import com.neria.manager.common.services.EncryptionService;
 import com.neria.manager.jira.TenantServiceJiraService;
 import com.neria.manager.runtime.ExecuteRequest;
 import com.neria.manager.runtime.RuntimeService;
+import jakarta.mail.FetchProfile;
 import jakarta.mail.Folder;
 import jakarta.mail.Message;
 import jakarta.mail.Multipart;
 import jakarta.mail.Part;
-import jakarta.mail.Session;
-import jakarta.mail.Store;
 import jakarta.mail.UIDFolder;
 import jakarta.mail.internet.InternetAddress;
 import java.nio.charset.StandardCharsets;
@@ -29,10 +28,10 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.Base64;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Properties;
 import java.util.UUID;
 import java.util.Comparator;
 import org.slf4j.Logger;
@@ -45,7 +44,6 @@ import org.springframework.web.server.ResponseStatusException;
 @Service
 public class TenantServiceEmailService {
   private static final Logger log = LoggerFactory.getLogger(TenantServiceEmailService.class);
-  private static final String DEFAULT_FOLDER = "INBOX";
   private static final String DEFAULT_MODEL = "gpt-4.1-mini";
   private static final int MAX_BODY_CHARS = 12000;
   private static final int MAX_PREVIEW_CHARS = 1200;
@@ -78,6 +76,7 @@ public class TenantServiceEmailService {
   private final TenantServiceJiraService jiraService;
   private final EncryptionService encryptionService;
   private final RuntimeService runtimeService;
+  private final ImapMailboxes mailboxes;
   private final ObjectMapper objectMapper;
 
   public TenantServiceEmailService(
@@ -88,6 +87,7 @@ public class TenantServiceEmailService {
       TenantServiceJiraService jiraService,
       EncryptionService encryptionService,
       RuntimeService runtimeService,
+      ImapMailboxes mailboxes,
       ObjectMapper objectMapper) {
     this.accountRepository = accountRepository;
     this.messageRepository = messageRepository;
@@ -96,6 +96,7 @@ public class TenantServiceEmailService {
     this.jiraService = jiraService;
     this.encryptionService = encryptionService;
     this.runtimeService = runtimeService;
+    this.mailboxes = mailboxes;
     this.objectMapper = objectMapper;
   }
 
@@ -152,7 +153,11 @@ public class TenantServiceEmailService {
       account.setLastSyncAt(null);
     }
     account.setUpdatedAt(LocalDateTime.now());
-    return EmailAccountResponse.fromEntity(accountRepository.save(account));
+    TenantServiceEmailAccount saved = accountRepository.save(account);
+    if (!saved.isEnabled()) {
+      mailboxes.close(saved.getId());
+    }
+    return EmailAccountResponse.fromEntity(saved);
   }
 
   public void deleteAccount(String tenantId, String serviceCode, String accountId) {
@@ -168,6 +173,7 @@ public class TenantServiceEmailService {
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Email account not found");
     }
     accountRepository.delete(account);
+    mailboxes.close(account.getId());
   }
 
   public List<EmailMessageResponse> listMessages(
@@ -239,6 +245,9 @@ public class TenantServiceEmailService {
   }
 
   private boolean shouldRefreshOnList(TenantServiceEmailAccount account) {
+    if (mailboxes.idling(account.getId())) {
+      return false;
+    }
     LocalDateTime lastSync = account.getLastSyncAt();
     if (lastSync == null) {
       return true;
@@ -257,13 +266,37 @@ public class TenantServiceEmailService {
     }
   }
 
-  public void pollAllEnabledAccounts() {
-    for (TenantServiceEmailAccount account : accountRepository.findByEnabledTrue()) {
-      pollAccount(account);
-    }
+  /** Enabled accounts whose service still has email automation turned on. */
+  List<TenantServiceEmailAccount> pollableAccounts() {
+    Map<String, Boolean> automated = new HashMap<>();
+    return accountRepository.findByEnabledTrue().stream()
+        .filter(
+            account ->
+                automated.computeIfAbsent(
+                    account.getServiceCode(),
+                    code ->
+                        serviceCatalogRepository
+                            .findByCode(code)
+                            .map(ServiceCatalog::isEmailAutomationEnabled)
+                            .orElse(false)))
+        .toList();
   }
 
   private void pollAccount(TenantServiceEmailAccount account) {
+    try {
+      syncAccount(account);
+    } catch (Exception ex) {
+      log.warn("Email polling failed account={} tenant={} error={}",
+          account.getId(), account.getTenantId(), ex.getMessage());
+    }
+  }
+
+  /**
+   * Fetches and processes the account's new messages over its shared IMAP connection. Throws on
+   * any connection or folder error so {@link EmailAutomationScheduler} can back off; does nothing
+   * while another sync of the same account is running.
+   */
+  void syncAccount(TenantServiceEmailAccount account) throws Exception {
     Optional<ServiceCatalog> service =
         serviceCatalogRepository.findByCode(account.getServiceCode());
     if (service.isEmpty() || !service.get().isEmailAutomationEnabled()) {
@@ -272,70 +305,49 @@ public class TenantServiceEmailService {
     if (!account.isEnabled()) {
       return;
     }
-    try {
-      fetchNewMessages(account, service.get());
-    } catch (Exception ex) {
-      log.warn("Email polling failed account={} tenant={} error={}",
-          account.getId(), account.getTenantId(), ex.getMessage());
-    }
-  }
-
-  private void fetchNewMessages(TenantServiceEmailAccount account, ServiceCatalog service) {
     String password = account.getEncryptedPassword() != null
         ? encryptionService.decrypt(account.getEncryptedPassword())
         : null;
     if (password == null || password.isBlank()) {
-      log.warn("Email account {} missing password, skipping", account.getId());
-      return;
-    }
-
-    Properties props = new Properties();
-    String protocol = account.isUseSsl() ? "imaps" : "imap";
-    props.put("mail.store.protocol", protocol);
-    props.put("mail.imap.connectiontimeout", "10000");
-    props.put("mail.imap.timeout", "10000");
-    if (account.isUseSsl()) {
-      props.put("mail.imap.ssl.enable", "true");
-    }
-    if (account.isUseStartTls()) {
-      props.put("mail.imap.starttls.enable", "true");
-    }
-
-    Session session = Session.getInstance(props);
-    try (Store store = session.getStore(protocol)) {
-      if (account.getPort() != null) {
-        store.connect(account.getHost(), account.getPort(), account.getUsername(), password);
-      } else {
-        store.connect(account.getHost(), account.getUsername(), password);
-      }
-      Folder folder = store.getFolder(
-          account.getFolder() != null && !account.getFolder().isBlank()
-              ? account.getFolder()
-              : DEFAULT_FOLDER);
-      folder.open(Folder.READ_ONLY);
-      if (!(folder instanceof UIDFolder uidFolder)) {
-        log.warn("Email account {} folder does not support UID", account.getId());
-        folder.close();
-        return;
-      }
-      long lastUid = account.getLastUid() != null ? account.getLastUid() : 0L;
-      Message[] messages = uidFolder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
-      long maxUid = lastUid;
+      throw new IllegalStateException("Email account " + account.getId() + " missing password");
+    }
+    mailboxes.withFolder(
+        account, password, folder -> fetchNewMessages(account, service.get(), folder));
+  }
+
+  private void fetchNewMessages(
+      TenantServiceEmailAccount account, ServiceCatalog service, Folder folder)
+      throws Exception {
+    UIDFolder uidFolder = (UIDFolder) folder;
+    long lastUid = account.getLastUid() != null ? account.getLastUid() : 0L;
+    Message[] messages = uidFolder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
+    // One round trip for the headers and UIDs of the whole batch instead of one per message.
+    FetchProfile profile = new FetchProfile();
+    profile.add(FetchProfile.Item.ENVELOPE);
+    profile.add(UIDFolder.FetchProfileItem.UID);
+    folder.fetch(messages, profile);
+    long maxUid = lastUid;
+    boolean completed = false;
+    try {
       for (Message message : messages) {
         long uid = uidFolder.getUID(message);
         if (uid <= lastUid) {
           continue;
         }
-        maxUid = Math.max(maxUid, uid);
         processMessage(account, service, message);
+        maxUid = Math.max(maxUid, uid);
+      }
+      completed = true;
+    } finally {
+      // Keep the progress of an interrupted batch so its messages are not fetched again.
+      if (completed || maxUid > lastUid) {
+        account.setLastUid(maxUid);
+        if (completed) {
+          account.setLastSyncAt(LocalDateTime.now());
+        }
+        account.setUpdatedAt(LocalDateTime.now());
+        accountRepository.save(account);
       }
-      account.setLastUid(maxUid);
-      account.setLastSyncAt(LocalDateTime.now());
-      account.setUpdatedAt(LocalDateTime.now());
-      accountRepository.save(account);
-      folder.close();
-    } catch (Exception ex) {
-      log.warn("Email account {} sync error {}", account.getId(), ex.getMessage());
     }
   }
 
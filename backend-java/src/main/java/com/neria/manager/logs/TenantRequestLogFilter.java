@@ -6,8 +6,6 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.neria.manager.common.entities.TenantRequestLog;
 import com.neria.manager.common.security.AuthContext;
-import com.neria.manager.common.entities.Tenant;
-import com.neria.manager.tenants.TenantsService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -53,13 +51,10 @@ public class TenantRequestLogFilter extends OncePerRequestFilter {
 
   private final ObjectMapper objectMapper;
   private final TenantRequestLogsService logsService;
-  private final TenantsService tenantsService;
 
-  public TenantRequestLogFilter(
-      ObjectMapper objectMapper, TenantRequestLogsService logsService, TenantsService tenantsService) {
+  public TenantRequestLogFilter(ObjectMapper objectMapper, TenantRequestLogsService logsService) {
     this.objectMapper = objectMapper;
     this.logsService = logsService;
-    this.tenantsService = tenantsService;
   }
 
   @Override
@@ -108,11 +103,7 @@ public class TenantRequestLogFilter extends OncePerRequestFilter {
     log.setIpAddress(request.getRemoteAddr());
     log.setUserAgent(truncate(request.getHeader("User-Agent"), 255));
     log.setCreatedAt(LocalDateTime.now());
-
-    Tenant tenant = tenantsService.getById(auth.getTenantId());
-    if (tenant != null && tenant.getBillingEmail() != null) {
-      log.setUserEmail(tenant.getBillingEmail());
-    }
+    // userEmail is filled from the tenant's billing email by the batched insert.
 
     String payload = extractPayload(request);
     if (payload != null && !payload.isBlank()) {
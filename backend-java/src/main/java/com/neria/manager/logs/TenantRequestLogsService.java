@@ -2,6 +2,7 @@ package com.neria.manager.logs;
 
 import com.neria.manager.common.entities.TenantRequestLog;
 import com.neria.manager.common.repos.TenantRequestLogRepository;
+import com.neria.manager.common.services.AsyncEventWriter;
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.List;
@@ -12,9 +13,12 @@ import org.springframework.stereotype.Service;
 @Service
 public class TenantRequestLogsService {
   private final TenantRequestLogRepository repository;
+  private final AsyncEventWriter eventWriter;
 
-  public TenantRequestLogsService(TenantRequestLogRepository repository) {
+  public TenantRequestLogsService(
+      TenantRequestLogRepository repository, AsyncEventWriter eventWriter) {
     this.repository = repository;
+    this.eventWriter = eventWriter;
   }
 
   public TenantRequestLog record(TenantRequestLog log) {
@@ -24,7 +28,8 @@ public class TenantRequestLogsService {
     if (log.getCreatedAt() == null) {
       log.setCreatedAt(LocalDateTime.now());
     }
-    return repository.save(log);
+    eventWriter.write(log);
+    return log;
   }
 
   public List<TenantRequestLog> list(int limit, String tenantId, String type, String query) {
@@ -2,6 +2,7 @@ package com.neria.manager.policies;
 
 import com.neria.manager.common.entities.Policy;
 import com.neria.manager.common.repos.PolicyRepository;
+import com.neria.manager.common.services.ConfigCache;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -11,9 +12,11 @@ import org.springframework.stereotype.Service;
 @Service
 public class PoliciesService {
   private final PolicyRepository repository;
+  private final ConfigCache configCache;
 
-  public PoliciesService(PolicyRepository repository) {
+  public PoliciesService(PolicyRepository repository, ConfigCache configCache) {
     this.repository = repository;
+    this.configCache = configCache;
   }
 
   public Policy getByTenant(String tenantId) {
@@ -50,11 +53,14 @@ public class PoliciesService {
     policy.setRedactionEnabled(dto.redactionEnabled != null ? dto.redactionEnabled : true);
     policy.setMetadata(dto.metadataJson != null ? dto.metadataJson : "{}");
     policy.setUpdatedAt(LocalDateTime.now());
-    return repository.save(policy);
+    Policy saved = repository.save(policy);
+    configCache.invalidateTenant(ConfigCache.POLICIES, tenantId);
+    return saved;
   }
 
   public void deleteByTenant(String tenantId) {
     repository.deleteByTenantId(tenantId);
+    configCache.invalidateTenant(ConfigCache.POLICIES, tenantId);
   }
 
   public static class UpdatePolicyRequest {
@@ -3,6 +3,7 @@ package com.neria.manager.pricing;
 import com.neria.manager.common.entities.PricingModel;
 import com.neria.manager.common.repos.PricingModelRepository;
 import com.neria.manager.common.repos.TenantPricingRepository;
+import com.neria.manager.common.services.ConfigCache;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -13,11 +14,15 @@ import org.springframework.stereotype.Service;
 public class PricingService {
   private final PricingModelRepository pricingRepository;
   private final TenantPricingRepository tenantPricingRepository;
+  private final ConfigCache configCache;
 
   public PricingService(
-      PricingModelRepository pricingRepository, TenantPricingRepository tenantPricingRepository) {
+      PricingModelRepository pricingRepository,
+      TenantPricingRepository tenantPricingRepository,
+      ConfigCache configCache) {
     this.pricingRepository = pricingRepository;
     this.tenantPricingRepository = tenantPricingRepository;
+    this.configCache = configCache;
   }
 
   public List<PricingModel> list() {
@@ -34,7 +39,10 @@ public class PricingService {
     item.setEnabled(dto.enabled != null ? dto.enabled : true);
     item.setCreatedAt(LocalDateTime.now());
     item.setUpdatedAt(LocalDateTime.now());
-    return pricingRepository.save(item);
+    PricingModel saved = pricingRepository.save(item);
+    // Models are shared by every tenant, so the whole region goes.
+    configCache.invalidateRegion(ConfigCache.PRICING);
+    return saved;
   }
 
   public PricingModel update(String id, UpdatePricingRequest dto) {
@@ -47,7 +55,9 @@ public class PricingService {
     if (dto.outputCostPer1k != null) item.setOutputCostPer1k(dto.outputCostPer1k);
     if (dto.enabled != null) item.setEnabled(dto.enabled);
     item.setUpdatedAt(LocalDateTime.now());
-    return pricingRepository.save(item);
+    PricingModel saved = pricingRepository.save(item);
+    configCache.invalidateRegion(ConfigCache.PRICING);
+    return saved;
   }
 
   public PricingModel resolve(String providerType, String model) {
@@ -121,7 +131,9 @@ public class PricingService {
       existing.setOutputCostPer1k(entry.outputCostPer1k);
       existing.setEnabled(true);
       existing.setUpdatedAt(LocalDateTime.now());
-      return pricingRepository.save(existing);
+      PricingModel saved = pricingRepository.save(existing);
+      configCache.invalidateRegion(ConfigCache.PRICING);
+      return saved;
     }
     PricingModel created = new PricingModel();
     created.setId(UUID.randomUUID().toString());
@@ -132,7 +144,9 @@ public class PricingService {
     created.setEnabled(true);
     created.setCreatedAt(LocalDateTime.now());
     created.setUpdatedAt(LocalDateTime.now());
-    return pricingRepository.save(created);
+    PricingModel saved = pricingRepository.save(created);
+    configCache.invalidateRegion(ConfigCache.PRICING);
+    return saved;
   }
 
   private String normalizeProviderType(String providerType) {
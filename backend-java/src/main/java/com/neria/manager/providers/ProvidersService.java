@@ -2,11 +2,16 @@ package com.neria.manager.providers;
 
 import com.neria.manager.common.entities.Provider;
 import com.neria.manager.common.repos.ProviderRepository;
+import com.neria.manager.common.services.ConfigCache;
 import com.neria.manager.common.services.EncryptionService;
 import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.UUID;
 import org.springframework.stereotype.Service;
@@ -16,10 +21,13 @@ public class ProvidersService {
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
   private final ProviderRepository repository;
   private final EncryptionService encryptionService;
+  private final ConfigCache configCache;
 
-  public ProvidersService(ProviderRepository repository, EncryptionService encryptionService) {
+  public ProvidersService(
+      ProviderRepository repository, EncryptionService encryptionService, ConfigCache configCache) {
     this.repository = repository;
     this.encryptionService = encryptionService;
+    this.configCache = configCache;
   }
 
   public List<Provider> list(String tenantId) {
@@ -45,7 +53,9 @@ public class ProvidersService {
     provider.setEnabled(dto.enabled != null ? dto.enabled : true);
     provider.setCreatedAt(LocalDateTime.now());
     provider.setUpdatedAt(LocalDateTime.now());
-    return repository.save(provider);
+    Provider saved = repository.save(provider);
+    configCache.invalidateTenant(ConfigCache.PROVIDERS, tenantId);
+    return saved;
   }
 
   public Provider update(String tenantId, String id, UpdateProviderRequest dto) {
@@ -68,7 +78,9 @@ public class ProvidersService {
       provider.setConfig(config);
     }
     provider.setUpdatedAt(LocalDateTime.now());
-    return repository.save(provider);
+    Provider saved = repository.save(provider);
+    configCache.invalidateTenant(ConfigCache.PROVIDERS, tenantId);
+    return saved;
   }
 
   public Provider getByTenantAndId(String tenantId, String id) {
@@ -83,7 +95,23 @@ public class ProvidersService {
     if (provider == null) {
       return "{}";
     }
-    return encryptionService.decrypt(provider.getEncryptedCredentials());
+    String encrypted = provider.getEncryptedCredentials();
+    // Keyed by the ciphertext digest as well, so rotated credentials are never served stale.
+    return configCache.get(
+        ConfigCache.CREDENTIALS,
+        provider.getId() + "|" + sha256(encrypted),
+        () -> encryptionService.decrypt(encrypted));
+  }
+
+  private static String sha256(String value) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
   }
 
   private String normalizeJson(Object value) {
@@ -8,4 +8,6 @@ public class ExecuteRequest {
   public Map<String, Object> payload;
   public String serviceCode;
   public String requestId;
+  /** Use the service's response cache even when temperature is not 0. */
+  public Boolean cache;
 }
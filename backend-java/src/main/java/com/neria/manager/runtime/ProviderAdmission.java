@@ -0,0 +1,326 @@
+package com.neria.manager.runtime;
+
+import com.neria.manager.common.services.RateLimitService.RateLimitExceededException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Admission control in front of upstream provider accounts. Tenants configure their own provider
+ * rows but often point them at the same account, so calls are grouped by account (see
+ * {@code gateKey}) and each account gets a cap on in-flight calls and a tokens-per-minute budget.
+ *
+ * <p>Callers that cannot start immediately wait in a weighted fair queue: every request gets a
+ * virtual finish tag of {@code max(virtualTime, tenant's last tag) + estimatedTokens / weight}
+ * and the lowest tag goes next, so a tenant fanning out only delays its own requests. Waiting is
+ * bounded by a deadline, after which the call is rejected with 429 and {@code Retry-After}.
+ *
+ * <p>A gate is shared by every tenant using the account, so tenant config can only tighten it:
+ * each limit is the strictest positive value among the operator default and the values tenants
+ * have asked for, and is never raised while the gate lives. Gates idle for
+ * {@code PROVIDER_GATE_IDLE_SECONDS} are dropped. Meters are tagged by provider type only; the
+ * gate key is derived from credentials and is never exported.
+ */
+@Component
+public class ProviderAdmission {
+  /** Held while a provider call runs; {@link #release(Permit, int)} it with the actual usage. */
+  public static final class Permit {
+    private final Gate gate;
+    private final int reservedTokens;
+    private final long waitMillis;
+
+    private Permit(Gate gate, int reservedTokens, long waitMillis) {
+      this.gate = gate;
+      this.reservedTokens = reservedTokens;
+      this.waitMillis = waitMillis;
+    }
+
+    public long waitMillis() {
+      return waitMillis;
+    }
+  }
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+  private final Map<String, Timer> queueWaits = new ConcurrentHashMap<>();
+  private final int defaultMaxInFlight;
+  private final int defaultTokensPerMinute;
+  private final long queueTimeoutMs;
+  private final long gateIdleMillis;
+
+  public ProviderAdmission(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.defaultMaxInFlight =
+        Integer.parseInt(System.getenv().getOrDefault("PROVIDER_MAX_IN_FLIGHT", "16"));
+    this.defaultTokensPerMinute =
+        Integer.parseInt(System.getenv().getOrDefault("PROVIDER_TOKENS_PER_MINUTE", "0"));
+    this.queueTimeoutMs =
+        Long.parseLong(System.getenv().getOrDefault("PROVIDER_QUEUE_TIMEOUT_MS", "30000"));
+    this.gateIdleMillis =
+        Long.parseLong(System.getenv().getOrDefault("PROVIDER_GATE_IDLE_SECONDS", "600")) * 1000L;
+  }
+
+  public int defaultMaxInFlight() {
+    return defaultMaxInFlight;
+  }
+
+  public int defaultTokensPerMinute() {
+    return defaultTokensPerMinute;
+  }
+
+  /**
+   * Waits for a slot on the account behind {@code gateKey}. {@code maxInFlight} and
+   * {@code tokensPerMinute} are the caller's configured limits; they only take effect when
+   * stricter than the gate's current ones (0 or less asks for nothing).
+   */
+  public Permit acquire(
+      String gateKey,
+      String providerType,
+      int maxInFlight,
+      int tokensPerMinute,
+      String tenantId,
+      double weight,
+      int estimatedTokens) {
+    String provider = providerType != null ? providerType.toLowerCase(Locale.ROOT) : "openai";
+    // Counting the caller inside compute keeps evictIdle from dropping a gate about to be used.
+    Gate gate =
+        gates.compute(
+            gateKey,
+            (key, existing) -> {
+              Gate target = existing != null ? existing : new Gate(provider);
+              target.users.incrementAndGet();
+              return target;
+            });
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+    try {
+      return gate.acquire(
+          maxInFlight, tokensPerMinute, tenantId, weight, Math.max(1, estimatedTokens), deadline);
+    } catch (RuntimeException ex) {
+      gate.leave();
+      throw ex;
+    }
+  }
+
+  public void release(Permit permit, int actualTokens) {
+    if (permit != null) {
+      permit.gate.release(permit.reservedTokens, actualTokens);
+      permit.gate.leave();
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${PROVIDER_GATE_EVICT_MS:60000}")
+  public void evictIdle() {
+    long cutoff = System.currentTimeMillis() - gateIdleMillis;
+    for (String key : gates.keySet()) {
+      gates.computeIfPresent(
+          key, (k, gate) -> gate.users.get() == 0 && gate.lastUsed < cutoff ? null : gate);
+    }
+  }
+
+  private Timer queueWait(String provider) {
+    return queueWaits.computeIfAbsent(
+        provider,
+        key -> {
+          Gauge.builder("runtime.provider.queue.depth", () -> queueDepth(key))
+              .tag("provider", key)
+              .register(meterRegistry);
+          return Timer.builder("runtime.provider.queue_wait")
+              .tag("provider", key)
+              .register(meterRegistry);
+        });
+  }
+
+  private double queueDepth(String provider) {
+    double depth = 0;
+    for (Gate gate : gates.values()) {
+      if (gate.provider.equals(provider)) {
+        depth += gate.queueSize();
+      }
+    }
+    return depth;
+  }
+
+  private final class Gate {
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> queue =
+        new PriorityQueue<>(
+            (a, b) ->
+                a.finishTag != b.finishTag
+                    ? Double.compare(a.finishTag, b.finishTag)
+                    : Long.compare(a.sequence, b.sequence));
+    private final Map<String, Double> tenantFinishTags = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger users = new AtomicInteger();
+    private final String provider;
+    private final Timer queueWait;
+    private double virtualTime;
+    private int inFlight;
+    private int maxInFlight = defaultMaxInFlight;
+    private int tokensPerMinute = defaultTokensPerMinute;
+    private double tokens = Math.max(0, defaultTokensPerMinute);
+    private long refilledAt = System.nanoTime();
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    Gate(String provider) {
+      this.provider = provider;
+      this.queueWait = queueWait(provider);
+    }
+
+    void leave() {
+      lastUsed = System.currentTimeMillis();
+      users.decrementAndGet();
+    }
+
+    Permit acquire(
+        int maxInFlight,
+        int tokensPerMinute,
+        String tenantId,
+        double weight,
+        int estimatedTokens,
+        long deadline) {
+      long startedAt = System.nanoTime();
+      lock.lock();
+      try {
+        tighten(maxInFlight, tokensPerMinute);
+        double start = Math.max(virtualTime, tenantFinishTags.getOrDefault(tenantId, 0d));
+        Waiter waiter =
+            new Waiter(
+                start,
+                start + estimatedTokens / Math.max(0.01d, weight),
+                sequence.incrementAndGet());
+        tenantFinishTags.put(tenantId, waiter.finishTag);
+        queue.add(waiter);
+        while (true) {
+          refill();
+          // A request larger than the whole budget may start once the budget is full.
+          int needed =
+              this.tokensPerMinute > 0 ? Math.min(estimatedTokens, this.tokensPerMinute) : 0;
+          boolean slotFree = this.maxInFlight <= 0 || inFlight < this.maxInFlight;
+          boolean tokensFree = this.tokensPerMinute <= 0 || tokens >= needed;
+          if (queue.peek() == waiter && slotFree && tokensFree) {
+            queue.poll();
+            inFlight++;
+            if (this.tokensPerMinute > 0) {
+              tokens -= estimatedTokens;
+            }
+            virtualTime = Math.max(virtualTime, waiter.startTag);
+            tenantFinishTags.values().removeIf(tag -> tag <= virtualTime);
+            changed.signalAll();
+            long waited = System.nanoTime() - startedAt;
+            queueWait.record(waited, TimeUnit.NANOSECONDS);
+            return new Permit(
+                this,
+                this.tokensPerMinute > 0 ? estimatedTokens : 0,
+                TimeUnit.NANOSECONDS.toMillis(waited));
+          }
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            queue.remove(waiter);
+            changed.signalAll();
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(needed)));
+            throw new RateLimitExceededException(
+                "Provider capacity exceeded, try again later", headers);
+          }
+          long wait = remaining;
+          if (queue.peek() == waiter && slotFree && !tokensFree) {
+            double perNano = this.tokensPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            wait = Math.min(remaining, (long) Math.ceil((needed - tokens) / perNano) + 1L);
+          }
+          try {
+            changed.awaitNanos(wait);
+          } catch (InterruptedException ex) {
+            queue.remove(waiter);
+            changed.signalAll();
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(
+                HttpStatus.SERVICE_UNAVAILABLE, "Interrupted waiting for provider capacity");
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void release(int reservedTokens, int actualTokens) {
+      lock.lock();
+      try {
+        inFlight = Math.max(0, inFlight - 1);
+        if (reservedTokens > 0) {
+          // Settle the estimate against what the provider reported; the budget may go negative.
+          tokens += reservedTokens - Math.max(0, actualTokens);
+        }
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Applies a caller's limits only where they are stricter; a gate is never loosened. */
+    private void tighten(int maxInFlight, int tokensPerMinute) {
+      if (maxInFlight > 0 && (this.maxInFlight <= 0 || maxInFlight < this.maxInFlight)) {
+        this.maxInFlight = maxInFlight;
+      }
+      if (tokensPerMinute > 0
+          && (this.tokensPerMinute <= 0 || tokensPerMinute < this.tokensPerMinute)) {
+        tokens = this.tokensPerMinute <= 0 ? tokensPerMinute : Math.min(tokens, tokensPerMinute);
+        this.tokensPerMinute = tokensPerMinute;
+      }
+    }
+
+    /** Seconds until the budget covers {@code needed} tokens, or 1 when waiting on a slot. */
+    private long retryAfterSeconds(int needed) {
+      if (tokensPerMinute <= 0 || tokens >= needed) {
+        return 1L;
+      }
+      double perSecond = tokensPerMinute / 60d;
+      return Math.max(1L, (long) Math.ceil((needed - tokens) / perSecond));
+    }
+
+    private void refill() {
+      long now = System.nanoTime();
+      if (tokensPerMinute > 0) {
+        double perNano = tokensPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        tokens = Math.min(tokensPerMinute, tokens + (now - refilledAt) * perNano);
+      }
+      refilledAt = now;
+    }
+
+    private double queueSize() {
+      lock.lock();
+      try {
+        return queue.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private static final class Waiter {
+    final double startTag;
+    final double finishTag;
+    final long sequence;
+
+    Waiter(double startTag, double finishTag, long sequence) {
+      this.startTag = startTag;
+      this.finishTag = finishTag;
+      this.sequence = sequence;
+    }
+  }
+}
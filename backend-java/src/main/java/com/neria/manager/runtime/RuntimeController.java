@@ -21,6 +21,6 @@ public class RuntimeController {
   public Object execute(HttpServletRequest request, @RequestBody ExecuteRequest dto) {
     AuthContext auth = AuthUtils.requireAuth(request);
     String tenantId = AuthUtils.resolveTenantId(auth, request);
-    return runtimeService.execute(tenantId, dto);
+    return runtimeService.execute(tenantId, auth.getApiKeyId(), dto);
   }
 }
@@ -0,0 +1,232 @@
+package com.neria.manager.runtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.neria.manager.adapters.ProviderInvocationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of provider responses for repeatable runtime calls, keyed by provider, model and a hash
+ * of the canonical (key-sorted) payload JSON.
+ *
+ * <p>Entries live in a bounded in-memory LRU of {@code RUNTIME_CACHE_MAX_ENTRIES}; with
+ * {@code RUNTIME_CACHE_DB_ENABLED=true} they are also written to {@code runtime_response_cache} so
+ * other replicas and restarts can reuse them. Entries expire after
+ * {@code RUNTIME_CACHE_TTL_SECONDS}.
+ */
+@Component
+public class RuntimeResponseCache {
+  private static final Logger log = LoggerFactory.getLogger(RuntimeResponseCache.class);
+
+  private static class CacheEntry {
+    final String tenantId;
+    final ProviderInvocationResult result;
+    final long expiresAt;
+
+    CacheEntry(String tenantId, ProviderInvocationResult result, long expiresAt) {
+      this.tenantId = tenantId;
+      this.result = result;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectMapper objectMapper;
+  private final ObjectMapper canonicalMapper;
+  private final int maxEntries;
+  private final long ttlSeconds;
+  private final boolean dbEnabled;
+  private final Map<String, CacheEntry> entries;
+  private final Counter hits;
+  private final Counter misses;
+
+  public RuntimeResponseCache(
+      JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.objectMapper = objectMapper;
+    this.canonicalMapper =
+        objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    this.maxEntries =
+        Integer.parseInt(System.getenv().getOrDefault("RUNTIME_CACHE_MAX_ENTRIES", "1000"));
+    this.ttlSeconds =
+        Long.parseLong(System.getenv().getOrDefault("RUNTIME_CACHE_TTL_SECONDS", "86400"));
+    this.dbEnabled =
+        Boolean.parseBoolean(System.getenv().getOrDefault("RUNTIME_CACHE_DB_ENABLED", "false"));
+    this.entries =
+        new LinkedHashMap<>(256, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > maxEntries;
+          }
+        };
+    this.hits =
+        Counter.builder("runtime.response_cache.requests")
+            .tag("result", "hit")
+            .register(meterRegistry);
+    this.misses =
+        Counter.builder("runtime.response_cache.requests")
+            .tag("result", "miss")
+            .register(meterRegistry);
+    Gauge.builder("runtime.response_cache.size", this, RuntimeResponseCache::size)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Calls are cacheable when the service enables it and the output is repeatable: temperature 0,
+   * or the caller explicitly asked for caching.
+   */
+  public boolean isCacheable(Boolean serviceEnabled, Map<String, Object> payload, Boolean force) {
+    if (!Boolean.TRUE.equals(serviceEnabled)) {
+      return false;
+    }
+    if (Boolean.TRUE.equals(force)) {
+      return true;
+    }
+    Object temperature = payload != null ? payload.get("temperature") : null;
+    return temperature instanceof Number number && number.doubleValue() == 0d;
+  }
+
+  public String key(String providerId, String model, Map<String, Object> payload) {
+    try {
+      String canonical = canonicalMapper.writeValueAsString(payload != null ? payload : Map.of());
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(
+                  (providerId + "|" + model + "|" + canonical).getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (Exception ex) {
+      throw new IllegalStateException("Unable to hash runtime payload", ex);
+    }
+  }
+
+  public ProviderInvocationResult get(String key) {
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      CacheEntry entry = entries.get(key);
+      if (entry != null && entry.expiresAt > now) {
+        hits.increment();
+        return entry.result;
+      }
+      if (entry != null) {
+        entries.remove(key);
+      }
+    }
+    ProviderInvocationResult stored = dbEnabled ? load(key) : null;
+    if (stored == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return stored;
+  }
+
+  public void put(String key, String tenantId, ProviderInvocationResult result) {
+    long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000L;
+    synchronized (entries) {
+      entries.put(key, new CacheEntry(tenantId, result, expiresAt));
+    }
+    if (!dbEnabled) {
+      return;
+    }
+    try {
+      jdbcTemplate.update(
+          "INSERT INTO runtime_response_cache"
+              + " (cacheKey, tenantId, output, tokensIn, tokensOut, expiresAt)"
+              + " VALUES (?, ?, ?, ?, ?, ?)"
+              + " ON DUPLICATE KEY UPDATE output = VALUES(output), tokensIn = VALUES(tokensIn),"
+              + " tokensOut = VALUES(tokensOut), expiresAt = VALUES(expiresAt)",
+          key,
+          tenantId,
+          objectMapper.writeValueAsString(result.getOutput()),
+          result.getTokensIn(),
+          result.getTokensOut(),
+          Timestamp.valueOf(LocalDateTime.now().plusSeconds(ttlSeconds)));
+    } catch (Exception ex) {
+      log.warn("Runtime cache write failed: {}", ex.getMessage());
+    }
+  }
+
+  public void invalidateTenant(String tenantId) {
+    synchronized (entries) {
+      entries.values().removeIf(entry -> tenantId.equals(entry.tenantId));
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${RUNTIME_CACHE_EVICT_MS:600000}")
+  public void evictExpired() {
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      entries.values().removeIf(entry -> entry.expiresAt <= now);
+    }
+    if (!dbEnabled) {
+      return;
+    }
+    try {
+      jdbcTemplate.update(
+          "DELETE FROM runtime_response_cache WHERE expiresAt < ?",
+          Timestamp.valueOf(LocalDateTime.now()));
+    } catch (DataAccessException ex) {
+      log.warn("Runtime cache eviction failed: {}", ex.getMessage());
+    }
+  }
+
+  private ProviderInvocationResult load(String key) {
+    try {
+      Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+      List<Map<String, Object>> rows =
+          jdbcTemplate.queryForList(
+              "SELECT tenantId, output, tokensIn, tokensOut,"
+                  + " TIMESTAMPDIFF(SECOND, ?, expiresAt) AS remainingSeconds"
+                  + " FROM runtime_response_cache WHERE cacheKey = ? AND expiresAt > ?",
+              now,
+              key,
+              now);
+      if (rows.isEmpty()) {
+        return null;
+      }
+      Map<String, Object> row = rows.get(0);
+      ProviderInvocationResult result =
+          new ProviderInvocationResult(
+              objectMapper.readValue(String.valueOf(row.get("output")), Object.class),
+              ((Number) row.get("tokensIn")).intValue(),
+              ((Number) row.get("tokensOut")).intValue(),
+              0d);
+      // Keep the stored expiry: a row written long ago only has what is left of its TTL.
+      long remainingSeconds = ((Number) row.get("remainingSeconds")).longValue();
+      synchronized (entries) {
+        entries.put(
+            key,
+            new CacheEntry(
+                String.valueOf(row.get("tenantId")),
+                result,
+                System.currentTimeMillis() + Math.max(0L, remainingSeconds) * 1000L));
+      }
+      return result;
+    } catch (Exception ex) {
+      log.warn("Runtime cache lookup failed: {}", ex.getMessage());
+      return null;
+    }
+  }
+
+  private double size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+}
@@ -2,12 +2,16 @@ package com.neria.manager.runtime;
 
 import com.neria.manager.adapters.AdaptersService;
 import com.neria.manager.adapters.ProviderInvocationResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neria.manager.audit.AuditService;
 import com.neria.manager.common.entities.AuditEvent;
 import com.neria.manager.common.entities.Policy;
+import com.neria.manager.common.entities.PricingModel;
 import com.neria.manager.common.entities.Provider;
 import com.neria.manager.common.entities.Tenant;
 import com.neria.manager.common.entities.UsageEvent;
+import com.neria.manager.common.services.ConfigCache;
 import com.neria.manager.common.services.KillSwitchService;
 import com.neria.manager.common.services.RateLimitService;
 import com.neria.manager.policies.PoliciesService;
@@ -18,10 +22,19 @@ import com.neria.manager.tenants.TenantsService;
 import com.neria.manager.common.entities.TenantServiceConfig;
 import com.neria.manager.common.repos.TenantServiceConfigRepository;
 import com.neria.manager.usage.UsageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -39,6 +52,11 @@ public class RuntimeService {
   private final KillSwitchService killSwitchService;
   private final PricingService pricingService;
   private final TenantServiceConfigRepository tenantServiceConfigRepository;
+  private final MeterRegistry meterRegistry;
+  private final ProviderAdmission providerAdmission;
+  private final RuntimeResponseCache responseCache;
+  private final ObjectMapper objectMapper;
+  private final ConfigCache configCache;
 
   public RuntimeService(
       TenantsService tenantsService,
@@ -51,7 +69,12 @@ public class RuntimeService {
       RateLimitService rateLimitService,
       KillSwitchService killSwitchService,
       PricingService pricingService,
-      TenantServiceConfigRepository tenantServiceConfigRepository) {
+      TenantServiceConfigRepository tenantServiceConfigRepository,
+      MeterRegistry meterRegistry,
+      ProviderAdmission providerAdmission,
+      RuntimeResponseCache responseCache,
+      ObjectMapper objectMapper,
+      ConfigCache configCache) {
     this.tenantsService = tenantsService;
     this.providersService = providersService;
     this.policiesService = policiesService;
@@ -63,11 +86,38 @@ public class RuntimeService {
     this.killSwitchService = killSwitchService;
     this.pricingService = pricingService;
     this.tenantServiceConfigRepository = tenantServiceConfigRepository;
+    this.meterRegistry = meterRegistry;
+    this.providerAdmission = providerAdmission;
+    this.responseCache = responseCache;
+    this.objectMapper = objectMapper;
+    this.configCache = configCache;
   }
 
   public Map<String, Object> execute(String tenantId, ExecuteRequest dto) {
+    return execute(tenantId, null, dto, null);
+  }
+
+  /** Same as {@link #execute(String, ExecuteRequest)}, also applying the per API key limit. */
+  public Map<String, Object> execute(String tenantId, String apiKeyId, ExecuteRequest dto) {
+    return execute(tenantId, apiKeyId, dto, null);
+  }
+
+  /**
+   * Same checks, billing and audit as {@link #execute(String, String, ExecuteRequest)}, but the
+   * provider is called in streaming mode and every content delta is handed to {@code onToken} as
+   * soon as it arrives. Usage is taken from the final usage chunk of the stream.
+   */
+  public Map<String, Object> executeStream(
+      String tenantId, String apiKeyId, ExecuteRequest dto, Consumer<String> onToken) {
+    return execute(tenantId, apiKeyId, dto, onToken != null ? onToken : token -> {});
+  }
+
+  private Map<String, Object> execute(
+      String tenantId, String apiKeyId, ExecuteRequest dto, Consumer<String> onToken) {
     try {
-      Tenant tenant = tenantsService.getById(tenantId);
+      Tenant tenant =
+          configCache.get(
+              ConfigCache.TENANTS, tenantId, () -> tenantsService.getById(tenantId));
       if (tenant == null) {
         throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tenant not found");
       }
@@ -80,10 +130,15 @@ public class RuntimeService {
 
       TenantServiceConfig serviceConfig = null;
       if (dto.serviceCode != null && !dto.serviceCode.isBlank()) {
+        String serviceCode = dto.serviceCode.trim();
         serviceConfig =
-            tenantServiceConfigRepository
-                .findByTenantIdAndServiceCode(tenantId, dto.serviceCode.trim())
-                .orElse(null);
+            configCache.get(
+                ConfigCache.SERVICE_CONFIGS,
+                ConfigCache.key(tenantId, serviceCode),
+                () ->
+                    tenantServiceConfigRepository
+                        .findByTenantIdAndServiceCode(tenantId, serviceCode)
+                        .orElse(null));
       }
 
       String resolvedProviderId = dto.providerId;
@@ -97,22 +152,31 @@ public class RuntimeService {
         throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Provider is required");
       }
 
-      Provider provider = providersService.getByTenantAndId(tenantId, resolvedProviderId);
+      String providerId = resolvedProviderId;
+      Provider provider =
+          configCache.get(
+              ConfigCache.PROVIDERS,
+              ConfigCache.key(tenantId, providerId),
+              () -> providersService.getByTenantAndId(tenantId, providerId));
       if (provider == null || !provider.isEnabled()) {
         throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Provider not found or disabled");
       }
 
+      String policyId = serviceConfig != null ? serviceConfig.getPolicyId() : null;
       Policy policy =
-          serviceConfig != null && serviceConfig.getPolicyId() != null
-              ? policiesService.getByIdForTenant(tenantId, serviceConfig.getPolicyId())
-              : policiesService.getByTenant(tenantId);
+          configCache.get(
+              ConfigCache.POLICIES,
+              ConfigCache.key(tenantId, policyId),
+              () ->
+                  policyId != null
+                      ? policiesService.getByIdForTenant(tenantId, policyId)
+                      : policiesService.getByTenant(tenantId));
       if (policy == null) {
         throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Policy is required before runtime execution");
       }
 
-      if (policy.getMaxRequestsPerMinute() > 0) {
-        rateLimitService.consume(tenantId, policy.getMaxRequestsPerMinute());
-      }
+      rateLimitService.consume(
+          rateLimitService.limitsFor(policy, tenantId, dto.serviceCode, apiKeyId));
 
       UsageService.Totals totals =
           usageService.getDailyTotals(tenantId, LocalDate.now(ZoneOffset.UTC));
@@ -130,31 +194,80 @@ public class RuntimeService {
       Map<String, Object> payload =
           policy.isRedactionEnabled() ? redactionService.redact(dto.payload) : dto.payload;
 
-      String credentials = providersService.getDecryptedCredentials(provider);
-      ProviderInvocationResult response;
-      try {
-        response =
-            adaptersService.invokeProvider(provider.getType(), credentials, dto.model, payload);
-      } catch (IllegalArgumentException ex) {
-        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
-      } catch (IllegalStateException ex) {
-        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, ex.getMessage(), ex);
+      // Streaming calls are never cached: the client expects tokens as they are generated.
+      String cacheKey =
+          onToken == null
+                  && serviceConfig != null
+                  && responseCache.isCacheable(
+                      serviceConfig.getResponseCacheEnabled(), payload, dto.cache)
+              ? responseCache.key(provider.getId(), dto.model, payload)
+              : null;
+      ProviderInvocationResult cached = cacheKey != null ? responseCache.get(cacheKey) : null;
+      ProviderInvocationResult response = cached;
+      long queueWaitMs = 0L;
+      if (cached == null) {
+        String credentials = providersService.getDecryptedCredentials(provider);
+        JsonNode providerConfig = readJson(provider.getConfig());
+        ProviderAdmission.Permit permit =
+            providerAdmission.acquire(
+                gateKey(provider.getType(), credentials),
+                provider.getType(),
+                providerConfig.path("maxInFlight").asInt(providerAdmission.defaultMaxInFlight()),
+                providerConfig
+                    .path("tokensPerMinute")
+                    .asInt(providerAdmission.defaultTokensPerMinute()),
+                tenantId,
+                readJson(policy.getMetadata()).path("queueWeight").asDouble(1d),
+                estimateTokens(payload));
+        try {
+          response =
+              onToken != null
+                  ? adaptersService.invokeProviderStream(
+                      provider.getType(),
+                      credentials,
+                      dto.model,
+                      payload,
+                      withFirstTokenTimer(provider.getType(), onToken))
+                  : adaptersService.invokeProvider(
+                      provider.getType(), credentials, dto.model, payload);
+        } catch (IllegalArgumentException ex) {
+          throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        } catch (IllegalStateException ex) {
+          throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, ex.getMessage(), ex);
+        } finally {
+          providerAdmission.release(
+              permit, response != null ? response.getTokensIn() + response.getTokensOut() : 0);
+        }
+        queueWaitMs = permit.waitMillis();
+        if (cacheKey != null) {
+          responseCache.put(cacheKey, tenantId, response);
+        }
       }
 
-      var pricing =
-          serviceConfig != null && serviceConfig.getPricingId() != null
-              ? pricingService.resolveById(serviceConfig.getPricingId())
-              : pricingService.resolveForTenant(tenantId, provider.getType(), dto.model);
-      double computedCost =
-          pricingService.calculateCost(pricing, response.getTokensIn(), response.getTokensOut());
+      // A cache hit is still recorded as a zero-token, zero-cost usage event so it shows up in
+      // billing and usage reports.
+      double computedCost = 0d;
+      if (cached == null) {
+        String pricingId = serviceConfig != null ? serviceConfig.getPricingId() : null;
+        PricingModel pricing =
+            configCache.get(
+                ConfigCache.PRICING,
+                ConfigCache.key(tenantId, pricingId, provider.getType(), dto.model),
+                () ->
+                    pricingId != null
+                        ? pricingService.resolveById(pricingId)
+                        : pricingService.resolveForTenant(tenantId, provider.getType(), dto.model));
+        computedCost =
+            pricingService.calculateCost(pricing, response.getTokensIn(), response.getTokensOut());
+      }
 
       UsageEvent usage = new UsageEvent();
       usage.setTenantId(tenantId);
       usage.setProviderId(provider.getId());
       usage.setModel(dto.model);
       usage.setServiceCode(dto.serviceCode != null ? dto.serviceCode : null);
-      usage.setTokensIn(response.getTokensIn());
-      usage.setTokensOut(response.getTokensOut());
+      usage.setTokensIn(cached == null ? response.getTokensIn() : 0);
+      usage.setTokensOut(cached == null ? response.getTokensOut() : 0);
       usage.setCostUsd(BigDecimal.valueOf(computedCost));
       usageService.record(usage);
 
@@ -164,6 +277,12 @@ public class RuntimeService {
       audit.setStatus("accepted");
       Map<String, Object> acceptedMeta = new java.util.HashMap<>();
       acceptedMeta.put("providerId", provider.getId());
+      acceptedMeta.put("queueWaitMs", queueWaitMs);
+      if (cached != null) {
+        acceptedMeta.put("cached", true);
+        acceptedMeta.put("cachedTokensIn", cached.getTokensIn());
+        acceptedMeta.put("cachedTokensOut", cached.getTokensOut());
+      }
       if (dto.requestId != null) {
         acceptedMeta.put("requestId", dto.requestId);
       }
@@ -193,9 +312,95 @@ public class RuntimeService {
     }
   }
 
+  private Consumer<String> withFirstTokenTimer(String providerType, Consumer<String> onToken) {
+    Timer timer =
+        Timer.builder("runtime.stream.time_to_first_token")
+            .description("Time from provider call to the first streamed token")
+            .tag(
+                "provider",
+                providerType != null ? providerType.toLowerCase(Locale.ROOT) : "openai")
+            .register(meterRegistry);
+    long startedAt = System.nanoTime();
+    boolean[] first = {true};
+    return token -> {
+      if (first[0]) {
+        first[0] = false;
+        timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+      }
+      onToken.accept(token);
+    };
+  }
+
+  /**
+   * Providers pointing at the same endpoint with the same key share one upstream account, however
+   * the rest of their credentials JSON differs.
+   */
+  private String gateKey(String providerType, String credentials) {
+    String type = providerType != null ? providerType.toLowerCase(Locale.ROOT) : "openai";
+    JsonNode json = readJson(credentials);
+    String endpoint =
+        json.hasNonNull("endpoint")
+            ? json.path("endpoint").asText()
+            : json.path("baseUrl").asText("https://api.openai.com");
+    endpoint = endpoint.trim().toLowerCase(Locale.ROOT).replaceAll("/+$", "");
+    String identity = type + "|" + endpoint + "|" + json.path("apiKey").asText("").trim();
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+      return type + ":" + HexFormat.of().formatHex(digest, 0, 6);
+    } catch (Exception ex) {
+      throw new IllegalStateException("SHA-256 unavailable", ex);
+    }
+  }
+
+  /** Rough prompt size (about four characters per token) plus the requested completion. */
+  private int estimateTokens(Map<String, Object> payload) {
+    if (payload == null) {
+      return 1;
+    }
+    long promptChars = 0;
+    if (payload.get("messages") instanceof List<?> messages) {
+      for (Object message : messages) {
+        if (message instanceof Map<?, ?> map) {
+          promptChars += contentLength(map.get("content"));
+        }
+      }
+    }
+    Object maxTokens = payload.getOrDefault("max_tokens", payload.get("max_completion_tokens"));
+    int completionTokens = maxTokens instanceof Number number ? number.intValue() : 0;
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, promptChars / 4 + completionTokens));
+  }
+
+  /** Text length of a message content: a plain string or a list of parts; images are ignored. */
+  private long contentLength(Object content) {
+    if (content instanceof String text) {
+      return text.length();
+    }
+    long length = 0;
+    if (content instanceof List<?> parts) {
+      for (Object part : parts) {
+        if (part instanceof Map<?, ?> map && map.get("text") instanceof String text) {
+          length += text.length();
+        }
+      }
+    }
+    return length;
+  }
+
+  private JsonNode readJson(String json) {
+    if (json == null || json.isBlank()) {
+      return objectMapper.missingNode();
+    }
+    try {
+      return objectMapper.readTree(json);
+    } catch (Exception ex) {
+      return objectMapper.missingNode();
+    }
+  }
+
   private String toJson(Object value) {
     try {
-      return new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(value);
+      return objectMapper.writeValueAsString(value);
     } catch (Exception ex) {
       return "{}";
     }
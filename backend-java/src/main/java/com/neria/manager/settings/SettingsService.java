@@ -20,6 +20,7 @@ import com.neria.manager.common.repos.TenantRepository;
 import com.neria.manager.common.repos.TenantServiceConfigRepository;
 import com.neria.manager.common.repos.TenantServiceEndpointRepository;
 import com.neria.manager.common.repos.TenantServiceUserRepository;
+import com.neria.manager.common.services.ConfigCache;
 import com.neria.manager.common.services.KillSwitchService;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +41,7 @@ public class SettingsService {
   private final TenantServiceEndpointRepository tenantServiceEndpointRepository;
   private final TenantServiceUserRepository tenantServiceUserRepository;
   private final ObjectMapper objectMapper;
+  private final ConfigCache configCache;
 
   public SettingsService(
       KillSwitchService killSwitchService,
@@ -52,7 +54,8 @@ public class SettingsService {
       TenantServiceConfigRepository tenantServiceConfigRepository,
       TenantServiceEndpointRepository tenantServiceEndpointRepository,
       TenantServiceUserRepository tenantServiceUserRepository,
-      ObjectMapper objectMapper) {
+      ObjectMapper objectMapper,
+      ConfigCache configCache) {
     this.killSwitchService = killSwitchService;
     this.settingsRepository = settingsRepository;
     this.tenantsRepository = tenantsRepository;
@@ -64,6 +67,7 @@ public class SettingsService {
     this.tenantServiceEndpointRepository = tenantServiceEndpointRepository;
     this.tenantServiceUserRepository = tenantServiceUserRepository;
     this.objectMapper = objectMapper;
+    this.configCache = configCache;
   }
 
   public Map<String, Object> getGlobalKillSwitch() {
@@ -160,6 +164,7 @@ public class SettingsService {
       tenantPricingRepository.deleteAll();
       tenantsRepository.deleteAll();
     }
+    configCache.clear();
 
     return Map.of("cleared", summary);
   }
@@ -20,6 +20,7 @@ import com.neria.manager.common.repos.TenantInvoiceRepository;
 import com.neria.manager.common.repos.TenantServiceConfigRepository;
 import com.neria.manager.common.repos.TenantServiceEndpointRepository;
 import com.neria.manager.common.repos.TenantServiceUserRepository;
+import com.neria.manager.common.services.ConfigCache;
 import com.neria.manager.common.services.EmailService;
 import com.neria.manager.tenants.TenantsService;
 import com.stripe.Stripe;
@@ -75,6 +76,7 @@ public class SubscriptionsService {
   private final TenantsService tenantsService;
   private final EmailService emailService;
   private final AdminUserRepository adminUserRepository;
+  private final ConfigCache configCache;
 
   public SubscriptionsService(
       SubscriptionRepository subscriptionRepository,
@@ -90,7 +92,8 @@ public class SubscriptionsService {
       TenantServiceUserRepository tenantServiceUserRepository,
       TenantsService tenantsService,
       EmailService emailService,
-      AdminUserRepository adminUserRepository) {
+      AdminUserRepository adminUserRepository,
+      ConfigCache configCache) {
     this.subscriptionRepository = subscriptionRepository;
     this.subscriptionServiceRepository = subscriptionServiceRepository;
     this.subscriptionHistoryRepository = subscriptionHistoryRepository;
@@ -105,6 +108,7 @@ public class SubscriptionsService {
     this.tenantsService = tenantsService;
     this.emailService = emailService;
     this.adminUserRepository = adminUserRepository;
+    this.configCache = configCache;
   }
 
   private Set<String> normalizeServiceCodes(List<String> codes) {
@@ -875,6 +879,7 @@ public class SubscriptionsService {
     tenantServiceEndpointRepository.deleteByTenantIdAndServiceCode(tenantId, serviceCode);
     tenantServiceUserRepository.deleteByTenantIdAndServiceCode(tenantId, serviceCode);
     tenantServiceApiKeysService.deleteByTenantAndServiceCode(tenantId, serviceCode);
+    configCache.invalidateTenant(ConfigCache.SERVICE_CONFIGS, tenantId);
 
     subscription.setUpdatedAt(LocalDateTime.now());
     subscriptionRepository.save(subscription);
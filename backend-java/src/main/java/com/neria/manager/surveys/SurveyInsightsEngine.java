@@ -0,0 +1,625 @@
+package com.neria.manager.surveys;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neria.manager.common.entities.TenantServiceConfig;
+import com.neria.manager.common.entities.TenantServiceSurvey;
+import com.neria.manager.common.entities.TenantServiceSurveyAnswer;
+import com.neria.manager.common.entities.TenantServiceSurveyInsight;
+import com.neria.manager.common.entities.TenantServiceSurveyQuestion;
+import com.neria.manager.common.entities.TenantServiceSurveyResponse;
+import com.neria.manager.common.repos.TenantServiceSurveyAnswerRepository;
+import com.neria.manager.common.repos.TenantServiceSurveyInsightRepository;
+import com.neria.manager.common.repos.TenantServiceSurveyResponseRepository;
+import com.neria.manager.runtime.ExecuteRequest;
+import com.neria.manager.runtime.RuntimeService;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Map-reduce survey insights over every response.
+ *
+ * <p>Responses are read page by page. Choice and numeric questions are aggregated here without a
+ * model call; free-text answers are packed into chunks of about
+ * {@code SURVEY_INSIGHTS_CHUNK_TOKENS} and summarised in parallel
+ * ({@code SURVEY_INSIGHTS_CONCURRENCY}) through {@link RuntimeService}. Partial summaries that do
+ * not fit one prompt are merged again until they do, and a final call turns the statistics and
+ * summaries into the insight. Progress and stage are stored on the insight row while it runs. A
+ * rate-limited call waits for the Retry-After it was given, capped at
+ * {@code SURVEY_INSIGHTS_MAX_RETRY_WAIT_SECONDS}; if chunks still fail the insight is stored as
+ * {@code partial} with the failed count instead of as complete.
+ */
+@Component
+public class SurveyInsightsEngine {
+  private static final Logger log = LoggerFactory.getLogger(SurveyInsightsEngine.class);
+  private static final Set<String> TEXT_TYPES = Set.of("text", "textarea");
+  private static final Set<String> CHOICE_TYPES = Set.of("single_choice", "multi_choice");
+  private static final Set<String> NUMERIC_TYPES = Set.of("rating", "nps", "number");
+  private static final int MAX_ANSWER_CHARS = 2000;
+  private static final int MAX_ATTEMPTS = 3;
+
+  private static final String DEFAULT_ANALYSIS_PROMPT =
+      "Eres un analista experto en encuestas. Debes generar insights claros y accionables "
+          + "a partir de respuestas abiertas y estructuradas. Devuelve SOLO un JSON valido. "
+          + "No inventes datos. Si falta informacion, usa null o listas vacias.\n\n"
+          + "Entrega este formato exacto:\n"
+          + "{\n"
+          + "  \"summary\": \"resumen ejecutivo en 5-8 frases\",\n"
+          + "  \"sentiment\": {\"positive\": 0, \"neutral\": 0, \"negative\": 0, \"notes\": \"\"},\n"
+          + "  \"themes\": [\"tema 1\", \"tema 2\"],\n"
+          + "  \"insights\": [\"insight 1\", \"insight 2\"],\n"
+          + "  \"risks\": [\"riesgo 1\"],\n"
+          + "  \"opportunities\": [\"oportunidad 1\"],\n"
+          + "  \"highlights\": [\"cita corta sin PII\"]\n"
+          + "}\n\n"
+          + "Usa el idioma de la encuesta.";
+
+  private static final String REDUCE_NOTE =
+      "\n\nRecibes estadisticas calculadas sobre todas las respuestas (statistics) y resumenes "
+          + "parciales de las respuestas abiertas (partialSummaries). Basa los porcentajes y "
+          + "conteos en statistics y combina los resumenes sin repetir ideas.";
+
+  private static final String CHUNK_PROMPT =
+      "Eres un analista de encuestas. Recibes un bloque de respuestas abiertas, cada una con su "
+          + "pregunta entre corchetes, o resumenes parciales de bloques anteriores. Devuelve SOLO "
+          + "un JSON valido con este formato:\n"
+          + "{\"summary\": \"resumen en 3-5 frases\", \"themes\": [\"tema\"], "
+          + "\"sentiment\": {\"positive\": 0, \"neutral\": 0, \"negative\": 0}, "
+          + "\"highlights\": [\"cita corta sin PII\"]}\n"
+          + "Los conteos de sentiment son numeros de respuestas. No inventes datos. "
+          + "Usa el idioma de las respuestas.";
+
+  private final RuntimeService runtimeService;
+  private final TenantServiceSurveyInsightRepository insightRepository;
+  private final TenantServiceSurveyResponseRepository responseRepository;
+  private final TenantServiceSurveyAnswerRepository answerRepository;
+  private final ObjectMapper objectMapper;
+  private final ExecutorService jobExecutor;
+  private final ExecutorService callExecutor;
+  private final int concurrency;
+  private final int chunkTokens;
+  private final int pageSize;
+  private final long maxRetryWaitMillis;
+
+  public SurveyInsightsEngine(
+      RuntimeService runtimeService,
+      TenantServiceSurveyInsightRepository insightRepository,
+      TenantServiceSurveyResponseRepository responseRepository,
+      TenantServiceSurveyAnswerRepository answerRepository,
+      ObjectMapper objectMapper) {
+    this.runtimeService = runtimeService;
+    this.insightRepository = insightRepository;
+    this.responseRepository = responseRepository;
+    this.answerRepository = answerRepository;
+    this.objectMapper = objectMapper;
+    this.concurrency =
+        Math.max(
+            1,
+            Integer.parseInt(System.getenv().getOrDefault("SURVEY_INSIGHTS_CONCURRENCY", "4")));
+    this.chunkTokens =
+        Math.max(
+            500,
+            Integer.parseInt(
+                System.getenv().getOrDefault("SURVEY_INSIGHTS_CHUNK_TOKENS", "6000")));
+    this.pageSize =
+        Integer.parseInt(System.getenv().getOrDefault("SURVEY_INSIGHTS_PAGE_SIZE", "500"));
+    this.maxRetryWaitMillis =
+        1000L
+            * Long.parseLong(
+                System.getenv().getOrDefault("SURVEY_INSIGHTS_MAX_RETRY_WAIT_SECONDS", "30"));
+    int jobs =
+        Math.max(
+            1, Integer.parseInt(System.getenv().getOrDefault("SURVEY_INSIGHTS_MAX_JOBS", "2")));
+    this.jobExecutor = Executors.newFixedThreadPool(jobs, daemonThreads("survey-insights-job-"));
+    this.callExecutor =
+        Executors.newFixedThreadPool(concurrency, daemonThreads("survey-insights-call-"));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    jobExecutor.shutdownNow();
+    callExecutor.shutdownNow();
+  }
+
+  /**
+   * Creates the insight row and runs the analysis. With {@code async} the row is returned right
+   * away in status {@code running}; callers poll it for progress.
+   */
+  public TenantServiceSurveyInsight start(
+      TenantServiceSurvey survey,
+      TenantServiceConfig config,
+      List<TenantServiceSurveyQuestion> questions,
+      boolean async) {
+    TenantServiceSurveyInsight insight = new TenantServiceSurveyInsight();
+    insight.setId(UUID.randomUUID().toString());
+    insight.setSurveyId(survey.getId());
+    insight.setTenantId(survey.getTenantId());
+    insight.setServiceCode(survey.getServiceCode());
+    insight.setModel(resolveAnalysisModel());
+    insight.setStatus("running");
+    insight.setStage("queued");
+    insight.setProgress(0);
+    insight.setCreatedAt(LocalDateTime.now());
+    TenantServiceSurveyInsight saved = insightRepository.save(insight);
+    CompletableFuture<TenantServiceSurveyInsight> job =
+        CompletableFuture.supplyAsync(() -> run(saved, survey, config, questions), jobExecutor);
+    return async ? saved : job.join();
+  }
+
+  private TenantServiceSurveyInsight run(
+      TenantServiceSurveyInsight insight,
+      TenantServiceSurvey survey,
+      TenantServiceConfig config,
+      List<TenantServiceSurveyQuestion> questions) {
+    try {
+      Map<String, TenantServiceSurveyQuestion> questionsById = new LinkedHashMap<>();
+      Map<String, QuestionStats> stats = new LinkedHashMap<>();
+      for (TenantServiceSurveyQuestion question : questions) {
+        questionsById.put(question.getId(), question);
+        stats.put(question.getId(), new QuestionStats(question));
+      }
+      long total = Math.max(1L, responseRepository.countBySurveyId(survey.getId()));
+      Job job = new Job(survey, config, insight.getModel());
+
+      // Map: aggregate structured answers and ship free text in token-sized chunks.
+      progress(insight, "aggregating", 0);
+      StringBuilder chunk = new StringBuilder();
+      int chunkSize = 0;
+      long processed = 0;
+      SurveyResponsePages pages =
+          new SurveyResponsePages(responseRepository, answerRepository, survey.getId(), pageSize);
+      while (pages.next()) {
+        for (TenantServiceSurveyResponse response : pages.responses()) {
+          for (TenantServiceSurveyAnswer answer : pages.answers(response.getId()).values()) {
+            TenantServiceSurveyQuestion question = questionsById.get(answer.getQuestionId());
+            if (question == null) {
+              continue;
+            }
+            Object value = SurveyResponsePages.answerValue(objectMapper, answer);
+            QuestionStats questionStats = stats.get(question.getId());
+            if (!TEXT_TYPES.contains(questionStats.type)) {
+              questionStats.add(value);
+              continue;
+            }
+            String text = value != null ? String.valueOf(value).trim() : "";
+            if (text.isEmpty()) {
+              continue;
+            }
+            questionStats.answered++;
+            if (text.length() > MAX_ANSWER_CHARS) {
+              text = text.substring(0, MAX_ANSWER_CHARS);
+            }
+            String line = "- [" + question.getLabel() + "] " + text.replace('\n', ' ') + "\n";
+            int tokens = estimateTokens(line);
+            if (chunkSize > 0 && chunkSize + tokens > chunkTokens) {
+              job.submit(chunk.toString());
+              chunk.setLength(0);
+              chunkSize = 0;
+            }
+            chunk.append(line);
+            chunkSize += tokens;
+          }
+          processed++;
+        }
+        progress(insight, "aggregating", (int) Math.min(60L, processed * 60L / total));
+      }
+      if (chunkSize > 0) {
+        job.submit(chunk.toString());
+      }
+
+      // Reduce: wait for the chunk summaries, merging them until they fit one prompt.
+      progress(insight, "summarizing", 60);
+      List<String> partials = job.await(insight, 60, 90);
+      while (partials.size() > 1 && estimateTokens(String.join("\n", partials)) > chunkTokens) {
+        for (String group : groups(partials)) {
+          job.submit(group);
+        }
+        partials = job.await(insight, 90, 90);
+      }
+
+      progress(insight, "reducing", 90);
+      Map<String, Object> statistics = new LinkedHashMap<>();
+      for (QuestionStats questionStats : stats.values()) {
+        statistics.put(questionStats.id, questionStats.view());
+      }
+      Map<String, Object> coverage = new LinkedHashMap<>();
+      coverage.put("responses", processed);
+      coverage.put("textChunks", job.submitted.get());
+      int failedChunks = job.failed.get();
+      coverage.put("failedChunks", failedChunks);
+      coverage.put("complete", failedChunks == 0);
+      Map<String, Object> payload = new LinkedHashMap<>();
+      payload.put("survey", surveyPayload(survey, questions));
+      payload.put("responseCount", processed);
+      payload.put("statistics", statistics);
+      payload.put("partialSummaries", partials);
+      payload.put("coverage", coverage);
+      String content =
+          complete(job, buildAnalysisPrompt(config, survey) + REDUCE_NOTE, toJson(payload));
+      insight.setPayload(withStatistics(content, statistics, coverage));
+      if (failedChunks > 0) {
+        insight.setStatus("partial");
+        insight.setErrorMessage(
+            failedChunks
+                + " of "
+                + job.submitted.get()
+                + " free-text chunks could not be summarised; the insight omits them");
+      } else {
+        insight.setStatus("completed");
+      }
+      insight.setStage("completed");
+      insight.setProgress(100);
+    } catch (Exception ex) {
+      log.warn("Survey insights failed for {}: {}", survey.getId(), ex.getMessage());
+      insight.setStatus("failed");
+      insight.setStage("failed");
+      insight.setErrorMessage(ex.getMessage());
+      insight.setPayload(null);
+    }
+    return insightRepository.save(insight);
+  }
+
+  /** One analysis run: tracks the chunk summaries in flight and how many failed. */
+  private final class Job {
+    final TenantServiceSurvey survey;
+    final TenantServiceConfig config;
+    final String model;
+    final Semaphore permits = new Semaphore(concurrency * 2);
+    final AtomicInteger submitted = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    List<CompletableFuture<String>> pending = new ArrayList<>();
+
+    Job(TenantServiceSurvey survey, TenantServiceConfig config, String model) {
+      this.survey = survey;
+      this.config = config;
+      this.model = model;
+    }
+
+    /** Queues a summary of {@code content}, blocking while too many are already queued. */
+    void submit(String content) {
+      permits.acquireUninterruptibly();
+      submitted.incrementAndGet();
+      pending.add(
+          CompletableFuture.supplyAsync(() -> complete(this, CHUNK_PROMPT, content), callExecutor)
+              .handle(
+                  (summary, ex) -> {
+                    permits.release();
+                    if (ex != null) {
+                      failed.incrementAndGet();
+                      log.warn("Survey insight chunk failed: {}", ex.getMessage());
+                      return null;
+                    }
+                    return summary;
+                  }));
+    }
+
+    List<String> await(TenantServiceSurveyInsight insight, int from, int to) {
+      List<CompletableFuture<String>> futures = pending;
+      pending = new ArrayList<>();
+      List<String> summaries = new ArrayList<>();
+      for (int i = 0; i < futures.size(); i++) {
+        String summary = futures.get(i).join();
+        if (summary != null && !summary.isBlank()) {
+          summaries.add(summary);
+        }
+        progress(insight, "summarizing", from + (to - from) * (i + 1) / futures.size());
+      }
+      if (summaries.isEmpty() && !futures.isEmpty()) {
+        throw new IllegalStateException("All free-text summaries failed");
+      }
+      return summaries;
+    }
+  }
+
+  private String complete(Job job, String systemPrompt, String content) {
+    ExecuteRequest exec = new ExecuteRequest();
+    exec.providerId = job.config.getProviderId();
+    exec.model = job.model;
+    exec.serviceCode = job.survey.getServiceCode();
+    exec.payload =
+        Map.of(
+            "messages",
+            List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", content)));
+    for (int attempt = 1; ; attempt++) {
+      try {
+        String text = extractContent(runtimeService.execute(job.survey.getTenantId(), exec));
+        return text != null ? stripJsonFence(text) : "";
+      } catch (ResponseStatusException ex) {
+        // Parallel chunks can trip the tenant's own rate limit; back off and retry.
+        if (ex.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value()
+            || attempt >= MAX_ATTEMPTS) {
+          throw ex;
+        }
+        try {
+          Thread.sleep(retryDelayMillis(ex, attempt));
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw ex;
+        }
+      }
+    }
+  }
+
+  /** The Retry-After of a 429 when it carries one, else a linear backoff; never above the cap. */
+  private long retryDelayMillis(ResponseStatusException ex, int attempt) {
+    long delay = 1000L * attempt;
+    String retryAfter = ex.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+    if (retryAfter != null) {
+      try {
+        delay = Math.max(1000L, 1000L * Long.parseLong(retryAfter.trim()));
+      } catch (NumberFormatException ignore) {
+        // HTTP-date values are not produced by our limiters; keep the backoff.
+      }
+    }
+    return Math.min(delay, maxRetryWaitMillis);
+  }
+
+  private List<String> groups(List<String> partials) {
+    List<String> groups = new ArrayList<>();
+    StringBuilder group = new StringBuilder();
+    int groupSize = 0;
+    for (String partial : partials) {
+      int tokens = estimateTokens(partial);
+      if (groupSize > 0 && groupSize + tokens > chunkTokens) {
+        groups.add(group.toString());
+        group.setLength(0);
+        groupSize = 0;
+      }
+      group.append(partial).append("\n");
+      groupSize += tokens;
+    }
+    if (groupSize > 0) {
+      groups.add(group.toString());
+    }
+    // Guarantee progress when every partial is larger than a chunk on its own.
+    if (groups.size() == partials.size()) {
+      List<String> pairs = new ArrayList<>();
+      for (int i = 0; i < partials.size(); i += 2) {
+        pairs.add(String.join("\n", partials.subList(i, Math.min(partials.size(), i + 2))));
+      }
+      return pairs;
+    }
+    return groups;
+  }
+
+  private void progress(TenantServiceSurveyInsight insight, String stage, int progress) {
+    Integer current = insight.getProgress();
+    if (stage.equals(insight.getStage()) && current != null && progress - current < 5) {
+      return;
+    }
+    insight.setStage(stage);
+    insight.setProgress(progress);
+    insightRepository.save(insight);
+  }
+
+  private String withStatistics(
+      String content, Map<String, Object> statistics, Map<String, Object> coverage) {
+    try {
+      Map<String, Object> parsed =
+          objectMapper.readValue(content, new TypeReference<LinkedHashMap<String, Object>>() {});
+      parsed.put("statistics", statistics);
+      parsed.put("coverage", coverage);
+      return objectMapper.writeValueAsString(parsed);
+    } catch (Exception ex) {
+      return content;
+    }
+  }
+
+  private Map<String, Object> surveyPayload(
+      TenantServiceSurvey survey, List<TenantServiceSurveyQuestion> questions) {
+    Map<String, Object> surveyPayload = new LinkedHashMap<>();
+    surveyPayload.put("surveyId", survey.getId());
+    surveyPayload.put("title", survey.getTitle());
+    surveyPayload.put("description", survey.getDescription());
+    surveyPayload.put("language", survey.getLanguage());
+    surveyPayload.put(
+        "questions",
+        questions.stream()
+            .map(
+                question ->
+                    Map.of(
+                        "id",
+                        question.getId(),
+                        "label",
+                        question.getLabel(),
+                        "type",
+                        question.getType(),
+                        "required",
+                        question.isRequired()))
+            .toList());
+    return surveyPayload;
+  }
+
+  private String buildAnalysisPrompt(TenantServiceConfig config, TenantServiceSurvey survey) {
+    StringBuilder sb = new StringBuilder();
+    if (config != null && config.getSystemPrompt() != null && !config.getSystemPrompt().isBlank()) {
+      sb.append(config.getSystemPrompt().trim()).append("\n\n");
+    }
+    sb.append(DEFAULT_ANALYSIS_PROMPT);
+    if (survey.getLanguage() != null && !survey.getLanguage().isBlank()) {
+      sb.append("\nIdioma encuesta: ").append(survey.getLanguage().trim());
+    }
+    return sb.toString();
+  }
+
+  private String resolveAnalysisModel() {
+    String fromEnv = System.getenv("SURVEY_ANALYSIS_MODEL");
+    if (fromEnv == null || fromEnv.isBlank()) {
+      fromEnv = System.getenv("EMAIL_AUTOMATION_MODEL");
+    }
+    return fromEnv != null && !fromEnv.isBlank() ? fromEnv : "gpt-4.1-mini";
+  }
+
+  private String extractContent(Object response) {
+    if (!(response instanceof Map<?, ?> map)) {
+      return null;
+    }
+    Object output = map.get("output");
+    if (!(output instanceof Map<?, ?> outputMap)) {
+      return null;
+    }
+    Object choicesObj = outputMap.get("choices");
+    if (choicesObj instanceof List<?> choices && !choices.isEmpty()) {
+      Object first = choices.get(0);
+      if (first instanceof Map<?, ?> firstMap) {
+        Object message = firstMap.get("message");
+        if (message instanceof Map<?, ?> messageMap) {
+          Object content = messageMap.get("content");
+          if (content != null) {
+            return String.valueOf(content);
+          }
+        }
+        Object text = firstMap.get("text");
+        if (text != null) {
+          return String.valueOf(text);
+        }
+      }
+    }
+    Object responseField = outputMap.get("response");
+    return responseField != null ? String.valueOf(responseField) : null;
+  }
+
+  private String stripJsonFence(String content) {
+    if (content == null) {
+      return "";
+    }
+    String trimmed = content.trim();
+    if (trimmed.startsWith("```")) {
+      int start = trimmed.indexOf("\n");
+      int end = trimmed.lastIndexOf("```");
+      if (start > 0 && end > start) {
+        return trimmed.substring(start + 1, end).trim();
+      }
+    }
+    return trimmed;
+  }
+
+  private String toJson(Object value) {
+    try {
+      return objectMapper.writeValueAsString(value);
+    } catch (Exception ex) {
+      return "{}";
+    }
+  }
+
+  private static int estimateTokens(String text) {
+    return text.length() / 4 + 1;
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger sequence = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /** Running aggregate for one question; text questions only count answers. */
+  private static final class QuestionStats {
+    final String id;
+    final String label;
+    final String type;
+    final Map<String, Long> counts = new TreeMap<>();
+    long answered;
+    double sum;
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+    long numeric;
+
+    QuestionStats(TenantServiceSurveyQuestion question) {
+      this.id = question.getId();
+      this.label = question.getLabel();
+      this.type = question.getType() != null ? question.getType() : "text";
+    }
+
+    void add(Object value) {
+      if (value == null || (value instanceof String text && text.isBlank())) {
+        return;
+      }
+      answered++;
+      if (NUMERIC_TYPES.contains(type)) {
+        Double number = toNumber(value);
+        if (number == null) {
+          return;
+        }
+        numeric++;
+        sum += number;
+        min = Math.min(min, number);
+        max = Math.max(max, number);
+        if (!"number".equals(type)) {
+          counts.merge(String.valueOf(Math.round(number)), 1L, Long::sum);
+        }
+      } else if (CHOICE_TYPES.contains(type)) {
+        Collection<?> options = value instanceof Collection<?> list ? list : List.of(value);
+        for (Object option : options) {
+          if (option != null) {
+            counts.merge(String.valueOf(option), 1L, Long::sum);
+          }
+        }
+      }
+    }
+
+    Map<String, Object> view() {
+      Map<String, Object> view = new LinkedHashMap<>();
+      view.put("label", label);
+      view.put("type", type);
+      view.put("answered", answered);
+      if (NUMERIC_TYPES.contains(type) && numeric > 0) {
+        view.put("average", Math.round(sum / numeric * 100d) / 100d);
+        view.put("min", min);
+        view.put("max", max);
+      }
+      if (!counts.isEmpty()) {
+        view.put("distribution", counts);
+      }
+      if ("nps".equals(type) && numeric > 0) {
+        long promoters = 0;
+        long detractors = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+          long score = Long.parseLong(entry.getKey());
+          if (score >= 9) {
+            promoters += entry.getValue();
+          } else if (score <= 6) {
+            detractors += entry.getValue();
+          }
+        }
+        view.put("npsScore", Math.round((promoters - detractors) * 1000d / numeric) / 10d);
+      }
+      return view;
+    }
+
+    private static Double toNumber(Object value) {
+      if (value instanceof Number number) {
+        return number.doubleValue();
+      }
+      try {
+        return Double.parseDouble(String.valueOf(value).trim());
+      } catch (NumberFormatException ex) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.neria.manager.surveys;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neria.manager.common.entities.TenantServiceSurveyAnswer;
+import com.neria.manager.common.entities.TenantServiceSurveyResponse;
+import com.neria.manager.common.repos.TenantServiceSurveyAnswerRepository;
+import com.neria.manager.common.repos.TenantServiceSurveyResponseRepository;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * Walks a survey's responses newest first in keyset pages on (submittedAt desc, id desc), followed
+ * by the unsubmitted ones by id, loading the answers of each page only. Used by the CSV export and
+ * insights so neither holds the whole survey in memory.
+ */
+final class SurveyResponsePages {
+  private final TenantServiceSurveyResponseRepository responseRepository;
+  private final TenantServiceSurveyAnswerRepository answerRepository;
+  private final String surveyId;
+  private final int pageSize;
+  private TenantServiceSurveyResponse last;
+  private boolean unsubmitted;
+  private List<TenantServiceSurveyResponse> responses = List.of();
+  private Map<String, Map<String, TenantServiceSurveyAnswer>> answers = Map.of();
+
+  SurveyResponsePages(
+      TenantServiceSurveyResponseRepository responseRepository,
+      TenantServiceSurveyAnswerRepository answerRepository,
+      String surveyId,
+      int pageSize) {
+    this.responseRepository = responseRepository;
+    this.answerRepository = answerRepository;
+    this.surveyId = surveyId;
+    this.pageSize = pageSize;
+  }
+
+  /** Loads the next page; returns false once every response has been read. */
+  boolean next() {
+    while (true) {
+      List<TenantServiceSurveyResponse> page = fetch();
+      if (!page.isEmpty()) {
+        responses = page;
+        last = page.get(page.size() - 1);
+        answers = new HashMap<>();
+        for (TenantServiceSurveyAnswer answer :
+            answerRepository.findByResponseIdIn(
+                page.stream().map(TenantServiceSurveyResponse::getId).toList())) {
+          answers
+              .computeIfAbsent(answer.getResponseId(), key -> new HashMap<>())
+              .putIfAbsent(answer.getQuestionId(), answer);
+        }
+        return true;
+      }
+      if (unsubmitted) {
+        responses = List.of();
+        answers = Map.of();
+        return false;
+      }
+      unsubmitted = true;
+      last = null;
+    }
+  }
+
+  List<TenantServiceSurveyResponse> responses() {
+    return responses;
+  }
+
+  /** Answers of {@code responseId} in the current page, keyed by question id. */
+  Map<String, TenantServiceSurveyAnswer> answers(String responseId) {
+    return answers.getOrDefault(responseId, Map.of());
+  }
+
+  static Object answerValue(ObjectMapper objectMapper, TenantServiceSurveyAnswer answer) {
+    if (answer.getValueJson() != null && !answer.getValueJson().isBlank()) {
+      try {
+        return objectMapper.readValue(answer.getValueJson(), Object.class);
+      } catch (Exception ex) {
+        return answer.getValueJson();
+      }
+    }
+    if (answer.getValueNumber() != null) {
+      return answer.getValueNumber();
+    }
+    return answer.getValueText();
+  }
+
+  private List<TenantServiceSurveyResponse> fetch() {
+    PageRequest page = PageRequest.of(0, pageSize);
+    if (unsubmitted) {
+      return last == null
+          ? responseRepository.findBySurveyIdAndSubmittedAtIsNullOrderByIdDesc(surveyId, page)
+          : responseRepository.findBySurveyIdAndSubmittedAtIsNullAndIdLessThanOrderByIdDesc(
+              surveyId, last.getId(), page);
+    }
+    return last == null
+        ? responseRepository.findBySurveyIdAndSubmittedAtIsNotNullOrderBySubmittedAtDescIdDesc(
+            surveyId, page)
+        : responseRepository.findSubmittedPageAfter(
+            surveyId, last.getSubmittedAt(), last.getId(), page);
+  }
+}
@@ -0,0 +1,405 @@
+package com.neria.manager.surveys;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neria.manager.common.entities.TenantServiceSurvey;
+import com.neria.manager.common.entities.TenantServiceSurveyAnswer;
+import com.neria.manager.common.entities.TenantServiceSurveyQuestion;
+import com.neria.manager.common.entities.TenantServiceSurveyResponse;
+import com.neria.manager.common.repos.TenantServiceSurveyAnswerRepository;
+import com.neria.manager.common.repos.TenantServiceSurveyQuestionRepository;
+import com.neria.manager.common.repos.TenantServiceSurveyRepository;
+import com.neria.manager.common.repos.TenantServiceSurveyResponseRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Running per-survey statistics in {@code tenant_service_survey_stats}: one row per
+ * (question, metric, bucket) holding a count plus sum/min/max for numeric metrics. Survey-level
+ * rows use an empty question id.
+ *
+ * <p>Each submission adds its contribution with upserts in the submitting transaction, so reads
+ * cost one primary-key range scan however many responses a survey has. {@link #rebuild} recomputes
+ * a survey from its responses and marks it {@code built}; surveys created before this table are
+ * backfilled by {@link #backfill}.
+ */
+@Service
+public class SurveyStatsService {
+  private static final Logger log = LoggerFactory.getLogger(SurveyStatsService.class);
+  private static final String SURVEY_LEVEL = "";
+  private static final Set<String> CHOICE_TYPES = Set.of("single_choice", "multi_choice");
+  private static final Set<String> NUMERIC_TYPES = Set.of("rating", "nps", "number");
+  private static final int MAX_BUCKET_LENGTH = 191;
+  private static final int REBUILD_PAGE_SIZE = 500;
+  private static final String UPSERT =
+      "INSERT INTO tenant_service_survey_stats"
+          + " (surveyId, questionId, metric, bucket, tenantId, count, sum, minNumber, maxNumber)"
+          + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"
+          + " ON DUPLICATE KEY UPDATE count = count + VALUES(count),"
+          + " sum = COALESCE(sum, 0) + COALESCE(VALUES(sum), 0),"
+          + " minNumber = LEAST(COALESCE(minNumber, VALUES(minNumber)),"
+          + " COALESCE(VALUES(minNumber), minNumber)),"
+          + " maxNumber = GREATEST(COALESCE(maxNumber, VALUES(maxNumber)),"
+          + " COALESCE(VALUES(maxNumber), maxNumber))";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TenantServiceSurveyRepository surveyRepository;
+  private final TenantServiceSurveyQuestionRepository questionRepository;
+  private final TenantServiceSurveyResponseRepository responseRepository;
+  private final TenantServiceSurveyAnswerRepository answerRepository;
+  private final ObjectMapper objectMapper;
+  private final TransactionTemplate transactionTemplate;
+  private final int backfillBatch;
+
+  public SurveyStatsService(
+      JdbcTemplate jdbcTemplate,
+      TenantServiceSurveyRepository surveyRepository,
+      TenantServiceSurveyQuestionRepository questionRepository,
+      TenantServiceSurveyResponseRepository responseRepository,
+      TenantServiceSurveyAnswerRepository answerRepository,
+      ObjectMapper objectMapper,
+      PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.surveyRepository = surveyRepository;
+    this.questionRepository = questionRepository;
+    this.responseRepository = responseRepository;
+    this.answerRepository = answerRepository;
+    this.objectMapper = objectMapper;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.backfillBatch =
+        Integer.parseInt(System.getenv().getOrDefault("SURVEY_STATS_BACKFILL_BATCH", "10"));
+  }
+
+  /** Adds one submission; call inside the transaction that stores it. */
+  public void record(
+      TenantServiceSurvey survey,
+      TenantServiceSurveyResponse response,
+      Map<String, TenantServiceSurveyQuestion> questions,
+      Collection<TenantServiceSurveyAnswer> answers) {
+    // Shared lock on the survey row: submissions run side by side, but not during a rebuild.
+    jdbcTemplate.queryForList(
+        "SELECT id FROM tenant_service_surveys WHERE id = ? LOCK IN SHARE MODE", survey.getId());
+    Delta delta = new Delta();
+    apply(delta, response, answers, questions);
+    write(survey.getTenantId(), survey.getId(), delta);
+  }
+
+  /**
+   * Recomputes a survey's statistics from its responses. Holds the survey row lock while it scans,
+   * so submissions to that survey wait until it commits.
+   */
+  @Transactional
+  public Map<String, Object> rebuild(
+      TenantServiceSurvey survey, List<TenantServiceSurveyQuestion> questions) {
+    jdbcTemplate.queryForList(
+        "SELECT id FROM tenant_service_surveys WHERE id = ? FOR UPDATE", survey.getId());
+    Map<String, TenantServiceSurveyQuestion> questionsById = new HashMap<>();
+    for (TenantServiceSurveyQuestion question : questions) {
+      questionsById.put(question.getId(), question);
+    }
+    Delta delta = new Delta();
+    delta.count(SURVEY_LEVEL, "responses", "", 0);
+    delta.count(SURVEY_LEVEL, "built", "", 1);
+    long responses = 0;
+    SurveyResponsePages pages =
+        new SurveyResponsePages(responseRepository, answerRepository, survey.getId(), REBUILD_PAGE_SIZE);
+    while (pages.next()) {
+      for (TenantServiceSurveyResponse response : pages.responses()) {
+        apply(delta, response, pages.answers(response.getId()).values(), questionsById);
+        responses++;
+      }
+    }
+    deleteSurvey(survey.getId());
+    write(survey.getTenantId(), survey.getId(), delta);
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("surveyId", survey.getId());
+    result.put("responses", responses);
+    result.put("rows", delta.cells.size());
+    return result;
+  }
+
+  public void deleteSurvey(String surveyId) {
+    jdbcTemplate.update("DELETE FROM tenant_service_survey_stats WHERE surveyId = ?", surveyId);
+  }
+
+  /** Response totals for the given surveys; surveys not yet rebuilt are left out. */
+  public Map<String, Long> responseCounts(Collection<String> surveyIds) {
+    Map<String, Long> counts = new HashMap<>();
+    if (surveyIds.isEmpty()) {
+      return counts;
+    }
+    String placeholders = String.join(",", Collections.nCopies(surveyIds.size(), "?"));
+    jdbcTemplate.query(
+        "SELECT r.surveyId, r.count FROM tenant_service_survey_stats r"
+            + " JOIN tenant_service_survey_stats b ON b.surveyId = r.surveyId"
+            + " AND b.questionId = '' AND b.metric = 'built' AND b.bucket = ''"
+            + " WHERE r.questionId = '' AND r.metric = 'responses' AND r.bucket = ''"
+            + " AND r.surveyId IN ("
+            + placeholders
+            + ")",
+        rs -> {
+          counts.put(rs.getString("surveyId"), rs.getLong("count"));
+        },
+        surveyIds.toArray());
+    return counts;
+  }
+
+  /** Dashboard view: response totals, daily series and per-question aggregates. */
+  public Map<String, Object> dashboard(
+      TenantServiceSurvey survey, List<TenantServiceSurveyQuestion> questions) {
+    List<Map<String, Object>> rows =
+        jdbcTemplate.queryForList(
+            "SELECT questionId, metric, bucket, count, sum, minNumber, maxNumber"
+                + " FROM tenant_service_survey_stats WHERE surveyId = ?",
+            survey.getId());
+    long responses = 0;
+    boolean built = false;
+    Map<String, Long> timeline = new TreeMap<>();
+    Map<String, Map<String, Object>> perQuestion = new LinkedHashMap<>();
+    for (TenantServiceSurveyQuestion question : questions) {
+      Map<String, Object> view = new LinkedHashMap<>();
+      view.put("questionId", question.getId());
+      view.put("label", question.getLabel());
+      view.put("type", question.getType());
+      view.put("answered", 0L);
+      perQuestion.put(question.getId(), view);
+    }
+    for (Map<String, Object> row : rows) {
+      String questionId = String.valueOf(row.get("questionId"));
+      String metric = String.valueOf(row.get("metric"));
+      String bucket = String.valueOf(row.get("bucket"));
+      long count = ((Number) row.get("count")).longValue();
+      if (SURVEY_LEVEL.equals(questionId)) {
+        switch (metric) {
+          case "responses" -> responses = count;
+          case "built" -> built = true;
+          case "day" -> timeline.put(bucket, count);
+          default -> {}
+        }
+        continue;
+      }
+      Map<String, Object> view = perQuestion.get(questionId);
+      if (view == null) {
+        continue;
+      }
+      switch (metric) {
+        case "answered" -> view.put("answered", count);
+        case "option", "histogram" -> {
+          @SuppressWarnings("unchecked")
+          Map<String, Long> buckets =
+              (Map<String, Long>)
+                  view.computeIfAbsent(
+                      "option".equals(metric) ? "options" : "histogram", key -> new TreeMap<>());
+          buckets.put(bucket, count);
+        }
+        case "numeric" -> {
+          Map<String, Object> numeric = new LinkedHashMap<>();
+          numeric.put("count", count);
+          numeric.put("min", row.get("minNumber"));
+          numeric.put("max", row.get("maxNumber"));
+          Object sum = row.get("sum");
+          numeric.put(
+              "mean",
+              count > 0 && sum instanceof Number number
+                  ? Math.round(number.doubleValue() / count * 100d) / 100d
+                  : null);
+          view.put("numeric", numeric);
+        }
+        default -> {}
+      }
+    }
+    for (Map<String, Object> view : perQuestion.values()) {
+      long answered = ((Number) view.get("answered")).longValue();
+      view.put(
+          "responseRate",
+          responses > 0 ? Math.round(answered * 1000d / responses) / 1000d : null);
+    }
+    List<Map<String, Object>> series = new ArrayList<>();
+    timeline.forEach((date, count) -> series.add(Map.of("date", date, "responses", count)));
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("surveyId", survey.getId());
+    result.put("responseCount", responses);
+    result.put("built", built);
+    result.put("timeline", series);
+    result.put("questions", new ArrayList<>(perQuestion.values()));
+    return result;
+  }
+
+  /** Rebuilds, a few at a time, surveys whose statistics were never built. */
+  @Scheduled(
+      initialDelayString = "${SURVEY_STATS_BACKFILL_DELAY_MS:60000}",
+      fixedDelayString = "${SURVEY_STATS_BACKFILL_MS:300000}")
+  public void backfill() {
+    List<String> pending;
+    try {
+      pending =
+          jdbcTemplate.queryForList(
+              "SELECT s.id FROM tenant_service_surveys s WHERE NOT EXISTS ("
+                  + "SELECT 1 FROM tenant_service_survey_stats b WHERE b.surveyId = s.id"
+                  + " AND b.questionId = '' AND b.metric = 'built' AND b.bucket = '') LIMIT ?",
+              String.class,
+              backfillBatch);
+    } catch (Exception ex) {
+      log.warn("Survey stats backfill skipped: {}", ex.getMessage());
+      return;
+    }
+    for (String surveyId : pending) {
+      try {
+        rebuildBySurveyId(surveyId);
+      } catch (Exception ex) {
+        log.warn("Survey stats rebuild failed for {}: {}", surveyId, ex.getMessage());
+      }
+    }
+  }
+
+  private void rebuildBySurveyId(String surveyId) {
+    TenantServiceSurvey survey = surveyRepository.findById(surveyId).orElse(null);
+    if (survey == null) {
+      return;
+    }
+    List<TenantServiceSurveyQuestion> questions =
+        questionRepository.findBySurveyIdOrderByOrderIndexAsc(surveyId);
+    // Each survey in its own transaction: a self-call would bypass @Transactional on rebuild.
+    transactionTemplate.executeWithoutResult(status -> rebuild(survey, questions));
+  }
+
+  private void apply(
+      Delta delta,
+      TenantServiceSurveyResponse response,
+      Collection<TenantServiceSurveyAnswer> answers,
+      Map<String, TenantServiceSurveyQuestion> questions) {
+    delta.count(SURVEY_LEVEL, "responses", "", 1);
+    LocalDateTime at =
+        response.getSubmittedAt() != null ? response.getSubmittedAt() : response.getCreatedAt();
+    if (at != null) {
+      delta.count(SURVEY_LEVEL, "day", at.toLocalDate().toString(), 1);
+    }
+    for (TenantServiceSurveyAnswer answer : answers) {
+      TenantServiceSurveyQuestion question = questions.get(answer.getQuestionId());
+      if (question == null) {
+        continue;
+      }
+      Object value = SurveyResponsePages.answerValue(objectMapper, answer);
+      if (value == null || (value instanceof String text && text.isBlank())) {
+        continue;
+      }
+      String questionId = question.getId();
+      String type = question.getType() != null ? question.getType() : "text";
+      delta.count(questionId, "answered", "", 1);
+      if (CHOICE_TYPES.contains(type)) {
+        Collection<?> options = value instanceof Collection<?> list ? list : List.of(value);
+        for (Object option : options) {
+          if (option != null) {
+            delta.count(questionId, "option", String.valueOf(option), 1);
+          }
+        }
+      } else if (NUMERIC_TYPES.contains(type)) {
+        Double number = toNumber(value);
+        if (number != null) {
+          delta.number(questionId, number);
+          delta.count(questionId, "histogram", histogramBucket(type, number), 1);
+        }
+      }
+    }
+  }
+
+  private void write(String tenantId, String surveyId, Delta delta) {
+    List<Object[]> batch = new ArrayList<>(delta.cells.size());
+    delta.cells.forEach(
+        (key, cell) ->
+            batch.add(
+                new Object[] {
+                  surveyId,
+                  key.questionId,
+                  key.metric,
+                  key.bucket,
+                  tenantId,
+                  cell.count,
+                  cell.numeric ? cell.sum : null,
+                  cell.numeric ? cell.min : null,
+                  cell.numeric ? cell.max : null
+                }));
+    if (!batch.isEmpty()) {
+      // One fixed row order for every writer, so concurrent submissions cannot deadlock.
+      batch.sort(
+          Comparator.comparing((Object[] row) -> (String) row[1])
+              .thenComparing(row -> (String) row[2])
+              .thenComparing(row -> (String) row[3]));
+      jdbcTemplate.batchUpdate(UPSERT, batch);
+    }
+  }
+
+  /** Integer buckets for ratings and NPS; powers of ten for free numbers. */
+  private static String histogramBucket(String type, double value) {
+    if (!"number".equals(type)) {
+      return String.valueOf(Math.round(value));
+    }
+    if (value == 0d) {
+      return "0";
+    }
+    double magnitude = Math.pow(10, Math.floor(Math.log10(Math.abs(value))));
+    String range = "[" + format(magnitude) + "," + format(magnitude * 10) + ")";
+    return value < 0 ? "-" + range : range;
+  }
+
+  private static String format(double value) {
+    return value >= 1 ? String.valueOf((long) value) : String.valueOf(value);
+  }
+
+  private static Double toNumber(Object value) {
+    if (value instanceof Number number) {
+      return number.doubleValue();
+    }
+    try {
+      return Double.parseDouble(String.valueOf(value).trim());
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  private record CellKey(String questionId, String metric, String bucket) {}
+
+  private static final class Cell {
+    long count;
+    boolean numeric;
+    double sum;
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+  }
+
+  private static final class Delta {
+    final Map<CellKey, Cell> cells = new LinkedHashMap<>();
+
+    void count(String questionId, String metric, String bucket, long count) {
+      String trimmed =
+          bucket.length() > MAX_BUCKET_LENGTH ? bucket.substring(0, MAX_BUCKET_LENGTH) : bucket;
+      cells.computeIfAbsent(new CellKey(questionId, metric, trimmed), key -> new Cell()).count +=
+          count;
+    }
+
+    void number(String questionId, double value) {
+      Cell cell = cells.computeIfAbsent(new CellKey(questionId, "numeric", ""), key -> new Cell());
+      cell.numeric = true;
+      cell.count++;
+      cell.sum += value;
+      cell.min = Math.min(cell.min, value);
+      cell.max = Math.max(cell.max, value);
+    }
+  }
+}
@@ -4,6 +4,10 @@ import com.neria.manager.common.security.AuthContext;
 import com.neria.manager.common.security.AuthUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,7 +16,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/tenants/{tenantId}/services/{serviceCode}/surveys")
@@ -155,18 +161,48 @@ public class SurveysController {
     return surveysService.getResponse(tenantId, serviceCode, surveyId, responseId);
   }
 
-  @GetMapping(value = "/{surveyId}/responses/export", produces = MediaType.TEXT_PLAIN_VALUE)
-  public String exportResponses(
+  /**
+   * Streams the CSV straight to the response. {@code gzip=true} downloads a {@code .csv.gz} file;
+   * otherwise the body is gzip-encoded when the client sends {@code Accept-Encoding: gzip}.
+   */
+  @GetMapping("/{surveyId}/responses/export")
+  public void exportResponses(
       HttpServletRequest request,
       HttpServletResponse response,
       @PathVariable String tenantId,
       @PathVariable String serviceCode,
-      @PathVariable String surveyId) {
+      @PathVariable String surveyId,
+      @RequestParam(value = "gzip", required = false) Boolean gzip)
+      throws IOException {
     requireScope(request, tenantId);
-    response.setHeader(
-        "Content-Disposition",
-        "attachment; filename=\"survey_" + surveyId + ".csv\"");
-    return surveysService.exportResponsesCsv(tenantId, serviceCode, surveyId);
+    StreamingResponseBody body =
+        surveysService.exportResponsesCsv(tenantId, serviceCode, surveyId);
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    boolean gzipFile = Boolean.TRUE.equals(gzip);
+    boolean gzipEncoding =
+        !gzipFile && acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    if (gzipFile) {
+      response.setContentType("application/gzip");
+      response.setHeader(
+          "Content-Disposition", "attachment; filename=\"survey_" + surveyId + ".csv.gz\"");
+    } else {
+      response.setContentType(MediaType.TEXT_PLAIN_VALUE + ";charset=UTF-8");
+      response.setHeader(
+          "Content-Disposition", "attachment; filename=\"survey_" + surveyId + ".csv\"");
+    }
+    if (gzipEncoding) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+    OutputStream out = response.getOutputStream();
+    if (gzipFile || gzipEncoding) {
+      try (GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024, true)) {
+        body.writeTo(compressed);
+      }
+    } else {
+      body.writeTo(out);
+      out.flush();
+    }
   }
 
   @GetMapping("/{surveyId}/insights")
@@ -181,11 +217,44 @@ public class SurveysController {
 
   @PostMapping("/{surveyId}/insights")
   public Object runInsights(
+      HttpServletRequest request,
+      @PathVariable String tenantId,
+      @PathVariable String serviceCode,
+      @PathVariable String surveyId,
+      @RequestParam(value = "async", required = false) Boolean async) {
+    requireScope(request, tenantId);
+    return surveysService.runInsights(
+        tenantId, serviceCode, surveyId, Boolean.TRUE.equals(async));
+  }
+
+  @GetMapping("/{surveyId}/insights/{insightId}")
+  public Object getInsight(
+      HttpServletRequest request,
+      @PathVariable String tenantId,
+      @PathVariable String serviceCode,
+      @PathVariable String surveyId,
+      @PathVariable String insightId) {
+    requireScope(request, tenantId);
+    return surveysService.getInsight(tenantId, serviceCode, surveyId, insightId);
+  }
+
+  @GetMapping("/{surveyId}/stats")
+  public Object getStats(
+      HttpServletRequest request,
+      @PathVariable String tenantId,
+      @PathVariable String serviceCode,
+      @PathVariable String surveyId) {
+    requireScope(request, tenantId);
+    return surveysService.getStats(tenantId, serviceCode, surveyId);
+  }
+
+  @PostMapping("/{surveyId}/stats/rebuild")
+  public Object rebuildStats(
       HttpServletRequest request,
       @PathVariable String tenantId,
       @PathVariable String serviceCode,
       @PathVariable String surveyId) {
     requireScope(request, tenantId);
-    return surveysService.runInsights(tenantId, serviceCode, surveyId);
+    return surveysService.rebuildStats(tenantId, serviceCode, surveyId);
   }
 }
@@ -18,8 +18,10 @@ import com.neria.manager.common.repos.TenantServiceSurveyInsightRepository;
 import com.neria.manager.common.repos.TenantServiceSurveyQuestionRepository;
 import com.neria.manager.common.repos.TenantServiceSurveyRepository;
 import com.neria.manager.common.repos.TenantServiceSurveyResponseRepository;
-import com.neria.manager.runtime.ExecuteRequest;
-import com.neria.manager.runtime.RuntimeService;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -38,32 +40,20 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Service
 public class SurveysService {
   private static final Logger log = LoggerFactory.getLogger(SurveysService.class);
   private static final String DEFAULT_STATUS = "draft";
-  private static final int MAX_ANALYSIS_RESPONSES = 200;
   private static final String ENDPOINT_SURVEYS_LIST = "surveys_list";
   private static final String ENDPOINT_SURVEY_RESPONSES = "survey_responses";
   private static final String ENDPOINT_SURVEY_SUBMIT = "survey_submit";
-
-  private static final String DEFAULT_ANALYSIS_PROMPT =
-      "Eres un analista experto en encuestas. Debes generar insights claros y accionables "
-          + "a partir de respuestas abiertas y estructuradas. Devuelve SOLO un JSON valido. "
-          + "No inventes datos. Si falta informacion, usa null o listas vacias.\n\n"
-          + "Entrega este formato exacto:\n"
-          + "{\n"
-          + "  \"summary\": \"resumen ejecutivo en 5-8 frases\",\n"
-          + "  \"sentiment\": {\"positive\": 0, \"neutral\": 0, \"negative\": 0, \"notes\": \"\"},\n"
-          + "  \"themes\": [\"tema 1\", \"tema 2\"],\n"
-          + "  \"insights\": [\"insight 1\", \"insight 2\"],\n"
-          + "  \"risks\": [\"riesgo 1\"],\n"
-          + "  \"opportunities\": [\"oportunidad 1\"],\n"
-          + "  \"highlights\": [\"cita corta sin PII\"]\n"
-          + "}\n\n"
-          + "Usa el idioma de la encuesta.";
+  private static final int EXPORT_CHUNK_SIZE =
+      Integer.parseInt(System.getenv().getOrDefault("SURVEY_EXPORT_CHUNK_SIZE", "500"));
 
   private final TenantServiceSurveyRepository surveyRepository;
   private final TenantServiceSurveyQuestionRepository questionRepository;
@@ -73,7 +63,8 @@ public class SurveysService {
   private final ServiceCatalogRepository serviceCatalogRepository;
   private final TenantServiceConfigRepository configRepository;
   private final TenantServiceEndpointRepository endpointRepository;
-  private final RuntimeService runtimeService;
+  private final SurveyInsightsEngine insightsEngine;
+  private final SurveyStatsService statsService;
   private final ObjectMapper objectMapper;
   private final HttpClient httpClient = HttpClient.newBuilder().build();
 
@@ -86,7 +77,8 @@ public class SurveysService {
       ServiceCatalogRepository serviceCatalogRepository,
       TenantServiceConfigRepository configRepository,
       TenantServiceEndpointRepository endpointRepository,
-      RuntimeService runtimeService,
+      SurveyInsightsEngine insightsEngine,
+      SurveyStatsService statsService,
       ObjectMapper objectMapper) {
     this.surveyRepository = surveyRepository;
     this.questionRepository = questionRepository;
@@ -96,7 +88,8 @@ public class SurveysService {
     this.serviceCatalogRepository = serviceCatalogRepository;
     this.configRepository = configRepository;
     this.endpointRepository = endpointRepository;
-    this.runtimeService = runtimeService;
+    this.insightsEngine = insightsEngine;
+    this.statsService = statsService;
     this.objectMapper = objectMapper;
   }
 
@@ -105,7 +98,24 @@ public class SurveysService {
     requireService(normalized);
     List<TenantServiceSurvey> surveys =
         surveyRepository.findByTenantIdAndServiceCodeOrderByCreatedAtDesc(tenantId, normalized);
-    return surveys.stream().map(this::toSummary).toList();
+    if (surveys.isEmpty()) {
+      return List.of();
+    }
+    List<String> ids = surveys.stream().map(TenantServiceSurvey::getId).toList();
+    Map<String, Long> questionCounts = new HashMap<>();
+    for (Object[] row : questionRepository.countBySurveyIds(ids)) {
+      questionCounts.put((String) row[0], ((Number) row[1]).longValue());
+    }
+    Map<String, Long> responseCounts = statsService.responseCounts(ids);
+    return surveys.stream()
+        .map(
+            survey ->
+                toSummary(
+                    survey,
+                    questionCounts.getOrDefault(survey.getId(), 0L),
+                    responseCounts.computeIfAbsent(
+                        survey.getId(), responseRepository::countBySurveyId)))
+        .toList();
   }
 
   public Object listExternalSurveys(String tenantId, String serviceCode) {
@@ -155,6 +165,7 @@ public class SurveysService {
     answerRepository.deleteBySurveyId(survey.getId());
     responseRepository.deleteBySurveyId(survey.getId());
     questionRepository.deleteBySurveyId(survey.getId());
+    statsService.deleteSurvey(survey.getId());
     insightRepository.deleteAll(insightRepository.findBySurveyIdOrderByCreatedAtDesc(survey.getId()));
     surveyRepository.deleteById(survey.getId());
   }
@@ -303,8 +314,9 @@ public class SurveysService {
         answers.add(answerRepository.save(answer));
       }
     }
-
-    pushResponseToEndpoint(survey, response, answers);
+    pushResponseAfterCommit(survey, response, answers);
+    // Last statement before commit: keeps the shared stats rows locked as briefly as possible.
+    statsService.record(survey, response, questionMap, answers);
     return toResponseDetail(response, answers);
   }
 
@@ -316,110 +328,46 @@ public class SurveysService {
         .toList();
   }
 
+  /**
+   * Runs a map-reduce analysis over every response (see {@link SurveyInsightsEngine}). With
+   * {@code async} the insight is returned while still running; poll {@link #getInsight}.
+   */
   public SurveyInsightResponse runInsights(
-      String tenantId, String serviceCode, String surveyId) {
+      String tenantId, String serviceCode, String surveyId, boolean async) {
     TenantServiceSurvey survey = requireSurvey(tenantId, serviceCode, surveyId);
     TenantServiceConfig config =
         configRepository.findByTenantIdAndServiceCode(tenantId, survey.getServiceCode()).orElse(null);
     if (config == null || config.getProviderId() == null || config.getProviderId().isBlank()) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Provider required for analysis");
     }
-    String model = resolveAnalysisModel();
-    List<TenantServiceSurveyQuestion> questions =
-        questionRepository.findBySurveyIdOrderByOrderIndexAsc(surveyId);
-    List<TenantServiceSurveyResponse> responses =
-        responseRepository.findBySurveyIdOrderBySubmittedAtDesc(surveyId);
-    if (responses.isEmpty()) {
+    if (responseRepository.countBySurveyId(surveyId) == 0) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No responses to analyze");
     }
-    List<TenantServiceSurveyAnswer> answers = answerRepository.findBySurveyId(surveyId);
+    List<TenantServiceSurveyQuestion> questions =
+        questionRepository.findBySurveyIdOrderByOrderIndexAsc(surveyId);
+    return toInsightResponse(insightsEngine.start(survey, config, questions, async));
+  }
 
-    Map<String, List<TenantServiceSurveyAnswer>> answersByResponse =
-        answers.stream().collect(Collectors.groupingBy(TenantServiceSurveyAnswer::getResponseId));
-
-    List<Map<String, Object>> responsePayload = new ArrayList<>();
-    int limit = Math.min(responses.size(), MAX_ANALYSIS_RESPONSES);
-    for (int i = 0; i < limit; i++) {
-      TenantServiceSurveyResponse response = responses.get(i);
-      List<TenantServiceSurveyAnswer> responseAnswers =
-          answersByResponse.getOrDefault(response.getId(), List.of());
-      List<Map<String, Object>> answerPayload = new ArrayList<>();
-      for (TenantServiceSurveyAnswer answer : responseAnswers) {
-        TenantServiceSurveyQuestion question =
-            questions.stream()
-                .filter(q -> q.getId().equals(answer.getQuestionId()))
-                .findFirst()
-                .orElse(null);
-        Map<String, Object> entry = new HashMap<>();
-        entry.put("questionId", answer.getQuestionId());
-        entry.put("questionLabel", question != null ? question.getLabel() : null);
-        entry.put("type", question != null ? question.getType() : null);
-        entry.put("value", extractAnswerValue(answer));
-        answerPayload.add(entry);
-      }
-      Map<String, Object> responseEntry = new HashMap<>();
-      responseEntry.put("responseId", response.getId());
-      responseEntry.put("submittedAt", response.getSubmittedAt());
-      responseEntry.put("answers", answerPayload);
-      responsePayload.add(responseEntry);
-    }
-
-    Map<String, Object> surveyPayload = new HashMap<>();
-    surveyPayload.put("surveyId", survey.getId());
-    surveyPayload.put("title", survey.getTitle());
-    surveyPayload.put("description", survey.getDescription());
-    surveyPayload.put("language", survey.getLanguage());
-    surveyPayload.put(
-        "questions",
-        questions.stream()
-            .map(
-                question ->
-                    Map.of(
-                        "id",
-                        question.getId(),
-                        "label",
-                        question.getLabel(),
-                        "type",
-                        question.getType(),
-                        "required",
-                        question.isRequired()))
-            .toList());
-
-    Map<String, Object> payload = Map.of("survey", surveyPayload, "responses", responsePayload);
-
-    String prompt = buildAnalysisPrompt(config, survey);
-    ExecuteRequest exec = new ExecuteRequest();
-    exec.providerId = config.getProviderId();
-    exec.model = model;
-    exec.serviceCode = survey.getServiceCode();
-    exec.payload =
-        Map.of(
-            "messages",
-            List.of(
-                Map.of("role", "system", "content", prompt),
-                Map.of("role", "user", "content", toJson(payload))));
-
-    TenantServiceSurveyInsight insight = new TenantServiceSurveyInsight();
-    insight.setId(UUID.randomUUID().toString());
-    insight.setSurveyId(survey.getId());
-    insight.setTenantId(survey.getTenantId());
-    insight.setServiceCode(survey.getServiceCode());
-    insight.setModel(model);
-    insight.setStatus("completed");
-    insight.setCreatedAt(LocalDateTime.now());
+  public SurveyInsightResponse getInsight(
+      String tenantId, String serviceCode, String surveyId, String insightId) {
+    requireSurvey(tenantId, serviceCode, surveyId);
+    return insightRepository
+        .findByIdAndSurveyId(insightId, surveyId)
+        .map(this::toInsightResponse)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Insight not found"));
+  }
 
-    try {
-      Object response = runtimeService.execute(tenantId, exec);
-      String content = extractContent(response);
-      String json = content != null ? stripJsonFence(content) : "";
-      insight.setPayload(json);
-    } catch (Exception ex) {
-      insight.setStatus("failed");
-      insight.setErrorMessage(ex.getMessage());
-      insight.setPayload(null);
-    }
-    TenantServiceSurveyInsight saved = insightRepository.save(insight);
-    return toInsightResponse(saved);
+  /** Per-question statistics maintained on submit by {@link SurveyStatsService}. */
+  public Map<String, Object> getStats(String tenantId, String serviceCode, String surveyId) {
+    TenantServiceSurvey survey = requireSurvey(tenantId, serviceCode, surveyId);
+    return statsService.dashboard(
+        survey, questionRepository.findBySurveyIdOrderByOrderIndexAsc(survey.getId()));
+  }
+
+  public Map<String, Object> rebuildStats(String tenantId, String serviceCode, String surveyId) {
+    TenantServiceSurvey survey = requireSurvey(tenantId, serviceCode, surveyId);
+    return statsService.rebuild(
+        survey, questionRepository.findBySurveyIdOrderByOrderIndexAsc(survey.getId()));
   }
 
   public TenantServiceSurvey requirePublicSurvey(String publicCode) {
@@ -454,16 +402,16 @@ public class SurveysService {
     return recordResponse(survey, request, metadata);
   }
 
-  public String exportResponsesCsv(String tenantId, String serviceCode, String surveyId) {
+  /**
+   * Checks access and returns a body that streams the survey's responses as CSV. Responses are
+   * read newest first in keyset pages of {@code SURVEY_EXPORT_CHUNK_SIZE} and answers are loaded
+   * per page, so memory use does not grow with the survey.
+   */
+  public StreamingResponseBody exportResponsesCsv(
+      String tenantId, String serviceCode, String surveyId) {
     TenantServiceSurvey survey = requireSurvey(tenantId, serviceCode, surveyId);
     List<TenantServiceSurveyQuestion> questions =
         questionRepository.findBySurveyIdOrderByOrderIndexAsc(survey.getId());
-    List<TenantServiceSurveyResponse> responses =
-        responseRepository.findBySurveyIdOrderBySubmittedAtDesc(survey.getId());
-    List<TenantServiceSurveyAnswer> answers = answerRepository.findBySurveyId(survey.getId());
-    Map<String, List<TenantServiceSurveyAnswer>> byResponse =
-        answers.stream().collect(Collectors.groupingBy(TenantServiceSurveyAnswer::getResponseId));
-
     List<String> headers = new ArrayList<>();
     headers.add("responseId");
     headers.add("submittedAt");
@@ -472,27 +420,53 @@ public class SurveysService {
     for (TenantServiceSurveyQuestion question : questions) {
       headers.add(question.getLabel());
     }
-    StringBuilder sb = new StringBuilder();
-    sb.append(headers.stream().map(this::csvEscape).collect(Collectors.joining(","))).append("\n");
-    for (TenantServiceSurveyResponse response : responses) {
-      List<String> row = new ArrayList<>();
-      row.add(response.getId());
-      row.add(response.getSubmittedAt() != null ? response.getSubmittedAt().toString() : "");
-      row.add(nullToEmpty(response.getRespondentEmail()));
-      row.add(nullToEmpty(response.getRespondentName()));
-      Map<String, TenantServiceSurveyAnswer> answersMap =
-          byResponse.getOrDefault(response.getId(), List.of()).stream()
-              .collect(Collectors.toMap(TenantServiceSurveyAnswer::getQuestionId, a -> a, (a, b) -> a));
-      for (TenantServiceSurveyQuestion question : questions) {
-        TenantServiceSurveyAnswer answer = answersMap.get(question.getId());
-        row.add(answer != null ? nullToEmpty(String.valueOf(extractAnswerValue(answer))) : "");
+    return out -> {
+      Writer writer =
+          new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+      writeCsvRow(writer, headers);
+      SurveyResponsePages pages =
+          new SurveyResponsePages(
+              responseRepository, answerRepository, survey.getId(), EXPORT_CHUNK_SIZE);
+      List<String> row = new ArrayList<>(headers.size());
+      while (pages.next()) {
+        for (TenantServiceSurveyResponse response : pages.responses()) {
+          row.clear();
+          row.add(response.getId());
+          row.add(response.getSubmittedAt() != null ? response.getSubmittedAt().toString() : "");
+          row.add(nullToEmpty(response.getRespondentEmail()));
+          row.add(nullToEmpty(response.getRespondentName()));
+          Map<String, TenantServiceSurveyAnswer> answersMap = pages.answers(response.getId());
+          for (TenantServiceSurveyQuestion question : questions) {
+            TenantServiceSurveyAnswer answer = answersMap.get(question.getId());
+            row.add(answer != null ? nullToEmpty(String.valueOf(extractAnswerValue(answer))) : "");
+          }
+          writeCsvRow(writer, row);
+        }
+        writer.flush();
       }
-      sb.append(row.stream().map(this::csvEscape).collect(Collectors.joining(","))).append("\n");
+      writer.flush();
+    };
+  }
+
+  private void writeCsvRow(Writer writer, List<String> values) throws IOException {
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        writer.write(',');
+      }
+      writer.write(csvEscape(values.get(i)));
     }
-    return sb.toString();
+    writer.write('\n');
   }
 
   private SurveySummary toSummary(TenantServiceSurvey survey) {
+    return toSummary(
+        survey,
+        questionRepository.countBySurveyId(survey.getId()),
+        responseRepository.countBySurveyId(survey.getId()));
+  }
+
+  private SurveySummary toSummary(
+      TenantServiceSurvey survey, long questionCount, long responseCount) {
     SurveySummary summary = new SurveySummary();
     summary.id = survey.getId();
     summary.title = survey.getTitle();
@@ -505,8 +479,8 @@ public class SurveysService {
     summary.anonymous = survey.isAnonymous();
     summary.welcomeText = survey.getWelcomeText();
     summary.thankYouText = survey.getThankYouText();
-    summary.questionCount = questionRepository.countBySurveyId(survey.getId());
-    summary.responseCount = responseRepository.countBySurveyId(survey.getId());
+    summary.questionCount = questionCount;
+    summary.responseCount = responseCount;
     summary.startAt = survey.getStartAt();
     summary.endAt = survey.getEndAt();
     summary.createdAt = survey.getCreatedAt();
@@ -608,6 +582,8 @@ public class SurveysService {
     response.status = insight.getStatus();
     response.payload = insight.getPayload();
     response.errorMessage = insight.getErrorMessage();
+    response.progress = insight.getProgress();
+    response.stage = insight.getStage();
     response.createdAt = insight.getCreatedAt();
     return response;
   }
@@ -735,26 +711,6 @@ public class SurveysService {
     }
   }
 
-  private String buildAnalysisPrompt(TenantServiceConfig config, TenantServiceSurvey survey) {
-    StringBuilder sb = new StringBuilder();
-    if (config != null && config.getSystemPrompt() != null && !config.getSystemPrompt().isBlank()) {
-      sb.append(config.getSystemPrompt().trim()).append("\n\n");
-    }
-    sb.append(DEFAULT_ANALYSIS_PROMPT);
-    if (survey.getLanguage() != null && !survey.getLanguage().isBlank()) {
-      sb.append("\nIdioma encuesta: ").append(survey.getLanguage().trim());
-    }
-    return sb.toString();
-  }
-
-  private String resolveAnalysisModel() {
-    String fromEnv = System.getenv("SURVEY_ANALYSIS_MODEL");
-    if (fromEnv == null || fromEnv.isBlank()) {
-      fromEnv = System.getenv("EMAIL_AUTOMATION_MODEL");
-    }
-    return fromEnv != null && !fromEnv.isBlank() ? fromEnv : "gpt-4.1-mini";
-  }
-
   private TenantServiceSurvey requireSurvey(String tenantId, String serviceCode, String surveyId) {
     String normalized = normalizeServiceCode(serviceCode);
     requireService(normalized);
@@ -811,17 +767,7 @@ public class SurveysService {
   }
 
   private Object extractAnswerValue(TenantServiceSurveyAnswer answer) {
-    if (answer.getValueJson() != null && !answer.getValueJson().isBlank()) {
-      try {
-        return objectMapper.readValue(answer.getValueJson(), Object.class);
-      } catch (Exception ex) {
-        return answer.getValueJson();
-      }
-    }
-    if (answer.getValueNumber() != null) {
-      return answer.getValueNumber();
-    }
-    return answer.getValueText();
+    return SurveyResponsePages.answerValue(objectMapper, answer);
   }
 
   private List<String> parseOptions(String optionsJson) {
@@ -863,50 +809,6 @@ public class SurveysService {
     return value == null ? "" : value;
   }
 
-  private String extractContent(Object response) {
-    if (!(response instanceof Map<?, ?> map)) {
-      return null;
-    }
-    Object output = map.get("output");
-    if (!(output instanceof Map<?, ?> outputMap)) {
-      return null;
-    }
-    Object choicesObj = outputMap.get("choices");
-    if (choicesObj instanceof List<?> choices && !choices.isEmpty()) {
-      Object first = choices.get(0);
-      if (first instanceof Map<?, ?> firstMap) {
-        Object message = firstMap.get("message");
-        if (message instanceof Map<?, ?> messageMap) {
-          Object content = messageMap.get("content");
-          if (content != null) {
-            return String.valueOf(content);
-          }
-        }
-        Object text = firstMap.get("text");
-        if (text != null) {
-          return String.valueOf(text);
-        }
-      }
-    }
-    Object responseField = outputMap.get("response");
-    return responseField != null ? String.valueOf(responseField) : null;
-  }
-
-  private String stripJsonFence(String content) {
-    if (content == null) {
-      return "";
-    }
-    String trimmed = content.trim();
-    if (trimmed.startsWith("```")) {
-      int start = trimmed.indexOf("\n");
-      int end = trimmed.lastIndexOf("```");
-      if (start > 0 && end > start) {
-        return trimmed.substring(start + 1, end).trim();
-      }
-    }
-    return trimmed;
-  }
-
   private TenantServiceEndpoint resolveEndpoint(
       String tenantId, String serviceCode, String slug) {
     List<TenantServiceEndpoint> endpoints =
@@ -945,6 +847,27 @@ public class SurveysService {
     }
   }
 
+  /**
+   * Pushes the response once the submission has committed, so a slow tenant endpoint never holds
+   * the transaction (and the survey stats locks) open.
+   */
+  private void pushResponseAfterCommit(
+      TenantServiceSurvey survey,
+      TenantServiceSurveyResponse response,
+      List<TenantServiceSurveyAnswer> answers) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      pushResponseToEndpoint(survey, response, answers);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            pushResponseToEndpoint(survey, response, answers);
+          }
+        });
+  }
+
   private void pushResponseToEndpoint(
       TenantServiceSurvey survey,
       TenantServiceSurveyResponse response,
@@ -1209,6 +1132,8 @@ public class SurveysService {
     public String status;
     public String payload;
     public String errorMessage;
+    public Integer progress;
+    public String stage;
     public LocalDateTime createdAt;
   }
 
@@ -3,6 +3,7 @@ package com.neria.manager.tenantpricing;
 import com.neria.manager.common.entities.TenantPricing;
 import com.neria.manager.common.repos.PricingModelRepository;
 import com.neria.manager.common.repos.TenantPricingRepository;
+import com.neria.manager.common.services.ConfigCache;
 import com.neria.manager.tenants.TenantsService;
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -19,14 +20,17 @@ public class TenantPricingService {
   private final TenantPricingRepository tenantPricingRepository;
   private final PricingModelRepository pricingRepository;
   private final TenantsService tenantsService;
+  private final ConfigCache configCache;
 
   public TenantPricingService(
       TenantPricingRepository tenantPricingRepository,
       PricingModelRepository pricingRepository,
-      TenantsService tenantsService) {
+      TenantsService tenantsService,
+      ConfigCache configCache) {
     this.tenantPricingRepository = tenantPricingRepository;
     this.pricingRepository = pricingRepository;
     this.tenantsService = tenantsService;
+    this.configCache = configCache;
   }
 
   public TenantPricingResponse getByTenantId(String tenantId) {
@@ -56,6 +60,7 @@ public class TenantPricingService {
     }
     tenantPricingRepository.deleteByTenantId(tenantId);
     tenantPricingRepository.flush();
+    configCache.invalidateTenant(ConfigCache.PRICING, tenantId);
     if (unique.isEmpty()) {
       return new TenantPricingResponse(tenantId, List.of());
     }
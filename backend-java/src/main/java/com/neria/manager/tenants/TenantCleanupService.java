@@ -1,5 +1,8 @@
 package com.neria.manager.tenants;
 
+import com.neria.manager.auth.ApiKeyCache;
+import com.neria.manager.documents.EmbeddingIndex;
+import com.neria.manager.runtime.RuntimeResponseCache;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,10 +23,15 @@ public class TenantCleanupService {
           "tenant_service_survey_responses",
           "tenant_service_survey_questions",
           "tenant_service_survey_insights",
+          "tenant_service_survey_stats",
           "tenant_service_surveys",
           "tenant_service_email_messages",
           "tenant_service_email_accounts",
           "tenant_service_embeddings",
+          "tenant_document_cache",
+          "runtime_response_cache",
+          "usage_alert_state",
+          "webhook_deliveries",
           "tenant_service_files",
           "tenant_service_storage",
           "tenant_service_jira",
@@ -40,6 +48,7 @@ public class TenantCleanupService {
           "chat_conversations",
           "chat_users",
           "usage_events",
+          "usage_daily",
           "audit_events",
           "tenant_login_logs",
           "tenant_request_logs",
@@ -57,9 +66,19 @@ public class TenantCleanupService {
           "subscriptions");
 
   private final JdbcTemplate jdbcTemplate;
+  private final ApiKeyCache apiKeyCache;
+  private final EmbeddingIndex embeddingIndex;
+  private final RuntimeResponseCache runtimeResponseCache;
 
-  public TenantCleanupService(JdbcTemplate jdbcTemplate) {
+  public TenantCleanupService(
+      JdbcTemplate jdbcTemplate,
+      ApiKeyCache apiKeyCache,
+      EmbeddingIndex embeddingIndex,
+      RuntimeResponseCache runtimeResponseCache) {
     this.jdbcTemplate = jdbcTemplate;
+    this.apiKeyCache = apiKeyCache;
+    this.embeddingIndex = embeddingIndex;
+    this.runtimeResponseCache = runtimeResponseCache;
   }
 
   @Transactional
@@ -82,6 +101,9 @@ public class TenantCleanupService {
     for (String table : TENANT_TABLES) {
       safeUpdate("DELETE FROM " + table + " WHERE tenantId = ?", tenantId, results, table);
     }
+    apiKeyCache.invalidateTenant(tenantId);
+    embeddingIndex.invalidateTenant(tenantId);
+    runtimeResponseCache.invalidateTenant(tenantId);
 
     return results;
   }
@@ -3,6 +3,7 @@ package com.neria.manager.tenants;
 import com.neria.manager.auth.TenantAuthService;
 import com.neria.manager.common.entities.AdminUser;
 import com.neria.manager.common.repos.AdminUserRepository;
+import com.neria.manager.common.services.ConfigCache;
 import com.neria.manager.common.services.EmailService;
 import com.neria.manager.common.entities.Tenant;
 import com.neria.manager.common.repos.TenantRepository;
@@ -22,18 +23,21 @@ public class TenantsService {
   private final AdminUserRepository adminUserRepository;
   private final EmailService emailService;
   private final TenantCleanupService cleanupService;
+  private final ConfigCache configCache;
 
   public TenantsService(
       TenantRepository repository,
       TenantAuthService tenantAuthService,
       AdminUserRepository adminUserRepository,
       EmailService emailService,
-      TenantCleanupService cleanupService) {
+      TenantCleanupService cleanupService,
+      ConfigCache configCache) {
     this.repository = repository;
     this.tenantAuthService = tenantAuthService;
     this.adminUserRepository = adminUserRepository;
     this.emailService = emailService;
     this.cleanupService = cleanupService;
+    this.configCache = configCache;
   }
 
   public List<Tenant> list(String tenantId) {
@@ -88,7 +92,7 @@ public class TenantsService {
     }
     applyProfileFields(tenant, dto);
     tenant.setUpdatedAt(LocalDateTime.now());
-    return repository.save(tenant);
+    return saveTenant(tenant);
   }
 
   public Tenant updateSelf(String tenantId, UpdateTenantSelfRequest dto) {
@@ -108,20 +112,26 @@ public class TenantsService {
     }
     applyProfileFields(tenant, dto);
     tenant.setUpdatedAt(LocalDateTime.now());
-    return repository.save(tenant);
+    return saveTenant(tenant);
   }
 
   public Tenant toggleKillSwitch(String tenantId, boolean enabled) {
     Tenant tenant = repository.findById(tenantId).orElseThrow();
     tenant.setKillSwitch(enabled);
     tenant.setUpdatedAt(LocalDateTime.now());
-    return repository.save(tenant);
+    return saveTenant(tenant);
   }
 
   public Tenant getById(String tenantId) {
     return repository.findById(tenantId).orElse(null);
   }
 
+  private Tenant saveTenant(Tenant tenant) {
+    Tenant saved = repository.save(tenant);
+    configCache.invalidateTenant(ConfigCache.TENANTS, tenant.getId());
+    return saved;
+  }
+
   private void applyProfileFields(Tenant tenant, UpdateTenantBase dto) {
     if (dto.companyName != null) tenant.setCompanyName(dto.companyName);
     if (dto.contactName != null) tenant.setContactName(dto.contactName);
@@ -181,6 +191,7 @@ public class TenantsService {
     }
     Map<String, Integer> deleted = cleanupService.purgeTenant(tenantId);
     repository.deleteById(tenantId);
+    configCache.invalidateTenant(tenantId);
     return Map.of("tenantId", tenantId, "deleted", true, "stats", deleted);
   }
 
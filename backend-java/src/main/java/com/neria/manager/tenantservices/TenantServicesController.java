@@ -64,7 +64,8 @@ public class TenantServicesController {
         dto.jiraProjectKey,
         dto.jiraDefaultIssueType,
         dto.jiraAllowUserPriorityOverride,
-        dto.jiraAutoLabelWithServiceName);
+        dto.jiraAutoLabelWithServiceName,
+        dto.responseCacheEnabled);
   }
 
   @GetMapping("/{serviceCode}/jira")
@@ -193,5 +194,6 @@ public class TenantServicesController {
     public String jiraDefaultIssueType;
     public Boolean jiraAllowUserPriorityOverride;
     public Boolean jiraAutoLabelWithServiceName;
+    public Boolean responseCacheEnabled;
   }
 }
@@ -17,6 +17,7 @@ import com.neria.manager.common.repos.SubscriptionServiceRepository;
 import com.neria.manager.common.repos.TenantServiceConfigRepository;
 import com.neria.manager.common.repos.TenantServiceEndpointRepository;
 import com.neria.manager.common.repos.TenantServiceUserRepository;
+import com.neria.manager.common.services.ConfigCache;
 import com.neria.manager.auth.TenantServiceApiKeysService;
 import com.neria.manager.jira.TenantServiceJiraService;
 import com.neria.manager.tenants.TenantsService;
@@ -47,6 +48,7 @@ public class TenantServicesService {
   private final TenantServiceJiraService tenantServiceJiraService;
   private final TenantsService tenantsService;
   private final ObjectMapper objectMapper;
+  private final ConfigCache configCache;
 
   public TenantServicesService(
       TenantServiceConfigRepository configRepository,
@@ -59,7 +61,8 @@ public class TenantServicesService {
       TenantServiceApiKeysService tenantServiceApiKeysService,
       TenantServiceJiraService tenantServiceJiraService,
       TenantsService tenantsService,
-      ObjectMapper objectMapper) {
+      ObjectMapper objectMapper,
+      ConfigCache configCache) {
     this.configRepository = configRepository;
     this.endpointRepository = endpointRepository;
     this.serviceUserRepository = serviceUserRepository;
@@ -71,6 +74,7 @@ public class TenantServicesService {
     this.tenantServiceJiraService = tenantServiceJiraService;
     this.tenantsService = tenantsService;
     this.objectMapper = objectMapper;
+    this.configCache = configCache;
   }
 
   private Tenant ensureTenant(String tenantId) {
@@ -87,6 +91,12 @@ public class TenantServicesService {
         .orElse(List.of());
   }
 
+  private TenantServiceConfig saveConfig(TenantServiceConfig config) {
+    TenantServiceConfig saved = configRepository.save(config);
+    configCache.invalidateTenant(ConfigCache.SERVICE_CONFIGS, config.getTenantId());
+    return saved;
+  }
+
   private TenantServiceConfig ensureConfig(String tenantId, String serviceCode) {
     return configRepository
         .findByTenantIdAndServiceCode(tenantId, serviceCode)
@@ -129,7 +139,7 @@ public class TenantServicesService {
               }
               config.setCreatedAt(LocalDateTime.now());
               config.setUpdatedAt(LocalDateTime.now());
-              return configRepository.save(config);
+              return saveConfig(config);
             });
   }
 
@@ -360,7 +370,8 @@ public class TenantServicesService {
       String jiraProjectKey,
       String jiraDefaultIssueType,
       Boolean jiraAllowUserPriorityOverride,
-      Boolean jiraAutoLabelWithServiceName) {
+      Boolean jiraAutoLabelWithServiceName,
+      Boolean responseCacheEnabled) {
     ensureTenant(tenantId);
     String normalized = normalizeServiceCode(serviceCode);
     TenantServiceConfig config = ensureConfig(tenantId, normalized);
@@ -475,6 +486,9 @@ public class TenantServicesService {
     if (jiraAutoLabelWithServiceName != null) {
       config.setJiraAutoLabelWithServiceName(jiraAutoLabelWithServiceName);
     }
+    if (responseCacheEnabled != null) {
+      config.setResponseCacheEnabled(responseCacheEnabled);
+    }
     if (!resolveCapability(config.getFileStorageEnabled(), catalog.isFileStorageEnabled())) {
       config.setDocumentProcessingEnabled(false);
       config.setOcrEnabled(false);
@@ -500,7 +514,7 @@ public class TenantServicesService {
       }
     }
     config.setUpdatedAt(LocalDateTime.now());
-    return configRepository.save(config);
+    return saveConfig(config);
   }
 
   public TenantServiceConfig getConfig(String tenantId, String serviceCode) {
@@ -586,7 +600,7 @@ public class TenantServicesService {
       }
     }
     config.setUpdatedAt(LocalDateTime.now());
-    configRepository.save(config);
+    saveConfig(config);
 
     if (payload.jiraBaseUrl != null
         || payload.jiraEmail != null
@@ -0,0 +1,255 @@
+package com.neria.manager.usage;
+
+import com.neria.manager.notifications.NotificationsService;
+import com.neria.manager.settings.SettingsService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the usage alerts on the {@code alerts_schedule} stored by {@link SettingsService}.
+ *
+ * <p>A tick every {@code ALERTS_TICK_MS}, on its own thread so a long run never holds a shared
+ * scheduler thread, re-reads the schedule and fires when its cron is due.
+ * Each run evaluates every tenant in one pass ({@link UsageAlertsService#evaluateAll}) and notifies
+ * tenants in parallel on {@code ALERTS_SEND_CONCURRENCY} threads. A tenant is notified at most once
+ * per {@code minIntervalMinutes} unless its set of alerts changes; the claim is a conditional write
+ * to {@code usage_alert_state}, so with several replicas only one of them sends, and a failed send
+ * gives the claim back so the next run retries.
+ *
+ * <p>Runs are timed as {@code usage_alerts.run}; {@code usage_alerts.notified},
+ * {@code usage_alerts.suppressed} and {@code usage_alerts.failed} count tenants.
+ */
+@Component
+public class UsageAlertEngine {
+  private static final Logger log = LoggerFactory.getLogger(UsageAlertEngine.class);
+
+  private final UsageAlertsService alertsService;
+  private final NotificationsService notificationsService;
+  private final SettingsService settingsService;
+  private final JdbcTemplate jdbcTemplate;
+  private final ExecutorService senders;
+  private final ScheduledExecutorService ticker;
+  private final boolean enabled;
+  private final long sendTimeoutSeconds;
+  private final Timer runs;
+  private final Counter notified;
+  private final Counter suppressed;
+  private final Counter failed;
+  private final Counter channelsReached;
+  private String cron;
+  private CronExpression expression;
+  private ZonedDateTime nextRun;
+
+  public UsageAlertEngine(
+      UsageAlertsService alertsService,
+      NotificationsService notificationsService,
+      SettingsService settingsService,
+      JdbcTemplate jdbcTemplate,
+      MeterRegistry meterRegistry) {
+    this.alertsService = alertsService;
+    this.notificationsService = notificationsService;
+    this.settingsService = settingsService;
+    this.jdbcTemplate = jdbcTemplate;
+    this.enabled =
+        Boolean.parseBoolean(System.getenv().getOrDefault("ALERTS_ENGINE_ENABLED", "true"));
+    this.sendTimeoutSeconds =
+        Long.parseLong(System.getenv().getOrDefault("ALERTS_SEND_TIMEOUT_SECONDS", "120"));
+    int concurrency =
+        Math.max(1, Integer.parseInt(System.getenv().getOrDefault("ALERTS_SEND_CONCURRENCY", "8")));
+    AtomicInteger sequence = new AtomicInteger();
+    this.senders =
+        Executors.newFixedThreadPool(
+            concurrency,
+            runnable -> {
+              Thread thread = new Thread(runnable, "usage-alerts-" + sequence.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.ticker =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "usage-alerts-tick");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.runs = Timer.builder("usage_alerts.run").register(meterRegistry);
+    this.notified = Counter.builder("usage_alerts.notified").register(meterRegistry);
+    this.suppressed = Counter.builder("usage_alerts.suppressed").register(meterRegistry);
+    this.failed = Counter.builder("usage_alerts.failed").register(meterRegistry);
+    this.channelsReached = Counter.builder("usage_alerts.channels").register(meterRegistry);
+    long tickMillis = Long.parseLong(System.getenv().getOrDefault("ALERTS_TICK_MS", "30000"));
+    ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  void tick() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      evaluateSchedule();
+    } catch (RuntimeException ex) {
+      // Anything escaping here would cancel the periodic task for good.
+      log.warn("Usage alerts tick failed: {}", ex.getMessage());
+    }
+  }
+
+  private void evaluateSchedule() {
+    Map<String, Object> schedule = settingsService.getAlertsSchedule();
+    String configured = String.valueOf(schedule.get("cron"));
+    ZonedDateTime now = ZonedDateTime.now();
+    if (!configured.equals(cron)) {
+      try {
+        expression = CronExpression.parse(toSpringCron(configured));
+      } catch (IllegalArgumentException ex) {
+        log.warn("Invalid alerts cron '{}': {}", configured, ex.getMessage());
+        cron = configured;
+        expression = null;
+        return;
+      }
+      cron = configured;
+      nextRun = expression.next(now);
+    }
+    if (expression == null || nextRun == null || now.isBefore(nextRun)) {
+      return;
+    }
+    nextRun = expression.next(now);
+    int minIntervalMinutes =
+        Integer.parseInt(String.valueOf(schedule.getOrDefault("minIntervalMinutes", 15)));
+    runs.record(() -> run(minIntervalMinutes));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    ticker.shutdownNow();
+    senders.shutdownNow();
+  }
+
+  private void run(int minIntervalMinutes) {
+    Map<String, List<UsageAlertsService.UsageAlert>> alerts = alertsService.evaluateAll();
+    List<Future<?>> pending = new ArrayList<>();
+    alerts.forEach(
+        (tenantId, tenantAlerts) ->
+            pending.add(senders.submit(() -> notify(tenantId, tenantAlerts, minIntervalMinutes))));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(sendTimeoutSeconds);
+    for (Future<?> future : pending) {
+      try {
+        future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException ex) {
+        future.cancel(true);
+        failed.increment();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception ex) {
+        failed.increment();
+      }
+    }
+    log.debug("Usage alerts run: {} tenants with alerts", alerts.size());
+  }
+
+  private void notify(
+      String tenantId, List<UsageAlertsService.UsageAlert> alerts, int minIntervalMinutes) {
+    String signature = signature(alerts);
+    Boolean claimed = claim(tenantId, signature, minIntervalMinutes);
+    if (claimed == null) {
+      failed.increment();
+      return;
+    }
+    if (!claimed) {
+      suppressed.increment();
+      return;
+    }
+    try {
+      Object sent = notificationsService.sendAlerts(tenantId, alerts).get("sent");
+      notified.increment();
+      if (sent instanceof Number number) {
+        channelsReached.increment(number.doubleValue());
+      }
+    } catch (RuntimeException ex) {
+      failed.increment();
+      release(tenantId, signature);
+      log.warn("Usage alerts for tenant {} not sent: {}", tenantId, ex.getMessage());
+    }
+  }
+
+  /**
+   * Takes the right to notify {@code tenantId}: succeeds when the last notification is older than
+   * the interval or carried a different set of alerts, or when there was none. Returns
+   * {@code null} when the state table is unreachable: without a claim nothing is sent, or every
+   * replica would send every alert on every tick; the next tick retries.
+   */
+  private Boolean claim(String tenantId, String signature, int minIntervalMinutes) {
+    try {
+      int updated =
+          jdbcTemplate.update(
+              "UPDATE usage_alert_state SET signature = ?, lastSentAt = NOW(3)"
+                  + " WHERE tenantId = ?"
+                  + " AND (signature <> ? OR lastSentAt <= NOW(3) - INTERVAL ? MINUTE)",
+              signature,
+              tenantId,
+              signature,
+              minIntervalMinutes);
+      if (updated > 0) {
+        return true;
+      }
+      return jdbcTemplate.update(
+              "INSERT IGNORE INTO usage_alert_state (tenantId, signature, lastSentAt)"
+                  + " VALUES (?, ?, NOW(3))",
+              tenantId,
+              signature)
+          > 0;
+    } catch (DataAccessException ex) {
+      log.warn("Usage alert state unavailable, not sending: {}", ex.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Gives back a claim whose send failed. With no row the next run claims again, which is what the
+   * replaced row allowed too: a different signature or an elapsed interval.
+   */
+  private void release(String tenantId, String signature) {
+    try {
+      jdbcTemplate.update(
+          "DELETE FROM usage_alert_state WHERE tenantId = ? AND signature = ?",
+          tenantId,
+          signature);
+    } catch (DataAccessException ex) {
+      log.warn("Usage alert claim for tenant {} not released: {}", tenantId, ex.getMessage());
+    }
+  }
+
+  private static String signature(List<UsageAlertsService.UsageAlert> alerts) {
+    TreeSet<String> parts = new TreeSet<>();
+    for (UsageAlertsService.UsageAlert alert : alerts) {
+      parts.add(alert.type() + ":" + alert.severity());
+    }
+    return String.join(",", parts);
+  }
+
+  /** The stored schedule uses five-field cron; Spring's parser expects seconds first. */
+  private static String toSpringCron(String cron) {
+    String trimmed = cron.trim();
+    return trimmed.split("\\s+").length == 5 ? "0 " + trimmed : trimmed;
+  }
+}
@@ -4,8 +4,13 @@ import com.neria.manager.common.entities.Policy;
 import com.neria.manager.common.entities.Tenant;
 import com.neria.manager.common.repos.PolicyRepository;
 import com.neria.manager.common.repos.TenantRepository;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -24,44 +29,74 @@ public class UsageAlertsService {
   }
 
   public List<UsageAlert> list(String tenantId) {
-    List<Tenant> tenants =
-        tenantId != null
-            ? tenantRepository.findById(tenantId).map(List::of).orElse(List.of())
-            : tenantRepository.findAll();
-    List<UsageAlert> alerts = new ArrayList<>();
+    if (tenantId == null) {
+      List<UsageAlert> alerts = new ArrayList<>();
+      evaluateAll().values().forEach(alerts::addAll);
+      return alerts;
+    }
+    Tenant tenant = tenantRepository.findById(tenantId).orElse(null);
+    if (tenant == null) {
+      return List.of();
+    }
+    return evaluate(
+        tenant,
+        policyRepository.findByTenantId(tenantId).orElse(null),
+        usageService.getDailyTotals(tenantId, LocalDate.now(ZoneOffset.UTC)));
+  }
 
-    for (Tenant tenant : tenants) {
-      if (tenant.isKillSwitch()) {
-        alerts.add(new UsageAlert(tenant.getId(), "kill_switch", "critical", "Kill switch activo", null, null));
-      }
-      Policy policy = policyRepository.findByTenantId(tenant.getId()).orElse(null);
-      if (policy == null) {
-        continue;
+  /**
+   * Alerts of every tenant that has any, keyed by tenant. Three queries whatever the tenant count:
+   * tenants, policies, and today's totals (held in memory by {@link UsageDailyAggregator}).
+   */
+  public Map<String, List<UsageAlert>> evaluateAll() {
+    Map<String, Policy> policies = new HashMap<>();
+    for (Policy policy : policyRepository.findAll()) {
+      policies.put(policy.getTenantId(), policy);
+    }
+    Map<String, UsageService.Totals> totals =
+        usageService.getDailyTotalsByTenant(LocalDate.now(ZoneOffset.UTC));
+    UsageService.Totals none = new UsageService.Totals(0, 0d);
+    Map<String, List<UsageAlert>> alerts = new LinkedHashMap<>();
+    for (Tenant tenant : tenantRepository.findAll()) {
+      List<UsageAlert> tenantAlerts =
+          evaluate(
+              tenant, policies.get(tenant.getId()), totals.getOrDefault(tenant.getId(), none));
+      if (!tenantAlerts.isEmpty()) {
+        alerts.put(tenant.getId(), tenantAlerts);
       }
-      UsageService.Totals totals = usageService.getDailyTotals(tenant.getId(), java.time.LocalDate.now(java.time.ZoneOffset.UTC));
-      double maxTokens = policy.getMaxTokensPerDay();
-      double maxCost =
-          policy.getMaxCostPerDayUsd() != null ? policy.getMaxCostPerDayUsd().doubleValue() : 0;
+    }
+    return alerts;
+  }
 
-      if (maxTokens > 0) {
-        double ratio = totals.tokens() / maxTokens;
-        if (ratio >= 1) {
-          alerts.add(new UsageAlert(tenant.getId(), "tokens", "critical", "Límite de tokens alcanzado", (double) totals.tokens(), maxTokens));
-        } else if (ratio >= 0.8) {
-          alerts.add(new UsageAlert(tenant.getId(), "tokens", "warning", "Tokens cerca del límite", (double) totals.tokens(), maxTokens));
-        }
-      }
+  private List<UsageAlert> evaluate(Tenant tenant, Policy policy, UsageService.Totals totals) {
+    List<UsageAlert> alerts = new ArrayList<>();
+    if (tenant.isKillSwitch()) {
+      alerts.add(new UsageAlert(tenant.getId(), "kill_switch", "critical", "Kill switch activo", null, null));
+    }
+    if (policy == null) {
+      return alerts;
+    }
+    double maxTokens = policy.getMaxTokensPerDay();
+    double maxCost =
+        policy.getMaxCostPerDayUsd() != null ? policy.getMaxCostPerDayUsd().doubleValue() : 0;
 
-      if (maxCost > 0) {
-        double ratio = totals.costUsd() / maxCost;
-        if (ratio >= 1) {
-          alerts.add(new UsageAlert(tenant.getId(), "cost", "critical", "Límite de coste alcanzado", totals.costUsd(), maxCost));
-        } else if (ratio >= 0.8) {
-          alerts.add(new UsageAlert(tenant.getId(), "cost", "warning", "Coste cerca del límite", totals.costUsd(), maxCost));
-        }
+    if (maxTokens > 0) {
+      double ratio = totals.tokens() / maxTokens;
+      if (ratio >= 1) {
+        alerts.add(new UsageAlert(tenant.getId(), "tokens", "critical", "Límite de tokens alcanzado", (double) totals.tokens(), maxTokens));
+      } else if (ratio >= 0.8) {
+        alerts.add(new UsageAlert(tenant.getId(), "tokens", "warning", "Tokens cerca del límite", (double) totals.tokens(), maxTokens));
       }
     }
 
+    if (maxCost > 0) {
+      double ratio = totals.costUsd() / maxCost;
+      if (ratio >= 1) {
+        alerts.add(new UsageAlert(tenant.getId(), "cost", "critical", "Límite de coste alcanzado", totals.costUsd(), maxCost));
+      } else if (ratio >= 0.8) {
+        alerts.add(new UsageAlert(tenant.getId(), "cost", "warning", "Coste cerca del límite", totals.costUsd(), maxCost));
+      }
+    }
     return alerts;
   }
 
@@ -0,0 +1,230 @@
+package com.neria.manager.usage;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-tenant daily token and cost counters.
+ *
+ * <p>{@code usage_daily} is only ever changed by adding deltas, so every replica can write to it
+ * and restarts never recount anything. {@link #add} records a local pending delta; {@link #flush}
+ * upserts the deltas in one batch and reloads the recent days so totals written by other replicas
+ * converge. A day's total is the last reloaded row plus what this replica wrote or recorded since.
+ * Pending deltas are flushed on shutdown. The table is seeded from {@code usage_events} once, by
+ * {@code scripts/create_usage_daily.sql}.
+ */
+@Component
+public class UsageDailyAggregator {
+  private static final Logger log = LoggerFactory.getLogger(UsageDailyAggregator.class);
+
+  private record DayKey(String tenantId, LocalDate day) {}
+
+  private record Delta(DayKey key, long tokens, double costUsd, long requests) {}
+
+  /** One tenant-day; every field is guarded by the entry's monitor. */
+  private static final class Entry {
+    long baseTokens;
+    double baseCostUsd;
+    long writtenTokens;
+    double writtenCostUsd;
+    long pendingTokens;
+    double pendingCostUsd;
+    long pendingRequests;
+
+    synchronized void add(long tokens, double costUsd) {
+      pendingTokens += tokens;
+      pendingCostUsd += costUsd;
+      pendingRequests++;
+    }
+
+    /**
+     * Moves the pending delta to written for a flush, or returns {@code null} when there is none.
+     * The total is unchanged, so readers never see a dip while the batch is in flight.
+     */
+    synchronized Delta takePending(DayKey key) {
+      if (pendingRequests == 0) {
+        return null;
+      }
+      Delta delta = new Delta(key, pendingTokens, pendingCostUsd, pendingRequests);
+      writtenTokens += pendingTokens;
+      writtenCostUsd += pendingCostUsd;
+      pendingTokens = 0;
+      pendingCostUsd = 0d;
+      pendingRequests = 0;
+      return delta;
+    }
+
+    /** The flush failed: the delta is pending again. */
+    synchronized void restore(Delta delta) {
+      writtenTokens -= delta.tokens();
+      writtenCostUsd -= delta.costUsd();
+      pendingTokens += delta.tokens();
+      pendingCostUsd += delta.costUsd();
+      pendingRequests += delta.requests();
+    }
+
+    /** The reloaded row already includes everything this replica wrote. */
+    synchronized void reloaded(long tokens, double costUsd) {
+      baseTokens = tokens;
+      baseCostUsd = costUsd;
+      writtenTokens = 0;
+      writtenCostUsd = 0d;
+    }
+
+    synchronized UsageService.Totals totals() {
+      return new UsageService.Totals(
+          baseTokens + writtenTokens + pendingTokens,
+          baseCostUsd + writtenCostUsd + pendingCostUsd);
+    }
+
+    synchronized boolean idle() {
+      return pendingRequests == 0;
+    }
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final int retainDays;
+  private final ConcurrentHashMap<DayKey, Entry> entries = new ConcurrentHashMap<>();
+  private volatile boolean loaded = false;
+
+  public UsageDailyAggregator(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.retainDays =
+        Math.max(1, Integer.parseInt(System.getenv().getOrDefault("USAGE_DAILY_RETAIN_DAYS", "2")));
+  }
+
+  public void add(String tenantId, LocalDate day, long tokens, double costUsd) {
+    entries.computeIfAbsent(new DayKey(tenantId, day), k -> new Entry()).add(tokens, costUsd);
+  }
+
+  /** Returns the totals for a held day, or {@code null} when the caller must query usage_events. */
+  public UsageService.Totals get(String tenantId, LocalDate day) {
+    if (!loaded || !isRetained(day)) {
+      return null;
+    }
+    Entry entry = entries.get(new DayKey(tenantId, day));
+    return entry != null ? entry.totals() : new UsageService.Totals(0, 0d);
+  }
+
+  /** All tenants with usage on a held day, or {@code null} when the day is not held in memory. */
+  public Map<String, UsageService.Totals> getAll(LocalDate day) {
+    if (!loaded || !isRetained(day)) {
+      return null;
+    }
+    Map<String, UsageService.Totals> result = new HashMap<>();
+    entries.forEach(
+        (key, entry) -> {
+          if (key.day().equals(day)) {
+            result.put(key.tenantId(), entry.totals());
+          }
+        });
+    return result;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    if (reloadRetained()) {
+      log.info("Usage daily aggregate loaded from {}", oldestRetainedDay());
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${USAGE_DAILY_FLUSH_MS:5000}")
+  public void flush() {
+    if (writePending()) {
+      reloadRetained();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (!writePending()) {
+      log.warn("Usage daily deltas could not be written on shutdown");
+    }
+  }
+
+  /** Upserts every pending delta; on failure they go back to pending. */
+  private synchronized boolean writePending() {
+    List<Delta> batch = new ArrayList<>();
+    entries.forEach(
+        (key, entry) -> {
+          Delta delta = entry.takePending(key);
+          if (delta != null) {
+            batch.add(delta);
+          }
+        });
+    if (batch.isEmpty()) {
+      return true;
+    }
+    try {
+      jdbcTemplate.batchUpdate(
+          "INSERT INTO usage_daily (tenantId, usageDate, tokens, costUsd, requests)"
+              + " VALUES (?, ?, ?, ?, ?)"
+              + " ON DUPLICATE KEY UPDATE tokens = tokens + VALUES(tokens),"
+              + " costUsd = costUsd + VALUES(costUsd), requests = requests + VALUES(requests)",
+          batch,
+          batch.size(),
+          (ps, delta) -> {
+            ps.setString(1, delta.key().tenantId());
+            ps.setDate(2, Date.valueOf(delta.key().day()));
+            ps.setLong(3, delta.tokens());
+            ps.setDouble(4, delta.costUsd());
+            ps.setLong(5, delta.requests());
+          });
+    } catch (DataAccessException ex) {
+      log.warn("Usage daily flush failed, will retry: {}", ex.getMessage());
+      batch.forEach(delta -> entry(delta.key()).restore(delta));
+      return false;
+    }
+    return true;
+  }
+
+  private synchronized boolean reloadRetained() {
+    LocalDate from = oldestRetainedDay();
+    try {
+      jdbcTemplate.query(
+          "SELECT tenantId, usageDate, tokens, costUsd FROM usage_daily WHERE usageDate >= ?",
+          rs -> {
+            entry(new DayKey(rs.getString("tenantId"), rs.getDate("usageDate").toLocalDate()))
+                .reloaded(rs.getLong("tokens"), rs.getDouble("costUsd"));
+          },
+          Date.valueOf(from));
+    } catch (DataAccessException ex) {
+      log.warn("Usage daily reload failed: {}", ex.getMessage());
+      return false;
+    }
+    entries.entrySet().removeIf(e -> e.getKey().day().isBefore(from) && e.getValue().idle());
+    loaded = true;
+    return true;
+  }
+
+  private Entry entry(DayKey key) {
+    return entries.computeIfAbsent(key, k -> new Entry());
+  }
+
+  private boolean isRetained(LocalDate day) {
+    return !day.isBefore(oldestRetainedDay()) && !day.isAfter(today());
+  }
+
+  private LocalDate oldestRetainedDay() {
+    return today().minusDays(retainDays - 1L);
+  }
+
+  private LocalDate today() {
+    return LocalDate.now(ZoneOffset.UTC);
+  }
+}
@@ -2,6 +2,7 @@ package com.neria.manager.usage;
 
 import com.neria.manager.common.entities.UsageEvent;
 import com.neria.manager.common.repos.UsageEventRepository;
+import com.neria.manager.common.services.AsyncEventWriter;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -14,9 +15,16 @@ import org.springframework.stereotype.Service;
 @Service
 public class UsageService {
   private final UsageEventRepository usageRepository;
+  private final UsageDailyAggregator dailyAggregator;
+  private final AsyncEventWriter eventWriter;
 
-  public UsageService(UsageEventRepository usageRepository) {
+  public UsageService(
+      UsageEventRepository usageRepository,
+      UsageDailyAggregator dailyAggregator,
+      AsyncEventWriter eventWriter) {
     this.usageRepository = usageRepository;
+    this.dailyAggregator = dailyAggregator;
+    this.eventWriter = eventWriter;
   }
 
   public UsageEvent record(UsageEvent event) {
@@ -29,28 +37,21 @@ public class UsageService {
     if (event.getCostUsd() == null) {
       event.setCostUsd(BigDecimal.ZERO);
     }
-    return usageRepository.save(event);
+    eventWriter.write(event);
+    dailyAggregator.add(
+        event.getTenantId(),
+        event.getCreatedAt().toLocalDate(),
+        (long) event.getTokensIn() + event.getTokensOut(),
+        event.getCostUsd().doubleValue());
+    return event;
   }
 
   public Totals getDailyTotals(String tenantId, LocalDate date) {
-    LocalDateTime start = date.atStartOfDay();
-    LocalDateTime end = date.plusDays(1).atStartOfDay();
-    List<UsageEvent> events =
-        usageRepository.findTop200ByTenantIdOrderByCreatedAtDesc(tenantId);
-    int tokens = 0;
-    double cost = 0;
-    for (UsageEvent event : events) {
-      if (event.getCreatedAt() == null) {
-        continue;
-      }
-      LocalDateTime createdAt = event.getCreatedAt();
-      if (createdAt.isBefore(start) || !createdAt.isBefore(end)) {
-        continue;
-      }
-      tokens += event.getTokensIn() + event.getTokensOut();
-      cost += event.getCostUsd().doubleValue();
+    Totals cached = dailyAggregator.get(tenantId, date);
+    if (cached != null) {
+      return cached;
     }
-    return new Totals(tokens, cost);
+    return sumDailyTotals(tenantId, date).getOrDefault(tenantId, new Totals(0, 0d));
   }
 
   public Map<String, Object> getSummaryByTenant(String tenantId) {
@@ -58,34 +59,39 @@ public class UsageService {
     return Map.of("tenantId", tenantId, "tokens", totals.tokens, "costUsd", totals.costUsd);
   }
 
+  /** Totals of every tenant with usage on {@code date}, from memory or one grouped query. */
+  public Map<String, Totals> getDailyTotalsByTenant(LocalDate date) {
+    Map<String, Totals> byTenant = dailyAggregator.getAll(date);
+    return byTenant != null ? byTenant : sumDailyTotals(null, date);
+  }
+
   public List<Map<String, Object>> getSummaryAll() {
-    List<UsageEvent> events = usageRepository.findTop200ByOrderByCreatedAtDesc();
-    LocalDate today = LocalDate.now(ZoneOffset.UTC);
-    LocalDateTime start = today.atStartOfDay();
-    LocalDateTime end = today.plusDays(1).atStartOfDay();
-    return events.stream()
-        .filter(event -> event.getCreatedAt() != null)
-        .filter(event -> !event.getCreatedAt().isBefore(start) && event.getCreatedAt().isBefore(end))
-        .collect(java.util.stream.Collectors.groupingBy(UsageEvent::getTenantId))
-        .entrySet()
-        .stream()
+    Map<String, Totals> byTenant = getDailyTotalsByTenant(LocalDate.now(ZoneOffset.UTC));
+    return byTenant.entrySet().stream()
+        .filter(entry -> entry.getValue().tokens() > 0 || entry.getValue().costUsd() > 0)
         .map(
             entry -> {
-              int tokens = 0;
-              double cost = 0;
-              for (UsageEvent event : entry.getValue()) {
-                tokens += event.getTokensIn() + event.getTokensOut();
-                cost += event.getCostUsd().doubleValue();
-              }
               Map<String, Object> summary = new java.util.HashMap<>();
               summary.put("tenantId", entry.getKey());
-              summary.put("tokens", tokens);
-              summary.put("costUsd", cost);
+              summary.put("tokens", entry.getValue().tokens());
+              summary.put("costUsd", entry.getValue().costUsd());
               return summary;
             })
         .toList();
   }
 
+  private Map<String, Totals> sumDailyTotals(String tenantId, LocalDate date) {
+    Map<String, Totals> result = new java.util.HashMap<>();
+    for (Object[] row :
+        usageRepository.sumByTenantBetween(
+            tenantId, date.atStartOfDay(), date.plusDays(1).atStartOfDay())) {
+      long tokens = row[1] instanceof Number number ? number.longValue() : 0L;
+      double cost = row[2] instanceof Number number ? number.doubleValue() : 0d;
+      result.put(String.valueOf(row[0]), new Totals(tokens, cost));
+    }
+    return result;
+  }
+
   public List<UsageEvent> listEvents(String tenantId, int limit) {
     List<UsageEvent> events = usageRepository.findTop200ByTenantIdOrderByCreatedAtDesc(tenantId);
     return events.subList(0, Math.min(limit, events.size()));
@@ -96,5 +102,5 @@ public class UsageService {
     return events.subList(0, Math.min(limit, events.size()));
   }
 
-  public record Totals(int tokens, double costUsd) {}
+  public record Totals(long tokens, double costUsd) {}
 }
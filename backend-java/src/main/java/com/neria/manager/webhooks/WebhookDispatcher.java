@@ -0,0 +1,254 @@
+package com.neria.manager.webhooks;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Delivers the {@link WebhookOutbox} on {@code WEBHOOK_DISPATCH_WORKERS} threads, off the request
+ * path.
+ *
+ * <p>Each poll claims at most as many due rows as there are free workers. At most
+ * {@code WEBHOOK_ENDPOINT_CONCURRENCY} requests run against one endpoint ({@code host:port}) at a
+ * time; a delivery that finds its endpoint busy goes back to the queue without using an attempt.
+ * Failures retry with exponential backoff and jitter (honouring {@code Retry-After}) and, after
+ * {@code WEBHOOK_MAX_ATTEMPTS}, the delivery is dead until replayed. Attempts are timed as
+ * {@code webhook.delivery} per webhook and outcome.
+ */
+@Component
+public class WebhookDispatcher {
+  private static final Logger log = LoggerFactory.getLogger(WebhookDispatcher.class);
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  private static final long BUSY_RETRY_MILLIS = 1000L;
+
+  private final WebhookOutbox outbox;
+  private final WebhooksService webhooksService;
+  private final MeterRegistry meterRegistry;
+  private final ExecutorService workers;
+  private final HttpClient httpClient;
+  private final Map<String, Semaphore> endpoints = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final int workerCount;
+  private final int endpointConcurrency;
+  private final int maxAttempts;
+  private final long backoffBaseSeconds;
+  private final long backoffMaxSeconds;
+  private final Duration requestTimeout;
+  private final int leaseSeconds;
+  private final int deliveredRetentionDays;
+  private final int deadRetentionDays;
+
+  public WebhookDispatcher(
+      WebhookOutbox outbox, WebhooksService webhooksService, MeterRegistry meterRegistry) {
+    this.outbox = outbox;
+    this.webhooksService = webhooksService;
+    this.meterRegistry = meterRegistry;
+    this.workerCount =
+        Math.max(
+            1, Integer.parseInt(System.getenv().getOrDefault("WEBHOOK_DISPATCH_WORKERS", "8")));
+    this.endpointConcurrency =
+        Math.max(
+            1, Integer.parseInt(System.getenv().getOrDefault("WEBHOOK_ENDPOINT_CONCURRENCY", "2")));
+    this.maxAttempts =
+        Math.max(1, Integer.parseInt(System.getenv().getOrDefault("WEBHOOK_MAX_ATTEMPTS", "8")));
+    this.backoffBaseSeconds =
+        Long.parseLong(System.getenv().getOrDefault("WEBHOOK_BACKOFF_BASE_SECONDS", "10"));
+    this.backoffMaxSeconds =
+        Long.parseLong(System.getenv().getOrDefault("WEBHOOK_BACKOFF_MAX_SECONDS", "3600"));
+    long timeoutSeconds =
+        Long.parseLong(System.getenv().getOrDefault("WEBHOOK_TIMEOUT_SECONDS", "10"));
+    this.requestTimeout = Duration.ofSeconds(timeoutSeconds);
+    // The lease outlives the request so a slow but live delivery is not handed out twice.
+    this.leaseSeconds = (int) Math.max(60L, timeoutSeconds * 3);
+    this.deliveredRetentionDays =
+        Integer.parseInt(System.getenv().getOrDefault("WEBHOOK_RETENTION_DAYS", "7"));
+    this.deadRetentionDays =
+        Integer.parseInt(System.getenv().getOrDefault("WEBHOOK_DEAD_RETENTION_DAYS", "30"));
+    AtomicInteger sequence = new AtomicInteger();
+    this.workers =
+        Executors.newFixedThreadPool(
+            workerCount,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "webhook-dispatch-" + sequence.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.httpClient = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+  }
+
+  @Scheduled(fixedDelayString = "${WEBHOOK_DISPATCH_POLL_MS:1000}")
+  public void poll() {
+    try {
+      int free = workerCount - inFlight.get();
+      for (WebhookOutbox.Delivery delivery : outbox.claim(free, leaseSeconds)) {
+        inFlight.incrementAndGet();
+        workers.execute(
+            () -> {
+              try {
+                deliver(delivery);
+              } finally {
+                inFlight.decrementAndGet();
+              }
+            });
+      }
+    } catch (DataAccessException ex) {
+      log.warn("Webhook dispatch poll failed: {}", ex.getMessage());
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${WEBHOOK_MAINTENANCE_MS:60000}")
+  public void maintain() {
+    try {
+      int released = outbox.releaseExpired(maxAttempts);
+      if (released > 0) {
+        log.info("Released {} webhook deliveries with expired leases", released);
+      }
+      outbox.prune(deliveredRetentionDays, deadRetentionDays);
+    } catch (DataAccessException ex) {
+      log.warn("Webhook outbox maintenance failed: {}", ex.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  private void deliver(WebhookOutbox.Delivery delivery) {
+    WebhooksService.Target target = webhooksService.target(delivery.webhookId());
+    if (target == null) {
+      outbox.markFailed(delivery.id(), null, "Webhook disabled or deleted", 0L, null);
+      return;
+    }
+    Semaphore endpoint;
+    try {
+      endpoint = endpoints.computeIfAbsent(endpointKey(target.url()), key -> newSemaphore());
+    } catch (IllegalArgumentException ex) {
+      outbox.markFailed(delivery.id(), null, "Invalid URL: " + ex.getMessage(), 0L, null);
+      return;
+    }
+    if (!endpoint.tryAcquire()) {
+      outbox.defer(delivery.id(), Instant.now().plusMillis(BUSY_RETRY_MILLIS));
+      return;
+    }
+    long started = System.nanoTime();
+    Integer statusCode = null;
+    String error;
+    Long retryAfterSeconds = null;
+    try {
+      HttpRequest.Builder builder =
+          HttpRequest.newBuilder()
+              .uri(URI.create(target.url()))
+              .timeout(requestTimeout)
+              .header("Content-Type", "application/json")
+              .header("User-Agent", "ProviderManagerWebhook/1.0")
+              .header("x-webhook-delivery", delivery.id())
+              .header("x-webhook-attempt", String.valueOf(delivery.attempts() + 1))
+              .POST(HttpRequest.BodyPublishers.ofString(delivery.payload()));
+      String signature = webhooksService.sign(target, delivery.payload());
+      if (signature != null) {
+        builder.header("x-signature", signature);
+      }
+      HttpResponse<String> response =
+          httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+      statusCode = response.statusCode();
+      long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+      if (statusCode >= 200 && statusCode < 300) {
+        record(target.id(), "success", started);
+        outbox.markDelivered(delivery.id(), statusCode, latencyMs);
+        return;
+      }
+      error = "HTTP " + statusCode + " " + truncate(response.body());
+      retryAfterSeconds =
+          response
+              .headers()
+              .firstValue("Retry-After")
+              .map(WebhookDispatcher::parseSeconds)
+              .orElse(null);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      error = "Interrupted";
+    } catch (Exception ex) {
+      error = ex.getClass().getSimpleName() + ": " + ex.getMessage();
+    } finally {
+      endpoint.release();
+    }
+    record(target.id(), "failure", started);
+    long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    int attempt = delivery.attempts() + 1;
+    Instant next = attempt >= maxAttempts ? null : nextAttempt(attempt, retryAfterSeconds);
+    try {
+      outbox.markFailed(delivery.id(), statusCode, error, latencyMs, next);
+    } catch (DataAccessException ex) {
+      log.warn("Webhook delivery {} result not stored: {}", delivery.id(), ex.getMessage());
+    }
+    if (next == null) {
+      log.warn("Webhook delivery {} dead after {} attempts: {}", delivery.id(), attempt, error);
+    }
+  }
+
+  /** {@code base * 2^(attempt-1)} capped at the maximum, with +/-20% jitter. */
+  private Instant nextAttempt(int attempt, Long retryAfterSeconds) {
+    double delay =
+        Math.min(backoffMaxSeconds, backoffBaseSeconds * Math.pow(2, Math.min(30, attempt - 1)));
+    delay *= 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+    if (retryAfterSeconds != null) {
+      delay = Math.max(delay, Math.min(backoffMaxSeconds, retryAfterSeconds));
+    }
+    return Instant.now().plusMillis((long) (delay * 1000));
+  }
+
+  private void record(String webhookId, String outcome, long startedNanos) {
+    Timer.builder("webhook.delivery")
+        .tag("webhook", webhookId)
+        .tag("outcome", outcome)
+        .register(meterRegistry)
+        .record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Semaphore newSemaphore() {
+    return new Semaphore(endpointConcurrency);
+  }
+
+  private static String endpointKey(String url) {
+    URI uri = URI.create(url);
+    String host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : "";
+    return host + ":" + uri.getPort();
+  }
+
+  private static Long parseSeconds(String value) {
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  private static String truncate(String body) {
+    if (body == null) {
+      return "";
+    }
+    return body.length() > 500 ? body.substring(0, 500) : body;
+  }
+}
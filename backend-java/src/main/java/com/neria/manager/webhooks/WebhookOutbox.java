@@ -0,0 +1,244 @@
+package com.neria.manager.webhooks;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@code webhook_deliveries} outbox. Rows are inserted through the caller's connection, so an
+ * event commits or rolls back with the change that raised it; {@link WebhookDispatcher} then claims
+ * due rows and records each attempt here.
+ *
+ * <p>Statuses: {@code pending} (due at {@code nextAttemptAt}), {@code delivering} (claimed until
+ * {@code lockedUntil}), {@code delivered} and {@code dead} (out of attempts; see {@link #replay}).
+ */
+@Component
+public class WebhookOutbox {
+  public static final String PENDING = "pending";
+  public static final String DELIVERING = "delivering";
+  public static final String DELIVERED = "delivered";
+  public static final String DEAD = "dead";
+
+  /** A claimed delivery. */
+  public record Delivery(
+      String id,
+      String webhookId,
+      String tenantId,
+      String eventType,
+      String payload,
+      int attempts) {}
+
+  /** A delivery to enqueue. */
+  public record Row(String webhookId, String tenantId, String eventType, String payload) {}
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public WebhookOutbox(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  public void insert(List<Row> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    List<Object[]> batch = new ArrayList<>(rows.size());
+    for (Row row : rows) {
+      batch.add(
+          new Object[] {
+            UUID.randomUUID().toString(),
+            row.webhookId(),
+            row.tenantId(),
+            row.eventType(),
+            row.payload()
+          });
+    }
+    jdbcTemplate.batchUpdate(
+        "INSERT INTO webhook_deliveries (id, webhookId, tenantId, eventType, payload)"
+            + " VALUES (?, ?, ?, ?, ?)",
+        batch);
+  }
+
+  /**
+   * Claims up to {@code limit} due deliveries for {@code leaseSeconds} with a single UPDATE, so
+   * concurrent dispatchers on other replicas never get the same row.
+   */
+  public List<Delivery> claim(int limit, int leaseSeconds) {
+    if (limit <= 0) {
+      return List.of();
+    }
+    String token = UUID.randomUUID().toString();
+    int claimed =
+        jdbcTemplate.update(
+            "UPDATE webhook_deliveries SET status = ?, claimToken = ?,"
+                + " lockedUntil = NOW(3) + INTERVAL ? SECOND"
+                + " WHERE status = ? AND nextAttemptAt <= NOW(3)"
+                + " ORDER BY nextAttemptAt LIMIT ?",
+            DELIVERING,
+            token,
+            leaseSeconds,
+            PENDING,
+            limit);
+    if (claimed == 0) {
+      return List.of();
+    }
+    return jdbcTemplate.query(
+        "SELECT id, webhookId, tenantId, eventType, payload, attempts FROM webhook_deliveries"
+            + " WHERE claimToken = ? AND status = ?",
+        (rs, index) ->
+            new Delivery(
+                rs.getString("id"),
+                rs.getString("webhookId"),
+                rs.getString("tenantId"),
+                rs.getString("eventType"),
+                rs.getString("payload"),
+                rs.getInt("attempts")),
+        token,
+        DELIVERING);
+  }
+
+  /**
+   * Returns deliveries whose dispatcher died or hung mid-flight to the queue. The lost attempt is
+   * counted, so a delivery that hangs every time still goes dead after {@code maxAttempts}.
+   */
+  public int releaseExpired(int maxAttempts) {
+    // MySQL applies SET left to right: status must read attempts before it is incremented.
+    return jdbcTemplate.update(
+        "UPDATE webhook_deliveries SET status = IF(attempts + 1 >= ?, ?, ?),"
+            + " attempts = attempts + 1, claimToken = NULL, lastError = 'Delivery lease expired'"
+            + " WHERE status = ? AND lockedUntil < NOW(3)",
+        maxAttempts,
+        DEAD,
+        PENDING,
+        DELIVERING);
+  }
+
+  /** Puts a claimed delivery back without counting an attempt (endpoint busy). */
+  public void defer(String id, Instant nextAttemptAt) {
+    jdbcTemplate.update(
+        "UPDATE webhook_deliveries SET status = ?, claimToken = NULL, nextAttemptAt = ?"
+            + " WHERE id = ? AND status = ?",
+        PENDING,
+        Timestamp.from(nextAttemptAt),
+        id,
+        DELIVERING);
+  }
+
+  public void markDelivered(String id, int statusCode, long latencyMs) {
+    jdbcTemplate.update(
+        "UPDATE webhook_deliveries SET status = ?, attempts = attempts + 1, claimToken = NULL,"
+            + " lastStatusCode = ?, lastError = NULL, latencyMs = ?, deliveredAt = NOW(3)"
+            + " WHERE id = ? AND status = ?",
+        DELIVERED,
+        statusCode,
+        latencyMs,
+        id,
+        DELIVERING);
+  }
+
+  /** Records a failed attempt; {@code nextAttemptAt == null} moves the delivery to dead. */
+  public void markFailed(
+      String id, Integer statusCode, String error, long latencyMs, Instant nextAttemptAt) {
+    jdbcTemplate.update(
+        "UPDATE webhook_deliveries SET status = ?, attempts = attempts + 1, claimToken = NULL,"
+            + " lastStatusCode = ?, lastError = ?, latencyMs = ?,"
+            + " nextAttemptAt = COALESCE(?, nextAttemptAt) WHERE id = ? AND status = ?",
+        nextAttemptAt == null ? DEAD : PENDING,
+        statusCode,
+        error != null && error.length() > 2000 ? error.substring(0, 2000) : error,
+        latencyMs,
+        nextAttemptAt != null ? Timestamp.from(nextAttemptAt) : null,
+        id,
+        DELIVERING);
+  }
+
+  /** Requeues one dead (or delivered) delivery with a fresh attempt budget. */
+  public int replay(String id) {
+    return jdbcTemplate.update(
+        "UPDATE webhook_deliveries SET status = ?, attempts = 0, nextAttemptAt = NOW(3),"
+            + " claimToken = NULL WHERE id = ? AND status IN (?, ?)",
+        PENDING,
+        id,
+        DEAD,
+        DELIVERED);
+  }
+
+  /** Requeues every dead delivery of {@code webhookId}. */
+  public int replayDead(String webhookId) {
+    return jdbcTemplate.update(
+        "UPDATE webhook_deliveries SET status = ?, attempts = 0, nextAttemptAt = NOW(3),"
+            + " claimToken = NULL WHERE webhookId = ? AND status = ?",
+        PENDING,
+        webhookId,
+        DEAD);
+  }
+
+  public List<Map<String, Object>> list(String webhookId, String status, int limit) {
+    List<Object> args = new ArrayList<>();
+    args.add(webhookId);
+    String filter = "";
+    if (status != null && !status.isBlank()) {
+      filter = " AND status = ?";
+      args.add(status);
+    }
+    args.add(limit);
+    return jdbcTemplate.queryForList(
+        "SELECT id, eventType, status, attempts, nextAttemptAt, lastStatusCode, lastError,"
+            + " latencyMs, createdAt, deliveredAt FROM webhook_deliveries WHERE webhookId = ?"
+            + filter
+            + " ORDER BY createdAt DESC LIMIT ?",
+        args.toArray());
+  }
+
+  /**
+   * Per-webhook delivery figures over the last {@code hours}: counts by status, success rate of
+   * finished deliveries, first-attempt success rate and mean/max latency of delivered ones.
+   */
+  public Map<String, Map<String, Object>> stats(int hours) {
+    Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+    jdbcTemplate.query(
+        "SELECT webhookId,"
+            + " SUM(status = 'delivered') AS delivered,"
+            + " SUM(status = 'dead') AS dead,"
+            + " SUM(status IN ('pending', 'delivering')) AS queued,"
+            + " SUM(status = 'delivered' AND attempts = 1) AS firstAttempt,"
+            + " AVG(CASE WHEN status = 'delivered' THEN latencyMs END) AS latencyMean,"
+            + " MAX(CASE WHEN status = 'delivered' THEN latencyMs END) AS latencyMax,"
+            + " SUM(attempts) AS attempts"
+            + " FROM webhook_deliveries WHERE createdAt >= NOW(3) - INTERVAL ? HOUR"
+            + " GROUP BY webhookId",
+        rs -> {
+          long delivered = rs.getLong("delivered");
+          long dead = rs.getLong("dead");
+          long finished = delivered + dead;
+          Map<String, Object> entry = new LinkedHashMap<>();
+          entry.put("delivered", delivered);
+          entry.put("dead", dead);
+          entry.put("queued", rs.getLong("queued"));
+          entry.put("attempts", rs.getLong("attempts"));
+          entry.put("successRate", finished > 0 ? (double) delivered / finished : null);
+          entry.put(
+              "firstAttemptSuccessRate",
+              finished > 0 ? (double) rs.getLong("firstAttempt") / finished : null);
+          double mean = rs.getDouble("latencyMean");
+          entry.put("latencyMeanMs", rs.wasNull() ? null : Math.round(mean));
+          long max = rs.getLong("latencyMax");
+          entry.put("latencyMaxMs", rs.wasNull() ? null : max);
+          stats.put(rs.getString("webhookId"), entry);
+        },
+        hours);
+    return stats;
+  }
+
+  public int prune(int deliveredDays, int deadDays) {
+    String sql =
+        "DELETE FROM webhook_deliveries WHERE status = ? AND createdAt < NOW(3) - INTERVAL ? DAY";
+    return jdbcTemplate.update(sql, DELIVERED, deliveredDays)
+        + jdbcTemplate.update(sql, DEAD, deadDays);
+  }
+}
@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -44,4 +45,38 @@ public class WebhooksController {
     AuthUtils.requireAdmin(auth);
     return service.update(id, dto);
   }
+
+  @GetMapping("/stats")
+  public Object stats(
+      HttpServletRequest request,
+      @RequestParam(value = "hours", required = false) Integer hours) {
+    AuthContext auth = AuthUtils.requireAuth(request);
+    AuthUtils.requireAdmin(auth);
+    return service.stats(hours != null ? Math.max(1, hours) : 24);
+  }
+
+  @GetMapping("/{id}/deliveries")
+  public Object deliveries(
+      HttpServletRequest request,
+      @PathVariable String id,
+      @RequestParam(value = "status", required = false) String status,
+      @RequestParam(value = "limit", required = false) Integer limit) {
+    AuthContext auth = AuthUtils.requireAuth(request);
+    AuthUtils.requireAdmin(auth);
+    return service.listDeliveries(id, status, limit != null ? limit : 50);
+  }
+
+  @PostMapping("/{id}/replay-dead")
+  public Object replayDead(HttpServletRequest request, @PathVariable String id) {
+    AuthContext auth = AuthUtils.requireAuth(request);
+    AuthUtils.requireAdmin(auth);
+    return service.replayDead(id);
+  }
+
+  @PostMapping("/deliveries/{deliveryId}/replay")
+  public Object replay(HttpServletRequest request, @PathVariable String deliveryId) {
+    AuthContext auth = AuthUtils.requireAuth(request);
+    AuthUtils.requireAdmin(auth);
+    return service.replayDelivery(deliveryId);
+  }
 }
@@ -4,16 +4,14 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neria.manager.common.entities.Webhook;
 import com.neria.manager.common.repos.WebhookRepository;
+import com.neria.manager.common.services.ConfigCache;
 import com.neria.manager.common.services.EncryptionService;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -23,15 +21,28 @@ import org.springframework.web.server.ResponseStatusException;
 
 @Service
 public class WebhooksService {
+  private static final String TARGETS_KEY = "enabled";
+
+  /** An enabled webhook as cached for {@link #enqueue} and {@link WebhookDispatcher}. */
+  record Target(
+      String id, String tenantId, String url, Set<String> events, String encryptedSecret) {}
+
   private final WebhookRepository repository;
   private final EncryptionService encryptionService;
+  private final ConfigCache configCache;
+  private final WebhookOutbox outbox;
   private final ObjectMapper objectMapper;
-  private final HttpClient httpClient = HttpClient.newHttpClient();
 
   public WebhooksService(
-      WebhookRepository repository, EncryptionService encryptionService, ObjectMapper objectMapper) {
+      WebhookRepository repository,
+      EncryptionService encryptionService,
+      ConfigCache configCache,
+      WebhookOutbox outbox,
+      ObjectMapper objectMapper) {
     this.repository = repository;
     this.encryptionService = encryptionService;
+    this.configCache = configCache;
+    this.outbox = outbox;
     this.objectMapper = objectMapper;
   }
 
@@ -51,7 +62,9 @@ public class WebhooksService {
     webhook.setEnabled(dto.enabled != null ? dto.enabled : true);
     webhook.setCreatedAt(LocalDateTime.now());
     webhook.setUpdatedAt(LocalDateTime.now());
-    return sanitize(repository.save(webhook));
+    Webhook saved = repository.save(webhook);
+    configCache.invalidateRegion(ConfigCache.WEBHOOKS);
+    return sanitize(saved);
   }
 
   public Map<String, Object> update(String id, UpdateWebhookRequest dto) {
@@ -74,48 +87,95 @@ public class WebhooksService {
       webhook.setEncryptedSecret(dto.secret.isBlank() ? null : encryptionService.encrypt(dto.secret));
     }
     webhook.setUpdatedAt(LocalDateTime.now());
-    return sanitize(repository.save(webhook));
+    Webhook saved = repository.save(webhook);
+    configCache.invalidateRegion(ConfigCache.WEBHOOKS);
+    return sanitize(saved);
   }
 
+  /**
+   * Writes one outbox row per matching enabled webhook. Inside a transaction the rows commit with
+   * it; {@link WebhookDispatcher} delivers them asynchronously.
+   */
   public void enqueue(WebhookEventPayload payload) {
-    List<Webhook> hooks = repository.findByEnabled(true);
-    List<Webhook> targets = hooks.stream()
-        .filter(hook -> hook.getTenantId() == null || hook.getTenantId().equals(payload.tenantId))
-        .filter(hook -> {
-          List<String> events = parseEvents(hook.getEvents());
-          return events.contains("*") || events.contains(payload.eventType);
-        })
-        .toList();
-    for (Webhook hook : targets) {
-      deliver(hook, payload);
+    String body = null;
+    List<WebhookOutbox.Row> rows = new ArrayList<>();
+    for (Target target : targets()) {
+      if (target.tenantId() != null && !target.tenantId().equals(payload.tenantId)) {
+        continue;
+      }
+      if (!target.events().contains("*") && !target.events().contains(payload.eventType)) {
+        continue;
+      }
+      if (body == null) {
+        body = toJson(payload);
+      }
+      rows.add(new WebhookOutbox.Row(target.id(), payload.tenantId, payload.eventType, body));
     }
+    outbox.insert(rows);
   }
 
-  public void deliver(Webhook webhook, WebhookEventPayload payload) {
-    if (!webhook.isEnabled()) {
-      return;
-    }
-    try {
-      String body = objectMapper.writeValueAsString(payload);
-      HttpRequest.Builder builder = HttpRequest.newBuilder()
-          .uri(URI.create(webhook.getUrl()))
-          .header("Content-Type", "application/json")
-          .header("User-Agent", "ProviderManagerWebhook/1.0")
-          .POST(HttpRequest.BodyPublishers.ofString(body));
-
-      if (webhook.getEncryptedSecret() != null && !webhook.getEncryptedSecret().isBlank()) {
-        String secret = encryptionService.decrypt(webhook.getEncryptedSecret());
-        builder.header("x-signature", signPayload(secret, body));
+  /** The enabled webhook {@code id}, or {@code null} if it is disabled or gone. */
+  Target target(String id) {
+    for (Target target : targets()) {
+      if (target.id().equals(id)) {
+        return target;
       }
+    }
+    return null;
+  }
 
-      HttpResponse<String> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
-      if (response.statusCode() < 200 || response.statusCode() >= 300) {
-        throw new IllegalStateException(
-            "Webhook delivery failed: " + response.statusCode() + " " + response.body());
-      }
-    } catch (Exception ex) {
-      throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, ex.getMessage());
+  /** HMAC-SHA256 of {@code body} with the webhook secret, or {@code null} without a secret. */
+  String sign(Target target, String body) {
+    if (target.encryptedSecret() == null || target.encryptedSecret().isBlank()) {
+      return null;
     }
+    return signPayload(encryptionService.decrypt(target.encryptedSecret()), body);
+  }
+
+  /** Delivery figures of every webhook over the last {@code hours}, keyed by webhook id. */
+  public Map<String, Map<String, Object>> stats(int hours) {
+    return outbox.stats(hours);
+  }
+
+  public List<Map<String, Object>> listDeliveries(String id, String status, int limit) {
+    requireWebhook(id);
+    return outbox.list(id, status, Math.max(1, Math.min(limit, 500)));
+  }
+
+  public Map<String, Object> replayDelivery(String deliveryId) {
+    int replayed = outbox.replay(deliveryId);
+    if (replayed == 0) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Finished delivery not found");
+    }
+    return Map.of("replayed", replayed);
+  }
+
+  public Map<String, Object> replayDead(String id) {
+    requireWebhook(id);
+    return Map.of("replayed", outbox.replayDead(id));
+  }
+
+  private List<Target> targets() {
+    return configCache.get(
+        ConfigCache.WEBHOOKS,
+        TARGETS_KEY,
+        () ->
+            repository.findByEnabled(true).stream()
+                .map(
+                    hook ->
+                        new Target(
+                            hook.getId(),
+                            hook.getTenantId(),
+                            hook.getUrl(),
+                            Set.copyOf(parseEvents(hook.getEvents())),
+                            hook.getEncryptedSecret()))
+                .toList());
+  }
+
+  private Webhook requireWebhook(String id) {
+    return repository
+        .findById(id)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Webhook not found"));
   }
 
   private Map<String, Object> sanitize(Webhook hook) {